@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.benchmark;
+
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentity;
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityAttribute;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.AttributeChangeStatus;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.AttributeStatus;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatus;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.util.ResponseStatusFactory;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Synthetic data shared by the benchmarks
+ */
+public final class BenchmarkFixtures
+{
+    private BenchmarkFixtures( )
+    {
+    }
+
+    /**
+     * Build a candidate identity
+     *
+     * @param nId
+     *            the candidate identity id
+     * @param nAttributes
+     *            the number of attributes
+     * @return the candidate identity
+     */
+    public static CandidateIdentity candidateIdentity( final int nId, final int nAttributes )
+    {
+        final CandidateIdentity candidateIdentity = new CandidateIdentity( );
+        candidateIdentity.setId( nId );
+        candidateIdentity.setClientCode( "TEST" );
+        candidateIdentity.setConnectionId( "connection-" + nId );
+        final List<CandidateIdentityAttribute> listAttributes = new ArrayList<>( nAttributes );
+        final Timestamp certDate = new Timestamp( System.currentTimeMillis( ) );
+        for ( int i = 0; i < nAttributes; i++ )
+        {
+            final CandidateIdentityAttribute attribute = new CandidateIdentityAttribute( );
+            attribute.setCode( "attribute_" + i );
+            attribute.setValue( "value " + nId + " " + i );
+            attribute.setCertProcess( "DEC" );
+            attribute.setCertDate( certDate );
+            listAttributes.add( attribute );
+        }
+        candidateIdentity.setAttributes( listAttributes );
+        return candidateIdentity;
+    }
+
+    /**
+     * Build a response status with attribute statuses
+     *
+     * @param nAttributes
+     *            the number of attribute statuses
+     * @return the response status
+     */
+    public static ResponseStatus responseStatus( final int nAttributes )
+    {
+        final ResponseStatus status = ResponseStatusFactory.success( );
+        final List<AttributeStatus> listAttributeStatuses = new ArrayList<>( nAttributes );
+        for ( int i = 0; i < nAttributes; i++ )
+        {
+            final AttributeStatus attributeStatus = new AttributeStatus( );
+            attributeStatus.setKey( "attribute_" + i );
+            attributeStatus.setStatus( AttributeChangeStatus.CREATED );
+            attributeStatus.setMessage( i % 2 == 0 ? "Attribute created" : null );
+            listAttributeStatuses.add( attributeStatus );
+        }
+        status.setAttributeStatuses( listAttributeStatuses );
+        return status;
+    }
+}
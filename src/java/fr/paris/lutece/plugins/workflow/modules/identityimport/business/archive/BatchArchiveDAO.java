@@ -0,0 +1,200 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.archive;
+
+import fr.paris.lutece.util.sql.DAOUtil;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class provides Data Access methods for the chunked archiving of batches
+ */
+public final class BatchArchiveDAO implements IBatchArchiveDAO
+{
+    // Constants
+    private static final String SQL_QUERY_SELECT_CANDIDATE_IDS = "SELECT id_candidate_identity FROM identityimport_candidate_identity WHERE id_batch = ? AND id_candidate_identity > ? ORDER BY id_candidate_identity LIMIT ?";
+    private static final String SQL_QUERY_DELETE_ATTRIBUTES = "DELETE FROM identityimport_candidate_identity_attribute WHERE id_identity IN ( %s )";
+    private static final String SQL_QUERY_DELETE_HISTORIES = "DELETE FROM identityimport_candidate_identity_history WHERE id_wf_resource_history IN ( SELECT id_history FROM workflow_resource_history WHERE resource_type = ? AND id_resource IN ( %s ) )";
+    private static final String SQL_QUERY_DELETE_ATTRIBUTE_STATUSES = "DELETE FROM workflow_task_identity_import_attr_status WHERE id_resource_history IN ( SELECT id_history FROM workflow_resource_history WHERE resource_type = ? AND id_resource IN ( %s ) )";
+    private static final String SQL_QUERY_SELECT_WORKFLOW_IDS = "SELECT DISTINCT id_workflow FROM workflow_resource_workflow WHERE resource_type = ? AND id_resource IN ( %s )";
+    private static final String SQL_QUERY_DELETE_PARKED = "DELETE FROM workflow_task_identity_import_parked WHERE resource_type = ? AND id_resource IN ( %s )";
+    private static final String SQL_QUERY_DELETE_IMPORT_HASHES = "DELETE FROM workflow_task_identity_import_hash WHERE id_candidate_identity IN ( %s )";
+    private static final String SQL_QUERY_DELETE_OUTBOX = "DELETE FROM workflow_task_identity_import_outbox WHERE resource_type = ? AND id_resource IN ( %s )";
+    private static final String SQL_QUERY_DELETE_CANDIDATES = "DELETE FROM identityimport_candidate_identity WHERE id_candidate_identity IN ( %s )";
+    private static final String SQL_QUERY_SELECT_CURSOR = "SELECT last_id_candidate_identity FROM workflow_task_identity_import_archive WHERE id_batch = ?";
+    private static final String SQL_QUERY_UPDATE_CURSOR = "UPDATE workflow_task_identity_import_archive SET last_id_candidate_identity = ?, date_update = ? WHERE id_batch = ?";
+    private static final String SQL_QUERY_INSERT_CURSOR = "INSERT INTO workflow_task_identity_import_archive ( last_id_candidate_identity, date_update, id_batch ) VALUES ( ?, ?, ? ) ";
+    private static final String SQL_QUERY_DELETE_CURSOR = "DELETE FROM workflow_task_identity_import_archive WHERE id_batch = ?";
+
+    @Override
+    public List<Integer> selectCandidateIds( int nIdBatch, int nAfterId, int nLimit )
+    {
+        final List<Integer> listIds = new ArrayList<>( nLimit );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_CANDIDATE_IDS ) )
+        {
+            daoUtil.setInt( 1, nIdBatch );
+            daoUtil.setInt( 2, nAfterId );
+            daoUtil.setInt( 3, nLimit );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                listIds.add( daoUtil.getInt( 1 ) );
+            }
+        }
+        return listIds;
+    }
+
+    @Override
+    public List<Integer> selectWorkflowIds( List<Integer> listIds, String strResourceType )
+    {
+        final List<Integer> listWorkflowIds = new ArrayList<>( );
+        if ( listIds.isEmpty( ) )
+        {
+            return listWorkflowIds;
+        }
+        final String strPlaceholders = String.join( ",", Collections.nCopies( listIds.size( ), "?" ) );
+        try ( DAOUtil daoUtil = new DAOUtil( String.format( SQL_QUERY_SELECT_WORKFLOW_IDS, strPlaceholders ) ) )
+        {
+            int nIndex = 1;
+            daoUtil.setString( nIndex++, strResourceType );
+            for ( final Integer nId : listIds )
+            {
+                daoUtil.setInt( nIndex++, nId );
+            }
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                listWorkflowIds.add( daoUtil.getInt( 1 ) );
+            }
+        }
+        return listWorkflowIds;
+    }
+
+    @Override
+    public void deleteCandidates( List<Integer> listIds, String strResourceType )
+    {
+        if ( listIds.isEmpty( ) )
+        {
+            return;
+        }
+        final String strPlaceholders = String.join( ",", Collections.nCopies( listIds.size( ), "?" ) );
+
+        // Children first
+        delete( SQL_QUERY_DELETE_ATTRIBUTES, strPlaceholders, null, listIds );
+        delete( SQL_QUERY_DELETE_HISTORIES, strPlaceholders, strResourceType, listIds );
+        delete( SQL_QUERY_DELETE_ATTRIBUTE_STATUSES, strPlaceholders, strResourceType, listIds );
+        delete( SQL_QUERY_DELETE_PARKED, strPlaceholders, strResourceType, listIds );
+        delete( SQL_QUERY_DELETE_OUTBOX, strPlaceholders, strResourceType, listIds );
+        delete( SQL_QUERY_DELETE_IMPORT_HASHES, strPlaceholders, null, listIds );
+        delete( SQL_QUERY_DELETE_CANDIDATES, strPlaceholders, null, listIds );
+    }
+
+    /**
+     * Run a delete query on a list of ids
+     *
+     * @param strQuery
+     *            the query, with a placeholder for the list of ids
+     * @param strPlaceholders
+     *            the list of parameter markers
+     * @param strResourceType
+     *            the resource type, bound as the first parameter if not null
+     * @param listIds
+     *            the ids
+     */
+    private static void delete( final String strQuery, final String strPlaceholders, final String strResourceType, final List<Integer> listIds )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( String.format( strQuery, strPlaceholders ) ) )
+        {
+            int nIndex = 1;
+            if ( strResourceType != null )
+            {
+                daoUtil.setString( nIndex++, strResourceType );
+            }
+            for ( final Integer nId : listIds )
+            {
+                daoUtil.setInt( nIndex++, nId );
+            }
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    @Override
+    public int selectCursor( int nIdBatch )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_CURSOR ) )
+        {
+            daoUtil.setInt( 1, nIdBatch );
+            daoUtil.executeQuery( );
+            if ( daoUtil.next( ) )
+            {
+                return daoUtil.getInt( 1 );
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void storeCursor( int nIdBatch, int nLastId )
+    {
+        final boolean bExists;
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_CURSOR ) )
+        {
+            daoUtil.setInt( 1, nIdBatch );
+            daoUtil.executeQuery( );
+            bExists = daoUtil.next( );
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( bExists ? SQL_QUERY_UPDATE_CURSOR : SQL_QUERY_INSERT_CURSOR ) )
+        {
+            // Both queries take the same parameters
+            daoUtil.setInt( 1, nLastId );
+            daoUtil.setTimestamp( 2, new Timestamp( System.currentTimeMillis( ) ) );
+            daoUtil.setInt( 3, nIdBatch );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    @Override
+    public void deleteCursor( int nIdBatch )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE_CURSOR ) )
+        {
+            daoUtil.setInt( 1, nIdBatch );
+            daoUtil.executeUpdate( );
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.archive;
+
+import java.util.List;
+
+/**
+ * IBatchArchiveDAO Interface
+ */
+public interface IBatchArchiveDAO
+{
+    /**
+     * Load the ids of the next candidate identities of a batch to archive
+     *
+     * @param nIdBatch
+     *            The batch id
+     * @param nAfterId
+     *            The id of the last archived candidate identity, 0 to start from the beginning
+     * @param nLimit
+     *            The maximum number of ids to load
+     * @return The candidate identity ids, ordered by id
+     */
+    List<Integer> selectCandidateIds( int nIdBatch, int nAfterId, int nLimit );
+
+    /**
+     * Load the ids of the workflows of candidate identities
+     *
+     * @param listIds
+     *            The candidate identity ids
+     * @param strResourceType
+     *            The workflow resource type of the candidate identities
+     * @return The distinct workflow ids
+     */
+    List<Integer> selectWorkflowIds( List<Integer> listIds, String strResourceType );
+
+    /**
+     * Delete candidate identities with their attributes and their histories. Their workflow resources are left to plugin-workflow.
+     *
+     * @param listIds
+     *            The candidate identity ids
+     * @param strResourceType
+     *            The workflow resource type of the candidate identities
+     */
+    void deleteCandidates( List<Integer> listIds, String strResourceType );
+
+    /**
+     * Load the archiving cursor of a batch
+     *
+     * @param nIdBatch
+     *            The batch id
+     * @return The id of the last archived candidate identity, or 0 if the archiving of the batch has not started
+     */
+    int selectCursor( int nIdBatch );
+
+    /**
+     * Store the archiving cursor of a batch
+     *
+     * @param nIdBatch
+     *            The batch id
+     * @param nLastId
+     *            The id of the last archived candidate identity
+     */
+    void storeCursor( int nIdBatch, int nLastId );
+
+    /**
+     * Delete the archiving cursor of a batch
+     *
+     * @param nIdBatch
+     *            The batch id
+     */
+    void deleteCursor( int nIdBatch );
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate;
+
+/**
+ * Number of candidate identity histories of a batch in which an attribute got a status
+ */
+public class AttributeStatusCount
+{
+    private final String _strAttributeKey;
+    private final String _strStatus;
+    private final int _nCount;
+
+    /**
+     * Constructor
+     *
+     * @param strAttributeKey
+     *            the attribute key
+     * @param strStatus
+     *            the status code
+     * @param nCount
+     *            the number of histories
+     */
+    public AttributeStatusCount( final String strAttributeKey, final String strStatus, final int nCount )
+    {
+        _strAttributeKey = strAttributeKey;
+        _strStatus = strStatus;
+        _nCount = nCount;
+    }
+
+    /**
+     * @return the attribute key
+     */
+    public String getAttributeKey( )
+    {
+        return _strAttributeKey;
+    }
+
+    /**
+     * @return the status code
+     */
+    public String getStatus( )
+    {
+        return _strStatus;
+    }
+
+    /**
+     * @return the number of histories
+     */
+    public int getCount( )
+    {
+        return _nCount;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate;
+
+/**
+ * Status of one attribute in the identity store response recorded in a candidate identity history.<br>
+ * The statuses are stored apart from the history comment, one row per attribute, so that they can be counted by attribute and by status.
+ */
+public class CandidateAttributeStatus
+{
+    private int _nIdResourceHistory;
+    private String _strAttributeKey;
+    private String _strStatus;
+    private String _strMessage;
+
+    /**
+     * Constructor
+     */
+    public CandidateAttributeStatus( )
+    {
+    }
+
+    /**
+     * Constructor
+     *
+     * @param nIdResourceHistory
+     *            the workflow history id
+     * @param strAttributeKey
+     *            the attribute key
+     * @param strStatus
+     *            the status code returned by the identity store
+     * @param strMessage
+     *            the message returned by the identity store, may be null
+     */
+    public CandidateAttributeStatus( final int nIdResourceHistory, final String strAttributeKey, final String strStatus, final String strMessage )
+    {
+        _nIdResourceHistory = nIdResourceHistory;
+        _strAttributeKey = strAttributeKey;
+        _strStatus = strStatus;
+        _strMessage = strMessage;
+    }
+
+    /**
+     * @return the workflow history id
+     */
+    public int getIdResourceHistory( )
+    {
+        return _nIdResourceHistory;
+    }
+
+    /**
+     * @param nIdResourceHistory
+     *            the workflow history id
+     */
+    public void setIdResourceHistory( final int nIdResourceHistory )
+    {
+        _nIdResourceHistory = nIdResourceHistory;
+    }
+
+    /**
+     * @return the attribute key
+     */
+    public String getAttributeKey( )
+    {
+        return _strAttributeKey;
+    }
+
+    /**
+     * @param strAttributeKey
+     *            the attribute key
+     */
+    public void setAttributeKey( final String strAttributeKey )
+    {
+        _strAttributeKey = strAttributeKey;
+    }
+
+    /**
+     * @return the status code returned by the identity store
+     */
+    public String getStatus( )
+    {
+        return _strStatus;
+    }
+
+    /**
+     * @param strStatus
+     *            the status code returned by the identity store
+     */
+    public void setStatus( final String strStatus )
+    {
+        _strStatus = strStatus;
+    }
+
+    /**
+     * @return the message returned by the identity store, may be null
+     */
+    public String getMessage( )
+    {
+        return _strMessage;
+    }
+
+    /**
+     * @param strMessage
+     *            the message returned by the identity store, may be null
+     */
+    public void setMessage( final String strMessage )
+    {
+        _strMessage = strMessage;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate;
+
+import java.sql.Timestamp;
+import java.util.Objects;
+
+/**
+ * Content hash of a candidate identity at its last successful import, used to skip the identities re-imported unchanged
+ */
+public class CandidateIdentityImportHash
+{
+    private int _nIdCandidateIdentity;
+    private String _strContentHash;
+    private String _strCustomerId;
+    private Timestamp _dateImport;
+
+    /**
+     * Constructor
+     */
+    public CandidateIdentityImportHash( )
+    {
+    }
+
+    /**
+     * Constructor
+     *
+     * @param nIdCandidateIdentity
+     *            the candidate identity id
+     * @param strContentHash
+     *            the content hash of the imported identity
+     * @param strCustomerId
+     *            the customer id returned by the import
+     */
+    public CandidateIdentityImportHash( final int nIdCandidateIdentity, final String strContentHash, final String strCustomerId )
+    {
+        _nIdCandidateIdentity = nIdCandidateIdentity;
+        _strContentHash = strContentHash;
+        _strCustomerId = strCustomerId;
+        _dateImport = new Timestamp( System.currentTimeMillis( ) );
+    }
+
+    /**
+     * @return the candidate identity id
+     */
+    public int getIdCandidateIdentity( )
+    {
+        return _nIdCandidateIdentity;
+    }
+
+    /**
+     * @param nIdCandidateIdentity
+     *            the candidate identity id
+     */
+    public void setIdCandidateIdentity( final int nIdCandidateIdentity )
+    {
+        _nIdCandidateIdentity = nIdCandidateIdentity;
+    }
+
+    /**
+     * @return the content hash of the imported identity
+     */
+    public String getContentHash( )
+    {
+        return _strContentHash;
+    }
+
+    /**
+     * @param strContentHash
+     *            the content hash of the imported identity
+     */
+    public void setContentHash( final String strContentHash )
+    {
+        _strContentHash = strContentHash;
+    }
+
+    /**
+     * @return the customer id returned by the import
+     */
+    public String getCustomerId( )
+    {
+        return _strCustomerId;
+    }
+
+    /**
+     * @param strCustomerId
+     *            the customer id returned by the import
+     */
+    public void setCustomerId( final String strCustomerId )
+    {
+        _strCustomerId = strCustomerId;
+    }
+
+    /**
+     * @return the date of the import
+     */
+    public Timestamp getDateImport( )
+    {
+        return _dateImport;
+    }
+
+    /**
+     * @param dateImport
+     *            the date of the import
+     */
+    public void setDateImport( final Timestamp dateImport )
+    {
+        _dateImport = dateImport;
+    }
+
+    /**
+     * Tell if a candidate identity is unchanged since this import
+     *
+     * @param strContentHash
+     *            the current content hash of the candidate identity
+     * @param strCustomerId
+     *            the current customer id of the candidate identity
+     * @return true if the candidate identity still has the customer id of this import and the same content
+     */
+    public boolean isUnchanged( final String strContentHash, final String strCustomerId )
+    {
+        return strCustomerId != null && !strCustomerId.isEmpty( ) && strCustomerId.equals( _strCustomerId )
+                && Objects.equals( strContentHash, _strContentHash );
+    }
+}
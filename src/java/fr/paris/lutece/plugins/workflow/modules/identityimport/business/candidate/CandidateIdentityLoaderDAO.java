@@ -0,0 +1,384 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate;
+
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentity;
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityAttribute;
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistory;
+import fr.paris.lutece.plugins.workflowcore.business.resource.ResourceWorkflow;
+import fr.paris.lutece.plugins.workflowcore.business.state.State;
+import fr.paris.lutece.plugins.workflowcore.business.workflow.Workflow;
+import fr.paris.lutece.util.sql.DAOUtil;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class provides read access to the candidate identities of plugin-identityimport.<br>
+ * Candidate identities are loaded with their attributes in a single joined query. Only the columns used by the workflow tasks are loaded, so the
+ * loaded objects must not be given to <code>CandidateIdentityHome.update</code>: use the write-behind service to update their customer id.
+ */
+public final class CandidateIdentityLoaderDAO implements ICandidateIdentityLoaderDAO
+{
+    // Constants
+    private static final String SQL_QUERY_SELECT_IDS_BY_BATCH = "SELECT id_candidate_identity FROM identityimport_candidate_identity WHERE id_batch = ? ORDER BY id_candidate_identity";
+    private static final String SQL_QUERY_SELECT_IDS_BY_BATCH_RANGE = "SELECT id_candidate_identity FROM identityimport_candidate_identity WHERE id_batch = ? AND id_candidate_identity BETWEEN ? AND ? ORDER BY id_candidate_identity";
+    private static final String SQL_QUERY_COUNT_BY_BATCH = "SELECT COUNT(*) FROM identityimport_candidate_identity WHERE id_batch = ?";
+    private static final String SQL_QUERY_SELECT_COLUMNS = "SELECT c.id_candidate_identity, c.id_batch, c.connection_id, c.customer_id, c.client_app_code, a.id_attribute, a.code, a.value, a.cert_process, a.cert_date ";
+    private static final String SQL_QUERY_SELECT_BY_RESOURCE_HISTORY = "SELECT h.id_history, h.id_resource, h.resource_type, h.id_workflow, c.id_candidate_identity, c.id_batch, c.connection_id, c.customer_id, c.client_app_code, a.id_attribute, a.code, a.value, a.cert_process, a.cert_date "
+            + " FROM workflow_resource_history h LEFT JOIN identityimport_candidate_identity c ON c.id_candidate_identity = h.id_resource "
+            + " LEFT JOIN identityimport_candidate_identity_attribute a ON a.id_identity = c.id_candidate_identity WHERE h.id_history = ? ORDER BY a.id_attribute";
+    private static final String SQL_QUERY_SELECT_BY_IDS = SQL_QUERY_SELECT_COLUMNS
+            + " FROM identityimport_candidate_identity c LEFT JOIN identityimport_candidate_identity_attribute a ON a.id_identity = c.id_candidate_identity "
+            + " WHERE c.id_candidate_identity IN ( %s ) ORDER BY c.id_candidate_identity, a.id_attribute";
+    private static final String SQL_QUERY_SELECT_HISTORIES_OF_RESOURCE = "SELECT h.id_history, c.status, c.comment FROM workflow_resource_history r "
+            + " JOIN workflow_resource_history h ON h.id_resource = r.id_resource AND h.resource_type = r.resource_type "
+            + " LEFT JOIN identityimport_candidate_identity_history c ON c.id_wf_resource_history = h.id_history WHERE r.id_history = ?";
+    private static final String SQL_QUERY_SELECT_ATTRIBUTE_STATUSES_OF_RESOURCE = "SELECT s.id_resource_history, s.attribute_key, s.status, s.message FROM workflow_resource_history r "
+            + " JOIN workflow_resource_history h ON h.id_resource = r.id_resource AND h.resource_type = r.resource_type "
+            + " JOIN workflow_task_identity_import_attr_status s ON s.id_resource_history = h.id_history WHERE r.id_history = ? ORDER BY s.id_resource_history, s.attribute_key";
+    private static final String SQL_QUERY_SELECT_ATTRIBUTE_STATUS_COUNTS = "SELECT s.attribute_key, s.status, COUNT(*) FROM identityimport_candidate_identity c "
+            + " JOIN workflow_resource_history h ON h.id_resource = c.id_candidate_identity AND h.resource_type = ? "
+            + " JOIN workflow_task_identity_import_attr_status s ON s.id_resource_history = h.id_history WHERE c.id_batch = ? "
+            + " GROUP BY s.attribute_key, s.status ORDER BY COUNT(*) DESC, s.attribute_key, s.status";
+    private static final String SQL_QUERY_SELECT_RESOURCE_WORKFLOWS = "SELECT id_resource, id_state, id_external_parent, is_associated FROM workflow_resource_workflow WHERE resource_type = ? AND id_workflow = ? AND id_resource IN ( %s )";
+    private static final String SQL_QUERY_SELECT_WORKGROUPS = "SELECT id_resource, workgroup FROM workflow_resource_workgroup WHERE resource_type = ? AND id_workflow = ? AND id_resource IN ( %s )";
+    private static final String SQL_QUERY_SELECT_IMPORT_HASHES = "SELECT id_candidate_identity, content_hash, customer_id, date_import FROM workflow_task_identity_import_hash WHERE id_candidate_identity IN ( %s )";
+
+    @Override
+    public List<Integer> selectIdsByBatch( int nIdBatch )
+    {
+        final List<Integer> listIds = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_IDS_BY_BATCH ) )
+        {
+            daoUtil.setInt( 1, nIdBatch );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                listIds.add( daoUtil.getInt( 1 ) );
+            }
+        }
+        return listIds;
+    }
+
+    @Override
+    public List<Integer> selectIdsByBatch( int nIdBatch, int nFirstId, int nLastId )
+    {
+        final List<Integer> listIds = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_IDS_BY_BATCH_RANGE ) )
+        {
+            daoUtil.setInt( 1, nIdBatch );
+            daoUtil.setInt( 2, nFirstId );
+            daoUtil.setInt( 3, nLastId );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                listIds.add( daoUtil.getInt( 1 ) );
+            }
+        }
+        return listIds;
+    }
+
+    @Override
+    public int countByBatch( int nIdBatch )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_COUNT_BY_BATCH ) )
+        {
+            daoUtil.setInt( 1, nIdBatch );
+            daoUtil.executeQuery( );
+            return daoUtil.next( ) ? daoUtil.getInt( 1 ) : 0;
+        }
+    }
+
+    @Override
+    public CandidateIdentityResource selectByResourceHistory( int nIdResourceHistory )
+    {
+        int nIdResource = 0;
+        String strResourceType = null;
+        int nIdWorkflow = 0;
+        boolean bFound = false;
+        final Map<Integer, CandidateIdentity> mapIdentities = new LinkedHashMap<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_BY_RESOURCE_HISTORY ) )
+        {
+            daoUtil.setInt( 1, nIdResourceHistory );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                bFound = true;
+                nIdResource = daoUtil.getInt( 2 );
+                strResourceType = daoUtil.getString( 3 );
+                nIdWorkflow = daoUtil.getInt( 4 );
+                readRow( daoUtil, 5, mapIdentities );
+            }
+        }
+
+        if ( !bFound )
+        {
+            return null;
+        }
+        return new CandidateIdentityResource( nIdResourceHistory, nIdResource, strResourceType, nIdWorkflow,
+                mapIdentities.values( ).stream( ).findFirst( ).orElse( null ) );
+    }
+
+    @Override
+    public List<CandidateIdentity> selectByIds( Collection<Integer> listIds )
+    {
+        if ( listIds.isEmpty( ) )
+        {
+            return new ArrayList<>( );
+        }
+
+        final Map<Integer, CandidateIdentity> mapIdentities = new LinkedHashMap<>( listIds.size( ) * 2 );
+        try ( DAOUtil daoUtil = new DAOUtil( String.format( SQL_QUERY_SELECT_BY_IDS, String.join( ",", Collections.nCopies( listIds.size( ), "?" ) ) ) ) )
+        {
+            int nIndex = 1;
+            for ( final Integer nId : listIds )
+            {
+                daoUtil.setInt( nIndex++, nId );
+            }
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                readRow( daoUtil, 1, mapIdentities );
+            }
+        }
+        return new ArrayList<>( mapIdentities.values( ) );
+    }
+
+    @Override
+    public Map<Integer, CandidateIdentityHistory> selectHistoriesOfResource( int nIdResourceHistory )
+    {
+        final Map<Integer, CandidateIdentityHistory> mapHistories = new HashMap<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_HISTORIES_OF_RESOURCE ) )
+        {
+            daoUtil.setInt( 1, nIdResourceHistory );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                final int nIdHistory = daoUtil.getInt( 1 );
+                final String strStatus = daoUtil.getString( 2 );
+                final String strComment = daoUtil.getString( 3 );
+                CandidateIdentityHistory history = null;
+                if ( strStatus != null || strComment != null )
+                {
+                    history = new CandidateIdentityHistory( );
+                    history.setWfResourceHistoryId( nIdHistory );
+                    history.setStatus( strStatus );
+                    history.setComment( strComment );
+                }
+                mapHistories.put( nIdHistory, history );
+            }
+        }
+        return mapHistories;
+    }
+
+    @Override
+    public Map<Integer, List<CandidateAttributeStatus>> selectAttributeStatusesOfResource( int nIdResourceHistory )
+    {
+        final Map<Integer, List<CandidateAttributeStatus>> mapAttributeStatuses = new HashMap<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_ATTRIBUTE_STATUSES_OF_RESOURCE ) )
+        {
+            daoUtil.setInt( 1, nIdResourceHistory );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                final CandidateAttributeStatus attributeStatus = new CandidateAttributeStatus( daoUtil.getInt( 1 ), daoUtil.getString( 2 ),
+                        daoUtil.getString( 3 ), daoUtil.getString( 4 ) );
+                mapAttributeStatuses.computeIfAbsent( attributeStatus.getIdResourceHistory( ), id -> new ArrayList<>( ) ).add( attributeStatus );
+            }
+        }
+        return mapAttributeStatuses;
+    }
+
+    @Override
+    public List<AttributeStatusCount> selectAttributeStatusCounts( int nIdBatch, String strResourceType )
+    {
+        final List<AttributeStatusCount> listCounts = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_ATTRIBUTE_STATUS_COUNTS ) )
+        {
+            daoUtil.setString( 1, strResourceType );
+            daoUtil.setInt( 2, nIdBatch );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                listCounts.add( new AttributeStatusCount( daoUtil.getString( 1 ), daoUtil.getString( 2 ), daoUtil.getInt( 3 ) ) );
+            }
+        }
+        return listCounts;
+    }
+
+    @Override
+    public Map<Integer, CandidateIdentityImportHash> selectImportHashes( Collection<Integer> listIds )
+    {
+        final Map<Integer, CandidateIdentityImportHash> mapHashes = new HashMap<>( listIds.size( ) * 2 );
+        if ( listIds.isEmpty( ) )
+        {
+            return mapHashes;
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( String.format( SQL_QUERY_SELECT_IMPORT_HASHES, String.join( ",", Collections.nCopies( listIds.size( ), "?" ) ) ) ) )
+        {
+            int nIndex = 1;
+            for ( final Integer nId : listIds )
+            {
+                daoUtil.setInt( nIndex++, nId );
+            }
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                final CandidateIdentityImportHash importHash = new CandidateIdentityImportHash( );
+                importHash.setIdCandidateIdentity( daoUtil.getInt( 1 ) );
+                importHash.setContentHash( daoUtil.getString( 2 ) );
+                importHash.setCustomerId( daoUtil.getString( 3 ) );
+                importHash.setDateImport( daoUtil.getTimestamp( 4 ) );
+                mapHashes.put( importHash.getIdCandidateIdentity( ), importHash );
+            }
+        }
+        return mapHashes;
+    }
+
+    @Override
+    public Map<Integer, ResourceWorkflow> selectResourceWorkflows( Collection<Integer> listIds, String strResourceType, int nIdWorkflow )
+    {
+        final Map<Integer, ResourceWorkflow> mapResourceWorkflows = new HashMap<>( listIds.size( ) * 2 );
+        if ( listIds.isEmpty( ) )
+        {
+            return mapResourceWorkflows;
+        }
+
+        final Workflow workflow = new Workflow( );
+        workflow.setId( nIdWorkflow );
+        final String strIn = String.join( ",", Collections.nCopies( listIds.size( ), "?" ) );
+        try ( DAOUtil daoUtil = new DAOUtil( String.format( SQL_QUERY_SELECT_RESOURCE_WORKFLOWS, strIn ) ) )
+        {
+            setResourceParameters( daoUtil, listIds, strResourceType, nIdWorkflow );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                final ResourceWorkflow resourceWorkflow = new ResourceWorkflow( );
+                resourceWorkflow.setIdResource( daoUtil.getInt( 1 ) );
+                resourceWorkflow.setResourceType( strResourceType );
+                resourceWorkflow.setWorkflow( workflow );
+                final State state = new State( );
+                state.setId( daoUtil.getInt( 2 ) );
+                resourceWorkflow.setState( state );
+                resourceWorkflow.setExternalParentId( daoUtil.getInt( 3 ) );
+                resourceWorkflow.setAssociatedWithWorkgroup( daoUtil.getBoolean( 4 ) );
+                resourceWorkflow.setWorkgroups( new ArrayList<>( ) );
+                mapResourceWorkflows.put( resourceWorkflow.getIdResource( ), resourceWorkflow );
+            }
+        }
+
+        // The workgroups are rewritten when the state is updated, they must be loaded with the resource workflow
+        try ( DAOUtil daoUtil = new DAOUtil( String.format( SQL_QUERY_SELECT_WORKGROUPS, strIn ) ) )
+        {
+            setResourceParameters( daoUtil, listIds, strResourceType, nIdWorkflow );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                final ResourceWorkflow resourceWorkflow = mapResourceWorkflows.get( daoUtil.getInt( 1 ) );
+                if ( resourceWorkflow != null )
+                {
+                    resourceWorkflow.getWorkgroups( ).add( daoUtil.getString( 2 ) );
+                }
+            }
+        }
+        return mapResourceWorkflows;
+    }
+
+    private static void setResourceParameters( final DAOUtil daoUtil, final Collection<Integer> listIds, final String strResourceType,
+            final int nIdWorkflow )
+    {
+        int nIndex = 1;
+        daoUtil.setString( nIndex++, strResourceType );
+        daoUtil.setInt( nIndex++, nIdWorkflow );
+        for ( final Integer nId : listIds )
+        {
+            daoUtil.setInt( nIndex++, nId );
+        }
+    }
+
+    /**
+     * Read a row of a candidate identity / attribute join
+     *
+     * @param daoUtil
+     *            the daoUtil positioned on the row
+     * @param nFirstColumn
+     *            the index of the id_candidate_identity column
+     * @param mapIdentities
+     *            the identities already read, by id
+     */
+    private static void readRow( final DAOUtil daoUtil, final int nFirstColumn, final Map<Integer, CandidateIdentity> mapIdentities )
+    {
+        int nIndex = nFirstColumn;
+        final int nIdIdentity = daoUtil.getInt( nIndex++ );
+        if ( nIdIdentity == 0 )
+        {
+            // No candidate identity for this resource
+            return;
+        }
+
+        CandidateIdentity candidateIdentity = mapIdentities.get( nIdIdentity );
+        if ( candidateIdentity == null )
+        {
+            candidateIdentity = new CandidateIdentity( );
+            candidateIdentity.setId( nIdIdentity );
+            candidateIdentity.setIdBatch( daoUtil.getInt( nIndex ) );
+            candidateIdentity.setConnectionId( daoUtil.getString( nIndex + 1 ) );
+            candidateIdentity.setCustomerId( daoUtil.getString( nIndex + 2 ) );
+            candidateIdentity.setClientCode( daoUtil.getString( nIndex + 3 ) );
+            candidateIdentity.setAttributes( new ArrayList<>( ) );
+            mapIdentities.put( nIdIdentity, candidateIdentity );
+        }
+        nIndex += 4;
+
+        final int nIdAttribute = daoUtil.getInt( nIndex++ );
+        if ( nIdAttribute != 0 )
+        {
+            final CandidateIdentityAttribute attribute = new CandidateIdentityAttribute( );
+            attribute.setId( nIdAttribute );
+            attribute.setIdIdentity( nIdIdentity );
+            attribute.setCode( daoUtil.getString( nIndex++ ) );
+            attribute.setValue( daoUtil.getString( nIndex++ ) );
+            attribute.setCertProcess( daoUtil.getString( nIndex++ ) );
+            attribute.setCertDate( daoUtil.getTimestamp( nIndex ) );
+            candidateIdentity.getAttributes( ).add( attribute );
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate;
+
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentity;
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistory;
+import fr.paris.lutece.plugins.workflowcore.business.resource.ResourceWorkflow;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class provides instances management methods for loading candidate identities
+ */
+public final class CandidateIdentityLoaderHome
+{
+    // Static variable pointed at the DAO instance
+    private static final ICandidateIdentityLoaderDAO _dao = SpringContextService.getBean( "workflow-identityimport.candidateIdentityLoaderDAO" );
+
+    /**
+     * Private constructor - this class need not be instantiated
+     */
+    private CandidateIdentityLoaderHome( )
+    {
+    }
+
+    /**
+     * Load the ids of all the candidate identities of a batch
+     *
+     * @param nIdBatch
+     *            The batch id
+     * @return The list of candidate identity ids
+     */
+    public static List<Integer> getCandidateIdentityIdsByBatch( int nIdBatch )
+    {
+        return _dao.selectIdsByBatch( nIdBatch );
+    }
+
+    /**
+     * Load the ids of the candidate identities of a batch in a range of ids
+     *
+     * @param nIdBatch
+     *            The batch id
+     * @param nFirstId
+     *            The first id of the range
+     * @param nLastId
+     *            The last id of the range, included
+     * @return The list of candidate identity ids, ordered by id
+     */
+    public static List<Integer> getCandidateIdentityIdsByBatch( int nIdBatch, int nFirstId, int nLastId )
+    {
+        return _dao.selectIdsByBatch( nIdBatch, nFirstId, nLastId );
+    }
+
+    /**
+     * Count the candidate identities of a batch
+     *
+     * @param nIdBatch
+     *            The batch id
+     * @return The number of candidate identities
+     */
+    public static int countByBatch( int nIdBatch )
+    {
+        return _dao.countByBatch( nIdBatch );
+    }
+
+    /**
+     * Load a resource history with its candidate identity and attributes
+     *
+     * @param nIdResourceHistory
+     *            The resource history id
+     * @return The resource, or null if the resource history doesn't exist
+     */
+    public static CandidateIdentityResource findByResourceHistory( int nIdResourceHistory )
+    {
+        return _dao.selectByResourceHistory( nIdResourceHistory );
+    }
+
+    /**
+     * Load candidate identities with their attributes
+     *
+     * @param listIds
+     *            The candidate identity ids
+     * @return The candidate identities found
+     */
+    public static List<CandidateIdentity> findByIds( Collection<Integer> listIds )
+    {
+        return _dao.selectByIds( listIds );
+    }
+
+    /**
+     * Load the content hashes of the last successful imports of candidate identities
+     *
+     * @param listIds
+     *            The candidate identity ids
+     * @return The hashes found, by candidate identity id
+     */
+    public static Map<Integer, CandidateIdentityImportHash> findImportHashes( Collection<Integer> listIds )
+    {
+        return _dao.selectImportHashes( listIds );
+    }
+
+    /**
+     * Load the resource workflows of candidate identities with their workgroups, as the resource workflow service would one by one
+     *
+     * @param listIds
+     *            The candidate identity ids
+     * @param strResourceType
+     *            The workflow resource type of the candidate identities
+     * @param nIdWorkflow
+     *            The workflow id
+     * @return The resource workflows found, by candidate identity id
+     */
+    public static Map<Integer, ResourceWorkflow> findResourceWorkflows( Collection<Integer> listIds, String strResourceType, int nIdWorkflow )
+    {
+        return _dao.selectResourceWorkflows( listIds, strResourceType, nIdWorkflow );
+    }
+
+    /**
+     * Load the candidate identity histories of all the workflow histories of the resource of a workflow history
+     *
+     * @param nIdResourceHistory
+     *            The id of one of the workflow histories of the resource
+     * @return The candidate identity histories, by workflow history id, null for the workflow histories without candidate identity history
+     */
+    public static Map<Integer, CandidateIdentityHistory> findHistoriesOfResource( int nIdResourceHistory )
+    {
+        return _dao.selectHistoriesOfResource( nIdResourceHistory );
+    }
+
+    /**
+     * Load the attribute statuses of all the workflow histories of the resource of a workflow history
+     *
+     * @param nIdResourceHistory
+     *            The id of one of the workflow histories of the resource
+     * @return The attribute statuses ordered by attribute key, by workflow history id
+     */
+    public static Map<Integer, List<CandidateAttributeStatus>> findAttributeStatusesOfResource( int nIdResourceHistory )
+    {
+        return _dao.selectAttributeStatusesOfResource( nIdResourceHistory );
+    }
+
+    /**
+     * Count the attribute statuses of the candidate identity histories of a batch, by attribute and status
+     *
+     * @param nIdBatch
+     *            The batch id
+     * @param strResourceType
+     *            The workflow resource type of the candidate identities
+     * @return The counts, the highest first
+     */
+    public static List<AttributeStatusCount> findAttributeStatusCounts( int nIdBatch, String strResourceType )
+    {
+        return _dao.selectAttributeStatusCounts( nIdBatch, strResourceType );
+    }
+}
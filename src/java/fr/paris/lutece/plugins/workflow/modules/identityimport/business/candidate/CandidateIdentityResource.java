@@ -0,0 +1,114 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate;
+
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentity;
+
+import java.util.Optional;
+
+/**
+ * A workflow resource history row, with the candidate identity it refers to
+ */
+public final class CandidateIdentityResource
+{
+    private final int _nIdResourceHistory;
+    private final int _nIdResource;
+    private final String _strResourceType;
+    private final int _nIdWorkflow;
+    private final CandidateIdentity _candidateIdentity;
+
+    /**
+     * Constructor
+     *
+     * @param nIdResourceHistory
+     *            the resource history id
+     * @param nIdResource
+     *            the resource id
+     * @param strResourceType
+     *            the resource type
+     * @param nIdWorkflow
+     *            the workflow id
+     * @param candidateIdentity
+     *            the candidate identity with its attributes, null if not found
+     */
+    public CandidateIdentityResource( final int nIdResourceHistory, final int nIdResource, final String strResourceType, final int nIdWorkflow,
+            final CandidateIdentity candidateIdentity )
+    {
+        _nIdResourceHistory = nIdResourceHistory;
+        _nIdResource = nIdResource;
+        _strResourceType = strResourceType;
+        _nIdWorkflow = nIdWorkflow;
+        _candidateIdentity = candidateIdentity;
+    }
+
+    /**
+     * @return the resource history id
+     */
+    public int getIdResourceHistory( )
+    {
+        return _nIdResourceHistory;
+    }
+
+    /**
+     * @return the resource id
+     */
+    public int getIdResource( )
+    {
+        return _nIdResource;
+    }
+
+    /**
+     * @return the resource type
+     */
+    public String getResourceType( )
+    {
+        return _strResourceType;
+    }
+
+    /**
+     * @return the workflow id
+     */
+    public int getIdWorkflow( )
+    {
+        return _nIdWorkflow;
+    }
+
+    /**
+     * @return the candidate identity with its attributes, if found
+     */
+    public Optional<CandidateIdentity> getCandidateIdentity( )
+    {
+        return Optional.ofNullable( _candidateIdentity );
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate;
+
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistory;
+import fr.paris.lutece.plugins.workflowcore.business.resource.ResourceHistory;
+import fr.paris.lutece.util.sql.DAOUtil;
+
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * This class provides batched write access to the candidate identities of plugin-identityimport
+ */
+public final class CandidateIdentityWriterDAO implements ICandidateIdentityWriterDAO
+{
+    // Constants
+    private static final String SQL_QUERY_INSERT_RESOURCE_HISTORY = "INSERT INTO workflow_resource_history ( id_resource, resource_type, id_workflow, id_action, creation_date, user_access_code ) VALUES ( ?, ?, ?, ?, ?, ? ) ";
+    private static final String SQL_QUERY_INSERT_HISTORY = "INSERT INTO identityimport_candidate_identity_history ( id_wf_resource_history, status, comment ) VALUES ( ?, ?, ? ) ";
+    private static final String SQL_QUERY_UPDATE_CUSTOMER_ID = "UPDATE identityimport_candidate_identity SET customer_id = ? WHERE id_candidate_identity = ?";
+    private static final String SQL_QUERY_DELETE_IMPORT_HASH = "DELETE FROM workflow_task_identity_import_hash WHERE id_candidate_identity = ?";
+    private static final String SQL_QUERY_INSERT_IMPORT_HASH = "INSERT INTO workflow_task_identity_import_hash ( id_candidate_identity, content_hash, customer_id, date_import ) VALUES ( ?, ?, ?, ? ) ";
+    private static final String SQL_QUERY_INSERT_ATTRIBUTE_STATUS = "INSERT INTO workflow_task_identity_import_attr_status ( id_resource_history, attribute_key, status, message ) VALUES ( ?, ?, ?, ? ) ";
+
+    @Override
+    public void insertResourceHistories( Collection<ResourceHistory> listResourceHistories )
+    {
+        if ( listResourceHistories.isEmpty( ) )
+        {
+            return;
+        }
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT_RESOURCE_HISTORY, Statement.RETURN_GENERATED_KEYS ) )
+        {
+            for ( final ResourceHistory resourceHistory : listResourceHistories )
+            {
+                daoUtil.setInt( 1, resourceHistory.getIdResource( ) );
+                daoUtil.setString( 2, resourceHistory.getResourceType( ) );
+                daoUtil.setInt( 3, resourceHistory.getWorkflow( ).getId( ) );
+                daoUtil.setInt( 4, resourceHistory.getAction( ).getId( ) );
+                daoUtil.setTimestamp( 5, resourceHistory.getCreationDate( ) );
+                daoUtil.setString( 6, resourceHistory.getUserAccessCode( ) );
+                daoUtil.addBatch( );
+            }
+            daoUtil.executeBatch( );
+            // The keys are generated in the order of the batch
+            for ( final ResourceHistory resourceHistory : listResourceHistories )
+            {
+                if ( daoUtil.nextGeneratedKey( ) )
+                {
+                    resourceHistory.setId( daoUtil.getGeneratedKeyInt( 1 ) );
+                }
+            }
+        }
+    }
+
+    @Override
+    public void insertHistories( Collection<CandidateIdentityHistory> listHistories )
+    {
+        if ( listHistories.isEmpty( ) )
+        {
+            return;
+        }
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT_HISTORY ) )
+        {
+            for ( final CandidateIdentityHistory history : listHistories )
+            {
+                daoUtil.setInt( 1, history.getWfResourceHistoryId( ) );
+                daoUtil.setString( 2, history.getStatus( ) );
+                daoUtil.setString( 3, history.getComment( ) );
+                daoUtil.addBatch( );
+            }
+            daoUtil.executeBatch( );
+        }
+    }
+
+    @Override
+    public void updateCustomerIds( Map<Integer, String> mapCustomerIds )
+    {
+        if ( mapCustomerIds.isEmpty( ) )
+        {
+            return;
+        }
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE_CUSTOMER_ID ) )
+        {
+            for ( final Map.Entry<Integer, String> entry : mapCustomerIds.entrySet( ) )
+            {
+                daoUtil.setString( 1, entry.getValue( ) );
+                daoUtil.setInt( 2, entry.getKey( ) );
+                daoUtil.addBatch( );
+            }
+            daoUtil.executeBatch( );
+        }
+    }
+
+    @Override
+    public void storeImportHashes( Collection<CandidateIdentityImportHash> listImportHashes )
+    {
+        if ( listImportHashes.isEmpty( ) )
+        {
+            return;
+        }
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE_IMPORT_HASH ) )
+        {
+            for ( final CandidateIdentityImportHash importHash : listImportHashes )
+            {
+                daoUtil.setInt( 1, importHash.getIdCandidateIdentity( ) );
+                daoUtil.addBatch( );
+            }
+            daoUtil.executeBatch( );
+        }
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT_IMPORT_HASH ) )
+        {
+            for ( final CandidateIdentityImportHash importHash : listImportHashes )
+            {
+                daoUtil.setInt( 1, importHash.getIdCandidateIdentity( ) );
+                daoUtil.setString( 2, importHash.getContentHash( ) );
+                daoUtil.setString( 3, importHash.getCustomerId( ) );
+                daoUtil.setTimestamp( 4, importHash.getDateImport( ) );
+                daoUtil.addBatch( );
+            }
+            daoUtil.executeBatch( );
+        }
+    }
+
+    @Override
+    public void insertAttributeStatuses( Collection<CandidateAttributeStatus> listAttributeStatuses )
+    {
+        if ( listAttributeStatuses.isEmpty( ) )
+        {
+            return;
+        }
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT_ATTRIBUTE_STATUS ) )
+        {
+            for ( final CandidateAttributeStatus attributeStatus : listAttributeStatuses )
+            {
+                daoUtil.setInt( 1, attributeStatus.getIdResourceHistory( ) );
+                daoUtil.setString( 2, attributeStatus.getAttributeKey( ) );
+                daoUtil.setString( 3, attributeStatus.getStatus( ) );
+                daoUtil.setString( 4, attributeStatus.getMessage( ) );
+                daoUtil.addBatch( );
+            }
+            daoUtil.executeBatch( );
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate;
+
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentity;
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistory;
+import fr.paris.lutece.plugins.workflowcore.business.resource.ResourceWorkflow;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ICandidateIdentityLoaderDAO Interface
+ */
+public interface ICandidateIdentityLoaderDAO
+{
+    /**
+     * Load the ids of all the candidate identities of a batch
+     *
+     * @param nIdBatch
+     *            The batch id
+     * @return The list of candidate identity ids, ordered by id
+     */
+    List<Integer> selectIdsByBatch( int nIdBatch );
+
+    /**
+     * Load the ids of the candidate identities of a batch in a range of ids
+     *
+     * @param nIdBatch
+     *            The batch id
+     * @param nFirstId
+     *            The first id of the range
+     * @param nLastId
+     *            The last id of the range, included
+     * @return The list of candidate identity ids, ordered by id
+     */
+    List<Integer> selectIdsByBatch( int nIdBatch, int nFirstId, int nLastId );
+
+    /**
+     * Count the candidate identities of a batch
+     *
+     * @param nIdBatch
+     *            The batch id
+     * @return The number of candidate identities
+     */
+    int countByBatch( int nIdBatch );
+
+    /**
+     * Load a resource history row with its candidate identity and the attributes of the candidate identity, in one query
+     *
+     * @param nIdResourceHistory
+     *            The resource history id
+     * @return The resource, or null if the resource history doesn't exist
+     */
+    CandidateIdentityResource selectByResourceHistory( int nIdResourceHistory );
+
+    /**
+     * Load candidate identities with their attributes, in one query
+     *
+     * @param listIds
+     *            The candidate identity ids
+     * @return The candidate identities found, ordered by id
+     */
+    List<CandidateIdentity> selectByIds( Collection<Integer> listIds );
+
+    /**
+     * Load the content hashes of the last successful imports of candidate identities
+     *
+     * @param listIds
+     *            The candidate identity ids
+     * @return The hashes found, by candidate identity id
+     */
+    Map<Integer, CandidateIdentityImportHash> selectImportHashes( Collection<Integer> listIds );
+
+    /**
+     * Load the resource workflows of candidate identities with their workgroups, in two queries
+     *
+     * @param listIds
+     *            The candidate identity ids
+     * @param strResourceType
+     *            The workflow resource type of the candidate identities
+     * @param nIdWorkflow
+     *            The workflow id
+     * @return The resource workflows found, by candidate identity id
+     */
+    Map<Integer, ResourceWorkflow> selectResourceWorkflows( Collection<Integer> listIds, String strResourceType, int nIdWorkflow );
+
+    /**
+     * Load the candidate identity histories of all the workflow histories of the resource of a workflow history, in one query
+     *
+     * @param nIdResourceHistory
+     *            The id of one of the workflow histories of the resource
+     * @return The candidate identity histories, by workflow history id. Every workflow history of the resource is a key, mapped to null when it has no
+     *         candidate identity history
+     */
+    Map<Integer, CandidateIdentityHistory> selectHistoriesOfResource( int nIdResourceHistory );
+
+    /**
+     * Load the attribute statuses of all the workflow histories of the resource of a workflow history, in one query
+     *
+     * @param nIdResourceHistory
+     *            The id of one of the workflow histories of the resource
+     * @return The attribute statuses ordered by attribute key, by workflow history id. The workflow histories without attribute status are absent
+     */
+    Map<Integer, List<CandidateAttributeStatus>> selectAttributeStatusesOfResource( int nIdResourceHistory );
+
+    /**
+     * Count the attribute statuses of the candidate identity histories of a batch, by attribute and status
+     *
+     * @param nIdBatch
+     *            The batch id
+     * @param strResourceType
+     *            The workflow resource type of the candidate identities
+     * @return The counts, the highest first
+     */
+    List<AttributeStatusCount> selectAttributeStatusCounts( int nIdBatch, String strResourceType );
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate;
+
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistory;
+import fr.paris.lutece.plugins.workflowcore.business.resource.ResourceHistory;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * ICandidateIdentityWriterDAO Interface
+ */
+public interface ICandidateIdentityWriterDAO
+{
+    /**
+     * Insert workflow histories in one JDBC batch, and set their generated ids
+     *
+     * @param listResourceHistories
+     *            The workflow histories to insert
+     */
+    void insertResourceHistories( Collection<ResourceHistory> listResourceHistories );
+
+    /**
+     * Insert candidate identity histories in one JDBC batch
+     *
+     * @param listHistories
+     *            The histories to insert
+     */
+    void insertHistories( Collection<CandidateIdentityHistory> listHistories );
+
+    /**
+     * Update the customer id of candidate identities in one JDBC batch
+     *
+     * @param mapCustomerIds
+     *            The customer ids, by candidate identity id
+     */
+    void updateCustomerIds( Map<Integer, String> mapCustomerIds );
+
+    /**
+     * Replace the import content hashes of candidate identities in one JDBC batch
+     *
+     * @param listImportHashes
+     *            The hashes, at most one per candidate identity
+     */
+    void storeImportHashes( Collection<CandidateIdentityImportHash> listImportHashes );
+
+    /**
+     * Insert the attribute statuses of candidate identity histories in one JDBC batch
+     *
+     * @param listAttributeStatuses
+     *            The attribute statuses to insert
+     */
+    void insertAttributeStatuses( Collection<CandidateAttributeStatus> listAttributeStatuses );
+}
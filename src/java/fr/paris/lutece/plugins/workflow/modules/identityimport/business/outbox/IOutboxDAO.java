@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.outbox;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * IOutboxDAO Interface
+ */
+public interface IOutboxDAO
+{
+    /**
+     * Insert a new entry, pending
+     *
+     * @param entry
+     *            The entry, whose id is set by this method
+     */
+    void insert( OutboxEntry entry );
+
+    /**
+     * Load the ids of the pending entries whose next attempt is due
+     *
+     * @param dateNow
+     *            The current date
+     * @param nLimit
+     *            The maximum number of ids to load
+     * @return The ids, oldest first
+     */
+    List<Integer> selectDueIds( Timestamp dateNow, int nLimit );
+
+    /**
+     * Claim pending entries. Entries claimed at the same time by another dispatcher are left to it.
+     *
+     * @param listIds
+     *            The ids of the entries
+     * @param strClaimToken
+     *            The token of the dispatcher
+     * @param dateClaim
+     *            The claim date
+     */
+    void claim( List<Integer> listIds, String strClaimToken, Timestamp dateClaim );
+
+    /**
+     * Load the entries claimed with a token
+     *
+     * @param strClaimToken
+     *            The token of the dispatcher
+     * @return The entries, oldest first
+     */
+    List<OutboxEntry> selectClaimed( String strClaimToken );
+
+    /**
+     * Put an entry back in the queue after a failed attempt
+     *
+     * @param entry
+     *            The entry, with its attempts, next attempt date and last error updated
+     */
+    void reschedule( OutboxEntry entry );
+
+    /**
+     * Mark an entry as failed, it won't be sent again
+     *
+     * @param entry
+     *            The entry, with its attempts and last error updated
+     */
+    void markFailed( OutboxEntry entry );
+
+    /**
+     * Delete an entry
+     *
+     * @param nId
+     *            The entry id
+     */
+    void delete( int nId );
+
+    /**
+     * Delete entries
+     *
+     * @param listIds
+     *            The entry ids
+     */
+    void deleteAll( List<Integer> listIds );
+
+    /**
+     * Put back in the queue the entries claimed by a dispatcher which stopped before processing them
+     *
+     * @param dateClaimBefore
+     *            The entries claimed before this date are released
+     */
+    void releaseStale( Timestamp dateClaimBefore );
+
+    /**
+     * Count the entries by status
+     *
+     * @param strStatus
+     *            The status
+     * @return The number of entries
+     */
+    int countByStatus( String strStatus );
+}
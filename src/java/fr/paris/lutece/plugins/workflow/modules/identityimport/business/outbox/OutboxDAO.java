@@ -0,0 +1,243 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.outbox;
+
+import fr.paris.lutece.util.sql.DAOUtil;
+
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class provides Data Access methods for OutboxEntry objects
+ */
+public final class OutboxDAO implements IOutboxDAO
+{
+    // Constants
+    private static final String SQL_QUERY_INSERT = "INSERT INTO workflow_task_identity_import_outbox ( id_resource_history, id_resource, resource_type, id_workflow, id_task, id_batch, client_code, content_hash, payload, status, attempts, date_next_attempt, date_creation ) VALUES ( ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0, ?, ? ) ";
+    private static final String SQL_QUERY_SELECT_DUE_IDS = "SELECT id_outbox FROM workflow_task_identity_import_outbox WHERE status = ? AND date_next_attempt <= ? ORDER BY id_outbox LIMIT ?";
+    private static final String SQL_QUERY_CLAIM = "UPDATE workflow_task_identity_import_outbox SET status = ?, claim_token = ?, date_claim = ? WHERE status = ? AND id_outbox IN ( %s )";
+    private static final String SQL_QUERY_SELECT_CLAIMED = "SELECT id_outbox, id_resource_history, id_resource, resource_type, id_workflow, id_task, id_batch, client_code, content_hash, payload, status, attempts, date_next_attempt, claim_token, date_claim, last_error, date_creation FROM workflow_task_identity_import_outbox WHERE claim_token = ? AND status = ? ORDER BY id_outbox";
+    private static final String SQL_QUERY_RESCHEDULE = "UPDATE workflow_task_identity_import_outbox SET status = ?, attempts = ?, date_next_attempt = ?, last_error = ?, claim_token = NULL, date_claim = NULL WHERE id_outbox = ?";
+    private static final String SQL_QUERY_MARK_FAILED = "UPDATE workflow_task_identity_import_outbox SET status = ?, attempts = ?, last_error = ?, claim_token = NULL, date_claim = NULL WHERE id_outbox = ?";
+    private static final String SQL_QUERY_DELETE = "DELETE FROM workflow_task_identity_import_outbox WHERE id_outbox = ?";
+    private static final String SQL_QUERY_DELETE_ALL = "DELETE FROM workflow_task_identity_import_outbox WHERE id_outbox IN ( %s )";
+    private static final String SQL_QUERY_RELEASE_STALE = "UPDATE workflow_task_identity_import_outbox SET status = ?, claim_token = NULL, date_claim = NULL WHERE status = ? AND date_claim < ?";
+    private static final String SQL_QUERY_COUNT_BY_STATUS = "SELECT COUNT(*) FROM workflow_task_identity_import_outbox WHERE status = ?";
+
+    @Override
+    public void insert( OutboxEntry entry )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT, Statement.RETURN_GENERATED_KEYS ) )
+        {
+            int nIndex = 1;
+            daoUtil.setInt( nIndex++, entry.getIdResourceHistory( ) );
+            daoUtil.setInt( nIndex++, entry.getIdResource( ) );
+            daoUtil.setString( nIndex++, entry.getResourceType( ) );
+            daoUtil.setInt( nIndex++, entry.getIdWorkflow( ) );
+            daoUtil.setInt( nIndex++, entry.getIdTask( ) );
+            daoUtil.setInt( nIndex++, entry.getIdBatch( ) );
+            daoUtil.setString( nIndex++, entry.getClientCode( ) );
+            daoUtil.setString( nIndex++, entry.getContentHash( ) );
+            daoUtil.setString( nIndex++, entry.getPayload( ) );
+            daoUtil.setString( nIndex++, OutboxEntry.STATUS_PENDING );
+            daoUtil.setTimestamp( nIndex++, entry.getNextAttemptDate( ) );
+            daoUtil.setTimestamp( nIndex, entry.getCreationDate( ) );
+            daoUtil.executeUpdate( );
+            if ( daoUtil.nextGeneratedKey( ) )
+            {
+                entry.setId( daoUtil.getGeneratedKeyInt( 1 ) );
+            }
+            entry.setStatus( OutboxEntry.STATUS_PENDING );
+        }
+    }
+
+    @Override
+    public List<Integer> selectDueIds( Timestamp dateNow, int nLimit )
+    {
+        final List<Integer> listIds = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_DUE_IDS ) )
+        {
+            daoUtil.setString( 1, OutboxEntry.STATUS_PENDING );
+            daoUtil.setTimestamp( 2, dateNow );
+            daoUtil.setInt( 3, nLimit );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                listIds.add( daoUtil.getInt( 1 ) );
+            }
+        }
+        return listIds;
+    }
+
+    @Override
+    public void claim( List<Integer> listIds, String strClaimToken, Timestamp dateClaim )
+    {
+        if ( listIds.isEmpty( ) )
+        {
+            return;
+        }
+        try ( DAOUtil daoUtil = new DAOUtil( String.format( SQL_QUERY_CLAIM, String.join( ",", Collections.nCopies( listIds.size( ), "?" ) ) ) ) )
+        {
+            int nIndex = 1;
+            daoUtil.setString( nIndex++, OutboxEntry.STATUS_PROCESSING );
+            daoUtil.setString( nIndex++, strClaimToken );
+            daoUtil.setTimestamp( nIndex++, dateClaim );
+            daoUtil.setString( nIndex++, OutboxEntry.STATUS_PENDING );
+            for ( final Integer nId : listIds )
+            {
+                daoUtil.setInt( nIndex++, nId );
+            }
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    @Override
+    public List<OutboxEntry> selectClaimed( String strClaimToken )
+    {
+        final List<OutboxEntry> listEntries = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_CLAIMED ) )
+        {
+            daoUtil.setString( 1, strClaimToken );
+            daoUtil.setString( 2, OutboxEntry.STATUS_PROCESSING );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                int nIndex = 1;
+                final OutboxEntry entry = new OutboxEntry( );
+                entry.setId( daoUtil.getInt( nIndex++ ) );
+                entry.setIdResourceHistory( daoUtil.getInt( nIndex++ ) );
+                entry.setIdResource( daoUtil.getInt( nIndex++ ) );
+                entry.setResourceType( daoUtil.getString( nIndex++ ) );
+                entry.setIdWorkflow( daoUtil.getInt( nIndex++ ) );
+                entry.setIdTask( daoUtil.getInt( nIndex++ ) );
+                entry.setIdBatch( daoUtil.getInt( nIndex++ ) );
+                entry.setClientCode( daoUtil.getString( nIndex++ ) );
+                entry.setContentHash( daoUtil.getString( nIndex++ ) );
+                entry.setPayload( daoUtil.getString( nIndex++ ) );
+                entry.setStatus( daoUtil.getString( nIndex++ ) );
+                entry.setAttempts( daoUtil.getInt( nIndex++ ) );
+                entry.setNextAttemptDate( daoUtil.getTimestamp( nIndex++ ) );
+                entry.setClaimToken( daoUtil.getString( nIndex++ ) );
+                entry.setClaimDate( daoUtil.getTimestamp( nIndex++ ) );
+                entry.setLastError( daoUtil.getString( nIndex++ ) );
+                entry.setCreationDate( daoUtil.getTimestamp( nIndex ) );
+                listEntries.add( entry );
+            }
+        }
+        return listEntries;
+    }
+
+    @Override
+    public void reschedule( OutboxEntry entry )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_RESCHEDULE ) )
+        {
+            int nIndex = 1;
+            daoUtil.setString( nIndex++, OutboxEntry.STATUS_PENDING );
+            daoUtil.setInt( nIndex++, entry.getAttempts( ) );
+            daoUtil.setTimestamp( nIndex++, entry.getNextAttemptDate( ) );
+            daoUtil.setString( nIndex++, entry.getLastError( ) );
+            daoUtil.setInt( nIndex, entry.getId( ) );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    @Override
+    public void markFailed( OutboxEntry entry )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_MARK_FAILED ) )
+        {
+            int nIndex = 1;
+            daoUtil.setString( nIndex++, OutboxEntry.STATUS_FAILED );
+            daoUtil.setInt( nIndex++, entry.getAttempts( ) );
+            daoUtil.setString( nIndex++, entry.getLastError( ) );
+            daoUtil.setInt( nIndex, entry.getId( ) );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    @Override
+    public void delete( int nId )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE ) )
+        {
+            daoUtil.setInt( 1, nId );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    @Override
+    public void deleteAll( List<Integer> listIds )
+    {
+        if ( listIds.isEmpty( ) )
+        {
+            return;
+        }
+        try ( DAOUtil daoUtil = new DAOUtil( String.format( SQL_QUERY_DELETE_ALL, String.join( ",", Collections.nCopies( listIds.size( ), "?" ) ) ) ) )
+        {
+            int nIndex = 1;
+            for ( final Integer nId : listIds )
+            {
+                daoUtil.setInt( nIndex++, nId );
+            }
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    @Override
+    public void releaseStale( Timestamp dateClaimBefore )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_RELEASE_STALE ) )
+        {
+            daoUtil.setString( 1, OutboxEntry.STATUS_PENDING );
+            daoUtil.setString( 2, OutboxEntry.STATUS_PROCESSING );
+            daoUtil.setTimestamp( 3, dateClaimBefore );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    @Override
+    public int countByStatus( String strStatus )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_COUNT_BY_STATUS ) )
+        {
+            daoUtil.setString( 1, strStatus );
+            daoUtil.executeQuery( );
+            return daoUtil.next( ) ? daoUtil.getInt( 1 ) : 0;
+        }
+    }
+}
@@ -0,0 +1,356 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.outbox;
+
+import java.sql.Timestamp;
+
+/**
+ * An identity store call enqueued by a workflow task, waiting to be sent by the outbox dispatcher
+ */
+public class OutboxEntry
+{
+    /** Waiting to be sent */
+    public static final String STATUS_PENDING = "PENDING";
+    /** Claimed by a dispatcher */
+    public static final String STATUS_PROCESSING = "PROCESSING";
+    /** Given up after too many attempts */
+    public static final String STATUS_FAILED = "FAILED";
+
+    private int _nId;
+    private int _nIdResourceHistory;
+    private int _nIdResource;
+    private String _strResourceType;
+    private int _nIdWorkflow;
+    private int _nIdTask;
+    private int _nIdBatch;
+    private String _strClientCode;
+    private String _strContentHash;
+    private String _strPayload;
+    private String _strStatus;
+    private int _nAttempts;
+    private Timestamp _dateNextAttempt;
+    private String _strClaimToken;
+    private Timestamp _dateClaim;
+    private String _strLastError;
+    private Timestamp _dateCreation;
+
+    /**
+     * @return the outbox entry id
+     */
+    public int getId( )
+    {
+        return _nId;
+    }
+
+    /**
+     * @param nId
+     *            the outbox entry id
+     */
+    public void setId( int nId )
+    {
+        _nId = nId;
+    }
+
+    /**
+     * @return the resource history of the workflow action
+     */
+    public int getIdResourceHistory( )
+    {
+        return _nIdResourceHistory;
+    }
+
+    /**
+     * @param nIdResourceHistory
+     *            the resource history of the workflow action
+     */
+    public void setIdResourceHistory( int nIdResourceHistory )
+    {
+        _nIdResourceHistory = nIdResourceHistory;
+    }
+
+    /**
+     * @return the resource id
+     */
+    public int getIdResource( )
+    {
+        return _nIdResource;
+    }
+
+    /**
+     * @param nIdResource
+     *            the resource id
+     */
+    public void setIdResource( int nIdResource )
+    {
+        _nIdResource = nIdResource;
+    }
+
+    /**
+     * @return the resource type
+     */
+    public String getResourceType( )
+    {
+        return _strResourceType;
+    }
+
+    /**
+     * @param strResourceType
+     *            the resource type
+     */
+    public void setResourceType( String strResourceType )
+    {
+        _strResourceType = strResourceType;
+    }
+
+    /**
+     * @return the workflow id
+     */
+    public int getIdWorkflow( )
+    {
+        return _nIdWorkflow;
+    }
+
+    /**
+     * @param nIdWorkflow
+     *            the workflow id
+     */
+    public void setIdWorkflow( int nIdWorkflow )
+    {
+        _nIdWorkflow = nIdWorkflow;
+    }
+
+    /**
+     * @return the id of the task which enqueued the call
+     */
+    public int getIdTask( )
+    {
+        return _nIdTask;
+    }
+
+    /**
+     * @param nIdTask
+     *            the id of the task which enqueued the call
+     */
+    public void setIdTask( int nIdTask )
+    {
+        _nIdTask = nIdTask;
+    }
+
+    /**
+     * @return the batch id of the candidate identity, whose progress counts the outcome of the call
+     */
+    public int getIdBatch( )
+    {
+        return _nIdBatch;
+    }
+
+    /**
+     * @param nIdBatch
+     *            the batch id of the candidate identity, whose progress counts the outcome of the call
+     */
+    public void setIdBatch( int nIdBatch )
+    {
+        _nIdBatch = nIdBatch;
+    }
+
+    /**
+     * @return the client code
+     */
+    public String getClientCode( )
+    {
+        return _strClientCode;
+    }
+
+    /**
+     * @param strClientCode
+     *            the client code
+     */
+    public void setClientCode( String strClientCode )
+    {
+        _strClientCode = strClientCode;
+    }
+
+    /**
+     * @return the content hash of the identity sent to the identity store
+     */
+    public String getContentHash( )
+    {
+        return _strContentHash;
+    }
+
+    /**
+     * @param strContentHash
+     *            the content hash of the identity sent to the identity store
+     */
+    public void setContentHash( String strContentHash )
+    {
+        _strContentHash = strContentHash;
+    }
+
+    /**
+     * @return the serialized identity change request
+     */
+    public String getPayload( )
+    {
+        return _strPayload;
+    }
+
+    /**
+     * @param strPayload
+     *            the serialized identity change request
+     */
+    public void setPayload( String strPayload )
+    {
+        _strPayload = strPayload;
+    }
+
+    /**
+     * @return the status
+     */
+    public String getStatus( )
+    {
+        return _strStatus;
+    }
+
+    /**
+     * @param strStatus
+     *            the status
+     */
+    public void setStatus( String strStatus )
+    {
+        _strStatus = strStatus;
+    }
+
+    /**
+     * @return the number of failed attempts
+     */
+    public int getAttempts( )
+    {
+        return _nAttempts;
+    }
+
+    /**
+     * @param nAttempts
+     *            the number of failed attempts
+     */
+    public void setAttempts( int nAttempts )
+    {
+        _nAttempts = nAttempts;
+    }
+
+    /**
+     * @return the date before which the call must not be sent
+     */
+    public Timestamp getNextAttemptDate( )
+    {
+        return _dateNextAttempt;
+    }
+
+    /**
+     * @param dateNextAttempt
+     *            the date before which the call must not be sent
+     */
+    public void setNextAttemptDate( Timestamp dateNextAttempt )
+    {
+        _dateNextAttempt = dateNextAttempt;
+    }
+
+    /**
+     * @return the token of the dispatcher processing the entry
+     */
+    public String getClaimToken( )
+    {
+        return _strClaimToken;
+    }
+
+    /**
+     * @param strClaimToken
+     *            the token of the dispatcher processing the entry
+     */
+    public void setClaimToken( String strClaimToken )
+    {
+        _strClaimToken = strClaimToken;
+    }
+
+    /**
+     * @return the date the entry was claimed by a dispatcher
+     */
+    public Timestamp getClaimDate( )
+    {
+        return _dateClaim;
+    }
+
+    /**
+     * @param dateClaim
+     *            the date the entry was claimed by a dispatcher
+     */
+    public void setClaimDate( Timestamp dateClaim )
+    {
+        _dateClaim = dateClaim;
+    }
+
+    /**
+     * @return the error of the last failed attempt
+     */
+    public String getLastError( )
+    {
+        return _strLastError;
+    }
+
+    /**
+     * @param strLastError
+     *            the error of the last failed attempt
+     */
+    public void setLastError( String strLastError )
+    {
+        _strLastError = strLastError;
+    }
+
+    /**
+     * @return the creation date
+     */
+    public Timestamp getCreationDate( )
+    {
+        return _dateCreation;
+    }
+
+    /**
+     * @param dateCreation
+     *            the creation date
+     */
+    public void setCreationDate( Timestamp dateCreation )
+    {
+        _dateCreation = dateCreation;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.outbox;
+
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+
+import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * This class provides instances management methods for OutboxEntry objects
+ */
+public final class OutboxHome
+{
+    // Static variable pointed at the DAO instance
+    private static final IOutboxDAO _dao = SpringContextService.getBean( "workflow-identityimport.outboxDAO" );
+
+    /**
+     * Private constructor - this class need not be instantiated
+     */
+    private OutboxHome( )
+    {
+    }
+
+    /**
+     * Enqueue an entry
+     *
+     * @param entry
+     *            The entry
+     * @return The entry, with its id
+     */
+    public static OutboxEntry create( OutboxEntry entry )
+    {
+        _dao.insert( entry );
+        return entry;
+    }
+
+    /**
+     * Claim the pending entries whose next attempt is due
+     *
+     * @param strClaimToken
+     *            The token of the dispatcher, unique per claim
+     * @param nLimit
+     *            The maximum number of entries to claim
+     * @return The entries claimed with the token, oldest first
+     */
+    public static List<OutboxEntry> claimDue( String strClaimToken, int nLimit )
+    {
+        final Timestamp dateNow = new Timestamp( System.currentTimeMillis( ) );
+        final List<Integer> listIds = _dao.selectDueIds( dateNow, nLimit );
+        if ( listIds.isEmpty( ) )
+        {
+            return Collections.emptyList( );
+        }
+        _dao.claim( listIds, strClaimToken, dateNow );
+        return _dao.selectClaimed( strClaimToken );
+    }
+
+    /**
+     * Put an entry back in the queue after a failed attempt
+     *
+     * @param entry
+     *            The entry
+     */
+    public static void reschedule( OutboxEntry entry )
+    {
+        _dao.reschedule( entry );
+    }
+
+    /**
+     * Mark an entry as failed
+     *
+     * @param entry
+     *            The entry
+     */
+    public static void markFailed( OutboxEntry entry )
+    {
+        _dao.markFailed( entry );
+    }
+
+    /**
+     * Remove an entry
+     *
+     * @param nId
+     *            The entry id
+     */
+    public static void remove( int nId )
+    {
+        _dao.delete( nId );
+    }
+
+    /**
+     * Remove entries
+     *
+     * @param listIds
+     *            The entry ids
+     */
+    public static void removeAll( List<Integer> listIds )
+    {
+        _dao.deleteAll( listIds );
+    }
+
+    /**
+     * Put back in the queue the entries claimed before a date
+     *
+     * @param dateClaimBefore
+     *            The date
+     */
+    public static void releaseStale( Timestamp dateClaimBefore )
+    {
+        _dao.releaseStale( dateClaimBefore );
+    }
+
+    /**
+     * Count the entries by status
+     *
+     * @param strStatus
+     *            The status
+     * @return The number of entries
+     */
+    public static int countByStatus( String strStatus )
+    {
+        return _dao.countByStatus( strStatus );
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.parking;
+
+import fr.paris.lutece.util.sql.DAOUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class provides Data Access methods for ParkedResource objects
+ */
+public final class ParkedResourceDAO implements IParkedResourceDAO
+{
+    // Constants
+    private static final String SQL_QUERY_SELECT_EXISTS = "SELECT id_resource FROM workflow_task_identity_import_parked WHERE id_resource = ? AND resource_type = ?";
+    private static final String SQL_QUERY_INSERT = "INSERT INTO workflow_task_identity_import_parked ( id_resource, resource_type, id_workflow, date_parked ) VALUES ( ?, ?, ?, ? ) ";
+    private static final String SQL_QUERY_DELETE = "DELETE FROM workflow_task_identity_import_parked WHERE id_resource = ? AND resource_type = ?";
+    private static final String SQL_QUERY_SELECT_OLDEST = "SELECT id_resource, resource_type, id_workflow, date_parked FROM workflow_task_identity_import_parked ORDER BY date_parked, id_resource LIMIT ?";
+
+    @Override
+    public void insert( ParkedResource parkedResource )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_EXISTS ) )
+        {
+            daoUtil.setInt( 1, parkedResource.getIdResource( ) );
+            daoUtil.setString( 2, parkedResource.getResourceType( ) );
+            daoUtil.executeQuery( );
+            if ( daoUtil.next( ) )
+            {
+                return;
+            }
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT ) )
+        {
+            int nIndex = 1;
+            daoUtil.setInt( nIndex++, parkedResource.getIdResource( ) );
+            daoUtil.setString( nIndex++, parkedResource.getResourceType( ) );
+            daoUtil.setInt( nIndex++, parkedResource.getIdWorkflow( ) );
+            daoUtil.setTimestamp( nIndex, parkedResource.getDateParked( ) );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    @Override
+    public void delete( int nIdResource, String strResourceType )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE ) )
+        {
+            daoUtil.setInt( 1, nIdResource );
+            daoUtil.setString( 2, strResourceType );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    @Override
+    public List<ParkedResource> selectOldest( int nLimit )
+    {
+        final List<ParkedResource> listParkedResources = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_OLDEST ) )
+        {
+            daoUtil.setInt( 1, nLimit );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                int nIndex = 1;
+                final ParkedResource parkedResource = new ParkedResource( );
+                parkedResource.setIdResource( daoUtil.getInt( nIndex++ ) );
+                parkedResource.setResourceType( daoUtil.getString( nIndex++ ) );
+                parkedResource.setIdWorkflow( daoUtil.getInt( nIndex++ ) );
+                parkedResource.setDateParked( daoUtil.getTimestamp( nIndex ) );
+                listParkedResources.add( parkedResource );
+            }
+        }
+        return listParkedResources;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.parking;
+
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * This class provides instances management methods for ParkedResource objects
+ */
+public final class ParkedResourceHome
+{
+    // Static variable pointed at the DAO instance
+    private static final IParkedResourceDAO _dao = SpringContextService.getBean( "workflow-identityimport.parkedResourceDAO" );
+
+    /**
+     * Private constructor - this class need not be instantiated
+     */
+    private ParkedResourceHome( )
+    {
+    }
+
+    /**
+     * Park a resource until the identity store is available again
+     *
+     * @param nIdResource
+     *            The resource id
+     * @param strResourceType
+     *            The resource type
+     * @param nIdWorkflow
+     *            The workflow id
+     */
+    public static void park( int nIdResource, String strResourceType, int nIdWorkflow )
+    {
+        final ParkedResource parkedResource = new ParkedResource( );
+        parkedResource.setIdResource( nIdResource );
+        parkedResource.setResourceType( strResourceType );
+        parkedResource.setIdWorkflow( nIdWorkflow );
+        parkedResource.setDateParked( new Timestamp( System.currentTimeMillis( ) ) );
+        _dao.insert( parkedResource );
+    }
+
+    /**
+     * Remove a resource from the parked resources
+     *
+     * @param nIdResource
+     *            The resource id
+     * @param strResourceType
+     *            The resource type
+     */
+    public static void remove( int nIdResource, String strResourceType )
+    {
+        _dao.delete( nIdResource, strResourceType );
+    }
+
+    /**
+     * Load the resources parked for the longest time
+     *
+     * @param nLimit
+     *            The maximum number of resources to load
+     * @return The parked resources, oldest first
+     */
+    public static List<ParkedResource> findOldest( int nLimit )
+    {
+        return _dao.selectOldest( nLimit );
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.shard;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * IImportShardDAO Interface
+ */
+public interface IImportShardDAO
+{
+    /**
+     * Insert shards, pending, in one JDBC batch
+     *
+     * @param listShards
+     *            The shards
+     */
+    void insertAll( Collection<ImportShard> listShards );
+
+    /**
+     * Load the ids of the shards which can be claimed: pending, or claimed by a node whose lease has expired
+     *
+     * @param nIdBatch
+     *            The batch id, or 0 for the shards of all the batches
+     * @param dateNow
+     *            The current date
+     * @param nLimit
+     *            The maximum number of ids to load
+     * @return The ids, oldest first
+     */
+    List<Integer> selectClaimableIds( int nIdBatch, Timestamp dateNow, int nLimit );
+
+    /**
+     * Claim a shard, if it can still be claimed. A shard claimed at the same time by another node is left to it.
+     *
+     * @param nIdShard
+     *            The shard id
+     * @param strClaimToken
+     *            The token of the claim
+     * @param strNode
+     *            The node claiming the shard
+     * @param dateNow
+     *            The current date
+     * @param dateLeaseExpiry
+     *            The end of the lease
+     */
+    void claim( int nIdShard, String strClaimToken, String strNode, Timestamp dateNow, Timestamp dateLeaseExpiry );
+
+    /**
+     * Load the shards claimed or summarized with a token
+     *
+     * @param strClaimToken
+     *            The token
+     * @return The shards, oldest first
+     */
+    List<ImportShard> selectByClaimToken( String strClaimToken );
+
+    /**
+     * Extend the lease of a claimed shard, if the claim is still held
+     *
+     * @param nIdShard
+     *            The shard id
+     * @param strClaimToken
+     *            The token of the claim
+     * @param dateLeaseExpiry
+     *            The new end of the lease
+     */
+    void renew( int nIdShard, String strClaimToken, Timestamp dateLeaseExpiry );
+
+    /**
+     * Mark a claimed shard as done, with its outcomes, if the claim is still held
+     *
+     * @param shard
+     *            The shard, with its claim token and outcomes
+     */
+    void complete( ImportShard shard );
+
+    /**
+     * Count the shards of a batch import which are not done yet
+     *
+     * @param nIdResourceHistory
+     *            The workflow history of the batch import
+     * @return The number of pending or claimed shards
+     */
+    int countUnfinished( int nIdResourceHistory );
+
+    /**
+     * Count the shards of a batch which are not done yet, whatever the import they belong to
+     *
+     * @param nIdBatch
+     *            The batch id
+     * @return The number of pending or claimed shards
+     */
+    int countUnfinishedByBatch( int nIdBatch );
+
+    /**
+     * Mark all the done shards of a batch import as summarized with a token. Shards marked at the same time by another node are left to it.
+     *
+     * @param nIdResourceHistory
+     *            The workflow history of the batch import
+     * @param strClaimToken
+     *            The token
+     */
+    void summarize( int nIdResourceHistory, String strClaimToken );
+
+    /**
+     * Delete the shards of a batch import
+     *
+     * @param nIdResourceHistory
+     *            The workflow history of the batch import
+     */
+    void deleteByResourceHistory( int nIdResourceHistory );
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.shard;
+
+import java.sql.Timestamp;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A range of the candidate identities of a batch, imported by the node holding its lease
+ */
+public class ImportShard
+{
+    /** Waiting for a node */
+    public static final String STATUS_PENDING = "PENDING";
+    /** Being imported by the node holding the lease */
+    public static final String STATUS_CLAIMED = "CLAIMED";
+    /** Imported, its outcomes waiting to be summarized */
+    public static final String STATUS_DONE = "DONE";
+    /** Being summarized in the history of the batch */
+    public static final String STATUS_SUMMARIZED = "SUMMARIZED";
+
+    private int _nId;
+    private int _nIdBatch;
+    private int _nIdResourceHistory;
+    private int _nIdTask;
+    private int _nFirstId;
+    private int _nLastId;
+    private int _nCandidateCount;
+    private String _strStatus;
+    private String _strClaimToken;
+    private String _strNode;
+    private Timestamp _dateLeaseExpiry;
+    private Map<String, Integer> _mapOutcomes = new TreeMap<>( );
+
+    /**
+     * @return the shard id
+     */
+    public int getId( )
+    {
+        return _nId;
+    }
+
+    /**
+     * @param nId
+     *            the shard id
+     */
+    public void setId( int nId )
+    {
+        _nId = nId;
+    }
+
+    /**
+     * @return the batch id
+     */
+    public int getIdBatch( )
+    {
+        return _nIdBatch;
+    }
+
+    /**
+     * @param nIdBatch
+     *            the batch id
+     */
+    public void setIdBatch( int nIdBatch )
+    {
+        _nIdBatch = nIdBatch;
+    }
+
+    /**
+     * @return the workflow history of the batch import
+     */
+    public int getIdResourceHistory( )
+    {
+        return _nIdResourceHistory;
+    }
+
+    /**
+     * @param nIdResourceHistory
+     *            the workflow history of the batch import
+     */
+    public void setIdResourceHistory( int nIdResourceHistory )
+    {
+        _nIdResourceHistory = nIdResourceHistory;
+    }
+
+    /**
+     * @return the batch import task
+     */
+    public int getIdTask( )
+    {
+        return _nIdTask;
+    }
+
+    /**
+     * @param nIdTask
+     *            the batch import task
+     */
+    public void setIdTask( int nIdTask )
+    {
+        _nIdTask = nIdTask;
+    }
+
+    /**
+     * @return the first candidate identity id of the shard
+     */
+    public int getFirstId( )
+    {
+        return _nFirstId;
+    }
+
+    /**
+     * @param nFirstId
+     *            the first candidate identity id of the shard
+     */
+    public void setFirstId( int nFirstId )
+    {
+        _nFirstId = nFirstId;
+    }
+
+    /**
+     * @return the last candidate identity id of the shard
+     */
+    public int getLastId( )
+    {
+        return _nLastId;
+    }
+
+    /**
+     * @param nLastId
+     *            the last candidate identity id of the shard
+     */
+    public void setLastId( int nLastId )
+    {
+        _nLastId = nLastId;
+    }
+
+    /**
+     * @return the number of candidate identities of the shard
+     */
+    public int getCandidateCount( )
+    {
+        return _nCandidateCount;
+    }
+
+    /**
+     * @param nCandidateCount
+     *            the number of candidate identities of the shard
+     */
+    public void setCandidateCount( int nCandidateCount )
+    {
+        _nCandidateCount = nCandidateCount;
+    }
+
+    /**
+     * @return the status
+     */
+    public String getStatus( )
+    {
+        return _strStatus;
+    }
+
+    /**
+     * @param strStatus
+     *            the status
+     */
+    public void setStatus( String strStatus )
+    {
+        _strStatus = strStatus;
+    }
+
+    /**
+     * @return the token of the claim, null if the shard is not claimed
+     */
+    public String getClaimToken( )
+    {
+        return _strClaimToken;
+    }
+
+    /**
+     * @param strClaimToken
+     *            the token of the claim, null if the shard is not claimed
+     */
+    public void setClaimToken( String strClaimToken )
+    {
+        _strClaimToken = strClaimToken;
+    }
+
+    /**
+     * @return the node which claimed the shard last
+     */
+    public String getNode( )
+    {
+        return _strNode;
+    }
+
+    /**
+     * @param strNode
+     *            the node which claimed the shard last
+     */
+    public void setNode( String strNode )
+    {
+        _strNode = strNode;
+    }
+
+    /**
+     * @return the date after which the claim can be taken over by another node
+     */
+    public Timestamp getLeaseExpiryDate( )
+    {
+        return _dateLeaseExpiry;
+    }
+
+    /**
+     * @param dateLeaseExpiry
+     *            the date after which the claim can be taken over by another node
+     */
+    public void setLeaseExpiryDate( Timestamp dateLeaseExpiry )
+    {
+        _dateLeaseExpiry = dateLeaseExpiry;
+    }
+
+    /**
+     * @return the number of candidate identities by import outcome, once the shard is done
+     */
+    public Map<String, Integer> getOutcomes( )
+    {
+        return _mapOutcomes;
+    }
+
+    /**
+     * @param mapOutcomes
+     *            the number of candidate identities by import outcome, once the shard is done
+     */
+    public void setOutcomes( Map<String, Integer> mapOutcomes )
+    {
+        _mapOutcomes = mapOutcomes;
+    }
+}
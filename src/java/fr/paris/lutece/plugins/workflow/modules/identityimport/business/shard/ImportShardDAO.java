@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.shard;
+
+import fr.paris.lutece.util.sql.DAOUtil;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+/**
+ * This class provides Data Access methods for ImportShard objects
+ */
+public final class ImportShardDAO implements IImportShardDAO
+{
+    // Constants
+    private static final String SQL_QUERY_INSERT = "INSERT INTO workflow_task_identity_import_shard ( id_batch, id_resource_history, id_task, first_id, last_id, candidate_count, status ) VALUES ( ?, ?, ?, ?, ?, ?, ? ) ";
+    private static final String SQL_CLAIMABLE = " ( status = ? OR ( status = ? AND date_lease_expiry < ? ) ) ";
+    private static final String SQL_QUERY_SELECT_CLAIMABLE_IDS = "SELECT id_shard FROM workflow_task_identity_import_shard WHERE " + SQL_CLAIMABLE
+            + " ORDER BY id_shard LIMIT ?";
+    private static final String SQL_QUERY_SELECT_CLAIMABLE_IDS_BY_BATCH = "SELECT id_shard FROM workflow_task_identity_import_shard WHERE id_batch = ? AND "
+            + SQL_CLAIMABLE + " ORDER BY id_shard LIMIT ?";
+    private static final String SQL_QUERY_CLAIM = "UPDATE workflow_task_identity_import_shard SET status = ?, claim_token = ?, node = ?, date_lease_expiry = ? WHERE id_shard = ? AND "
+            + SQL_CLAIMABLE;
+    private static final String SQL_QUERY_SELECT_BY_CLAIM_TOKEN = "SELECT id_shard, id_batch, id_resource_history, id_task, first_id, last_id, candidate_count, status, claim_token, node, date_lease_expiry, outcomes FROM workflow_task_identity_import_shard WHERE claim_token = ? ORDER BY id_shard";
+    private static final String SQL_QUERY_RENEW = "UPDATE workflow_task_identity_import_shard SET date_lease_expiry = ? WHERE id_shard = ? AND claim_token = ? AND status = ?";
+    private static final String SQL_QUERY_COMPLETE = "UPDATE workflow_task_identity_import_shard SET status = ?, outcomes = ?, claim_token = NULL, date_lease_expiry = NULL WHERE id_shard = ? AND claim_token = ? AND status = ?";
+    private static final String SQL_QUERY_COUNT_UNFINISHED = "SELECT COUNT(*) FROM workflow_task_identity_import_shard WHERE id_resource_history = ? AND status IN ( ?, ? )";
+    private static final String SQL_QUERY_COUNT_UNFINISHED_BY_BATCH = "SELECT COUNT(*) FROM workflow_task_identity_import_shard WHERE id_batch = ? AND status IN ( ?, ? )";
+    private static final String SQL_QUERY_SUMMARIZE = "UPDATE workflow_task_identity_import_shard SET status = ?, claim_token = ? WHERE id_resource_history = ? AND status = ?";
+    private static final String SQL_QUERY_DELETE_BY_RESOURCE_HISTORY = "DELETE FROM workflow_task_identity_import_shard WHERE id_resource_history = ?";
+
+    // Outcomes encoding
+    private static final String OUTCOME_SEPARATOR = ";";
+    private static final String COUNT_SEPARATOR = "=";
+
+    @Override
+    public void insertAll( Collection<ImportShard> listShards )
+    {
+        if ( listShards.isEmpty( ) )
+        {
+            return;
+        }
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT ) )
+        {
+            for ( final ImportShard shard : listShards )
+            {
+                int nIndex = 1;
+                daoUtil.setInt( nIndex++, shard.getIdBatch( ) );
+                daoUtil.setInt( nIndex++, shard.getIdResourceHistory( ) );
+                daoUtil.setInt( nIndex++, shard.getIdTask( ) );
+                daoUtil.setInt( nIndex++, shard.getFirstId( ) );
+                daoUtil.setInt( nIndex++, shard.getLastId( ) );
+                daoUtil.setInt( nIndex++, shard.getCandidateCount( ) );
+                daoUtil.setString( nIndex, ImportShard.STATUS_PENDING );
+                daoUtil.addBatch( );
+            }
+            daoUtil.executeBatch( );
+        }
+    }
+
+    @Override
+    public List<Integer> selectClaimableIds( int nIdBatch, Timestamp dateNow, int nLimit )
+    {
+        final List<Integer> listIds = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( nIdBatch > 0 ? SQL_QUERY_SELECT_CLAIMABLE_IDS_BY_BATCH : SQL_QUERY_SELECT_CLAIMABLE_IDS ) )
+        {
+            int nIndex = 1;
+            if ( nIdBatch > 0 )
+            {
+                daoUtil.setInt( nIndex++, nIdBatch );
+            }
+            nIndex = setClaimable( daoUtil, nIndex, dateNow );
+            daoUtil.setInt( nIndex, nLimit );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                listIds.add( daoUtil.getInt( 1 ) );
+            }
+        }
+        return listIds;
+    }
+
+    @Override
+    public void claim( int nIdShard, String strClaimToken, String strNode, Timestamp dateNow, Timestamp dateLeaseExpiry )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_CLAIM ) )
+        {
+            int nIndex = 1;
+            daoUtil.setString( nIndex++, ImportShard.STATUS_CLAIMED );
+            daoUtil.setString( nIndex++, strClaimToken );
+            daoUtil.setString( nIndex++, strNode );
+            daoUtil.setTimestamp( nIndex++, dateLeaseExpiry );
+            daoUtil.setInt( nIndex++, nIdShard );
+            setClaimable( daoUtil, nIndex, dateNow );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    @Override
+    public List<ImportShard> selectByClaimToken( String strClaimToken )
+    {
+        final List<ImportShard> listShards = new ArrayList<>( );
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_BY_CLAIM_TOKEN ) )
+        {
+            daoUtil.setString( 1, strClaimToken );
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                int nIndex = 1;
+                final ImportShard shard = new ImportShard( );
+                shard.setId( daoUtil.getInt( nIndex++ ) );
+                shard.setIdBatch( daoUtil.getInt( nIndex++ ) );
+                shard.setIdResourceHistory( daoUtil.getInt( nIndex++ ) );
+                shard.setIdTask( daoUtil.getInt( nIndex++ ) );
+                shard.setFirstId( daoUtil.getInt( nIndex++ ) );
+                shard.setLastId( daoUtil.getInt( nIndex++ ) );
+                shard.setCandidateCount( daoUtil.getInt( nIndex++ ) );
+                shard.setStatus( daoUtil.getString( nIndex++ ) );
+                shard.setClaimToken( daoUtil.getString( nIndex++ ) );
+                shard.setNode( daoUtil.getString( nIndex++ ) );
+                shard.setLeaseExpiryDate( daoUtil.getTimestamp( nIndex++ ) );
+                shard.setOutcomes( decodeOutcomes( daoUtil.getString( nIndex ) ) );
+                listShards.add( shard );
+            }
+        }
+        return listShards;
+    }
+
+    @Override
+    public void renew( int nIdShard, String strClaimToken, Timestamp dateLeaseExpiry )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_RENEW ) )
+        {
+            daoUtil.setTimestamp( 1, dateLeaseExpiry );
+            daoUtil.setInt( 2, nIdShard );
+            daoUtil.setString( 3, strClaimToken );
+            daoUtil.setString( 4, ImportShard.STATUS_CLAIMED );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    @Override
+    public void complete( ImportShard shard )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_COMPLETE ) )
+        {
+            daoUtil.setString( 1, ImportShard.STATUS_DONE );
+            daoUtil.setString( 2, encodeOutcomes( shard.getOutcomes( ) ) );
+            daoUtil.setInt( 3, shard.getId( ) );
+            daoUtil.setString( 4, shard.getClaimToken( ) );
+            daoUtil.setString( 5, ImportShard.STATUS_CLAIMED );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    @Override
+    public int countUnfinished( int nIdResourceHistory )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_COUNT_UNFINISHED ) )
+        {
+            daoUtil.setInt( 1, nIdResourceHistory );
+            daoUtil.setString( 2, ImportShard.STATUS_PENDING );
+            daoUtil.setString( 3, ImportShard.STATUS_CLAIMED );
+            daoUtil.executeQuery( );
+            if ( daoUtil.next( ) )
+            {
+                return daoUtil.getInt( 1 );
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public int countUnfinishedByBatch( int nIdBatch )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_COUNT_UNFINISHED_BY_BATCH ) )
+        {
+            daoUtil.setInt( 1, nIdBatch );
+            daoUtil.setString( 2, ImportShard.STATUS_PENDING );
+            daoUtil.setString( 3, ImportShard.STATUS_CLAIMED );
+            daoUtil.executeQuery( );
+            if ( daoUtil.next( ) )
+            {
+                return daoUtil.getInt( 1 );
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public void summarize( int nIdResourceHistory, String strClaimToken )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SUMMARIZE ) )
+        {
+            daoUtil.setString( 1, ImportShard.STATUS_SUMMARIZED );
+            daoUtil.setString( 2, strClaimToken );
+            daoUtil.setInt( 3, nIdResourceHistory );
+            daoUtil.setString( 4, ImportShard.STATUS_DONE );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    @Override
+    public void deleteByResourceHistory( int nIdResourceHistory )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE_BY_RESOURCE_HISTORY ) )
+        {
+            daoUtil.setInt( 1, nIdResourceHistory );
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    /**
+     * Bind the parameters of the claimable condition
+     *
+     * @return the index of the next parameter
+     */
+    private static int setClaimable( final DAOUtil daoUtil, final int nIndex, final Timestamp dateNow )
+    {
+        daoUtil.setString( nIndex, ImportShard.STATUS_PENDING );
+        daoUtil.setString( nIndex + 1, ImportShard.STATUS_CLAIMED );
+        daoUtil.setTimestamp( nIndex + 2, dateNow );
+        return nIndex + 3;
+    }
+
+    /**
+     * Encode outcome counts as <code>OUTCOME=count;OUTCOME=count</code>
+     */
+    static String encodeOutcomes( final Map<String, Integer> mapOutcomes )
+    {
+        return mapOutcomes.entrySet( ).stream( ).map( entry -> entry.getKey( ) + COUNT_SEPARATOR + entry.getValue( ) )
+                .collect( Collectors.joining( OUTCOME_SEPARATOR ) );
+    }
+
+    /**
+     * Decode outcome counts encoded by {@link #encodeOutcomes(Map)}
+     */
+    static Map<String, Integer> decodeOutcomes( final String strOutcomes )
+    {
+        final Map<String, Integer> mapOutcomes = new TreeMap<>( );
+        if ( strOutcomes == null || strOutcomes.isEmpty( ) )
+        {
+            return mapOutcomes;
+        }
+        for ( final String strOutcome : strOutcomes.split( OUTCOME_SEPARATOR ) )
+        {
+            final int nSeparator = strOutcome.lastIndexOf( COUNT_SEPARATOR );
+            if ( nSeparator > 0 )
+            {
+                mapOutcomes.merge( strOutcome.substring( 0, nSeparator ), Integer.parseInt( strOutcome.substring( nSeparator + 1 ) ), Integer::sum );
+            }
+        }
+        return mapOutcomes;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.shard;
+
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * This class provides instances management methods for ImportShard objects
+ */
+public final class ImportShardHome
+{
+    // Number of shards tried when the first ones are claimed at the same time by other nodes
+    private static final int CLAIM_CANDIDATES = 5;
+
+    // Static variable pointed at the DAO instance
+    private static final IImportShardDAO _dao = SpringContextService.getBean( "workflow-identityimport.importShardDAO" );
+
+    /**
+     * Private constructor - this class need not be instantiated
+     */
+    private ImportShardHome( )
+    {
+    }
+
+    /**
+     * Create pending shards
+     *
+     * @param listShards
+     *            The shards
+     */
+    public static void create( Collection<ImportShard> listShards )
+    {
+        _dao.insertAll( listShards );
+    }
+
+    /**
+     * Claim a shard: pending, or claimed by a node whose lease has expired
+     *
+     * @param nIdBatch
+     *            The batch id, or 0 for a shard of any batch
+     * @param strNode
+     *            The node claiming the shard
+     * @param lLeaseDuration
+     *            The duration of the lease, in milliseconds
+     * @return The shard claimed, with its claim token, or null if there is no shard to claim
+     */
+    public static ImportShard claim( int nIdBatch, String strNode, long lLeaseDuration )
+    {
+        final Timestamp dateNow = new Timestamp( System.currentTimeMillis( ) );
+        final Timestamp dateLeaseExpiry = new Timestamp( dateNow.getTime( ) + lLeaseDuration );
+        for ( final Integer nIdShard : _dao.selectClaimableIds( nIdBatch, dateNow, CLAIM_CANDIDATES ) )
+        {
+            final String strClaimToken = UUID.randomUUID( ).toString( );
+            _dao.claim( nIdShard, strClaimToken, strNode, dateNow, dateLeaseExpiry );
+            final List<ImportShard> listClaimed = _dao.selectByClaimToken( strClaimToken );
+            if ( !listClaimed.isEmpty( ) )
+            {
+                return listClaimed.get( 0 );
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Extend the lease of a claimed shard
+     *
+     * @param shard
+     *            The shard, with its claim token
+     * @param lLeaseDuration
+     *            The duration of the lease from now, in milliseconds
+     * @return true if the claim is still held, false if the lease has expired and the shard has been taken over by another node
+     */
+    public static boolean renew( ImportShard shard, long lLeaseDuration )
+    {
+        final Timestamp dateLeaseExpiry = new Timestamp( System.currentTimeMillis( ) + lLeaseDuration );
+        _dao.renew( shard.getId( ), shard.getClaimToken( ), dateLeaseExpiry );
+        for ( final ImportShard claimed : _dao.selectByClaimToken( shard.getClaimToken( ) ) )
+        {
+            if ( ImportShard.STATUS_CLAIMED.equals( claimed.getStatus( ) ) )
+            {
+                shard.setLeaseExpiryDate( dateLeaseExpiry );
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Mark a claimed shard as done, with its outcomes. Nothing is done if the shard has been taken over by another node.
+     *
+     * @param shard
+     *            The shard, with its claim token and outcomes
+     */
+    public static void complete( ImportShard shard )
+    {
+        _dao.complete( shard );
+    }
+
+    /**
+     * Count the shards of a batch import which are not done yet
+     *
+     * @param nIdResourceHistory
+     *            The workflow history of the batch import
+     * @return The number of pending or claimed shards
+     */
+    public static int countUnfinished( int nIdResourceHistory )
+    {
+        return _dao.countUnfinished( nIdResourceHistory );
+    }
+
+    /**
+     * Count the shards of a batch which are not done yet, whatever the import they belong to
+     *
+     * @param nIdBatch
+     *            The batch id
+     * @return The number of pending or claimed shards
+     */
+    public static int countUnfinishedByBatch( int nIdBatch )
+    {
+        return _dao.countUnfinishedByBatch( nIdBatch );
+    }
+
+    /**
+     * Take the done shards of a batch import to summarize them. When several nodes try at the same time, all the shards go to one of them.
+     *
+     * @param nIdResourceHistory
+     *            The workflow history of the batch import
+     * @return The shards taken, empty if they have been taken by another node
+     */
+    public static List<ImportShard> summarize( int nIdResourceHistory )
+    {
+        final String strClaimToken = UUID.randomUUID( ).toString( );
+        _dao.summarize( nIdResourceHistory, strClaimToken );
+        return _dao.selectByClaimToken( strClaimToken );
+    }
+
+    /**
+     * Delete the shards of a batch import
+     *
+     * @param nIdResourceHistory
+     *            The workflow history of the batch import
+     */
+    public static void removeByResourceHistory( int nIdResourceHistory )
+    {
+        _dao.deleteByResourceHistory( nIdResourceHistory );
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.workflow;
+
+import fr.paris.lutece.util.sql.DAOUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+
+/**
+ * This class provides Data Access methods for the version of the states of plugin-workflow
+ */
+public final class WorkflowStateVersionDAO implements IWorkflowStateVersionDAO
+{
+    // Constants
+    private static final String SQL_QUERY_SELECT_STATES = "SELECT id_state, id_workflow, name FROM workflow_state ORDER BY id_state";
+    private static final String HASH_ALGORITHM = "SHA-256";
+
+    @Override
+    public String selectVersion( )
+    {
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance( HASH_ALGORITHM );
+        }
+        catch( final NoSuchAlgorithmException e )
+        {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException( e );
+        }
+
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_STATES ) )
+        {
+            daoUtil.executeQuery( );
+            while ( daoUtil.next( ) )
+            {
+                final String strName = daoUtil.getString( 3 );
+                // The name is prefixed by its length, so that two rows cannot hash like another pair
+                final String strRow = daoUtil.getInt( 1 ) + ":" + daoUtil.getInt( 2 ) + ":"
+                        + ( strName != null ? strName.length( ) + ":" + strName : "-" ) + "\n";
+                digest.update( strRow.getBytes( StandardCharsets.UTF_8 ) );
+            }
+        }
+        return Base64.getEncoder( ).encodeToString( digest.digest( ) );
+    }
+}
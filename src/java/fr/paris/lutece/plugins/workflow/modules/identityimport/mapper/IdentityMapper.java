@@ -34,32 +34,171 @@
 package fr.paris.lutece.plugins.workflow.modules.identityimport.mapper;
 
 import fr.paris.lutece.plugins.identityimport.business.CandidateIdentity;
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityAttribute;
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.AttributeDto;
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.IdentityDto;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-public class IdentityMapper
+/**
+ * Maps candidate identities to identity store DTOs.<br>
+ * Mapping allocates one IdentityDto, one pre-sized attribute list and one AttributeDto per attribute, and nothing else: the DTOs are handed to the
+ * identity store client and cannot be reused.
+ */
+public final class IdentityMapper
 {
+    // Attribute codes are few and repeated on every candidate identity, they are shared across all the mapped DTOs
+    private static final int MAX_SHARED_KEYS = 1024;
+    private static final Map<String, String> _mapSharedKeys = new ConcurrentHashMap<>( );
+
+    // Content hash
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final char HASH_SEPARATOR = '\u001f';
+    private static final char [ ] HEX_DIGITS = "0123456789abcdef".toCharArray( );
+    private static final Comparator<AttributeDto> ATTRIBUTE_ORDER = Comparator.comparing( AttributeDto::getKey,
+            Comparator.nullsFirst( Comparator.naturalOrder( ) ) );
+
+    private IdentityMapper( )
+    {
+    }
 
+    /**
+     * Map a candidate identity with its attributes
+     *
+     * @param candidateIdentity
+     *            the candidate identity
+     * @return the identity DTO
+     */
     public static IdentityDto mapToIdentity( CandidateIdentity candidateIdentity )
     {
         IdentityDto identity = new IdentityDto( );
         identity.setCustomerId( candidateIdentity.getCustomerId( ) );
         identity.setConnectionId( candidateIdentity.getConnectionId( ) );
 
-        List<AttributeDto> attributeDtos = candidateIdentity.getAttributes( ).stream( ).map( attribute -> {
-            AttributeDto attributeDto = new AttributeDto( );
-            attributeDto.setKey( attribute.getCode( ) );
-            attributeDto.setValue( attribute.getValue( ) );
-            attributeDto.setCertifier( attribute.getCertProcess( ) );
-            attributeDto.setCertificationDate( attribute.getCertDate( ) );
-            return attributeDto;
-        } ).collect( Collectors.toList( ) );
+        final List<CandidateIdentityAttribute> attributes = candidateIdentity.getAttributes( );
+        final List<AttributeDto> attributeDtos = new ArrayList<>( attributes != null ? attributes.size( ) : 0 );
+        if ( attributes != null )
+        {
+            for ( final CandidateIdentityAttribute attribute : attributes )
+            {
+                final AttributeDto attributeDto = new AttributeDto( );
+                attributeDto.setKey( sharedKey( attribute.getCode( ) ) );
+                attributeDto.setValue( attribute.getValue( ) );
+                attributeDto.setCertifier( attribute.getCertProcess( ) );
+                attributeDto.setCertificationDate( attribute.getCertDate( ) );
+                attributeDtos.add( attributeDto );
+            }
+        }
 
         identity.setAttributes( attributeDtos );
 
         return identity;
     }
+
+    /**
+     * Map candidate identities with their attributes
+     *
+     * @param candidateIdentities
+     *            the candidate identities
+     * @return the identity DTOs, in the same order
+     */
+    public static List<IdentityDto> mapToIdentities( Collection<CandidateIdentity> candidateIdentities )
+    {
+        final List<IdentityDto> identities = new ArrayList<>( candidateIdentities.size( ) );
+        for ( final CandidateIdentity candidateIdentity : candidateIdentities )
+        {
+            identities.add( mapToIdentity( candidateIdentity ) );
+        }
+        return identities;
+    }
+
+    /**
+     * Compute a stable hash of the content sent to the identity store for an identity: its connection id and its attributes, whatever their order.
+     * The customer id is not part of the content, it is set by the import itself.
+     *
+     * @param identity
+     *            the identity DTO, as mapped by {@link #mapToIdentity(CandidateIdentity)}
+     * @return the hexadecimal SHA-256 of the content
+     */
+    public static String contentHash( IdentityDto identity )
+    {
+        final StringBuilder content = new StringBuilder( );
+        appendField( content, identity.getConnectionId( ) );
+        if ( identity.getAttributes( ) != null )
+        {
+            final List<AttributeDto> attributeDtos = new ArrayList<>( identity.getAttributes( ) );
+            attributeDtos.sort( ATTRIBUTE_ORDER );
+            for ( final AttributeDto attributeDto : attributeDtos )
+            {
+                appendField( content, attributeDto.getKey( ) );
+                appendField( content, attributeDto.getValue( ) );
+                appendField( content, attributeDto.getCertifier( ) );
+                appendField( content, attributeDto.getCertificationDate( ) != null ? String.valueOf( attributeDto.getCertificationDate( ).getTime( ) ) : null );
+            }
+        }
+
+        final byte [ ] digest;
+        try
+        {
+            digest = MessageDigest.getInstance( HASH_ALGORITHM ).digest( content.toString( ).getBytes( StandardCharsets.UTF_8 ) );
+        }
+        catch( final NoSuchAlgorithmException e )
+        {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException( e );
+        }
+        final char [ ] hex = new char [ digest.length * 2];
+        for ( int i = 0; i < digest.length; i++ )
+        {
+            hex [i * 2] = HEX_DIGITS [( digest [i] >> 4 ) & 0xF];
+            hex [i * 2 + 1] = HEX_DIGITS [digest [i] & 0xF];
+        }
+        return new String( hex );
+    }
+
+    /**
+     * Append a field to the hashed content, a null field being distinct from an empty one
+     */
+    private static void appendField( final StringBuilder content, final String strField )
+    {
+        if ( strField != null )
+        {
+            content.append( strField.length( ) ).append( ':' ).append( strField );
+        }
+        content.append( HASH_SEPARATOR );
+    }
+
+    /**
+     * Get the shared instance of an attribute code
+     *
+     * @param strKey
+     *            the attribute code
+     * @return the shared instance, or the given code once the pool is full
+     */
+    private static String sharedKey( final String strKey )
+    {
+        if ( strKey == null )
+        {
+            return null;
+        }
+        final String strShared = _mapSharedKeys.get( strKey );
+        if ( strShared != null )
+        {
+            return strShared;
+        }
+        if ( _mapSharedKeys.size( ) >= MAX_SHARED_KEYS )
+        {
+            return strKey;
+        }
+        final String strPrevious = _mapSharedKeys.putIfAbsent( strKey, strKey );
+        return strPrevious != null ? strPrevious : strKey;
+    }
 }
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service;
+
+import fr.paris.lutece.plugins.workflowcore.business.action.Action;
+import fr.paris.lutece.plugins.workflowcore.business.resource.ResourceWorkflow;
+import fr.paris.lutece.plugins.workflowcore.business.state.State;
+import fr.paris.lutece.plugins.workflowcore.service.resource.IResourceWorkflowService;
+import fr.paris.lutece.plugins.workflowcore.service.resource.ResourceWorkflowService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.portal.service.workflow.WorkflowService;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves candidate identities to the states routed for the outcomes of their identity store calls.<br>
+ * The state is written the way the workflow writes the state after an action, then the automatic actions of the new state are run by the
+ * {@link WorkflowService}, as after any transition. A target state can therefore carry automatic actions, they are run for each candidate identity
+ * moved to it.<br>
+ * A task cannot route the resource of its own action: the workflow writes the state after the action once its tasks have returned. Such a transition
+ * is deferred until the resource is in the state after the action, then applied the same way. When the state after the action is also the state
+ * before it, the transition is applied after the first delay.
+ */
+public final class CandidateStateTransitionService
+{
+    // Properties
+    private static final String PROPERTY_DEFERRED_DELAY = "identityimport_config.route.deferred.delay";
+    private static final String PROPERTY_DEFERRED_MAX_CHECKS = "identityimport_config.route.deferred.max.checks";
+
+    // Defaults
+    private static final long DEFAULT_DEFERRED_DELAY = 1000L;
+    private static final int DEFAULT_DEFERRED_MAX_CHECKS = 30;
+
+    private static final IResourceWorkflowService _resourceWorkflowService = SpringContextService.getBean( ResourceWorkflowService.BEAN_SERVICE );
+    private static final long _lDeferredDelay = Math.max( 0L, AppPropertiesService.getPropertyLong( PROPERTY_DEFERRED_DELAY, DEFAULT_DEFERRED_DELAY ) );
+    private static final int _nDeferredMaxChecks = Math.max( 1,
+            AppPropertiesService.getPropertyInt( PROPERTY_DEFERRED_MAX_CHECKS, DEFAULT_DEFERRED_MAX_CHECKS ) );
+    private static final ScheduledExecutorService _deferred = Executors.newSingleThreadScheduledExecutor( runnable -> {
+        final Thread thread = new Thread( runnable, "identityimport-route" );
+        thread.setDaemon( true );
+        return thread;
+    } );
+
+    private CandidateStateTransitionService( )
+    {
+    }
+
+    /**
+     * Move resources to their new state, and run the automatic actions of that state. The histories of the outcomes must have been written before.
+     *
+     * @param listTransitions
+     *            the resource workflows, set to their new state
+     */
+    public static void moveTo( final List<ResourceWorkflow> listTransitions )
+    {
+        // All the states are written first, an automatic action may act on the other resources of the batch
+        listTransitions.forEach( _resourceWorkflowService::update );
+        for ( final ResourceWorkflow resourceWorkflow : listTransitions )
+        {
+            try
+            {
+                WorkflowService.getInstance( ).executeActionAutomatic( resourceWorkflow.getIdResource( ), resourceWorkflow.getResourceType( ),
+                        resourceWorkflow.getWorkflow( ).getId( ), resourceWorkflow.getExternalParentId( ), null );
+            }
+            catch( final Exception e )
+            {
+                // The resource stays in its new state, as after a regular transition whose automatic action failed
+                AppLogService.error( "Unable to run the automatic actions of resource " + resourceWorkflow.getIdResource( ) + " ("
+                        + resourceWorkflow.getResourceType( ) + ")", e );
+            }
+        }
+    }
+
+    /**
+     * Move the resource of a running action to a new state once the action has written its state after, and run the automatic actions of that state.
+     * The resource keeps its state if it is not in the state after the action within the configured number of checks.
+     *
+     * @param nIdResource
+     *            the resource id
+     * @param strResourceType
+     *            the resource type
+     * @param nIdWorkflow
+     *            the workflow id
+     * @param action
+     *            the running action, with its states
+     * @param state
+     *            the new state
+     */
+    public static void moveAfterAction( final int nIdResource, final String strResourceType, final int nIdWorkflow, final Action action,
+            final State state )
+    {
+        _deferred.schedule( ( ) -> moveAfterAction( nIdResource, strResourceType, nIdWorkflow, action, state, 1 ), _lDeferredDelay, TimeUnit.MILLISECONDS );
+    }
+
+    private static void moveAfterAction( final int nIdResource, final String strResourceType, final int nIdWorkflow, final Action action,
+            final State state, final int nCheck )
+    {
+        try
+        {
+            final ResourceWorkflow resourceWorkflow = _resourceWorkflowService.findByPrimaryKey( nIdResource, strResourceType, nIdWorkflow );
+            if ( resourceWorkflow == null )
+            {
+                return;
+            }
+            if ( action.getStateAfter( ) == null
+                    || ( resourceWorkflow.getState( ) != null && resourceWorkflow.getState( ).getId( ) == action.getStateAfter( ).getId( ) ) )
+            {
+                resourceWorkflow.setState( state );
+                moveTo( Collections.singletonList( resourceWorkflow ) );
+            }
+            else if ( nCheck < _nDeferredMaxChecks )
+            {
+                _deferred.schedule( ( ) -> moveAfterAction( nIdResource, strResourceType, nIdWorkflow, action, state, nCheck + 1 ), _lDeferredDelay,
+                        TimeUnit.MILLISECONDS );
+            }
+            else
+            {
+                AppLogService.info( "Resource " + nIdResource + " (" + strResourceType + ") did not reach the state after action " + action.getId( )
+                        + ", its state is kept" );
+            }
+        }
+        catch( final Exception e )
+        {
+            // The scheduler thread must survive a failed transition
+            AppLogService.error( "Unable to move resource " + nIdResource + " (" + strResourceType + ") after action " + action.getId( ), e );
+        }
+    }
+}
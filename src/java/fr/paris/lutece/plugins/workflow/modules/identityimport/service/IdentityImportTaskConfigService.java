@@ -33,13 +33,173 @@
  */
 package fr.paris.lutece.plugins.workflow.modules.identityimport.service;
 
+import fr.paris.lutece.plugins.workflow.modules.identityimport.task.IIdentityImportTaskConfigDAO;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.task.IdentityImportTaskConfig;
+import fr.paris.lutece.plugins.workflowcore.business.config.ITaskConfig;
 import fr.paris.lutece.plugins.workflowcore.service.config.TaskConfigService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 /**
- * ActionsBatchTaskConfigService Class
- *
+ * IdentityImportTaskConfigService Class<br>
+ * Configs are read through a cache, evicted when a config is created, updated or removed on this node. Changes made by other nodes are detected by
+ * checking the version of the config table, at most once per check interval. The configs of all the tasks are loaded at once when the cache is first
+ * used, and again after each reset, instead of one query per task.
  */
 public class IdentityImportTaskConfigService extends TaskConfigService
 {
+    // Properties
+    private static final String PROPERTY_VERSION_CHECK_INTERVAL = "identityimport_config.config.cache.check.interval";
+
+    // Defaults
+    private static final long DEFAULT_VERSION_CHECK_INTERVAL = 30000L;
+
+    private final IdentityImportTaskConfigCacheService _cacheService = new IdentityImportTaskConfigCacheService( );
+    private final IIdentityImportTaskConfigDAO _configDAO = SpringContextService.getBean( "workflow-identityimport.identityImportTaskConfigDAO" );
+    private final long _lVersionCheckInterval = AppPropertiesService.getPropertyLong( PROPERTY_VERSION_CHECK_INTERVAL, DEFAULT_VERSION_CHECK_INTERVAL );
+    private volatile String _strVersion;
+    private volatile long _lNextVersionCheck;
+    private volatile boolean _bPreloaded;
+
+    @Override
+    public void create( ITaskConfig config )
+    {
+        super.create( config );
+        _cacheService.removeKey( getCacheKey( config.getIdTask( ) ) );
+    }
+
+    @Override
+    public void update( ITaskConfig config )
+    {
+        super.update( config );
+        _cacheService.removeKey( getCacheKey( config.getIdTask( ) ) );
+    }
+
+    @Override
+    public void remove( int nIdTask )
+    {
+        super.remove( nIdTask );
+        _cacheService.removeKey( getCacheKey( nIdTask ) );
+    }
+
+    /**
+     * Find a config, from the cache if possible. A copy is returned, so that callers can modify it before storing it.
+     *
+     * @param nIdTask
+     *            the task id
+     * @return a copy of the config, or null if the task has no config
+     */
+    @Override
+    @SuppressWarnings( "unchecked" )
+    public <T> T findByPrimaryKey( int nIdTask )
+    {
+        checkVersion( );
+        preload( );
+        final String strKey = getCacheKey( nIdTask );
+        IdentityImportTaskConfig config = (IdentityImportTaskConfig) _cacheService.getFromCache( strKey );
+        if ( config == null )
+        {
+            config = super.findByPrimaryKey( nIdTask );
+            if ( config != null )
+            {
+                _cacheService.putInCache( strKey, config );
+            }
+        }
+        return (T) copy( config );
+    }
+
+    /**
+     * Find the configs of several tasks, from the cache if possible, loading the missing ones in one query
+     *
+     * @param listIdTasks
+     *            the task ids
+     * @return copies of the configs found, by task id
+     */
+    public Map<Integer, IdentityImportTaskConfig> findByPrimaryKeys( Collection<Integer> listIdTasks )
+    {
+        checkVersion( );
+        preload( );
+        final Map<Integer, IdentityImportTaskConfig> mapConfigs = new HashMap<>( );
+        final List<Integer> listMissingIds = new ArrayList<>( );
+        for ( Integer nIdTask : listIdTasks )
+        {
+            final IdentityImportTaskConfig config = (IdentityImportTaskConfig) _cacheService.getFromCache( getCacheKey( nIdTask ) );
+            if ( config != null )
+            {
+                mapConfigs.put( nIdTask, copy( config ) );
+            }
+            else
+            {
+                listMissingIds.add( nIdTask );
+            }
+        }
+        for ( IdentityImportTaskConfig config : _configDAO.load( listMissingIds ) )
+        {
+            _cacheService.putInCache( getCacheKey( config.getIdTask( ) ), config );
+            mapConfigs.put( config.getIdTask( ), copy( config ) );
+        }
+        return mapConfigs;
+    }
+
+    /**
+     * Load the configs of all the tasks in the cache, once after each reset
+     */
+    private void preload( )
+    {
+        if ( _bPreloaded )
+        {
+            return;
+        }
+        _bPreloaded = true;
+        for ( IdentityImportTaskConfig config : _configDAO.loadAll( ) )
+        {
+            _cacheService.putInCache( getCacheKey( config.getIdTask( ) ), config );
+        }
+    }
+
+    /**
+     * Reset the cache if another node changed the config table since the last check
+     */
+    private void checkVersion( )
+    {
+        final long lNow = System.currentTimeMillis( );
+        if ( lNow < _lNextVersionCheck )
+        {
+            return;
+        }
+        _lNextVersionCheck = lNow + _lVersionCheckInterval;
+        final String strVersion = _configDAO.selectVersion( );
+        if ( !Objects.equals( strVersion, _strVersion ) )
+        {
+            _cacheService.resetCache( );
+            _strVersion = strVersion;
+            _bPreloaded = false;
+        }
+    }
+
+    private static String getCacheKey( int nIdTask )
+    {
+        return String.valueOf( nIdTask );
+    }
 
+    private static IdentityImportTaskConfig copy( final IdentityImportTaskConfig config )
+    {
+        if ( config == null )
+        {
+            return null;
+        }
+        final IdentityImportTaskConfig copy = new IdentityImportTaskConfig( );
+        copy.setIdTask( config.getIdTask( ) );
+        copy.setIdWorkflow( config.getIdWorkflow( ) );
+        // The router is immutable, the copies share it
+        copy.setRouter( config.getRouter( ) );
+        return copy;
+    }
 }
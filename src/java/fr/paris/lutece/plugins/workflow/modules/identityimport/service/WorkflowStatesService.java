@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import fr.paris.lutece.api.user.User;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.workflow.IWorkflowStateVersionDAO;
+import fr.paris.lutece.plugins.workflowcore.business.state.State;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.portal.service.workflow.WorkflowService;
+import fr.paris.lutece.util.ReferenceItem;
+import fr.paris.lutece.util.ReferenceList;
+
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Compact JSON documents of the workflows and of their states, used by the task config forms.<br>
+ * The states of a workflow are loaded when the form needs them, and their document is cached by workflow and user, the states being filtered by the
+ * permissions of the user. The cache is reset when the states change, which is detected by checking the version of the state table at most once per
+ * check interval, and otherwise expires as configured for the cache.
+ */
+public final class WorkflowStatesService
+{
+    // Properties
+    private static final String PROPERTY_VERSION_CHECK_INTERVAL = "identityimport_config.states.cache.check.interval";
+
+    // Defaults
+    private static final long DEFAULT_VERSION_CHECK_INTERVAL = 30000L;
+
+    // ObjectMapper is thread safe once configured
+    private static final ObjectMapper _mapper = new ObjectMapper( );
+
+    private static WorkflowStatesService _instance;
+
+    private final WorkflowStatesCacheService _cacheService = WorkflowStatesCacheService.instance( );
+    private final IWorkflowStateVersionDAO _versionDAO;
+    private final long _lVersionCheckInterval;
+    private volatile String _strVersion;
+    private volatile long _lNextVersionCheck;
+
+    private WorkflowStatesService( )
+    {
+        this( SpringContextService.getBean( "workflow-identityimport.workflowStateVersionDAO" ),
+                AppPropertiesService.getPropertyLong( PROPERTY_VERSION_CHECK_INTERVAL, DEFAULT_VERSION_CHECK_INTERVAL ) );
+    }
+
+    /**
+     * Constructor
+     *
+     * @param versionDAO
+     *            the DAO reading the version of the states
+     * @param lVersionCheckInterval
+     *            the minimum time between two checks of the version, in milliseconds
+     */
+    WorkflowStatesService( final IWorkflowStateVersionDAO versionDAO, final long lVersionCheckInterval )
+    {
+        _versionDAO = versionDAO;
+        _lVersionCheckInterval = lVersionCheckInterval;
+    }
+
+    /**
+     * Get the unique instance of the service
+     *
+     * @return the instance
+     */
+    public static synchronized WorkflowStatesService instance( )
+    {
+        if ( _instance == null )
+        {
+            _instance = new WorkflowStatesService( );
+        }
+        return _instance;
+    }
+
+    /**
+     * Build the document of a list of workflows, without their states
+     *
+     * example : [{"id":"1","name":"dotation"}, ...
+     *
+     * @param workflowsRefList
+     *            the workflows
+     * @return json
+     */
+    public String getWorkflowsJson( final ReferenceList workflowsRefList )
+    {
+        final ArrayNode jsonWfList = _mapper.createArrayNode( );
+        for ( final ReferenceItem workflowItem : workflowsRefList )
+        {
+            final ObjectNode jsonWf = jsonWfList.addObject( );
+            jsonWf.put( "id", workflowItem.getCode( ) );
+            jsonWf.put( "name", workflowItem.getName( ) );
+        }
+        return toJson( jsonWfList );
+    }
+
+    /**
+     * Get the document of the states of a workflow visible by a user, from the cache if possible
+     *
+     * example : [{"id":12,"name":"statut11"}, ...
+     *
+     * @param nIdWorkflow
+     *            the workflow id
+     * @param user
+     *            the user
+     * @return json
+     */
+    public String getStatesJson( final int nIdWorkflow, final User user )
+    {
+        checkVersion( );
+        final String strKey = nIdWorkflow + "_" + ( user != null ? user.getAccessCode( ) : "" );
+        String strJson = (String) _cacheService.getFromCache( strKey );
+        if ( strJson == null )
+        {
+            final Collection<State> listStates = WorkflowService.getInstance( ).getAllStateByWorkflow( nIdWorkflow, user );
+            final ArrayNode jsonStatesList = _mapper.createArrayNode( );
+            if ( listStates != null )
+            {
+                for ( final State state : listStates )
+                {
+                    final ObjectNode jsonState = jsonStatesList.addObject( );
+                    jsonState.put( "id", state.getId( ) );
+                    jsonState.put( "name", state.getName( ) );
+                }
+            }
+            strJson = toJson( jsonStatesList );
+            _cacheService.putInCache( strKey, strJson );
+        }
+        return strJson;
+    }
+
+    /**
+     * Reset the cache if the states changed since the last check
+     *
+     * @return true if the cache was reset
+     */
+    boolean checkVersion( )
+    {
+        final long lNow = System.currentTimeMillis( );
+        if ( lNow < _lNextVersionCheck )
+        {
+            return false;
+        }
+        _lNextVersionCheck = lNow + _lVersionCheckInterval;
+        final String strVersion = _versionDAO.selectVersion( );
+        if ( Objects.equals( strVersion, _strVersion ) )
+        {
+            return false;
+        }
+        _cacheService.resetCache( );
+        _strVersion = strVersion;
+        return true;
+    }
+
+    private static String toJson( final ArrayNode node )
+    {
+        try
+        {
+            return _mapper.writeValueAsString( node );
+        }
+        catch( final JsonProcessingException e )
+        {
+            throw new AppException( "Unable to write the workflow states", e );
+        }
+    }
+}
@@ -0,0 +1,234 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.archive;
+
+import fr.paris.lutece.plugins.identityimport.service.BatchService;
+import fr.paris.lutece.plugins.identitystore.web.exception.IdentityStoreException;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.archive.BatchArchiveHome;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.progress.BatchProgressService;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.portal.service.workflow.WorkflowService;
+import fr.paris.lutece.util.sql.TransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Archives the candidate identities of a batch by chunks.<br>
+ * Each chunk is deleted in its own transaction, together with the cursor of the batch, so that the tables used by the running imports are never
+ * locked for long and an interrupted archiving resumes after the last committed chunk. The workflow resources of the chunk are removed by
+ * plugin-workflow, which also removes the information the tasks of the workflow stored for their histories. The deletion rate is limited so that archiving can run
+ * alongside the imports. Once all its candidate identities are deleted, the batch is purged by plugin-identityimport.
+ */
+public final class BatchArchiveService
+{
+    // Properties
+    private static final String PROPERTY_CHUNK_SIZE = "identityimport_config.archive.chunk.size";
+    private static final String PROPERTY_MAX_ROWS_PER_SECOND = "identityimport_config.archive.max.rows.per.second";
+    private static final String PROPERTY_CANDIDATE_RESOURCE_TYPE = "identityimport_config.candidate.resource.type";
+
+    // Defaults
+    private static final int DEFAULT_CHUNK_SIZE = 500;
+    private static final int DEFAULT_MAX_ROWS_PER_SECOND = 2000;
+    private static final String DEFAULT_CANDIDATE_RESOURCE_TYPE = "IDENTITYIMPORT_CANDIDATE_IDENTITY";
+
+    private static BatchArchiveService _instance;
+
+    private final int _nChunkSize;
+    private final int _nMaxRowsPerSecond;
+    private final String _strResourceType;
+
+    private BatchArchiveService( )
+    {
+        _nChunkSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_CHUNK_SIZE, DEFAULT_CHUNK_SIZE ) );
+        _nMaxRowsPerSecond = Math.max( 0, AppPropertiesService.getPropertyInt( PROPERTY_MAX_ROWS_PER_SECOND, DEFAULT_MAX_ROWS_PER_SECOND ) );
+        _strResourceType = AppPropertiesService.getProperty( PROPERTY_CANDIDATE_RESOURCE_TYPE, DEFAULT_CANDIDATE_RESOURCE_TYPE );
+    }
+
+    /**
+     * Get the unique instance of the service
+     *
+     * @return the instance
+     */
+    public static synchronized BatchArchiveService instance( )
+    {
+        if ( _instance == null )
+        {
+            _instance = new BatchArchiveService( );
+        }
+        return _instance;
+    }
+
+    /**
+     * Archive a batch, resuming after the last archived chunk if a previous archiving was interrupted
+     *
+     * @param nIdBatch
+     *            the batch id
+     * @return the number of candidate identities archived by this call
+     * @throws IdentityStoreException
+     *             if the batch cannot be purged
+     * @throws AppException
+     *             if a chunk cannot be archived; the chunks already archived are not archived again by the next call
+     */
+    public int archive( final int nIdBatch ) throws IdentityStoreException
+    {
+        int nLastId = BatchArchiveHome.getCursor( nIdBatch );
+        if ( nLastId > 0 )
+        {
+            AppLogService.info( "Resuming the archiving of batch " + nIdBatch + " after candidate identity " + nLastId );
+        }
+
+        int nArchived = 0;
+        List<Integer> listIds = BatchArchiveHome.getCandidateIds( nIdBatch, nLastId, _nChunkSize );
+        while ( !listIds.isEmpty( ) )
+        {
+            final long lStart = System.nanoTime( );
+            nLastId = listIds.get( listIds.size( ) - 1 );
+            try
+            {
+                TransactionManager.beginTransaction( null );
+                removeChunk( listIds );
+                BatchArchiveHome.updateCursor( nIdBatch, nLastId );
+                TransactionManager.commitTransaction( null );
+            }
+            catch( final Exception e )
+            {
+                TransactionManager.rollBack( null, e );
+                throw new AppException( "Unable to archive the candidate identities of batch " + nIdBatch, e );
+            }
+            nArchived += listIds.size( );
+            throttle( listIds.size( ), lStart );
+            listIds = BatchArchiveHome.getCandidateIds( nIdBatch, nLastId, _nChunkSize );
+        }
+
+        BatchService.instance( ).purgeBatch( nIdBatch );
+        BatchArchiveHome.removeCursor( nIdBatch );
+        BatchProgressService.instance( ).remove( nIdBatch );
+        return nArchived;
+    }
+
+    /**
+     * Delete candidate identities, with their workflow resources, by chunks of one transaction each
+     *
+     * @param listIds
+     *            the candidate identity ids
+     * @throws AppException
+     *             if a chunk cannot be deleted; the chunks already deleted stay deleted
+     */
+    public void removeCandidates( final List<Integer> listIds )
+    {
+        for ( final List<Integer> listChunkIds : toChunks( listIds, _nChunkSize ) )
+        {
+            try
+            {
+                TransactionManager.beginTransaction( null );
+                removeChunk( listChunkIds );
+                TransactionManager.commitTransaction( null );
+            }
+            catch( final Exception e )
+            {
+                TransactionManager.rollBack( null, e );
+                throw new AppException( "Unable to delete candidate identities", e );
+            }
+        }
+    }
+
+    /**
+     * Split a list of candidate identity ids into chunks
+     *
+     * @param listIds
+     *            the candidate identity ids
+     * @param nChunkSize
+     *            the maximum size of a chunk
+     * @return the chunks, views of the list in its order
+     */
+    static List<List<Integer>> toChunks( final List<Integer> listIds, final int nChunkSize )
+    {
+        final List<List<Integer>> listChunks = new ArrayList<>( );
+        for ( int nFrom = 0; nFrom < listIds.size( ); nFrom += nChunkSize )
+        {
+            listChunks.add( listIds.subList( nFrom, Math.min( nFrom + nChunkSize, listIds.size( ) ) ) );
+        }
+        return listChunks;
+    }
+
+    /**
+     * Delete a chunk of candidate identities, in the current transaction
+     *
+     * @param listIds
+     *            the candidate identity ids
+     */
+    private void removeChunk( final List<Integer> listIds )
+    {
+        final List<Integer> listWorkflowIds = BatchArchiveHome.getWorkflowIds( listIds, _strResourceType );
+        BatchArchiveHome.removeCandidates( listIds, _strResourceType );
+        for ( final Integer nIdWorkflow : listWorkflowIds )
+        {
+            WorkflowService.getInstance( ).doRemoveWorkFlowResourceByListId( listIds, _strResourceType, nIdWorkflow );
+        }
+    }
+
+    /**
+     * Wait so that the deletion rate stays under the configured maximum
+     *
+     * @param nRows
+     *            the number of candidate identities of the chunk
+     * @param lStart
+     *            the start time of the chunk, from {@link System#nanoTime()}
+     */
+    private void throttle( final int nRows, final long lStart )
+    {
+        if ( _nMaxRowsPerSecond == 0 )
+        {
+            return;
+        }
+        final long lMinDuration = TimeUnit.SECONDS.toNanos( nRows ) / _nMaxRowsPerSecond;
+        final long lWait = lMinDuration - ( System.nanoTime( ) - lStart );
+        if ( lWait > 0 )
+        {
+            try
+            {
+                TimeUnit.NANOSECONDS.sleep( lWait );
+            }
+            catch( final InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+                throw new AppException( "Archiving interrupted, it will resume from the last archived chunk", e );
+            }
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.client;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Circuit breaker protecting the identity store.<br>
+ * The circuit opens after a number of consecutive failures. While it is open, calls are rejected without being sent. Once the open duration has
+ * elapsed, a single trial call is let through: the circuit closes if it succeeds and opens again if it fails.
+ */
+public class CircuitBreaker
+{
+    /**
+     * States of the circuit
+     */
+    public enum State
+    {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private final int _nFailureThreshold;
+    private final long _lOpenDuration;
+    private final AtomicReference<State> _state = new AtomicReference<>( State.CLOSED );
+    private final AtomicInteger _nConsecutiveFailures = new AtomicInteger( );
+    private final AtomicBoolean _bTrialInFlight = new AtomicBoolean( );
+    private final AtomicLong _lOpenCount = new AtomicLong( );
+    private volatile long _lOpenedAt;
+
+    /**
+     * Constructor
+     *
+     * @param nFailureThreshold
+     *            the number of consecutive failures opening the circuit
+     * @param lOpenDuration
+     *            the time during which calls are rejected once the circuit is open, in milliseconds
+     */
+    public CircuitBreaker( final int nFailureThreshold, final long lOpenDuration )
+    {
+        _nFailureThreshold = Math.max( 1, nFailureThreshold );
+        _lOpenDuration = Math.max( 0, lOpenDuration );
+    }
+
+    /**
+     * Check whether a call can be sent. When this method returns true, the result of the call must be reported with {@link #onSuccess()},
+     * {@link #onFailure()} or {@link #onCancel()}.
+     *
+     * @return true if the call can be sent
+     */
+    public boolean allowRequest( )
+    {
+        final State state = _state.get( );
+        if ( state == State.CLOSED )
+        {
+            return true;
+        }
+        if ( state == State.OPEN )
+        {
+            if ( System.currentTimeMillis( ) - _lOpenedAt < _lOpenDuration )
+            {
+                return false;
+            }
+            _state.compareAndSet( State.OPEN, State.HALF_OPEN );
+        }
+        return _bTrialInFlight.compareAndSet( false, true );
+    }
+
+    /**
+     * Report a successful call
+     */
+    public void onSuccess( )
+    {
+        _nConsecutiveFailures.set( 0 );
+        if ( _state.get( ) != State.CLOSED )
+        {
+            _state.set( State.CLOSED );
+            _bTrialInFlight.set( false );
+        }
+    }
+
+    /**
+     * Report a failed call
+     */
+    public void onFailure( )
+    {
+        final int nFailures = _nConsecutiveFailures.incrementAndGet( );
+        if ( _state.get( ) == State.HALF_OPEN || ( _state.get( ) == State.CLOSED && nFailures >= _nFailureThreshold ) )
+        {
+            _lOpenedAt = System.currentTimeMillis( );
+            _state.set( State.OPEN );
+            _bTrialInFlight.set( false );
+            _lOpenCount.incrementAndGet( );
+        }
+    }
+
+    /**
+     * Report a call whose result tells nothing about the identity store, such as an interrupted call. A trial call can be let through again.
+     */
+    public void onCancel( )
+    {
+        _bTrialInFlight.set( false );
+    }
+
+    /**
+     * @return the current state
+     */
+    public State getState( )
+    {
+        return _state.get( );
+    }
+
+    /**
+     * @return the number of consecutive failures
+     */
+    public int getConsecutiveFailures( )
+    {
+        return _nConsecutiveFailures.get( );
+    }
+
+    /**
+     * @return the number of times the circuit has opened
+     */
+    public long getOpenCount( )
+    {
+        return _lOpenCount.get( );
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.client;
+
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.search.IdentitySearchResponse;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Short-lived, size-bounded cache of the identities read from the identity store, by customer id and client code.<br>
+ * Invalidating a customer id removes its entries for every client code. A lookup started before an invalidation cannot store its response
+ * afterwards: {@link #put(String, String, IdentitySearchResponse, long)} is given the {@link #stamp(String)} taken before the call, and drops the
+ * response if the customer id, or another one sharing its stripe, has been invalidated since.
+ */
+public final class IdentityLookupCache
+{
+    private static final int STRIPES = 64;
+
+    private final long _lTtlNanos;
+    private final int _nMaxSize;
+
+    // Guards the entries; the map is in access order, the least recently used customer id is evicted first
+    private final ReentrantLock _lock = new ReentrantLock( );
+    private final LinkedHashMap<String, Map<String, Entry>> _mapEntries = new LinkedHashMap<>( 16, 0.75f, true );
+    // Invalidation counters, striped by customer id
+    private final AtomicLongArray _invalidations = new AtomicLongArray( STRIPES );
+
+    // Metrics
+    private final AtomicLong _lHits = new AtomicLong( );
+    private final AtomicLong _lMisses = new AtomicLong( );
+
+    /**
+     * Constructor
+     *
+     * @param lTtlMillis
+     *            the time to live of an entry, in ms; 0 disables the cache
+     * @param nMaxSize
+     *            the maximum number of cached customer ids
+     */
+    public IdentityLookupCache( final long lTtlMillis, final int nMaxSize )
+    {
+        _lTtlNanos = TimeUnit.MILLISECONDS.toNanos( Math.max( 0L, lTtlMillis ) );
+        _nMaxSize = Math.max( 1, nMaxSize );
+    }
+
+    /**
+     * Get the invalidation stamp of a customer id, to be taken before calling the identity store
+     *
+     * @param strCustomerId
+     *            the customer id
+     * @return the stamp
+     */
+    public long stamp( final String strCustomerId )
+    {
+        return strCustomerId != null ? _invalidations.get( stripe( strCustomerId ) ) : 0L;
+    }
+
+    /**
+     * Get a cached identity
+     *
+     * @param strCustomerId
+     *            the customer id
+     * @param strClientCode
+     *            the client code
+     * @return the response, or null if it is not cached or has expired
+     */
+    public IdentitySearchResponse get( final String strCustomerId, final String strClientCode )
+    {
+        if ( _lTtlNanos == 0 || strCustomerId == null )
+        {
+            return null;
+        }
+        _lock.lock( );
+        try
+        {
+            final Map<String, Entry> mapByClientCode = _mapEntries.get( strCustomerId );
+            final Entry entry = mapByClientCode != null ? mapByClientCode.get( strClientCode ) : null;
+            if ( entry != null && System.nanoTime( ) - entry._lCreated < _lTtlNanos )
+            {
+                _lHits.incrementAndGet( );
+                return entry._response;
+            }
+            if ( entry != null )
+            {
+                mapByClientCode.remove( strClientCode );
+                if ( mapByClientCode.isEmpty( ) )
+                {
+                    _mapEntries.remove( strCustomerId );
+                }
+            }
+        }
+        finally
+        {
+            _lock.unlock( );
+        }
+        _lMisses.incrementAndGet( );
+        return null;
+    }
+
+    /**
+     * Cache an identity
+     *
+     * @param strCustomerId
+     *            the customer id
+     * @param strClientCode
+     *            the client code
+     * @param response
+     *            the response of the identity store
+     * @param lStamp
+     *            the {@link #stamp(String)} taken before the call; the response is dropped if an invalidation happened since
+     */
+    public void put( final String strCustomerId, final String strClientCode, final IdentitySearchResponse response, final long lStamp )
+    {
+        if ( _lTtlNanos == 0 || strCustomerId == null || response == null )
+        {
+            return;
+        }
+        _lock.lock( );
+        try
+        {
+            // Checked under the lock, invalidations take it too
+            if ( _invalidations.get( stripe( strCustomerId ) ) != lStamp )
+            {
+                return;
+            }
+            _mapEntries.computeIfAbsent( strCustomerId, strKey -> new HashMap<>( 4 ) ).put( strClientCode, new Entry( response ) );
+            if ( _mapEntries.size( ) > _nMaxSize )
+            {
+                _mapEntries.remove( _mapEntries.keySet( ).iterator( ).next( ) );
+            }
+        }
+        finally
+        {
+            _lock.unlock( );
+        }
+    }
+
+    /**
+     * Remove the cached identities of a customer id, for every client code
+     *
+     * @param strCustomerId
+     *            the customer id
+     */
+    public void invalidate( final String strCustomerId )
+    {
+        if ( strCustomerId == null )
+        {
+            return;
+        }
+        _lock.lock( );
+        try
+        {
+            _invalidations.incrementAndGet( stripe( strCustomerId ) );
+            _mapEntries.remove( strCustomerId );
+        }
+        finally
+        {
+            _lock.unlock( );
+        }
+    }
+
+    /**
+     * @return the number of lookups answered by the cache
+     */
+    public long getHitCount( )
+    {
+        return _lHits.get( );
+    }
+
+    /**
+     * @return the number of lookups not answered by the cache
+     */
+    public long getMissCount( )
+    {
+        return _lMisses.get( );
+    }
+
+    private static int stripe( final String strCustomerId )
+    {
+        return ( strCustomerId.hashCode( ) & Integer.MAX_VALUE ) % STRIPES;
+    }
+
+    /**
+     * Cached response, with its creation time
+     */
+    private static final class Entry
+    {
+        private final IdentitySearchResponse _response;
+        private final long _lCreated = System.nanoTime( );
+
+        private Entry( final IdentitySearchResponse response )
+        {
+            _response = response;
+        }
+    }
+}
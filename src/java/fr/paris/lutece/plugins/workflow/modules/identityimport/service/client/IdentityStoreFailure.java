@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.client;
+
+import fr.paris.lutece.plugins.identitystore.web.exception.IdentityStoreException;
+import fr.paris.lutece.util.httpaccess.HttpAccessException;
+import fr.paris.lutece.util.httpaccess.InvalidResponseStatus;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.NoRouteToHostException;
+import java.net.SocketTimeoutException;
+import java.net.UnknownHostException;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Kinds of failed identity store calls, telling whether a call can be retried and whether it is a failure of the identity store for the
+ * {@link CircuitBreaker}. The kind is read from the causes of the exception raised by the call: the exceptions of the HTTP access library used by the
+ * identity store client, the network exceptions, and the {@link IdentityStoreException} raised by the client for the errors answered by the identity
+ * store. Any other exception is {@link #UNKNOWN}.
+ */
+public enum IdentityStoreFailure
+{
+    /** The request could not reach the identity store, it can be retried even if its operation is not idempotent */
+    NOT_SENT,
+    /** No response in time, the request may have been processed */
+    TIMEOUT,
+    /** The exchange failed, or the identity store answered with a server error: the request may have been processed */
+    TRANSPORT,
+    /** The identity store answered with an error about the request itself: it is up, and the same request would fail again */
+    REJECTED,
+    /** The calling thread was interrupted, nothing is known about the identity store */
+    INTERRUPTED,
+    /** The call failed with an unexpected exception, such as a programming error: the request may have been processed */
+    UNKNOWN;
+
+    private static final int MIN_SERVER_ERROR_STATUS = 500;
+    private static final int MAX_CAUSE_DEPTH = 10;
+
+    /**
+     * Find the kind of a failure
+     *
+     * @param exception
+     *            the exception raised by the call
+     * @return the kind of the failure
+     */
+    public static IdentityStoreFailure classify( final Throwable exception )
+    {
+        IdentityStoreFailure failure = REJECTED;
+        Throwable cause = exception;
+        for ( int nDepth = 0; cause != null && nDepth < MAX_CAUSE_DEPTH; nDepth++ )
+        {
+            if ( cause instanceof InterruptedException )
+            {
+                return INTERRUPTED;
+            }
+            if ( cause instanceof TimeoutException || cause instanceof SocketTimeoutException )
+            {
+                return TIMEOUT;
+            }
+            if ( cause instanceof ConnectException || cause instanceof UnknownHostException || cause instanceof NoRouteToHostException )
+            {
+                return NOT_SENT;
+            }
+            if ( cause instanceof InvalidResponseStatus )
+            {
+                // The identity store answered, its status tells whether it is failing
+                return ( (InvalidResponseStatus) cause ).getResponseStatus( ) >= MIN_SERVER_ERROR_STATUS ? TRANSPORT : REJECTED;
+            }
+            if ( cause instanceof IOException || cause instanceof HttpAccessException )
+            {
+                failure = TRANSPORT;
+            }
+            else if ( failure == REJECTED && !( cause instanceof IdentityStoreException ) )
+            {
+                failure = UNKNOWN;
+            }
+            cause = cause.getCause( );
+        }
+        return failure;
+    }
+
+    /**
+     * Tell whether a call failing this way can be sent again
+     *
+     * @param operation
+     *            the operation of the call
+     * @return true if the call can be retried
+     */
+    public boolean isRetryable( final IdentityStoreOperation operation )
+    {
+        return this == NOT_SENT || ( ( this == TIMEOUT || this == TRANSPORT ) && operation.isIdempotent( ) );
+    }
+
+    /**
+     * @return true if the failure shows that the identity store is failing, counted by the circuit breaker
+     */
+    public boolean isIdentityStoreFailure( )
+    {
+        return this == NOT_SENT || this == TIMEOUT || this == TRANSPORT || this == UNKNOWN;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.client;
+
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+/**
+ * Identity store operations called by the workflow tasks, with their timeout and number of retries.<br>
+ * Timeouts are read from <code>identityimport_config.client.timeout.&lt;operation&gt;</code> and retries from
+ * <code>identityimport_config.client.retries.&lt;operation&gt;</code>. Creation and update are not retried by default. The operations which are not
+ * idempotent are only retried when the request could not reach the identity store, never after a timeout or a failure during the exchange, see
+ * {@link IdentityStoreFailure}.
+ */
+public enum IdentityStoreOperation
+{
+    IMPORT( 10000, 2, false ),
+    CREATE( 10000, 0, false ),
+    UPDATE( 10000, 0, false ),
+    GET( 5000, 2, true );
+
+    // Properties
+    private static final String PROPERTY_TIMEOUT = "identityimport_config.client.timeout.";
+    private static final String PROPERTY_RETRIES = "identityimport_config.client.retries.";
+
+    private final long _lTimeout;
+    private final int _nMaxRetries;
+    private final boolean _bIdempotent;
+
+    IdentityStoreOperation( final int nDefaultTimeout, final int nDefaultRetries, final boolean bIdempotent )
+    {
+        _bIdempotent = bIdempotent;
+        final String strKey = name( ).toLowerCase( );
+        _lTimeout = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_TIMEOUT + strKey, nDefaultTimeout ) );
+        _nMaxRetries = Math.max( 0, AppPropertiesService.getPropertyInt( PROPERTY_RETRIES + strKey, nDefaultRetries ) );
+    }
+
+    /**
+     * @return the maximum duration of one attempt, in milliseconds
+     */
+    public long getTimeout( )
+    {
+        return _lTimeout;
+    }
+
+    /**
+     * @return the maximum number of retries after a failed attempt
+     */
+    public int getMaxRetries( )
+    {
+        return _nMaxRetries;
+    }
+
+    /**
+     * @return true if the operation can be sent again without effect once it has been processed
+     */
+    public boolean isIdempotent( )
+    {
+        return _bIdempotent;
+    }
+}
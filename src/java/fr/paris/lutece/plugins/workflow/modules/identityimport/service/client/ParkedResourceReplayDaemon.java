@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.client;
+
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.parking.ParkedResource;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.parking.ParkedResourceHome;
+import fr.paris.lutece.portal.service.daemon.Daemon;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.portal.service.workflow.WorkflowService;
+
+import java.util.List;
+
+/**
+ * Daemon replaying the automatic actions of the resources parked while the identity store was unavailable
+ */
+public class ParkedResourceReplayDaemon extends Daemon
+{
+    // Properties
+    private static final String PROPERTY_BATCH_SIZE = "identityimport_config.parked.replay.batch.size";
+
+    // Defaults
+    private static final int DEFAULT_BATCH_SIZE = 100;
+
+    @Override
+    public void run( )
+    {
+        final ResilientIdentityStoreClient client = ResilientIdentityStoreClient.instance( );
+        if ( !client.isAvailable( ) )
+        {
+            setLastRunLogs( "Identity store unavailable, parked resources not replayed" );
+            return;
+        }
+
+        final List<ParkedResource> listParkedResources = ParkedResourceHome
+                .findOldest( AppPropertiesService.getPropertyInt( PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE ) );
+        int nReplayed = 0;
+        for ( final ParkedResource parkedResource : listParkedResources )
+        {
+            if ( !client.isAvailable( ) )
+            {
+                // The resource may have been parked again by the replayed task
+                break;
+            }
+            ParkedResourceHome.remove( parkedResource.getIdResource( ), parkedResource.getResourceType( ) );
+            try
+            {
+                WorkflowService.getInstance( ).executeActionAutomatic( parkedResource.getIdResource( ), parkedResource.getResourceType( ),
+                        parkedResource.getIdWorkflow( ), null, null );
+                nReplayed++;
+            }
+            catch( final Exception e )
+            {
+                AppLogService.error( "Unable to replay parked resource " + parkedResource.getIdResource( ) + " (" + parkedResource.getResourceType( ) + ")",
+                        e );
+            }
+        }
+        setLastRunLogs( nReplayed + " parked resource(s) replayed out of " + listParkedResources.size( ) );
+    }
+}
@@ -0,0 +1,460 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.client;
+
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.RequestAuthor;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatusType;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.crud.IdentityChangeRequest;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.crud.IdentityChangeResponse;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.search.IdentitySearchResponse;
+import fr.paris.lutece.plugins.identitystore.v3.web.service.IdentityService;
+import fr.paris.lutece.plugins.identitystore.v3.web.service.IdentityServiceExtended;
+import fr.paris.lutece.plugins.identitystore.web.exception.IdentityStoreException;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.executor.IdentityStoreCall;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.executor.IdentityTaskExecutor;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client decorating the identity store services declared in the context of the module.<br>
+ * Every call runs on the {@link IdentityTaskExecutor} with the timeout of its {@link IdentityStoreOperation}. Failed calls are retried with an
+ * exponential backoff when their {@link IdentityStoreFailure} allows it, as long as the shared {@link RetryBudget} allows it. A {@link CircuitBreaker}
+ * rejects the calls with an {@link IdentityStoreUnavailableException} while the identity store is failing: only the timeouts and the transport or
+ * server errors count, the errors returned by the identity store about a request show that it is up.<br>
+ * The identities read by {@link #getIdentity(String, String, RequestAuthor)} are kept for a short time in an {@link IdentityLookupCache}, read by
+ * {@link #lookupIdentity(String, String, RequestAuthor)}. The identities written through this client are removed from the cache.<br>
+ * The bulk identification prefetches the identities checked for several candidate identities of a chunk, with
+ * {@link #prefetchIdentities(Collection, String, RequestAuthor)}, so that they are read once. The identify task hits the cache for the identities read
+ * recently through this bean, e.g. by a bulk identification or by the identification of another candidate identity: the identify screen of
+ * plugin-identityimport reads the identities it shows with its own identity service.
+ */
+public class ResilientIdentityStoreClient
+{
+    /**
+     * Name of the bean in the context of the module
+     */
+    public static final String BEAN_NAME = "workflow-identityimport.identityStoreClient";
+
+    // Properties
+    private static final String PROPERTY_BACKOFF_INITIAL = "identityimport_config.client.retry.backoff.initial";
+    private static final String PROPERTY_BACKOFF_MAX = "identityimport_config.client.retry.backoff.max";
+    private static final String PROPERTY_RETRY_BUDGET_RATIO = "identityimport_config.client.retry.budget.ratio";
+    private static final String PROPERTY_RETRY_BUDGET_MAX = "identityimport_config.client.retry.budget.max";
+    private static final String PROPERTY_BREAKER_FAILURE_THRESHOLD = "identityimport_config.client.breaker.failure.threshold";
+    private static final String PROPERTY_BREAKER_OPEN_DURATION = "identityimport_config.client.breaker.open.duration";
+    private static final String PROPERTY_LOOKUP_CACHE_TTL = "identityimport_config.client.lookup.cache.ttl";
+    private static final String PROPERTY_LOOKUP_CACHE_SIZE = "identityimport_config.client.lookup.cache.size";
+
+    // Defaults
+    private static final int DEFAULT_BACKOFF_INITIAL = 200;
+    private static final int DEFAULT_BACKOFF_MAX = 5000;
+    private static final String DEFAULT_RETRY_BUDGET_RATIO = "0.1";
+    private static final int DEFAULT_RETRY_BUDGET_MAX = 100;
+    private static final int DEFAULT_BREAKER_FAILURE_THRESHOLD = 20;
+    private static final int DEFAULT_BREAKER_OPEN_DURATION = 30000;
+    private static final long DEFAULT_LOOKUP_CACHE_TTL = 30000L;
+    private static final int DEFAULT_LOOKUP_CACHE_SIZE = 1000;
+
+    private final IdentityService _identityService;
+    private final IdentityServiceExtended _identityServiceExtended;
+    private final long _lBackoffInitial;
+    private final long _lBackoffMax;
+    private final RetryBudget _retryBudget;
+    private final CircuitBreaker _circuitBreaker;
+    private final IdentityLookupCache _lookupCache;
+
+    // Metrics
+    private final AtomicLong _lCalls = new AtomicLong( );
+    private final AtomicLong _lFailures = new AtomicLong( );
+    private final AtomicLong _lTimeouts = new AtomicLong( );
+    private final AtomicLong _lRetries = new AtomicLong( );
+    private final AtomicLong _lRejected = new AtomicLong( );
+
+    /**
+     * Constructor
+     *
+     * @param identityService
+     *            the identity service
+     * @param identityServiceExtended
+     *            the extended identity service
+     */
+    public ResilientIdentityStoreClient( final IdentityService identityService, final IdentityServiceExtended identityServiceExtended )
+    {
+        _identityService = identityService;
+        _identityServiceExtended = identityServiceExtended;
+        _lBackoffInitial = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_BACKOFF_INITIAL, DEFAULT_BACKOFF_INITIAL ) );
+        _lBackoffMax = Math.max( _lBackoffInitial, AppPropertiesService.getPropertyInt( PROPERTY_BACKOFF_MAX, DEFAULT_BACKOFF_MAX ) );
+        _retryBudget = new RetryBudget( Double.parseDouble( AppPropertiesService.getProperty( PROPERTY_RETRY_BUDGET_RATIO, DEFAULT_RETRY_BUDGET_RATIO ) ),
+                AppPropertiesService.getPropertyInt( PROPERTY_RETRY_BUDGET_MAX, DEFAULT_RETRY_BUDGET_MAX ) );
+        _circuitBreaker = new CircuitBreaker( AppPropertiesService.getPropertyInt( PROPERTY_BREAKER_FAILURE_THRESHOLD, DEFAULT_BREAKER_FAILURE_THRESHOLD ),
+                AppPropertiesService.getPropertyInt( PROPERTY_BREAKER_OPEN_DURATION, DEFAULT_BREAKER_OPEN_DURATION ) );
+        _lookupCache = new IdentityLookupCache( AppPropertiesService.getPropertyLong( PROPERTY_LOOKUP_CACHE_TTL, DEFAULT_LOOKUP_CACHE_TTL ),
+                AppPropertiesService.getPropertyInt( PROPERTY_LOOKUP_CACHE_SIZE, DEFAULT_LOOKUP_CACHE_SIZE ) );
+    }
+
+    /**
+     * Get the client declared in the context of the module
+     *
+     * @return the client
+     */
+    public static ResilientIdentityStoreClient instance( )
+    {
+        return SpringContextService.getBean( BEAN_NAME );
+    }
+
+    /**
+     * Import an identity
+     *
+     * @param identityChangeRequest
+     *            the request
+     * @param strClientCode
+     *            the client code
+     * @param requestAuthor
+     *            the author of the request
+     * @return the identity store response
+     * @throws IdentityStoreException
+     *             if the call fails, or {@link IdentityStoreUnavailableException} if the circuit is open
+     */
+    public IdentityChangeResponse importIdentity( final IdentityChangeRequest identityChangeRequest, final String strClientCode,
+            final RequestAuthor requestAuthor ) throws IdentityStoreException
+    {
+        final String strCustomerId = identityChangeRequest.getIdentity( ) != null ? identityChangeRequest.getIdentity( ).getCustomerId( ) : null;
+        final IdentityChangeResponse response;
+        try
+        {
+            response = call( IdentityStoreOperation.IMPORT, strClientCode,
+                    ( ) -> _identityServiceExtended.importIdentity( identityChangeRequest, strClientCode, requestAuthor ) );
+        }
+        finally
+        {
+            // An import may update an existing identity, even if the call failed on our side
+            _lookupCache.invalidate( strCustomerId );
+        }
+        if ( response != null && response.getCustomerId( ) != null && !response.getCustomerId( ).equals( strCustomerId ) )
+        {
+            _lookupCache.invalidate( response.getCustomerId( ) );
+        }
+        return response;
+    }
+
+    /**
+     * Create an identity
+     *
+     * @param identityChangeRequest
+     *            the request
+     * @param strClientCode
+     *            the client code
+     * @param requestAuthor
+     *            the author of the request
+     * @return the identity store response
+     * @throws IdentityStoreException
+     *             if the call fails, or {@link IdentityStoreUnavailableException} if the circuit is open
+     */
+    public IdentityChangeResponse createIdentity( final IdentityChangeRequest identityChangeRequest, final String strClientCode,
+            final RequestAuthor requestAuthor ) throws IdentityStoreException
+    {
+        return call( IdentityStoreOperation.CREATE, strClientCode,
+                ( ) -> _identityService.createIdentity( identityChangeRequest, strClientCode, requestAuthor ) );
+    }
+
+    /**
+     * Update an identity
+     *
+     * @param strCustomerId
+     *            the customer id of the identity
+     * @param identityChangeRequest
+     *            the request
+     * @param strClientCode
+     *            the client code
+     * @param requestAuthor
+     *            the author of the request
+     * @return the identity store response
+     * @throws IdentityStoreException
+     *             if the call fails, or {@link IdentityStoreUnavailableException} if the circuit is open
+     */
+    public IdentityChangeResponse updateIdentity( final String strCustomerId, final IdentityChangeRequest identityChangeRequest, final String strClientCode,
+            final RequestAuthor requestAuthor ) throws IdentityStoreException
+    {
+        // Invalidated before the call, so that no lookup returns the identity while it is updated, and after, for the lookups started meanwhile
+        _lookupCache.invalidate( strCustomerId );
+        try
+        {
+            return call( IdentityStoreOperation.UPDATE, strClientCode,
+                    ( ) -> _identityService.updateIdentity( strCustomerId, identityChangeRequest, strClientCode, requestAuthor ) );
+        }
+        finally
+        {
+            _lookupCache.invalidate( strCustomerId );
+        }
+    }
+
+    /**
+     * Get an identity, and keep it in the lookup cache if it exists
+     *
+     * @param strCustomerId
+     *            the customer id of the identity
+     * @param strClientCode
+     *            the client code
+     * @param requestAuthor
+     *            the author of the request
+     * @return the identity store response
+     * @throws IdentityStoreException
+     *             if the call fails, or {@link IdentityStoreUnavailableException} if the circuit is open
+     */
+    public IdentitySearchResponse getIdentity( final String strCustomerId, final String strClientCode, final RequestAuthor requestAuthor )
+            throws IdentityStoreException
+    {
+        final long lStamp = _lookupCache.stamp( strCustomerId );
+        final IdentitySearchResponse response = call( IdentityStoreOperation.GET, strClientCode,
+                ( ) -> _identityService.getIdentity( strCustomerId, strClientCode, requestAuthor ) );
+        if ( response != null && response.getStatus( ) != null && response.getStatus( ).getType( ) == ResponseStatusType.OK )
+        {
+            _lookupCache.put( strCustomerId, strClientCode, response, lStamp );
+        }
+        return response;
+    }
+
+    /**
+     * Get an identity from the lookup cache, or from the identity store if it has not been read recently
+     *
+     * @param strCustomerId
+     *            the customer id of the identity
+     * @param strClientCode
+     *            the client code
+     * @param requestAuthor
+     *            the author of the request
+     * @return the identity store response, possibly cached
+     * @throws IdentityStoreException
+     *             if the call fails, or {@link IdentityStoreUnavailableException} if the circuit is open
+     */
+    public IdentitySearchResponse lookupIdentity( final String strCustomerId, final String strClientCode, final RequestAuthor requestAuthor )
+            throws IdentityStoreException
+    {
+        final IdentitySearchResponse cached = _lookupCache.get( strCustomerId, strClientCode );
+        return cached != null ? cached : getIdentity( strCustomerId, strClientCode, requestAuthor );
+    }
+
+    /**
+     * Read identities into the lookup cache, so that the next lookups find them. A failed read is logged and skipped, the lookup then calls the
+     * identity store.
+     *
+     * @param listCustomerIds
+     *            the customer ids of the identities
+     * @param strClientCode
+     *            the client code
+     * @param requestAuthor
+     *            the author of the request
+     */
+    public void prefetchIdentities( final Collection<String> listCustomerIds, final String strClientCode, final RequestAuthor requestAuthor )
+    {
+        for ( final String strCustomerId : listCustomerIds )
+        {
+            try
+            {
+                getIdentity( strCustomerId, strClientCode, requestAuthor );
+            }
+            catch( final IdentityStoreUnavailableException e )
+            {
+                AppLogService.debug( "Identity store unavailable, prefetch skipped : " + e.getMessage( ) );
+                return;
+            }
+            catch( final IdentityStoreException e )
+            {
+                AppLogService.debug( "Unable to prefetch identity " + strCustomerId + " : " + e.getMessage( ) );
+            }
+        }
+    }
+
+    /**
+     * @return true if the identity store can be called, i.e. the circuit is not open
+     */
+    public boolean isAvailable( )
+    {
+        return _circuitBreaker.getState( ) != CircuitBreaker.State.OPEN;
+    }
+
+    private <T> T call( final IdentityStoreOperation operation, final String strClientCode, final IdentityStoreCall<T> call ) throws IdentityStoreException
+    {
+        _retryBudget.deposit( );
+        int nAttempt = 0;
+        while ( true )
+        {
+            if ( !_circuitBreaker.allowRequest( ) )
+            {
+                _lRejected.incrementAndGet( );
+                throw new IdentityStoreUnavailableException( "Identity store unavailable, circuit breaker is open" );
+            }
+
+            _lCalls.incrementAndGet( );
+            try
+            {
+                final T response = IdentityTaskExecutor.instance( ).execute( strClientCode, call, operation.getTimeout( ) );
+                _circuitBreaker.onSuccess( );
+                return response;
+            }
+            catch( final IdentityStoreException e )
+            {
+                _lFailures.incrementAndGet( );
+                final IdentityStoreFailure failure = IdentityStoreFailure.classify( e );
+                if ( failure == IdentityStoreFailure.INTERRUPTED )
+                {
+                    _circuitBreaker.onCancel( );
+                    throw e;
+                }
+                if ( failure.isIdentityStoreFailure( ) )
+                {
+                    _circuitBreaker.onFailure( );
+                }
+                else
+                {
+                    // The identity store answered
+                    _circuitBreaker.onSuccess( );
+                }
+                if ( failure == IdentityStoreFailure.TIMEOUT )
+                {
+                    _lTimeouts.incrementAndGet( );
+                }
+                // A timed out import may have created the identity, sending it again could create a duplicate
+                if ( !failure.isRetryable( operation ) || nAttempt >= operation.getMaxRetries( ) || Thread.currentThread( ).isInterrupted( )
+                        || !_retryBudget.tryWithdraw( ) )
+                {
+                    throw e;
+                }
+                AppLogService.debug( "Identity store " + operation + " call failed, retrying : " + e.getMessage( ) );
+                backoff( nAttempt++ );
+                _lRetries.incrementAndGet( );
+            }
+        }
+    }
+
+    private void backoff( final int nAttempt ) throws IdentityStoreException
+    {
+        // Full jitter, so that the retries of concurrent calls are spread
+        final long lMaxDelay = Math.min( _lBackoffMax, _lBackoffInitial << Math.min( nAttempt, 20 ) );
+        try
+        {
+            Thread.sleep( ThreadLocalRandom.current( ).nextLong( lMaxDelay + 1 ) );
+        }
+        catch( final InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            throw new IdentityStoreException( "Interrupted while waiting to retry an identity store call", e );
+        }
+    }
+
+    /**
+     * @return the state of the circuit breaker
+     */
+    public CircuitBreaker.State getCircuitState( )
+    {
+        return _circuitBreaker.getState( );
+    }
+
+    /**
+     * @return the number of times the circuit breaker has opened
+     */
+    public long getCircuitOpenCount( )
+    {
+        return _circuitBreaker.getOpenCount( );
+    }
+
+    /**
+     * @return the number of retries currently allowed by the retry budget
+     */
+    public double getRetryBudgetAvailable( )
+    {
+        return _retryBudget.getAvailable( );
+    }
+
+    /**
+     * @return the number of calls sent to the identity store, retries included
+     */
+    public long getCallCount( )
+    {
+        return _lCalls.get( );
+    }
+
+    /**
+     * @return the number of failed calls, timeouts included
+     */
+    public long getFailureCount( )
+    {
+        return _lFailures.get( );
+    }
+
+    /**
+     * @return the number of calls that timed out
+     */
+    public long getTimeoutCount( )
+    {
+        return _lTimeouts.get( );
+    }
+
+    /**
+     * @return the number of retries
+     */
+    public long getRetryCount( )
+    {
+        return _lRetries.get( );
+    }
+
+    /**
+     * @return the number of calls rejected by the open circuit
+     */
+    public long getRejectedCount( )
+    {
+        return _lRejected.get( );
+    }
+
+    /**
+     * @return the number of lookups answered by the lookup cache
+     */
+    public long getLookupCacheHitCount( )
+    {
+        return _lookupCache.getHitCount( );
+    }
+
+    /**
+     * @return the number of lookups sent to the identity store
+     */
+    public long getLookupCacheMissCount( )
+    {
+        return _lookupCache.getMissCount( );
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.client;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Budget shared by all the retries sent to the identity store.<br>
+ * Every call deposits a fraction of a token and every retry withdraws a whole token, so that retries never exceed a ratio of the traffic: a slow
+ * identity store is not flooded by retries. The balance is kept in thousandths of a token.
+ */
+public class RetryBudget
+{
+    private static final long TOKEN = 1000L;
+
+    private final long _lDeposit;
+    private final long _lMaxBalance;
+    private final AtomicLong _lBalance;
+
+    /**
+     * Constructor
+     *
+     * @param dRatio
+     *            the number of retries allowed per call
+     * @param nMaxTokens
+     *            the maximum number of retries that can be saved, also the initial balance
+     */
+    public RetryBudget( final double dRatio, final int nMaxTokens )
+    {
+        _lDeposit = Math.max( 0L, Math.round( dRatio * TOKEN ) );
+        _lMaxBalance = Math.max( 1L, nMaxTokens ) * TOKEN;
+        _lBalance = new AtomicLong( _lMaxBalance );
+    }
+
+    /**
+     * Record a call
+     */
+    public void deposit( )
+    {
+        _lBalance.accumulateAndGet( _lDeposit, ( lBalance, lDeposit ) -> Math.min( _lMaxBalance, lBalance + lDeposit ) );
+    }
+
+    /**
+     * Try to spend a token for a retry
+     *
+     * @return true if the retry can be sent
+     */
+    public boolean tryWithdraw( )
+    {
+        long lBalance = _lBalance.get( );
+        while ( lBalance >= TOKEN )
+        {
+            if ( _lBalance.compareAndSet( lBalance, lBalance - TOKEN ) )
+            {
+                return true;
+            }
+            lBalance = _lBalance.get( );
+        }
+        return false;
+    }
+
+    /**
+     * @return the number of retries currently available
+     */
+    public double getAvailable( )
+    {
+        return (double) _lBalance.get( ) / TOKEN;
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.executor;
+
+import java.util.Arrays;
+
+/**
+ * Concurrency limit of a client lane, adjusted by AIMD from the latency and the errors of its calls.<br>
+ * The calls are sampled by windows of <code>nWindowSize</code> calls. At the end of a window, the limit is multiplied by <code>dBackoffRatio</code>
+ * if the 95th percentile of the latency is above the target or the error rate above its maximum, and otherwise increased by one if the lane had
+ * to queue calls during the window. The limit always stays between its minimum and its maximum.<br>
+ * This class is not thread safe, the lane calls it while holding its lock.
+ */
+final class AdaptiveConcurrencyLimit
+{
+    private static final double PERCENTILE = 0.95;
+
+    private final int _nMinLimit;
+    private final int _nMaxLimit;
+    private final long _lLatencyTarget;
+    private final double _dMaxErrorRate;
+    private final double _dBackoffRatio;
+    private final long [ ] _latencies;
+    private int _nLimit;
+    private int _nSampleCount;
+    private int _nErrorCount;
+    private boolean _bSaturated;
+    private long _lDecreaseCount;
+
+    /**
+     * Constructor, the limit starts at its maximum
+     *
+     * @param nMinLimit
+     *            the minimum limit
+     * @param nMaxLimit
+     *            the maximum limit
+     * @param lLatencyTarget
+     *            the 95th percentile of the latency above which the limit is decreased, in ms
+     * @param dMaxErrorRate
+     *            the error rate above which the limit is decreased, between 0 and 1
+     * @param dBackoffRatio
+     *            the ratio applied to the limit when it is decreased, between 0 and 1
+     * @param nWindowSize
+     *            the number of calls between two adjustments
+     */
+    AdaptiveConcurrencyLimit( final int nMinLimit, final int nMaxLimit, final long lLatencyTarget, final double dMaxErrorRate, final double dBackoffRatio,
+            final int nWindowSize )
+    {
+        _nMaxLimit = Math.max( 1, nMaxLimit );
+        _nMinLimit = Math.max( 1, Math.min( nMinLimit, _nMaxLimit ) );
+        _lLatencyTarget = lLatencyTarget;
+        _dMaxErrorRate = dMaxErrorRate;
+        _dBackoffRatio = Math.min( Math.max( dBackoffRatio, 0.1 ), 0.9 );
+        _latencies = new long [ Math.max( 1, nWindowSize )];
+        _nLimit = _nMaxLimit;
+    }
+
+    /**
+     * @return the current limit
+     */
+    int getLimit( )
+    {
+        return _nLimit;
+    }
+
+    /**
+     * @return the number of times the limit was decreased
+     */
+    long getDecreaseCount( )
+    {
+        return _lDecreaseCount;
+    }
+
+    /**
+     * Note that a call had to wait because the limit was reached
+     */
+    void onSaturation( )
+    {
+        _bSaturated = true;
+    }
+
+    /**
+     * Record the end of a call, and adjust the limit at the end of a window
+     *
+     * @param lLatency
+     *            the duration of the call, in ms
+     * @param bError
+     *            true if the call failed, timed out or was cancelled
+     */
+    void onSample( final long lLatency, final boolean bError )
+    {
+        _latencies [_nSampleCount++] = lLatency;
+        if ( bError )
+        {
+            _nErrorCount++;
+        }
+        if ( _nSampleCount < _latencies.length )
+        {
+            return;
+        }
+
+        final long [ ] sorted = _latencies.clone( );
+        Arrays.sort( sorted );
+        final long lP95 = sorted [Math.min( sorted.length - 1, (int) Math.ceil( PERCENTILE * sorted.length ) - 1 )];
+        final double dErrorRate = (double) _nErrorCount / sorted.length;
+        if ( lP95 > _lLatencyTarget || dErrorRate > _dMaxErrorRate )
+        {
+            final int nLimit = Math.max( _nMinLimit, (int) ( _nLimit * _dBackoffRatio ) );
+            if ( nLimit < _nLimit )
+            {
+                _nLimit = nLimit;
+                _lDecreaseCount++;
+            }
+        }
+        else if ( _bSaturated && _nLimit < _nMaxLimit )
+        {
+            _nLimit++;
+        }
+        _nSampleCount = 0;
+        _nErrorCount = 0;
+        _bSaturated = false;
+    }
+}
@@ -0,0 +1,494 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.executor;
+
+import fr.paris.lutece.plugins.identitystore.web.exception.IdentityStoreException;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Worker pool running the identity store calls of the identity tasks.<br>
+ * The calls are dispatched in one lane per client code: a lane never has more than its maximum number of calls in flight, and the surplus is queued in
+ * the lane instead of occupying a worker, so that a client with a large batch cannot starve the other clients.<br>
+ * Unless disabled, the maximum of a lane is only an upper bound: the limit actually applied adapts to the health of the identity store, see
+ * {@link AdaptiveConcurrencyLimit}. It shrinks when the latency or the error rate of the calls of the lane rise, and grows back while the lane has
+ * calls waiting and the identity store keeps up.<br>
+ * The workflow history is always written by the calling thread, once the result of the call is known. The workers only wait for the identity store,
+ * they run virtual threads when enabled, see {@link WorkerThreads}.<br>
+ * Only the callers submitting many calls at once gain concurrency from the pool: the batch tasks and the outbox dispatcher. A single resource task,
+ * such as an automatic import or creation action, waits for its call, and the workflow runs these actions one at a time. Its calls are made within
+ * {@link #callerRuns(Supplier)}: they run on the thread of the task when their lane has a free slot, still counted and sampled by the lane, without
+ * the hop to a worker. Such a call is bounded by the timeouts of the HTTP access rather than by the timeout of its operation, which only applies
+ * when the call has to wait in its lane. The outbox mode is the way to release such actions without waiting for the identity store.
+ */
+public final class IdentityTaskExecutor
+{
+    // Properties
+    private static final String PROPERTY_POOL_SIZE = "identityimport_config.executor.pool.size";
+    private static final String PROPERTY_VIRTUAL_POOL_SIZE = "identityimport_config.executor.virtual.pool.size";
+    private static final String PROPERTY_CLIENT_MAX_IN_FLIGHT = "identityimport_config.executor.client.max.inflight";
+    private static final String PROPERTY_ADAPTIVE_ENABLED = "identityimport_config.executor.adaptive.enabled";
+    private static final String PROPERTY_CLIENT_MIN_IN_FLIGHT = "identityimport_config.executor.client.min.inflight";
+    private static final String PROPERTY_CLIENT_LATENCY_TARGET = "identityimport_config.executor.client.latency.target";
+    private static final String PROPERTY_CLIENT_ERROR_RATE_MAX = "identityimport_config.executor.client.error.rate.max";
+    private static final String PROPERTY_ADAPTIVE_BACKOFF_RATIO = "identityimport_config.executor.adaptive.backoff.ratio";
+    private static final String PROPERTY_ADAPTIVE_WINDOW = "identityimport_config.executor.adaptive.window";
+
+    // Defaults
+    private static final int DEFAULT_POOL_SIZE = 16;
+    private static final int DEFAULT_VIRTUAL_POOL_SIZE = 1000;
+    private static final int DEFAULT_CLIENT_MAX_IN_FLIGHT = 4;
+    private static final int DEFAULT_CLIENT_MIN_IN_FLIGHT = 1;
+    private static final int DEFAULT_CLIENT_LATENCY_TARGET = 1000;
+    private static final String DEFAULT_CLIENT_ERROR_RATE_MAX = "0.1";
+    private static final String DEFAULT_ADAPTIVE_BACKOFF_RATIO = "0.7";
+    private static final int DEFAULT_ADAPTIVE_WINDOW = 20;
+
+    private static IdentityTaskExecutor _instance;
+
+    // Threads whose calls run on the thread itself when their lane has a free slot
+    private static final ThreadLocal<Boolean> _callerRuns = ThreadLocal.withInitial( ( ) -> Boolean.FALSE );
+
+    private final ExecutorService _executor;
+    private final Map<String, ClientLane> _mapLanes = new ConcurrentHashMap<>( );
+    private final AtomicLong _lSaturationCount = new AtomicLong( );
+
+    private IdentityTaskExecutor( )
+    {
+        final int nPoolSize = Math.max( 1, WorkerThreads.isVirtual( )
+                ? AppPropertiesService.getPropertyInt( PROPERTY_VIRTUAL_POOL_SIZE, DEFAULT_VIRTUAL_POOL_SIZE )
+                : AppPropertiesService.getPropertyInt( PROPERTY_POOL_SIZE, DEFAULT_POOL_SIZE ) );
+        _executor = WorkerThreads.newFixedThreadPool( "identityimport-worker-", nPoolSize );
+    }
+
+    /**
+     * Get the unique instance of the service
+     *
+     * @return the instance
+     */
+    public static synchronized IdentityTaskExecutor instance( )
+    {
+        if ( _instance == null )
+        {
+            _instance = new IdentityTaskExecutor( );
+        }
+        return _instance;
+    }
+
+    /**
+     * Submit a task in the lane of a client code
+     *
+     * @param strClientCode
+     *            the client code
+     * @param task
+     *            the task
+     * @param <T>
+     *            the result type
+     * @return the pending result
+     */
+    public <T> Future<T> submit( final String strClientCode, final Callable<T> task )
+    {
+        final FutureTask<T> futureTask = new FutureTask<>( task );
+        getLane( strClientCode ).offer( futureTask );
+        return futureTask;
+    }
+
+    /**
+     * Run an action whose identity store calls, made by the calling thread, run on that thread when their lane has a free slot instead of being
+     * handed to a worker
+     *
+     * @param action
+     *            the action, usually a single resource task
+     * @param <R>
+     *            the result type
+     * @return the result of the action
+     */
+    public static <R> R callerRuns( final Supplier<R> action )
+    {
+        final Boolean bPrevious = _callerRuns.get( );
+        _callerRuns.set( Boolean.TRUE );
+        try
+        {
+            return action.get( );
+        }
+        finally
+        {
+            _callerRuns.set( bPrevious );
+        }
+    }
+
+    /**
+     * Run an identity store call in the lane of a client code, and wait for its result. The calling thread is blocked until the call completes or
+     * times out, the call only runs concurrently with the calls of the other threads. Within {@link #callerRuns(Supplier)}, the call runs on the
+     * calling thread if its lane has a free slot.
+     *
+     * @param strClientCode
+     *            the client code
+     * @param call
+     *            the identity store call
+     * @param lTimeout
+     *            the maximum time to wait for the result, in milliseconds, including the time spent waiting in the lane
+     * @param <T>
+     *            the response type
+     * @return the identity store response
+     * @throws IdentityStoreException
+     *             if the call fails or times out
+     */
+    public <T> T execute( final String strClientCode, final IdentityStoreCall<T> call, final long lTimeout ) throws IdentityStoreException
+    {
+        final FutureTask<T> future = new FutureTask<>( call::call );
+        final ClientLane lane = getLane( strClientCode );
+        if ( !( _callerRuns.get( ) && lane.tryRun( future ) ) )
+        {
+            lane.offer( future );
+        }
+        try
+        {
+            return future.get( lTimeout, TimeUnit.MILLISECONDS );
+        }
+        catch( final TimeoutException e )
+        {
+            future.cancel( true );
+            throw new IdentityStoreException( "Identity store call timed out after " + lTimeout + " ms", e );
+        }
+        catch( final InterruptedException e )
+        {
+            future.cancel( true );
+            Thread.currentThread( ).interrupt( );
+            throw new IdentityStoreException( "Interrupted while waiting for the identity store", e );
+        }
+        catch( final ExecutionException e )
+        {
+            if ( e.getCause( ) instanceof IdentityStoreException )
+            {
+                throw (IdentityStoreException) e.getCause( );
+            }
+            throw new IdentityStoreException( e.getCause( ).getMessage( ), e.getCause( ) );
+        }
+    }
+
+    private ClientLane getLane( final String strClientCode )
+    {
+        return _mapLanes.computeIfAbsent( String.valueOf( strClientCode ), ClientLane::new );
+    }
+
+    /**
+     * @return the number of calls waiting for a free slot in their lane
+     */
+    public int getQueueDepth( )
+    {
+        return _mapLanes.values( ).stream( ).mapToInt( ClientLane::getQueueDepth ).sum( );
+    }
+
+    /**
+     * @return the number of calls currently running
+     */
+    public int getInFlight( )
+    {
+        return _mapLanes.values( ).stream( ).mapToInt( ClientLane::getInFlight ).sum( );
+    }
+
+    /**
+     * @return the number of calls that had to wait because their lane was full
+     */
+    public long getSaturationCount( )
+    {
+        return _lSaturationCount.get( );
+    }
+
+    /**
+     * @return the sum of the concurrency limits currently applied to the lanes
+     */
+    public int getConcurrencyLimit( )
+    {
+        return _mapLanes.values( ).stream( ).mapToInt( ClientLane::getLimit ).sum( );
+    }
+
+    /**
+     * @return the number of times the concurrency limit of a lane was decreased
+     */
+    public long getLimitDecreaseCount( )
+    {
+        return _mapLanes.values( ).stream( ).mapToLong( ClientLane::getLimitDecreaseCount ).sum( );
+    }
+
+    /**
+     * @return the concurrency limit currently applied, per client code
+     */
+    public Map<String, Integer> getConcurrencyLimitByClient( )
+    {
+        final Map<String, Integer> mapLimits = new TreeMap<>( );
+        _mapLanes.forEach( ( strClientCode, lane ) -> mapLimits.put( strClientCode, lane.getLimit( ) ) );
+        return Collections.unmodifiableMap( mapLimits );
+    }
+
+    /**
+     * @return the number of waiting calls, per client code
+     */
+    public Map<String, Integer> getQueueDepthByClient( )
+    {
+        final Map<String, Integer> mapDepths = new TreeMap<>( );
+        _mapLanes.forEach( ( strClientCode, lane ) -> mapDepths.put( strClientCode, lane.getQueueDepth( ) ) );
+        return Collections.unmodifiableMap( mapDepths );
+    }
+
+    /**
+     * Get a property of a client code, which can be overridden with the suffix <code>.&lt;client code&gt;</code>
+     */
+    private static String getClientProperty( final String strKey, final String strClientCode, final String strDefault )
+    {
+        return AppPropertiesService.getProperty( strKey + "." + strClientCode, AppPropertiesService.getProperty( strKey, strDefault ) );
+    }
+
+    /**
+     * Tell if a call that has run failed: the identity store call threw an exception, or was cancelled after a timeout
+     */
+    private static boolean isFailed( final FutureTask<?> task )
+    {
+        if ( task.isCancelled( ) )
+        {
+            return true;
+        }
+        try
+        {
+            task.get( );
+            return false;
+        }
+        catch( final ExecutionException e )
+        {
+            return true;
+        }
+        catch( final InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            return true;
+        }
+    }
+
+    /**
+     * Calls of one client code. At most <code>limit</code> of them are handed to the pool, the others wait in the lane queue. The state of the lane is
+     * guarded by a lock rather than a monitor, the workers may be virtual threads.
+     */
+    private final class ClientLane
+    {
+        private final int _nMaxInFlight;
+        private final AdaptiveConcurrencyLimit _limit;
+        private final Queue<FutureTask<?>> _queue = new ArrayDeque<>( );
+        private final ReentrantLock _lock = new ReentrantLock( );
+        private int _nInFlight;
+
+        ClientLane( final String strClientCode )
+        {
+            final int nDefault = AppPropertiesService.getPropertyInt( PROPERTY_CLIENT_MAX_IN_FLIGHT, DEFAULT_CLIENT_MAX_IN_FLIGHT );
+            _nMaxInFlight = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_CLIENT_MAX_IN_FLIGHT + "." + strClientCode, nDefault ) );
+            if ( AppPropertiesService.getPropertyBoolean( PROPERTY_ADAPTIVE_ENABLED, true ) )
+            {
+                _limit = new AdaptiveConcurrencyLimit(
+                        Integer.parseInt( getClientProperty( PROPERTY_CLIENT_MIN_IN_FLIGHT, strClientCode, String.valueOf( DEFAULT_CLIENT_MIN_IN_FLIGHT ) ) ),
+                        _nMaxInFlight,
+                        Long.parseLong( getClientProperty( PROPERTY_CLIENT_LATENCY_TARGET, strClientCode, String.valueOf( DEFAULT_CLIENT_LATENCY_TARGET ) ) ),
+                        Double.parseDouble( getClientProperty( PROPERTY_CLIENT_ERROR_RATE_MAX, strClientCode, DEFAULT_CLIENT_ERROR_RATE_MAX ) ),
+                        Double.parseDouble( AppPropertiesService.getProperty( PROPERTY_ADAPTIVE_BACKOFF_RATIO, DEFAULT_ADAPTIVE_BACKOFF_RATIO ) ),
+                        AppPropertiesService.getPropertyInt( PROPERTY_ADAPTIVE_WINDOW, DEFAULT_ADAPTIVE_WINDOW ) );
+            }
+            else
+            {
+                _limit = null;
+            }
+        }
+
+        void offer( final FutureTask<?> task )
+        {
+            _lock.lock( );
+            try
+            {
+                if ( _nInFlight >= getLimit( ) )
+                {
+                    _queue.add( task );
+                    _lSaturationCount.incrementAndGet( );
+                    if ( _limit != null )
+                    {
+                        _limit.onSaturation( );
+                    }
+                    return;
+                }
+                _nInFlight++;
+            }
+            finally
+            {
+                _lock.unlock( );
+            }
+            dispatch( task );
+        }
+
+        /**
+         * Run a call on the calling thread if the lane has a free slot and no call waiting before it
+         *
+         * @return true if the call has run, false if it must be offered to the lane
+         */
+        boolean tryRun( final FutureTask<?> task )
+        {
+            _lock.lock( );
+            try
+            {
+                if ( _nInFlight >= getLimit( ) || !_queue.isEmpty( ) )
+                {
+                    return false;
+                }
+                _nInFlight++;
+            }
+            finally
+            {
+                _lock.unlock( );
+            }
+            run( task );
+            return true;
+        }
+
+        private void dispatch( final FutureTask<?> task )
+        {
+            _executor.execute( ( ) -> run( task ) );
+        }
+
+        /**
+         * Run a call holding a slot of the lane, then hand the freed slots to the waiting calls
+         */
+        private void run( final FutureTask<?> task )
+        {
+            // A call cancelled while it waited in the lane did not reach the identity store, it says nothing of its health
+            final boolean bSampled = _limit != null && !task.isCancelled( );
+            final long lStart = System.currentTimeMillis( );
+            try
+            {
+                task.run( );
+            }
+            finally
+            {
+                final long lLatency = System.currentTimeMillis( ) - lStart;
+                final boolean bFailed = bSampled && isFailed( task );
+                final List<FutureTask<?>> listNext = new ArrayList<>( );
+                _lock.lock( );
+                try
+                {
+                    if ( bSampled )
+                    {
+                        _limit.onSample( lLatency, bFailed );
+                    }
+                    _nInFlight--;
+                    // The limit may have grown, or shrunk below the number of calls in flight
+                    while ( _nInFlight < getLimit( ) && !_queue.isEmpty( ) )
+                    {
+                        listNext.add( _queue.poll( ) );
+                        _nInFlight++;
+                    }
+                }
+                finally
+                {
+                    _lock.unlock( );
+                }
+                listNext.forEach( this::dispatch );
+            }
+        }
+
+        int getLimit( )
+        {
+            _lock.lock( );
+            try
+            {
+                return _limit != null ? _limit.getLimit( ) : _nMaxInFlight;
+            }
+            finally
+            {
+                _lock.unlock( );
+            }
+        }
+
+        long getLimitDecreaseCount( )
+        {
+            _lock.lock( );
+            try
+            {
+                return _limit != null ? _limit.getDecreaseCount( ) : 0L;
+            }
+            finally
+            {
+                _lock.unlock( );
+            }
+        }
+
+        int getQueueDepth( )
+        {
+            _lock.lock( );
+            try
+            {
+                return _queue.size( );
+            }
+            finally
+            {
+                _lock.unlock( );
+            }
+        }
+
+        int getInFlight( )
+        {
+            _lock.lock( );
+            try
+            {
+                return _nInFlight;
+            }
+            finally
+            {
+                _lock.unlock( );
+            }
+        }
+    }
+}
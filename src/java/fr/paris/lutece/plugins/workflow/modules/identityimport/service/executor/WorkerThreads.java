@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.executor;
+
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads of the pools waiting for the identity store: the workers of the {@link IdentityTaskExecutor} and the threads of the services submitting
+ * calls to it.<br>
+ * When the virtual threads are enabled and the runtime supports them (Java 21+), the pools keep their size but run virtual threads, which release
+ * their carrier thread while they wait for the identity store. The pools are then cheap enough to be sized by the number of calls wanted in flight.
+ * The code run by these threads waits with locks from <code>java.util.concurrent</code> rather than monitors, so that a virtual thread is never pinned
+ * to its carrier by this module. Virtual threads are created by reflection, this module still runs on older runtimes.
+ */
+public final class WorkerThreads
+{
+    // Properties
+    private static final String PROPERTY_VIRTUAL_ENABLED = "identityimport_config.executor.virtual.enabled";
+
+    private static final boolean VIRTUAL = AppPropertiesService.getPropertyBoolean( PROPERTY_VIRTUAL_ENABLED, false ) && isVirtualSupported( );
+
+    private WorkerThreads( )
+    {
+    }
+
+    /**
+     * @return true if the pools run virtual threads
+     */
+    public static boolean isVirtual( )
+    {
+        return VIRTUAL;
+    }
+
+    /**
+     * Create a pool of a fixed number of threads, virtual if enabled, daemon otherwise
+     *
+     * @param strName
+     *            the prefix of the names of the threads
+     * @param nThreads
+     *            the number of threads
+     * @return the pool
+     */
+    public static ExecutorService newFixedThreadPool( final String strName, final int nThreads )
+    {
+        return Executors.newFixedThreadPool( nThreads, VIRTUAL ? newVirtualThreadFactory( strName ) : newPlatformThreadFactory( strName ) );
+    }
+
+    private static ThreadFactory newPlatformThreadFactory( final String strName )
+    {
+        final AtomicInteger nThreadCount = new AtomicInteger( );
+        return runnable -> {
+            final Thread thread = new Thread( runnable, strName + nThreadCount.incrementAndGet( ) );
+            thread.setDaemon( true );
+            return thread;
+        };
+    }
+
+    /**
+     * Build <code>Thread.ofVirtual( ).name( strName, 1 ).factory( )</code>
+     */
+    private static ThreadFactory newVirtualThreadFactory( final String strName )
+    {
+        try
+        {
+            final Class<?> builderClass = Class.forName( "java.lang.Thread$Builder" );
+            Object builder = Thread.class.getMethod( "ofVirtual" ).invoke( null );
+            builder = builderClass.getMethod( "name", String.class, long.class ).invoke( builder, strName, 1L );
+            return (ThreadFactory) builderClass.getMethod( "factory" ).invoke( builder );
+        }
+        catch( final ReflectiveOperationException e )
+        {
+            throw new IllegalStateException( "Virtual threads are not supported by this runtime", e );
+        }
+    }
+
+    private static boolean isVirtualSupported( )
+    {
+        try
+        {
+            newVirtualThreadFactory( "identityimport-probe-" );
+            return true;
+        }
+        catch( final IllegalStateException e )
+        {
+            AppLogService.error( "Virtual threads are enabled but not supported by this runtime (Java 21+ required), platform threads are used" );
+            return false;
+        }
+    }
+}
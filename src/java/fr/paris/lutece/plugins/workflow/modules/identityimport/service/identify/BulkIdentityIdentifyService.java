@@ -0,0 +1,270 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.identify;
+
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentity;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.AttributeDto;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.IdentityDto;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.RequestAuthor;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatusType;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.crud.IdentityChangeRequest;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.crud.IdentityChangeResponse;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.search.IdentitySearchResponse;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.mapper.IdentityMapper;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.client.ResilientIdentityStoreClient;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.executor.IdentityTaskExecutor;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.executor.WorkerThreads;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Pipelined identification of candidate identities against the customer ids chosen for them.<br>
+ * Each identity is checked with a GET of its customer id, then updated with the overridden attributes of the candidate identity if its mapping
+ * has some. At most <code>window</code> identifications are in flight at the same time, so that a caller can persist the results of a chunk while the
+ * next one is being checked. The requests go through the {@link ResilientIdentityStoreClient}, which runs them on the {@link IdentityTaskExecutor} in
+ * the lane of their client code.<br>
+ * The identities checked for several candidate identities of a chunk are read once before the chunk is submitted, into the lookup cache of the client:
+ * their concurrent checks would otherwise all miss the cache and read the same identity.
+ */
+public final class BulkIdentityIdentifyService
+{
+    /** First line of the history of an identity checked only */
+    public static final String HEADER_GET = "Identité sélectionnée par identification en masse.\n\nAPI GET identity";
+    /** First line of the history of an identity checked then updated */
+    public static final String HEADER_UPDATE = "Identité sélectionnée et mise à jour par identification en masse.\n\nAPI UPDATE identity";
+
+    // Properties
+    private static final String PROPERTY_CHUNK_SIZE = "identityimport_config.identify.chunk.size";
+    private static final String PROPERTY_WINDOW = "identityimport_config.identify.window";
+
+    // Defaults
+    private static final int DEFAULT_CHUNK_SIZE = 200;
+    private static final int DEFAULT_WINDOW = 8;
+
+    private static BulkIdentityIdentifyService _instance;
+
+    private final int _nChunkSize;
+    private final Semaphore _window;
+    private final ExecutorService _submitters;
+
+    private BulkIdentityIdentifyService( )
+    {
+        _nChunkSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_CHUNK_SIZE, DEFAULT_CHUNK_SIZE ) );
+        final int nWindow = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_WINDOW, DEFAULT_WINDOW ) );
+        _window = new Semaphore( nWindow );
+        // One thread per in-flight identification, waiting for the client while it retries or times out
+        _submitters = WorkerThreads.newFixedThreadPool( "identityimport-identify-", nWindow );
+    }
+
+    /**
+     * Get the unique instance of the service
+     *
+     * @return the instance
+     */
+    public static synchronized BulkIdentityIdentifyService instance( )
+    {
+        if ( _instance == null )
+        {
+            _instance = new BulkIdentityIdentifyService( );
+        }
+        return _instance;
+    }
+
+    /**
+     * @return the number of candidate identities that should be loaded and submitted at once
+     */
+    public int getChunkSize( )
+    {
+        return _nChunkSize;
+    }
+
+    /**
+     * Submit a chunk of candidate identities to identify. This method blocks while the in-flight window is full.
+     *
+     * @param listCandidateIdentities
+     *            the candidate identities, with their attributes loaded
+     * @param mapping
+     *            the mapping, with an entry for every candidate identity
+     * @param requestAuthor
+     *            the author of the requests
+     * @return the pending results, in the order of the given identities
+     */
+    public List<Future<IdentifyResult>> submit( final List<CandidateIdentity> listCandidateIdentities, final IdentifyMapping mapping,
+            final RequestAuthor requestAuthor )
+    {
+        prefetchShared( listCandidateIdentities, mapping, requestAuthor );
+        final List<Future<IdentifyResult>> listFutures = new ArrayList<>( listCandidateIdentities.size( ) );
+        for ( final CandidateIdentity candidateIdentity : listCandidateIdentities )
+        {
+            final IdentifyMapping.Entry entry = mapping.getEntries( ).get( candidateIdentity.getId( ) );
+            _window.acquireUninterruptibly( );
+            try
+            {
+                listFutures.add( _submitters.submit( ( ) -> {
+                    try
+                    {
+                        return doIdentify( candidateIdentity, entry, requestAuthor );
+                    }
+                    finally
+                    {
+                        _window.release( );
+                    }
+                } ) );
+            }
+            catch( final RuntimeException e )
+            {
+                _window.release( );
+                throw e;
+            }
+        }
+        return listFutures;
+    }
+
+    /**
+     * Wait for the completion of pending results
+     *
+     * @param listFutures
+     *            the pending results
+     * @return the results, in the same order
+     */
+    public static List<IdentifyResult> await( final List<Future<IdentifyResult>> listFutures )
+    {
+        final List<IdentifyResult> listResults = new ArrayList<>( listFutures.size( ) );
+        for ( final Future<IdentifyResult> future : listFutures )
+        {
+            try
+            {
+                listResults.add( future.get( ) );
+            }
+            catch( final InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+                throw new IllegalStateException( "Interrupted while waiting for identification results", e );
+            }
+            catch( final ExecutionException e )
+            {
+                // doIdentify never throws, this should not happen
+                throw new IllegalStateException( "Unexpected error during identification", e.getCause( ) );
+            }
+        }
+        return listResults;
+    }
+
+    /**
+     * Read into the lookup cache the identities only checked, without update, for several candidate identities of a chunk with the same client code
+     */
+    private static void prefetchShared( final List<CandidateIdentity> listCandidateIdentities, final IdentifyMapping mapping,
+            final RequestAuthor requestAuthor )
+    {
+        final Map<String, Set<String>> mapSeen = new HashMap<>( );
+        final Map<String, Set<String>> mapShared = new HashMap<>( );
+        for ( final CandidateIdentity candidateIdentity : listCandidateIdentities )
+        {
+            final IdentifyMapping.Entry entry = mapping.getEntries( ).get( candidateIdentity.getId( ) );
+            if ( entry != null && entry.getOverriddenKeys( ).isEmpty( )
+                    && !mapSeen.computeIfAbsent( candidateIdentity.getClientCode( ), strClientCode -> new HashSet<>( ) ).add( entry.getCustomerId( ) ) )
+            {
+                mapShared.computeIfAbsent( candidateIdentity.getClientCode( ), strClientCode -> new HashSet<>( ) ).add( entry.getCustomerId( ) );
+            }
+        }
+        final ResilientIdentityStoreClient client = ResilientIdentityStoreClient.instance( );
+        mapShared.forEach( ( strClientCode, setCustomerIds ) -> client.prefetchIdentities( setCustomerIds, strClientCode, requestAuthor ) );
+    }
+
+    private IdentifyResult doIdentify( final CandidateIdentity candidateIdentity, final IdentifyMapping.Entry entry, final RequestAuthor requestAuthor )
+    {
+        final ResilientIdentityStoreClient client = ResilientIdentityStoreClient.instance( );
+        String strHeader = HEADER_GET;
+        try
+        {
+            final List<AttributeDto> listOverrides = buildOverrideAttributes( candidateIdentity, entry );
+            // The cache is only good enough to check that the identity exists, an update needs the current last update date
+            final IdentitySearchResponse searchResponse = listOverrides.isEmpty( )
+                    ? client.lookupIdentity( entry.getCustomerId( ), candidateIdentity.getClientCode( ), requestAuthor )
+                    : client.getIdentity( entry.getCustomerId( ), candidateIdentity.getClientCode( ), requestAuthor );
+            if ( listOverrides.isEmpty( ) || searchResponse.getStatus( ).getType( ) != ResponseStatusType.OK || searchResponse.getIdentities( ) == null
+                    || searchResponse.getIdentities( ).isEmpty( ) )
+            {
+                return new IdentifyResult( candidateIdentity, entry, strHeader, searchResponse.getStatus( ), null );
+            }
+
+            strHeader = HEADER_UPDATE;
+            final IdentityDto identity = new IdentityDto( );
+            identity.setCustomerId( entry.getCustomerId( ) );
+            identity.setLastUpdateDate( searchResponse.getIdentities( ).get( 0 ).getLastUpdateDate( ) );
+            identity.setAttributes( listOverrides );
+            final IdentityChangeRequest updateRequest = new IdentityChangeRequest( );
+            updateRequest.setIdentity( identity );
+            final IdentityChangeResponse response = client.updateIdentity( entry.getCustomerId( ), updateRequest, candidateIdentity.getClientCode( ),
+                    requestAuthor );
+            return new IdentifyResult( candidateIdentity, entry, strHeader, response.getStatus( ), null );
+        }
+        catch( final Exception e )
+        {
+            AppLogService.error( "A problem occurred during identification, candidate identity not identified (id : " + candidateIdentity.getId( ) + ")", e );
+            return new IdentifyResult( candidateIdentity, entry, strHeader, null, e );
+        }
+    }
+
+    /**
+     * Build the attributes of a candidate identity overriding those of the identity, the keys of the mapping without a candidate attribute are ignored
+     */
+    private static List<AttributeDto> buildOverrideAttributes( final CandidateIdentity candidateIdentity, final IdentifyMapping.Entry entry )
+    {
+        final List<AttributeDto> listOverrides = new ArrayList<>( entry.getOverriddenKeys( ).size( ) );
+        if ( entry.getOverriddenKeys( ).isEmpty( ) )
+        {
+            return listOverrides;
+        }
+        for ( final AttributeDto attributeDto : IdentityMapper.mapToIdentity( candidateIdentity ).getAttributes( ) )
+        {
+            if ( entry.getOverriddenKeys( ).contains( attributeDto.getKey( ) ) )
+            {
+                listOverrides.add( attributeDto );
+            }
+        }
+        return listOverrides;
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.identify;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Mapping of candidate identities to the customer ids chosen for them, parsed from a text with one mapping per line:<br>
+ * <code>candidate identity id;customer id[;attribute keys to override, separated by commas]</code><br>
+ * Blank lines and lines starting with <code>#</code> are ignored. The lines that cannot be parsed, and the candidate identities mapped more than once,
+ * are kept as rejected lines for the report of the identification.
+ */
+public final class IdentifyMapping
+{
+    private static final char COMMENT = '#';
+    private static final String FIELD_SEPARATOR = ";";
+    private static final String KEY_SEPARATOR = ",";
+
+    private final Map<Integer, Entry> _mapEntries = new LinkedHashMap<>( );
+    private final List<String> _listRejectedLines = new ArrayList<>( );
+
+    private IdentifyMapping( )
+    {
+    }
+
+    /**
+     * Parse a mapping
+     *
+     * @param strMapping
+     *            the mapping text, may be null
+     * @return the mapping
+     */
+    public static IdentifyMapping parse( final String strMapping )
+    {
+        final IdentifyMapping mapping = new IdentifyMapping( );
+        if ( strMapping == null )
+        {
+            return mapping;
+        }
+        final String [ ] lines = strMapping.split( "\\r?\\n" );
+        for ( int i = 0; i < lines.length; i++ )
+        {
+            final String strLine = lines [i].trim( );
+            if ( strLine.isEmpty( ) || strLine.charAt( 0 ) == COMMENT )
+            {
+                continue;
+            }
+            final String [ ] fields = strLine.split( FIELD_SEPARATOR, -1 );
+            final int nIdCandidateIdentity = NumberUtils.toInt( fields [0].trim( ), -1 );
+            final String strCustomerId = fields.length > 1 ? fields [1].trim( ) : StringUtils.EMPTY;
+            if ( fields.length > 3 || nIdCandidateIdentity <= 0 || strCustomerId.isEmpty( ) )
+            {
+                mapping._listRejectedLines.add( "Line " + ( i + 1 ) + " : invalid mapping " + strLine );
+                continue;
+            }
+            if ( mapping._mapEntries.containsKey( nIdCandidateIdentity ) )
+            {
+                mapping._listRejectedLines.add( "Line " + ( i + 1 ) + " : candidate identity " + nIdCandidateIdentity + " already mapped" );
+                continue;
+            }
+            final Set<String> setOverriddenKeys = new LinkedHashSet<>( );
+            if ( fields.length > 2 )
+            {
+                for ( final String strKey : fields [2].split( KEY_SEPARATOR ) )
+                {
+                    if ( StringUtils.isNotBlank( strKey ) )
+                    {
+                        setOverriddenKeys.add( strKey.trim( ) );
+                    }
+                }
+            }
+            mapping._mapEntries.put( nIdCandidateIdentity, new Entry( nIdCandidateIdentity, strCustomerId, setOverriddenKeys ) );
+        }
+        return mapping;
+    }
+
+    /**
+     * @return the entries of the mapping by candidate identity id, in the order of the text
+     */
+    public Map<Integer, Entry> getEntries( )
+    {
+        return Collections.unmodifiableMap( _mapEntries );
+    }
+
+    /**
+     * @return the messages of the rejected lines
+     */
+    public List<String> getRejectedLines( )
+    {
+        return Collections.unmodifiableList( _listRejectedLines );
+    }
+
+    /**
+     * @return true if the mapping has neither entry nor rejected line
+     */
+    public boolean isEmpty( )
+    {
+        return _mapEntries.isEmpty( ) && _listRejectedLines.isEmpty( );
+    }
+
+    /**
+     * A candidate identity mapped to a customer id
+     */
+    public static final class Entry
+    {
+        private final int _nIdCandidateIdentity;
+        private final String _strCustomerId;
+        private final Set<String> _setOverriddenKeys;
+
+        /**
+         * Constructor
+         *
+         * @param nIdCandidateIdentity
+         *            the candidate identity id
+         * @param strCustomerId
+         *            the customer id chosen for the candidate identity
+         * @param setOverriddenKeys
+         *            the keys of the attributes of the candidate identity overriding those of the identity
+         */
+        public Entry( final int nIdCandidateIdentity, final String strCustomerId, final Set<String> setOverriddenKeys )
+        {
+            _nIdCandidateIdentity = nIdCandidateIdentity;
+            _strCustomerId = strCustomerId;
+            _setOverriddenKeys = setOverriddenKeys;
+        }
+
+        /**
+         * @return the candidate identity id
+         */
+        public int getIdCandidateIdentity( )
+        {
+            return _nIdCandidateIdentity;
+        }
+
+        /**
+         * @return the customer id chosen for the candidate identity
+         */
+        public String getCustomerId( )
+        {
+            return _strCustomerId;
+        }
+
+        /**
+         * @return the keys of the attributes of the candidate identity overriding those of the identity, empty if the identity is not updated
+         */
+        public Set<String> getOverriddenKeys( )
+        {
+            return _setOverriddenKeys;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.identify;
+
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentity;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatus;
+
+/**
+ * Outcome of the identification of one candidate identity by the {@link BulkIdentityIdentifyService}
+ */
+public final class IdentifyResult
+{
+    private final CandidateIdentity _candidateIdentity;
+    private final IdentifyMapping.Entry _entry;
+    private final String _strHeader;
+    private final ResponseStatus _status;
+    private final Exception _exception;
+
+    /**
+     * Constructor
+     *
+     * @param candidateIdentity
+     *            the candidate identity
+     * @param entry
+     *            the mapping entry of the candidate identity
+     * @param strHeader
+     *            the first line of the history comment, naming the identity store calls made
+     * @param status
+     *            the status of the last identity store response, null if the call failed
+     * @param exception
+     *            the error raised by the call, null if the call succeeded
+     */
+    public IdentifyResult( final CandidateIdentity candidateIdentity, final IdentifyMapping.Entry entry, final String strHeader, final ResponseStatus status,
+            final Exception exception )
+    {
+        _candidateIdentity = candidateIdentity;
+        _entry = entry;
+        _strHeader = strHeader;
+        _status = status;
+        _exception = exception;
+    }
+
+    /**
+     * @return the candidate identity
+     */
+    public CandidateIdentity getCandidateIdentity( )
+    {
+        return _candidateIdentity;
+    }
+
+    /**
+     * @return the mapping entry of the candidate identity
+     */
+    public IdentifyMapping.Entry getEntry( )
+    {
+        return _entry;
+    }
+
+    /**
+     * @return the first line of the history comment
+     */
+    public String getHeader( )
+    {
+        return _strHeader;
+    }
+
+    /**
+     * @return the status of the last identity store response, null if the call failed
+     */
+    public ResponseStatus getStatus( )
+    {
+        return _status;
+    }
+
+    /**
+     * @return the error raised by the call, null if the call succeeded
+     */
+    public Exception getException( )
+    {
+        return _exception;
+    }
+}
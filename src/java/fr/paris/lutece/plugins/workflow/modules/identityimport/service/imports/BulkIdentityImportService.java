@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.imports;
+
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentity;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.IdentityDto;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.RequestAuthor;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.crud.IdentityChangeRequest;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.crud.IdentityChangeResponse;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.mapper.IdentityMapper;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.client.ResilientIdentityStoreClient;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.executor.IdentityTaskExecutor;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.executor.WorkerThreads;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.validation.IdentityValidationService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.validation.ValidationError;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * Pipelined importer pushing candidate identities to the identity store.<br>
+ * Identities are submitted by chunks and at most <code>window</code> requests are in flight at the same time, so that a caller can persist the results
+ * of a chunk while the next one is being sent. The requests go through the {@link ResilientIdentityStoreClient}, which runs them on the
+ * {@link IdentityTaskExecutor} in the lane of their client code. The identities rejected by the {@link IdentityValidationService} are not sent.
+ */
+public final class BulkIdentityImportService
+{
+    // Properties
+    private static final String PROPERTY_CHUNK_SIZE = "identityimport_config.import.chunk.size";
+    private static final String PROPERTY_WINDOW = "identityimport_config.import.window";
+
+    // Defaults
+    private static final int DEFAULT_CHUNK_SIZE = 200;
+    private static final int DEFAULT_WINDOW = 8;
+
+    private static BulkIdentityImportService _instance;
+
+    private final int _nChunkSize;
+    private final Semaphore _window;
+    private final ExecutorService _submitters;
+
+    private BulkIdentityImportService( )
+    {
+        _nChunkSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_CHUNK_SIZE, DEFAULT_CHUNK_SIZE ) );
+        final int nWindow = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_WINDOW, DEFAULT_WINDOW ) );
+        _window = new Semaphore( nWindow );
+        // One thread per in-flight request, waiting for the client while it retries or times out
+        _submitters = WorkerThreads.newFixedThreadPool( "identityimport-bulk-", nWindow );
+    }
+
+    /**
+     * Get the unique instance of the service
+     *
+     * @return the instance
+     */
+    public static synchronized BulkIdentityImportService instance( )
+    {
+        if ( _instance == null )
+        {
+            _instance = new BulkIdentityImportService( );
+        }
+        return _instance;
+    }
+
+    /**
+     * @return the number of candidate identities that should be loaded and submitted at once
+     */
+    public int getChunkSize( )
+    {
+        return _nChunkSize;
+    }
+
+    /**
+     * Submit a chunk of candidate identities to the identity store. This method blocks while the in-flight window is full.
+     *
+     * @param listCandidateIdentities
+     *            the candidate identities, with their attributes loaded
+     * @param requestAuthor
+     *            the author of the requests
+     * @return the pending results, in the order of the given identities
+     */
+    public List<Future<ImportResult>> submit( final List<CandidateIdentity> listCandidateIdentities, final RequestAuthor requestAuthor )
+    {
+        return submit( listCandidateIdentities, Collections.emptyMap( ), requestAuthor );
+    }
+
+    /**
+     * Submit a chunk of candidate identities to the identity store, reusing the identities the caller has already mapped. This method blocks while the
+     * in-flight window is full.
+     *
+     * @param listCandidateIdentities
+     *            the candidate identities, with their attributes loaded
+     * @param mapIdentities
+     *            the identities already mapped from some of the candidate identities, by candidate identity id
+     * @param requestAuthor
+     *            the author of the requests
+     * @return the pending results, in the order of the given identities
+     */
+    public List<Future<ImportResult>> submit( final List<CandidateIdentity> listCandidateIdentities, final Map<Integer, IdentityDto> mapIdentities,
+            final RequestAuthor requestAuthor )
+    {
+        final List<Future<ImportResult>> listFutures = new ArrayList<>( listCandidateIdentities.size( ) );
+        for ( final CandidateIdentity candidateIdentity : listCandidateIdentities )
+        {
+            _window.acquireUninterruptibly( );
+            try
+            {
+                listFutures.add( _submitters.submit( ( ) -> {
+                    try
+                    {
+                        return doImport( candidateIdentity, mapIdentities.get( candidateIdentity.getId( ) ), requestAuthor );
+                    }
+                    finally
+                    {
+                        _window.release( );
+                    }
+                } ) );
+            }
+            catch( final RuntimeException e )
+            {
+                _window.release( );
+                throw e;
+            }
+        }
+        return listFutures;
+    }
+
+    /**
+     * Wait for the completion of pending results
+     *
+     * @param listFutures
+     *            the pending results
+     * @return the results, in the same order
+     */
+    public static List<ImportResult> await( final List<Future<ImportResult>> listFutures )
+    {
+        final List<ImportResult> listResults = new ArrayList<>( listFutures.size( ) );
+        for ( final Future<ImportResult> future : listFutures )
+        {
+            try
+            {
+                listResults.add( future.get( ) );
+            }
+            catch( final InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+                throw new IllegalStateException( "Interrupted while waiting for identity import results", e );
+            }
+            catch( final ExecutionException e )
+            {
+                // doImport never throws, this should not happen
+                throw new IllegalStateException( "Unexpected error during identity import", e.getCause( ) );
+            }
+        }
+        return listResults;
+    }
+
+    private ImportResult doImport( final CandidateIdentity candidateIdentity, final IdentityDto mappedIdentity, final RequestAuthor requestAuthor )
+    {
+        String strContentHash = null;
+        try
+        {
+            final IdentityDto identity = mappedIdentity != null ? mappedIdentity : IdentityMapper.mapToIdentity( candidateIdentity );
+            strContentHash = IdentityMapper.contentHash( identity );
+            final List<ValidationError> listValidationErrors = IdentityValidationService.instance( ).validate( identity );
+            if ( !listValidationErrors.isEmpty( ) )
+            {
+                // Rejected locally, the identity store would reject it too
+                return new ImportResult( candidateIdentity, strContentHash, null, null, listValidationErrors );
+            }
+            final IdentityChangeRequest identityChangeRequest = new IdentityChangeRequest( );
+            identityChangeRequest.setIdentity( identity );
+            final IdentityChangeResponse response = ResilientIdentityStoreClient.instance( ).importIdentity( identityChangeRequest,
+                    candidateIdentity.getClientCode( ), requestAuthor );
+            return new ImportResult( candidateIdentity, strContentHash, response, null );
+        }
+        catch( final Exception e )
+        {
+            AppLogService.error( "A problem occurred during import, candidate identity not imported (id : " + candidateIdentity.getId( ) + ")", e );
+            return new ImportResult( candidateIdentity, strContentHash, null, e );
+        }
+    }
+}
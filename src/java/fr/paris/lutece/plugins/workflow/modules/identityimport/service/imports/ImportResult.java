@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.imports;
+
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentity;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.crud.IdentityChangeResponse;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.validation.ValidationError;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Outcome of the import of one candidate identity by the {@link BulkIdentityImportService}
+ */
+public final class ImportResult
+{
+    private final CandidateIdentity _candidateIdentity;
+    private final String _strContentHash;
+    private final IdentityChangeResponse _response;
+    private final Exception _exception;
+    private final List<ValidationError> _listValidationErrors;
+
+    /**
+     * Constructor
+     *
+     * @param candidateIdentity
+     *            the imported candidate identity
+     * @param strContentHash
+     *            the content hash of the identity sent to the identity store
+     * @param response
+     *            the identity store response, null if the call failed
+     * @param exception
+     *            the error raised by the call, null if the call succeeded
+     */
+    public ImportResult( final CandidateIdentity candidateIdentity, final String strContentHash, final IdentityChangeResponse response,
+            final Exception exception )
+    {
+        this( candidateIdentity, strContentHash, response, exception, Collections.emptyList( ) );
+    }
+
+    /**
+     * Constructor
+     *
+     * @param candidateIdentity
+     *            the imported candidate identity
+     * @param strContentHash
+     *            the content hash of the identity sent to the identity store
+     * @param response
+     *            the identity store response, null if the call failed or was not made
+     * @param exception
+     *            the error raised by the call, null if the call succeeded or was not made
+     * @param listValidationErrors
+     *            the errors of the local validation, the identity store is not called when there are some
+     */
+    public ImportResult( final CandidateIdentity candidateIdentity, final String strContentHash, final IdentityChangeResponse response,
+            final Exception exception, final List<ValidationError> listValidationErrors )
+    {
+        _candidateIdentity = candidateIdentity;
+        _strContentHash = strContentHash;
+        _response = response;
+        _exception = exception;
+        _listValidationErrors = listValidationErrors;
+    }
+
+    /**
+     * @return the imported candidate identity
+     */
+    public CandidateIdentity getCandidateIdentity( )
+    {
+        return _candidateIdentity;
+    }
+
+    /**
+     * @return the content hash of the identity sent to the identity store, null if it could not be mapped
+     */
+    public String getContentHash( )
+    {
+        return _strContentHash;
+    }
+
+    /**
+     * @return the identity store response, null if the call failed
+     */
+    public IdentityChangeResponse getResponse( )
+    {
+        return _response;
+    }
+
+    /**
+     * @return the error raised by the call, null if the call succeeded
+     */
+    public Exception getException( )
+    {
+        return _exception;
+    }
+
+    /**
+     * @return the errors of the local validation, empty if the identity is valid
+     */
+    public List<ValidationError> getValidationErrors( )
+    {
+        return _listValidationErrors;
+    }
+}
@@ -0,0 +1,400 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.loadtest;
+
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentity;
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityAttribute;
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityAttributeHome;
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHome;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.shard.ImportShardHome;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.archive.BatchArchiveService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.progress.BatchProgress;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.progress.BatchProgressService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.shard.ImportShardService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.task.IdentityImportTaskConfig;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.task.batchimport.BatchIdentityImportTask;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateIdentityLoaderHome;
+import fr.paris.lutece.plugins.workflowcore.business.action.Action;
+import fr.paris.lutece.plugins.workflowcore.business.resource.ResourceHistory;
+import fr.paris.lutece.plugins.workflowcore.service.action.ActionService;
+import fr.paris.lutece.plugins.workflowcore.service.action.IActionService;
+import fr.paris.lutece.plugins.workflowcore.service.config.ITaskConfigService;
+import fr.paris.lutece.plugins.workflowcore.service.resource.IResourceHistoryService;
+import fr.paris.lutece.plugins.workflowcore.service.resource.ResourceHistoryService;
+import fr.paris.lutece.plugins.workflowcore.service.task.ITask;
+import fr.paris.lutece.plugins.workflowcore.service.task.ITaskService;
+import fr.paris.lutece.plugins.workflowcore.service.task.TaskService;
+import fr.paris.lutece.portal.service.i18n.I18nService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.portal.service.workflow.WorkflowService;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Load driver pushing synthetic candidate identities through a real batch import task, to measure the end to end throughput of the import, usually
+ * against the {@link MockIdentityStore} of the <code>identityimport-mock</code> Spring profile.<br>
+ * A run adds the candidate identities to an existing batch without candidate identity, in the initial state of the workflow of the task, then runs
+ * the task on the batch as its workflow action would: the task imports every candidate identity of the batch, so a batch holding real candidate
+ * identities is refused. The candidate identities are generated from a fixed seed, so that two runs send the same identities. Only the time spent by
+ * the task is measured, not the generation.<br>
+ * The load driver only runs when the identity services are the mocks of the <code>identityimport-mock</code> profile, so that a real identity store
+ * never receives the synthetic identities. The generated candidate identities are deleted, with their workflow resources, at the end of the run.
+ */
+public final class LoadDriverService
+{
+    // Properties
+    private static final String PROPERTY_ENABLED = "identityimport_config.loaddriver.enabled";
+    private static final String PROPERTY_SEED = "identityimport_config.loaddriver.seed";
+    private static final String PROPERTY_CLIENT_CODE = "identityimport_config.loaddriver.client.code";
+    private static final String PROPERTY_BATCH_RESOURCE_TYPE = "identityimport_config.loaddriver.batch.resource.type";
+    private static final String PROPERTY_CANDIDATE_RESOURCE_TYPE = "identityimport_config.candidate.resource.type";
+
+    // Defaults
+    private static final long DEFAULT_SEED = 42L;
+    private static final String DEFAULT_CLIENT_CODE = "TEST";
+    private static final String DEFAULT_BATCH_RESOURCE_TYPE = "IDENTITYIMPORT_BATCH";
+    private static final String DEFAULT_CANDIDATE_RESOURCE_TYPE = "IDENTITYIMPORT_CANDIDATE_IDENTITY";
+
+    // Constants
+    private static final String USER_ACCESS_CODE = "loaddriver";
+    private static final String BEAN_IDENTITY_SERVICE = "identityService.rest.httpAccess.v3";
+    private static final String BEAN_IDENTITY_SERVICE_EXTENDED = "identityServiceExtended.rest.httpAccess.v3";
+    private static final long SHARD_POLL_INTERVAL = 1000L;
+    private static final long SHARD_MAX_WAIT = TimeUnit.HOURS.toMillis( 1 );
+    private static final String [ ] FAMILY_NAMES = {
+            "Martin", "Bernard", "Dubois", "Thomas", "Robert", "Richard", "Petit", "Durand", "Leroy", "Moreau"
+    };
+    private static final String [ ] FIRST_NAMES = {
+            "Marie", "Jean", "Pierre", "Michel", "Anne", "Claire", "Louis", "Julie", "Paul", "Sophie"
+    };
+
+    private static LoadDriverService _instance;
+
+    private final ITaskService _taskService = SpringContextService.getBean( TaskService.BEAN_SERVICE );
+    private final ITaskConfigService _taskConfigService = SpringContextService.getBean( "workflow-identityimport.identityImportTaskConfigService" );
+    private final IResourceHistoryService _resourceHistoryService = SpringContextService.getBean( ResourceHistoryService.BEAN_SERVICE );
+    private final IActionService _actionService = SpringContextService.getBean( ActionService.BEAN_SERVICE );
+    private final AtomicBoolean _bRunning = new AtomicBoolean( );
+    private volatile String _strLastReport;
+
+    private LoadDriverService( )
+    {
+    }
+
+    /**
+     * Get the unique instance of the service
+     *
+     * @return the instance
+     */
+    public static synchronized LoadDriverService instance( )
+    {
+        if ( _instance == null )
+        {
+            _instance = new LoadDriverService( );
+        }
+        return _instance;
+    }
+
+    /**
+     * @return true if the load driver can be started from the back office: it is enabled and the identity services are mocked
+     */
+    public boolean isEnabled( )
+    {
+        return AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLED, false ) && isIdentityStoreMocked( );
+    }
+
+    /**
+     * @return true if the identity services used by the client are those of the <code>identityimport-mock</code> profile
+     */
+    private static boolean isIdentityStoreMocked( )
+    {
+        return SpringContextService.getBean( BEAN_IDENTITY_SERVICE ) instanceof MockIdentityService
+                && SpringContextService.getBean( BEAN_IDENTITY_SERVICE_EXTENDED ) instanceof MockIdentityServiceExtended;
+    }
+
+    /**
+     * @return true if a run is in progress
+     */
+    public boolean isRunning( )
+    {
+        return _bRunning.get( );
+    }
+
+    /**
+     * @return the report of the last run, null if none has ended
+     */
+    public String getLastReport( )
+    {
+        return _strLastReport;
+    }
+
+    /**
+     * Start a run in the background, its progress is tracked with the progress of the batch
+     *
+     * @param nIdTask
+     *            the id of a batch import task
+     * @param nIdBatch
+     *            the id of the batch receiving the candidate identities, it must have no candidate identity
+     * @param nCount
+     *            the number of candidate identities to generate
+     * @return false if the load driver is disabled or already running, or if the batch already has candidate identities
+     */
+    public boolean start( final int nIdTask, final int nIdBatch, final int nCount )
+    {
+        if ( !isEnabled( ) || nCount <= 0 || CandidateIdentityLoaderHome.countByBatch( nIdBatch ) > 0 || !_bRunning.compareAndSet( false, true ) )
+        {
+            if ( AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLED, false ) && !isIdentityStoreMocked( ) )
+            {
+                AppLogService.error( "Load driver refused : the identity services are not the mocks of the identityimport-mock profile" );
+            }
+            return false;
+        }
+        final Thread thread = new Thread( ( ) -> {
+            try
+            {
+                _strLastReport = run( nIdTask, nIdBatch, nCount );
+            }
+            catch( final RuntimeException e )
+            {
+                AppLogService.error( "Load driver run failed", e );
+                _strLastReport = "Load driver run failed : " + e.getMessage( );
+            }
+            finally
+            {
+                _bRunning.set( false );
+            }
+        }, "identityimport-loaddriver" );
+        thread.setDaemon( true );
+        thread.start( );
+        return true;
+    }
+
+    private String run( final int nIdTask, final int nIdBatch, final int nCount )
+    {
+        if ( !isIdentityStoreMocked( ) )
+        {
+            return "The load driver only runs against the mock identity services of the identityimport-mock profile";
+        }
+        final ITask task = _taskService.findByPrimaryKey( nIdTask, I18nService.getDefaultLocale( ) );
+        final IdentityImportTaskConfig config = _taskConfigService.findByPrimaryKey( nIdTask );
+        if ( !( task instanceof BatchIdentityImportTask ) || config == null )
+        {
+            return "Task " + nIdTask + " is not a configured batch import task";
+        }
+        if ( CandidateIdentityLoaderHome.countByBatch( nIdBatch ) > 0 )
+        {
+            return "Batch " + nIdBatch + " already has candidate identities, the load driver only runs on a batch without candidate identity";
+        }
+        // The task only carries the id of its action
+        final Action action = _actionService.findByPrimaryKey( task.getAction( ).getId( ) );
+        if ( action == null )
+        {
+            return "The action of task " + nIdTask + " does not exist";
+        }
+
+        // Generation, not measured
+        final long lGeneration = System.currentTimeMillis( );
+        final String strCandidateResourceType = AppPropertiesService.getProperty( PROPERTY_CANDIDATE_RESOURCE_TYPE, DEFAULT_CANDIDATE_RESOURCE_TYPE );
+        final String strClientCode = AppPropertiesService.getProperty( PROPERTY_CLIENT_CODE, DEFAULT_CLIENT_CODE );
+        final Random random = new Random( AppPropertiesService.getPropertyLong( PROPERTY_SEED, DEFAULT_SEED ) );
+        final List<Integer> listGeneratedIds = new ArrayList<>( nCount );
+        final String strReport;
+        try
+        {
+            strReport = importGenerated( task, action, config, nIdBatch, nCount, random, strClientCode, strCandidateResourceType, lGeneration,
+                    listGeneratedIds );
+        }
+        catch( final RuntimeException e )
+        {
+            removeGenerated( nIdBatch, listGeneratedIds );
+            throw e;
+        }
+        return strReport + removeGenerated( nIdBatch, listGeneratedIds );
+    }
+
+    private String importGenerated( final ITask task, final Action action, final IdentityImportTaskConfig config, final int nIdBatch, final int nCount,
+            final Random random, final String strClientCode, final String strCandidateResourceType, final long lGeneration,
+            final List<Integer> listGeneratedIds )
+    {
+        final int nIdTask = task.getId( );
+        for ( int i = 0; i < nCount; i++ )
+        {
+            final CandidateIdentity candidateIdentity = generate( random, nIdBatch, strClientCode );
+            CandidateIdentityHome.create( candidateIdentity );
+            listGeneratedIds.add( candidateIdentity.getId( ) );
+            for ( final CandidateIdentityAttribute attribute : candidateIdentity.getAttributes( ) )
+            {
+                attribute.setIdIdentity( candidateIdentity.getId( ) );
+                CandidateIdentityAttributeHome.create( attribute );
+            }
+            // Creates the resource workflow of the candidate identity in the initial state
+            WorkflowService.getInstance( ).getState( candidateIdentity.getId( ), strCandidateResourceType, config.getIdWorkflow( ), nIdBatch );
+        }
+        final long lGenerationDuration = System.currentTimeMillis( ) - lGeneration;
+
+        // The task runs on a history of the batch, as if its action had been triggered
+        final ResourceHistory resourceHistory = new ResourceHistory( );
+        resourceHistory.setIdResource( nIdBatch );
+        resourceHistory.setResourceType( AppPropertiesService.getProperty( PROPERTY_BATCH_RESOURCE_TYPE, DEFAULT_BATCH_RESOURCE_TYPE ) );
+        resourceHistory.setWorkflow( action.getWorkflow( ) );
+        resourceHistory.setAction( action );
+        resourceHistory.setCreationDate( new Timestamp( System.currentTimeMillis( ) ) );
+        resourceHistory.setUserAccessCode( USER_ACCESS_CODE );
+        _resourceHistoryService.create( resourceHistory );
+
+        final BatchProgress progressBefore = BatchProgressService.instance( ).find( nIdBatch );
+        final long lProcessedBefore = progressBefore != null ? progressBefore.getProcessed( ) : 0;
+        final long lStart = System.nanoTime( );
+        task.processTaskWithResult( resourceHistory.getId( ), null, I18nService.getDefaultLocale( ), null );
+        awaitShards( nIdBatch );
+        final long lDuration = Math.max( 1, ( System.nanoTime( ) - lStart ) / 1_000_000 );
+
+        final BatchProgress progress = BatchProgressService.instance( ).find( nIdBatch );
+        final StringBuilder report = new StringBuilder( );
+        report.append( nCount ).append( " candidate identities generated in batch " ).append( nIdBatch ).append( " in " ).append( lGenerationDuration )
+                .append( " ms, imported by task " ).append( nIdTask ).append( " in " ).append( lDuration ).append( " ms : " )
+                .append( String.format( "%.1f", nCount * 1000.0 / lDuration ) ).append( " identities / s" );
+        if ( progress != null )
+        {
+            report.append( ". Processed " ).append( progress.getProcessed( ) - lProcessedBefore ).append( ", batch totals : success " )
+                    .append( progress.getSuccess( ) ).append( ", incomplete success " ).append( progress.getIncompleteSuccess( ) ).append( ", failed " )
+                    .append( progress.getFailed( ) ).append( ", parked or queued " ).append( progress.getDeferred( ) );
+        }
+        AppLogService.info( "Load driver : " + report );
+        return report.toString( );
+    }
+
+    /**
+     * Wait for the shards of the batch imported by the other nodes, so that the run measures the whole import and its candidate identities are not
+     * deleted while they are imported
+     *
+     * @param nIdBatch
+     *            the batch id
+     */
+    private static void awaitShards( final int nIdBatch )
+    {
+        if ( !ImportShardService.instance( ).isEnabled( ) )
+        {
+            return;
+        }
+        final long lDeadline = System.currentTimeMillis( ) + SHARD_MAX_WAIT;
+        while ( ImportShardHome.countUnfinishedByBatch( nIdBatch ) > 0 )
+        {
+            if ( System.currentTimeMillis( ) > lDeadline )
+            {
+                throw new IllegalStateException( "Shards of batch " + nIdBatch + " still unfinished after " + SHARD_MAX_WAIT + " ms" );
+            }
+            try
+            {
+                TimeUnit.MILLISECONDS.sleep( SHARD_POLL_INTERVAL );
+            }
+            catch( final InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+                throw new IllegalStateException( "Interrupted while waiting for the shards of batch " + nIdBatch, e );
+            }
+        }
+    }
+
+    /**
+     * Delete the candidate identities generated by a run, unless some of them may still be imported by other nodes
+     *
+     * @param nIdBatch
+     *            the batch id
+     * @param listGeneratedIds
+     *            the ids of the generated candidate identities
+     * @return the end of the report
+     */
+    private static String removeGenerated( final int nIdBatch, final List<Integer> listGeneratedIds )
+    {
+        final String strReport;
+        if ( ImportShardService.instance( ).isEnabled( ) && ImportShardHome.countUnfinishedByBatch( nIdBatch ) > 0 )
+        {
+            strReport = ". The " + listGeneratedIds.size( ) + " generated candidate identities are not deleted, some shards of the batch are still imported";
+            AppLogService.error( "Load driver : batch " + nIdBatch + strReport );
+        }
+        else
+        {
+            BatchArchiveService.instance( ).removeCandidates( listGeneratedIds );
+            strReport = ". The " + listGeneratedIds.size( ) + " generated candidate identities are deleted";
+            AppLogService.info( "Load driver : batch " + nIdBatch + strReport );
+        }
+        return strReport;
+    }
+
+    /**
+     * Generate a candidate identity with valid attributes
+     *
+     * @param random
+     *            the generator, seeded so that runs are reproducible
+     * @param nIdBatch
+     *            the batch id
+     * @param strClientCode
+     *            the client code
+     * @return the candidate identity, not saved
+     */
+    static CandidateIdentity generate( final Random random, final int nIdBatch, final String strClientCode )
+    {
+        final CandidateIdentity candidateIdentity = new CandidateIdentity( );
+        candidateIdentity.setIdBatch( nIdBatch );
+        candidateIdentity.setClientCode( strClientCode );
+        final String strFamilyName = FAMILY_NAMES [random.nextInt( FAMILY_NAMES.length )];
+        final String strFirstName = FIRST_NAMES [random.nextInt( FIRST_NAMES.length )];
+        final List<CandidateIdentityAttribute> listAttributes = new ArrayList<>( );
+        listAttributes.add( attribute( "family_name", strFamilyName ) );
+        listAttributes.add( attribute( "first_name", strFirstName ) );
+        listAttributes.add( attribute( "gender", String.valueOf( 1 + random.nextInt( 2 ) ) ) );
+        listAttributes.add( attribute( "birthdate",
+                String.format( "%02d/%02d/%04d", 1 + random.nextInt( 28 ), 1 + random.nextInt( 12 ), 1930 + random.nextInt( 80 ) ) ) );
+        listAttributes.add( attribute( "email",
+                ( strFirstName + "." + strFamilyName + random.nextInt( 1_000_000 ) ).toLowerCase( ) + "@example.com" ) );
+        candidateIdentity.setAttributes( listAttributes );
+        return candidateIdentity;
+    }
+
+    private static CandidateIdentityAttribute attribute( final String strCode, final String strValue )
+    {
+        final CandidateIdentityAttribute attribute = new CandidateIdentityAttribute( );
+        attribute.setCode( strCode );
+        attribute.setValue( strValue );
+        return attribute;
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.loadtest;
+
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.AttributeDto;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.IdentityDto;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatus;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatusType;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.crud.IdentityChangeRequest;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.crud.IdentityChangeResponse;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.search.IdentitySearchResponse;
+import fr.paris.lutece.plugins.identitystore.web.exception.IdentityStoreException;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory stand-in for the identity store, used by the mock identity services of the <code>identityimport-mock</code> Spring profile to load test
+ * the tasks without a live identity store.<br>
+ * Every call waits for a log-normal latency given by its median and its 99th percentile, then fails with an {@link IdentityStoreException} at the
+ * configured error rate. The writes answer a status drawn from a weighted mix, the identities written successfully are kept and read back by
+ * {@link #getIdentity(String)}.
+ */
+public class MockIdentityStore
+{
+    // Properties
+    private static final String PROPERTY_LATENCY_MEDIAN = "identityimport_config.mock.latency.median";
+    private static final String PROPERTY_LATENCY_P99 = "identityimport_config.mock.latency.p99";
+    private static final String PROPERTY_ERROR_RATE = "identityimport_config.mock.error.rate";
+    private static final String PROPERTY_WRITE_STATUSES = "identityimport_config.mock.write.statuses";
+
+    // Defaults
+    private static final int DEFAULT_LATENCY_MEDIAN = 20;
+    private static final int DEFAULT_LATENCY_P99 = 200;
+    private static final String DEFAULT_ERROR_RATE = "0";
+    private static final String DEFAULT_WRITE_STATUSES = "SUCCESS:95,INCOMPLETE_SUCCESS:3,FAILURE:1,CONFLICT:1";
+
+    // 99th percentile of the standard normal distribution
+    private static final double Z_P99 = 2.326;
+
+    private final Map<String, IdentityDto> _mapIdentities = new ConcurrentHashMap<>( );
+    private final double _dLatencyMedian;
+    private final double _dLatencySigma;
+    private final double _dErrorRate;
+    private final Map<ResponseStatusType, Integer> _mapWriteStatuses;
+    private final int _nWriteStatusesWeight;
+
+    // Metrics
+    private final AtomicLong _lCalls = new AtomicLong( );
+    private final AtomicLong _lErrors = new AtomicLong( );
+
+    /**
+     * Constructor, reading the behaviour of the store from the properties
+     */
+    public MockIdentityStore( )
+    {
+        this( AppPropertiesService.getPropertyInt( PROPERTY_LATENCY_MEDIAN, DEFAULT_LATENCY_MEDIAN ),
+                AppPropertiesService.getPropertyInt( PROPERTY_LATENCY_P99, DEFAULT_LATENCY_P99 ),
+                Double.parseDouble( AppPropertiesService.getProperty( PROPERTY_ERROR_RATE, DEFAULT_ERROR_RATE ) ),
+                AppPropertiesService.getProperty( PROPERTY_WRITE_STATUSES, DEFAULT_WRITE_STATUSES ) );
+    }
+
+    /**
+     * Constructor
+     *
+     * @param nLatencyMedian
+     *            the median latency of a call, in ms. No latency if not positive
+     * @param nLatencyP99
+     *            the 99th percentile of the latency of a call, in ms
+     * @param dErrorRate
+     *            the rate of the calls failing with an exception, between 0 and 1
+     * @param strWriteStatuses
+     *            the status types answered to the writes with their weights, as <code>TYPE:weight,TYPE:weight</code>
+     */
+    MockIdentityStore( final int nLatencyMedian, final int nLatencyP99, final double dErrorRate, final String strWriteStatuses )
+    {
+        _dLatencyMedian = Math.max( 0, nLatencyMedian );
+        _dLatencySigma = _dLatencyMedian > 0 && nLatencyP99 > nLatencyMedian ? Math.log( (double) nLatencyP99 / nLatencyMedian ) / Z_P99 : 0;
+        _dErrorRate = dErrorRate;
+        _mapWriteStatuses = parseStatuses( strWriteStatuses );
+        _nWriteStatusesWeight = _mapWriteStatuses.values( ).stream( ).mapToInt( Integer::intValue ).sum( );
+    }
+
+    /**
+     * Import an identity : the identity is created, or updated if it has a customer id
+     *
+     * @param identityChangeRequest
+     *            the request
+     * @return the response
+     * @throws IdentityStoreException
+     *             at the configured error rate
+     */
+    public IdentityChangeResponse importIdentity( final IdentityChangeRequest identityChangeRequest ) throws IdentityStoreException
+    {
+        simulateCall( );
+        final String strCustomerId = identityChangeRequest.getIdentity( ).getCustomerId( );
+        return write( strCustomerId != null ? strCustomerId : UUID.randomUUID( ).toString( ), identityChangeRequest.getIdentity( ) );
+    }
+
+    /**
+     * Create an identity
+     *
+     * @param identityChangeRequest
+     *            the request
+     * @return the response
+     * @throws IdentityStoreException
+     *             at the configured error rate
+     */
+    public IdentityChangeResponse createIdentity( final IdentityChangeRequest identityChangeRequest ) throws IdentityStoreException
+    {
+        simulateCall( );
+        return write( UUID.randomUUID( ).toString( ), identityChangeRequest.getIdentity( ) );
+    }
+
+    /**
+     * Update an identity kept by the store
+     *
+     * @param strCustomerId
+     *            the customer id of the identity
+     * @param identityChangeRequest
+     *            the request
+     * @return the response, NOT_FOUND if the store doesn't have the identity
+     * @throws IdentityStoreException
+     *             at the configured error rate
+     */
+    public IdentityChangeResponse updateIdentity( final String strCustomerId, final IdentityChangeRequest identityChangeRequest )
+            throws IdentityStoreException
+    {
+        simulateCall( );
+        if ( !_mapIdentities.containsKey( strCustomerId ) )
+        {
+            final IdentityChangeResponse response = new IdentityChangeResponse( );
+            response.setStatus( status( ResponseStatusType.NOT_FOUND ) );
+            return response;
+        }
+        return write( strCustomerId, identityChangeRequest.getIdentity( ) );
+    }
+
+    /**
+     * Get an identity kept by the store
+     *
+     * @param strCustomerId
+     *            the customer id of the identity
+     * @return the response, NOT_FOUND if the store doesn't have the identity
+     * @throws IdentityStoreException
+     *             at the configured error rate
+     */
+    public IdentitySearchResponse getIdentity( final String strCustomerId ) throws IdentityStoreException
+    {
+        simulateCall( );
+        final IdentitySearchResponse response = new IdentitySearchResponse( );
+        final IdentityDto identity = strCustomerId != null ? _mapIdentities.get( strCustomerId ) : null;
+        if ( identity == null )
+        {
+            response.setStatus( status( ResponseStatusType.NOT_FOUND ) );
+            return response;
+        }
+        response.setStatus( status( ResponseStatusType.OK ) );
+        response.setIdentities( Collections.singletonList( identity ) );
+        return response;
+    }
+
+    /**
+     * @return the number of identities kept by the store
+     */
+    public int getIdentityCount( )
+    {
+        return _mapIdentities.size( );
+    }
+
+    /**
+     * @return the number of calls received by the store
+     */
+    public long getCallCount( )
+    {
+        return _lCalls.get( );
+    }
+
+    /**
+     * @return the number of calls failed with an exception
+     */
+    public long getErrorCount( )
+    {
+        return _lErrors.get( );
+    }
+
+    /**
+     * Write an identity with a status drawn from the mix, the identity is kept if the status is a success
+     */
+    private IdentityChangeResponse write( final String strCustomerId, final IdentityDto identity )
+    {
+        final ResponseStatusType type = pickStatus( ThreadLocalRandom.current( ).nextDouble( ) );
+        final IdentityChangeResponse response = new IdentityChangeResponse( );
+        response.setStatus( status( type ) );
+        if ( type == ResponseStatusType.SUCCESS || type == ResponseStatusType.INCOMPLETE_SUCCESS )
+        {
+            // Copied, the request DTO belongs to the caller
+            final IdentityDto stored = new IdentityDto( );
+            stored.setCustomerId( strCustomerId );
+            stored.setConnectionId( identity.getConnectionId( ) );
+            stored.setLastUpdateDate( new Timestamp( System.currentTimeMillis( ) ) );
+            _mapIdentities.compute( strCustomerId, ( strKey, previous ) -> {
+                stored.setAttributes( mergeAttributes( previous != null ? previous.getAttributes( ) : null, identity.getAttributes( ) ) );
+                return stored;
+            } );
+            response.setCustomerId( strCustomerId );
+        }
+        return response;
+    }
+
+    private static List<AttributeDto> mergeAttributes( final List<AttributeDto> listPrevious, final List<AttributeDto> listUpdated )
+    {
+        final Map<String, AttributeDto> mapAttributes = new LinkedHashMap<>( );
+        if ( listPrevious != null )
+        {
+            listPrevious.forEach( attribute -> mapAttributes.put( attribute.getKey( ), attribute ) );
+        }
+        if ( listUpdated != null )
+        {
+            listUpdated.forEach( attribute -> mapAttributes.put( attribute.getKey( ), attribute ) );
+        }
+        return new ArrayList<>( mapAttributes.values( ) );
+    }
+
+    private static ResponseStatus status( final ResponseStatusType type )
+    {
+        final ResponseStatus status = new ResponseStatus( );
+        status.setType( type );
+        status.setMessage( "Mock identity store " + type.name( ) );
+        return status;
+    }
+
+    /**
+     * Wait for the latency of a call, then fail at the error rate
+     */
+    private void simulateCall( ) throws IdentityStoreException
+    {
+        _lCalls.incrementAndGet( );
+        final ThreadLocalRandom random = ThreadLocalRandom.current( );
+        try
+        {
+            Thread.sleep( latency( _dLatencyMedian, _dLatencySigma, random.nextGaussian( ) ) );
+        }
+        catch( final InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            throw new IdentityStoreException( "Interrupted while simulating an identity store call", e );
+        }
+        if ( random.nextDouble( ) < _dErrorRate )
+        {
+            _lErrors.incrementAndGet( );
+            // Seen by the client as a failure of the identity store, like a connection reset
+            throw new IdentityStoreException( "Mock identity store error", new IOException( "Simulated transport error" ) );
+        }
+    }
+
+    /**
+     * Compute a log-normal latency
+     *
+     * @param dMedian
+     *            the median latency, in ms
+     * @param dSigma
+     *            the standard deviation of the logarithm of the latency
+     * @param dGaussian
+     *            a sample of the standard normal distribution
+     * @return the latency, in ms
+     */
+    static long latency( final double dMedian, final double dSigma, final double dGaussian )
+    {
+        return dMedian > 0 ? Math.round( dMedian * Math.exp( dSigma * dGaussian ) ) : 0;
+    }
+
+    /**
+     * Pick a write status type from the mix
+     *
+     * @param dUniform
+     *            a sample of the uniform distribution between 0 and 1
+     * @return the status type, SUCCESS if the mix is empty
+     */
+    ResponseStatusType pickStatus( final double dUniform )
+    {
+        double dThreshold = dUniform * _nWriteStatusesWeight;
+        for ( final Map.Entry<ResponseStatusType, Integer> status : _mapWriteStatuses.entrySet( ) )
+        {
+            dThreshold -= status.getValue( );
+            if ( dThreshold < 0 )
+            {
+                return status.getKey( );
+            }
+        }
+        return ResponseStatusType.SUCCESS;
+    }
+
+    /**
+     * Parse a weighted mix of status types, the unknown types and the weights which are not positive are ignored
+     */
+    private static Map<ResponseStatusType, Integer> parseStatuses( final String strStatuses )
+    {
+        final Map<ResponseStatusType, Integer> mapStatuses = new LinkedHashMap<>( );
+        for ( final String strStatus : strStatuses.split( "," ) )
+        {
+            final String [ ] fields = strStatus.trim( ).split( ":" );
+            try
+            {
+                final int nWeight = fields.length > 1 ? Integer.parseInt( fields [1].trim( ) ) : 1;
+                if ( nWeight > 0 )
+                {
+                    mapStatuses.merge( ResponseStatusType.valueOf( fields [0].trim( ) ), nWeight, Integer::sum );
+                }
+            }
+            catch( final IllegalArgumentException e )
+            {
+                // Unknown type or invalid weight, ignored
+            }
+        }
+        return mapStatuses;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.metrics;
+
+import java.util.function.Supplier;
+
+/**
+ * Registry of the metrics of the identity workflow tasks.<br>
+ * The implementation is the bean <code>workflow-identityimport.metricsRegistry</code>, and can be replaced to forward the metrics to another
+ * monitoring system.
+ */
+public interface IMetricsRegistry
+{
+    /**
+     * Record the latency of a phase
+     *
+     * @param strTask
+     *            the task name
+     * @param phase
+     *            the phase
+     * @param lNanos
+     *            the duration, in nanoseconds
+     */
+    void recordLatency( String strTask, TaskPhase phase, long lNanos );
+
+    /**
+     * Count an outcome
+     *
+     * @param strTask
+     *            the task name
+     * @param strOutcome
+     *            the outcome, usually a response status type
+     * @param strClientCode
+     *            the client code, may be null
+     */
+    void incrementOutcome( String strTask, String strOutcome, String strClientCode );
+
+    /**
+     * Count the start of a task execution
+     *
+     * @param strTask
+     *            the task name
+     */
+    void incrementInFlight( String strTask );
+
+    /**
+     * Count the end of a task execution
+     *
+     * @param strTask
+     *            the task name
+     */
+    void decrementInFlight( String strTask );
+
+    /**
+     * Register a gauge, replacing any gauge with the same name
+     *
+     * @param strName
+     *            the gauge name
+     * @param gauge
+     *            the supplier of the gauge value
+     */
+    void registerGauge( String strName, Supplier<Number> gauge );
+
+    /**
+     * Visit the current values of the metrics
+     *
+     * @param visitor
+     *            the visitor
+     */
+    void accept( IMetricsVisitor visitor );
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.metrics;
+
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.client.ResilientIdentityStoreClient;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.executor.IdentityTaskExecutor;
+
+/**
+ * Registers the gauges of the executor and of the identity store client. The services are only looked up when the gauges are read.
+ */
+public class IdentityImportGauges
+{
+    private final IMetricsRegistry _registry;
+
+    /**
+     * Constructor
+     *
+     * @param registry
+     *            the registry receiving the gauges
+     */
+    public IdentityImportGauges( final IMetricsRegistry registry )
+    {
+        _registry = registry;
+    }
+
+    /**
+     * Register the gauges
+     */
+    public void register( )
+    {
+        _registry.registerGauge( "executor_queue_depth", ( ) -> IdentityTaskExecutor.instance( ).getQueueDepth( ) );
+        _registry.registerGauge( "executor_in_flight", ( ) -> IdentityTaskExecutor.instance( ).getInFlight( ) );
+        _registry.registerGauge( "executor_saturation_count", ( ) -> IdentityTaskExecutor.instance( ).getSaturationCount( ) );
+        _registry.registerGauge( "executor_concurrency_limit", ( ) -> IdentityTaskExecutor.instance( ).getConcurrencyLimit( ) );
+        _registry.registerGauge( "executor_limit_decrease_count", ( ) -> IdentityTaskExecutor.instance( ).getLimitDecreaseCount( ) );
+        _registry.registerGauge( "client_circuit_state", ( ) -> ResilientIdentityStoreClient.instance( ).getCircuitState( ).ordinal( ) );
+        _registry.registerGauge( "client_circuit_open_count", ( ) -> ResilientIdentityStoreClient.instance( ).getCircuitOpenCount( ) );
+        _registry.registerGauge( "client_retry_budget_available", ( ) -> ResilientIdentityStoreClient.instance( ).getRetryBudgetAvailable( ) );
+        _registry.registerGauge( "client_call_count", ( ) -> ResilientIdentityStoreClient.instance( ).getCallCount( ) );
+        _registry.registerGauge( "client_failure_count", ( ) -> ResilientIdentityStoreClient.instance( ).getFailureCount( ) );
+        _registry.registerGauge( "client_timeout_count", ( ) -> ResilientIdentityStoreClient.instance( ).getTimeoutCount( ) );
+        _registry.registerGauge( "client_retry_count", ( ) -> ResilientIdentityStoreClient.instance( ).getRetryCount( ) );
+        _registry.registerGauge( "client_rejected_count", ( ) -> ResilientIdentityStoreClient.instance( ).getRejectedCount( ) );
+        _registry.registerGauge( "client_lookup_cache_hit_count", ( ) -> ResilientIdentityStoreClient.instance( ).getLookupCacheHitCount( ) );
+        _registry.registerGauge( "client_lookup_cache_miss_count", ( ) -> ResilientIdentityStoreClient.instance( ).getLookupCacheMissCount( ) );
+    }
+}
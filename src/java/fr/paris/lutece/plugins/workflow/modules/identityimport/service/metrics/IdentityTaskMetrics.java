@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.metrics;
+
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+
+/**
+ * Entry point of the instrumentation of the identity workflow tasks
+ */
+public final class IdentityTaskMetrics
+{
+    /**
+     * Name of the registry bean
+     */
+    public static final String BEAN_REGISTRY = "workflow-identityimport.metricsRegistry";
+
+    private static IMetricsRegistry _registry;
+
+    /**
+     * Private constructor - this class need not be instantiated
+     */
+    private IdentityTaskMetrics( )
+    {
+    }
+
+    /**
+     * @return the metrics registry
+     */
+    public static IMetricsRegistry registry( )
+    {
+        if ( _registry == null )
+        {
+            _registry = SpringContextService.getBean( BEAN_REGISTRY );
+        }
+        return _registry;
+    }
+
+    /**
+     * Count the start of a task execution
+     *
+     * @param strTask
+     *            the task name
+     * @return the start time, to give to {@link #end(String, long)}
+     */
+    public static long begin( final String strTask )
+    {
+        registry( ).incrementInFlight( strTask );
+        return System.nanoTime( );
+    }
+
+    /**
+     * Count the end of a task execution, and record its latency
+     *
+     * @param strTask
+     *            the task name
+     * @param lStart
+     *            the start time returned by {@link #begin(String)}
+     */
+    public static void end( final String strTask, final long lStart )
+    {
+        record( strTask, TaskPhase.TOTAL, lStart );
+        registry( ).decrementInFlight( strTask );
+    }
+
+    /**
+     * Record the latency of a phase
+     *
+     * @param strTask
+     *            the task name
+     * @param phase
+     *            the phase
+     * @param lStart
+     *            the start time of the phase, from {@link System#nanoTime()}
+     * @return the end time of the phase, which can be used as the start time of the next phase
+     */
+    public static long record( final String strTask, final TaskPhase phase, final long lStart )
+    {
+        final long lEnd = System.nanoTime( );
+        registry( ).recordLatency( strTask, phase, lEnd - lStart );
+        return lEnd;
+    }
+
+    /**
+     * Count an outcome
+     *
+     * @param strTask
+     *            the task name
+     * @param strOutcome
+     *            the outcome, usually a response status type
+     * @param strClientCode
+     *            the client code, may be null
+     */
+    public static void outcome( final String strTask, final String strOutcome, final String strClientCode )
+    {
+        registry( ).incrementOutcome( strTask, strOutcome, strClientCode );
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency histogram with fixed buckets, from 1 ms to 30 s. Recording is lock free.
+ */
+public class LatencyHistogram
+{
+    private static final long [ ] BUCKET_BOUNDS_MILLIS = {
+            1, 2, 5, 10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000, 30000
+    };
+    private static final long [ ] BUCKET_BOUNDS_NANOS = new long [ BUCKET_BOUNDS_MILLIS.length];
+
+    static
+    {
+        for ( int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++ )
+        {
+            BUCKET_BOUNDS_NANOS [i] = TimeUnit.MILLISECONDS.toNanos( BUCKET_BOUNDS_MILLIS [i] );
+        }
+    }
+
+    // The last bucket counts the values above the highest bound
+    private final LongAdder [ ] _buckets = new LongAdder [ BUCKET_BOUNDS_MILLIS.length + 1];
+    private final LongAdder _count = new LongAdder( );
+    private final LongAdder _sumNanos = new LongAdder( );
+
+    /**
+     * Constructor
+     */
+    public LatencyHistogram( )
+    {
+        for ( int i = 0; i < _buckets.length; i++ )
+        {
+            _buckets [i] = new LongAdder( );
+        }
+    }
+
+    /**
+     * Record a duration
+     *
+     * @param lNanos
+     *            the duration, in nanoseconds
+     */
+    public void record( final long lNanos )
+    {
+        int nBucket = 0;
+        while ( nBucket < BUCKET_BOUNDS_NANOS.length && lNanos > BUCKET_BOUNDS_NANOS [nBucket] )
+        {
+            nBucket++;
+        }
+        _buckets [nBucket].increment( );
+        _count.increment( );
+        _sumNanos.add( lNanos );
+    }
+
+    /**
+     * @return the upper bounds of the buckets, in milliseconds, without the last unbounded bucket
+     */
+    public static long [ ] getBucketBoundsMillis( )
+    {
+        return BUCKET_BOUNDS_MILLIS.clone( );
+    }
+
+    /**
+     * @return the cumulative counts of the buckets : the number of values lower or equal to each bound, then the total count
+     */
+    public long [ ] getCumulativeCounts( )
+    {
+        final long [ ] counts = new long [ _buckets.length];
+        long lTotal = 0;
+        for ( int i = 0; i < _buckets.length; i++ )
+        {
+            lTotal += _buckets [i].sum( );
+            counts [i] = lTotal;
+        }
+        return counts;
+    }
+
+    /**
+     * @return the number of recorded values
+     */
+    public long getCount( )
+    {
+        return _count.sum( );
+    }
+
+    /**
+     * @return the sum of the recorded values, in milliseconds
+     */
+    public double getSumMillis( )
+    {
+        return _sumNanos.sum( ) / 1_000_000d;
+    }
+
+    /**
+     * Get an estimation of a percentile, as the upper bound of the bucket it falls in
+     *
+     * @param dPercentile
+     *            the percentile, between 0 and 100
+     * @return the estimated value in milliseconds, 0 if nothing was recorded, or -1 if it is above the highest bound
+     */
+    public long getPercentileMillis( final double dPercentile )
+    {
+        final long [ ] counts = getCumulativeCounts( );
+        final long lTotal = counts [counts.length - 1];
+        if ( lTotal == 0 )
+        {
+            return 0;
+        }
+        final double dRank = lTotal * dPercentile / 100d;
+        for ( int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++ )
+        {
+            if ( counts [i] >= dRank )
+            {
+                return BUCKET_BOUNDS_MILLIS [i];
+            }
+        }
+        return -1;
+    }
+}
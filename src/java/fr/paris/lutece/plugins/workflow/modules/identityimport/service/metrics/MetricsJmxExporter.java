@@ -0,0 +1,209 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.metrics;
+
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Exports the metrics of a registry as the read-only attributes of an MBean. The attributes follow the metrics found in the registry when they are
+ * read.
+ */
+public class MetricsJmxExporter implements DynamicMBean
+{
+    private static final String OBJECT_NAME = "fr.paris.lutece.plugins.workflow.modules.identityimport:type=IdentityTaskMetrics";
+
+    private final IMetricsRegistry _registry;
+    private ObjectName _objectName;
+
+    /**
+     * Constructor
+     *
+     * @param registry
+     *            the exported registry
+     */
+    public MetricsJmxExporter( final IMetricsRegistry registry )
+    {
+        _registry = registry;
+    }
+
+    /**
+     * Register the MBean in the platform MBean server
+     */
+    public void register( )
+    {
+        try
+        {
+            final MBeanServer server = ManagementFactory.getPlatformMBeanServer( );
+            _objectName = new ObjectName( OBJECT_NAME );
+            if ( server.isRegistered( _objectName ) )
+            {
+                server.unregisterMBean( _objectName );
+            }
+            server.registerMBean( this, _objectName );
+        }
+        catch( final JMException e )
+        {
+            AppLogService.error( "Unable to register the identity task metrics MBean", e );
+        }
+    }
+
+    /**
+     * Unregister the MBean
+     */
+    public void unregister( )
+    {
+        try
+        {
+            if ( _objectName != null && ManagementFactory.getPlatformMBeanServer( ).isRegistered( _objectName ) )
+            {
+                ManagementFactory.getPlatformMBeanServer( ).unregisterMBean( _objectName );
+            }
+        }
+        catch( final JMException e )
+        {
+            AppLogService.error( "Unable to unregister the identity task metrics MBean", e );
+        }
+    }
+
+    @Override
+    public Object getAttribute( final String strAttribute ) throws AttributeNotFoundException
+    {
+        final Object value = snapshot( ).get( strAttribute );
+        if ( value == null )
+        {
+            throw new AttributeNotFoundException( strAttribute );
+        }
+        return value;
+    }
+
+    @Override
+    public void setAttribute( final Attribute attribute ) throws AttributeNotFoundException
+    {
+        throw new AttributeNotFoundException( "Metrics are read-only : " + attribute.getName( ) );
+    }
+
+    @Override
+    public AttributeList getAttributes( final String [ ] attributes )
+    {
+        final Map<String, Object> mapSnapshot = snapshot( );
+        final AttributeList list = new AttributeList( );
+        for ( final String strAttribute : attributes )
+        {
+            final Object value = mapSnapshot.get( strAttribute );
+            if ( value != null )
+            {
+                list.add( new Attribute( strAttribute, value ) );
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public AttributeList setAttributes( final AttributeList attributes )
+    {
+        return new AttributeList( );
+    }
+
+    @Override
+    public Object invoke( final String strActionName, final Object [ ] params, final String [ ] signature )
+    {
+        throw new UnsupportedOperationException( strActionName );
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo( )
+    {
+        final Map<String, Object> mapSnapshot = snapshot( );
+        final MBeanAttributeInfo [ ] attributes = new MBeanAttributeInfo [ mapSnapshot.size( )];
+        int nIndex = 0;
+        for ( final Map.Entry<String, Object> entry : mapSnapshot.entrySet( ) )
+        {
+            attributes [nIndex++] = new MBeanAttributeInfo( entry.getKey( ), entry.getValue( ).getClass( ).getName( ), entry.getKey( ), true, false, false );
+        }
+        return new MBeanInfo( getClass( ).getName( ), "Metrics of the identity workflow tasks", attributes, null, null, null );
+    }
+
+    private Map<String, Object> snapshot( )
+    {
+        final Map<String, Object> mapSnapshot = new LinkedHashMap<>( );
+        _registry.accept( new IMetricsVisitor( )
+        {
+            @Override
+            public void visitLatency( final String strTask, final TaskPhase phase, final LatencyHistogram histogram )
+            {
+                final String strPrefix = "latency." + strTask + "." + phase.getKey( ) + ".";
+                mapSnapshot.put( strPrefix + "count", histogram.getCount( ) );
+                mapSnapshot.put( strPrefix + "sumMillis", histogram.getSumMillis( ) );
+                mapSnapshot.put( strPrefix + "p50Millis", histogram.getPercentileMillis( 50 ) );
+                mapSnapshot.put( strPrefix + "p95Millis", histogram.getPercentileMillis( 95 ) );
+                mapSnapshot.put( strPrefix + "p99Millis", histogram.getPercentileMillis( 99 ) );
+            }
+
+            @Override
+            public void visitOutcome( final String strTask, final String strOutcome, final String strClientCode, final long lCount )
+            {
+                mapSnapshot.put( "outcome." + strTask + "." + strOutcome + "." + strClientCode, lCount );
+            }
+
+            @Override
+            public void visitInFlight( final String strTask, final long lInFlight )
+            {
+                mapSnapshot.put( "inflight." + strTask, lInFlight );
+            }
+
+            @Override
+            public void visitGauge( final String strName, final Number value )
+            {
+                if ( value != null )
+                {
+                    mapSnapshot.put( "gauge." + strName, value );
+                }
+            }
+        } );
+        return mapSnapshot;
+    }
+}
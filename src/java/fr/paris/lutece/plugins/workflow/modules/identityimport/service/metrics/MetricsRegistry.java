@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * In-memory metrics registry
+ */
+public class MetricsRegistry implements IMetricsRegistry
+{
+    private static final String UNKNOWN_CLIENT_CODE = "none";
+    private static final TaskPhase [ ] PHASES = TaskPhase.values( );
+
+    private final Map<String, LatencyHistogram [ ]> _mapLatencies = new ConcurrentSkipListMap<>( );
+    private final Map<String, Map<String, Map<String, LongAdder>>> _mapOutcomes = new ConcurrentSkipListMap<>( );
+    private final Map<String, AtomicLong> _mapInFlight = new ConcurrentSkipListMap<>( );
+    private final Map<String, Supplier<Number>> _mapGauges = new ConcurrentSkipListMap<>( );
+
+    @Override
+    public void recordLatency( final String strTask, final TaskPhase phase, final long lNanos )
+    {
+        _mapLatencies.computeIfAbsent( strTask, strKey -> {
+            final LatencyHistogram [ ] histograms = new LatencyHistogram [ PHASES.length];
+            for ( int i = 0; i < histograms.length; i++ )
+            {
+                histograms [i] = new LatencyHistogram( );
+            }
+            return histograms;
+        } ) [phase.ordinal( )].record( lNanos );
+    }
+
+    @Override
+    public void incrementOutcome( final String strTask, final String strOutcome, final String strClientCode )
+    {
+        _mapOutcomes.computeIfAbsent( strTask, strKey -> new ConcurrentHashMap<>( ) ).computeIfAbsent( strOutcome, strKey -> new ConcurrentHashMap<>( ) )
+                .computeIfAbsent( strClientCode != null ? strClientCode : UNKNOWN_CLIENT_CODE, strKey -> new LongAdder( ) ).increment( );
+    }
+
+    @Override
+    public void incrementInFlight( final String strTask )
+    {
+        _mapInFlight.computeIfAbsent( strTask, strKey -> new AtomicLong( ) ).incrementAndGet( );
+    }
+
+    @Override
+    public void decrementInFlight( final String strTask )
+    {
+        _mapInFlight.computeIfAbsent( strTask, strKey -> new AtomicLong( ) ).decrementAndGet( );
+    }
+
+    @Override
+    public void registerGauge( final String strName, final Supplier<Number> gauge )
+    {
+        _mapGauges.put( strName, gauge );
+    }
+
+    @Override
+    public void accept( final IMetricsVisitor visitor )
+    {
+        _mapLatencies.forEach( ( strTask, histograms ) -> {
+            for ( final TaskPhase phase : PHASES )
+            {
+                if ( histograms [phase.ordinal( )].getCount( ) > 0 )
+                {
+                    visitor.visitLatency( strTask, phase, histograms [phase.ordinal( )] );
+                }
+            }
+        } );
+        _mapOutcomes.forEach( ( strTask, mapOutcomes ) -> mapOutcomes.forEach( ( strOutcome, mapClients ) -> mapClients
+                .forEach( ( strClientCode, count ) -> visitor.visitOutcome( strTask, strOutcome, strClientCode, count.sum( ) ) ) ) );
+        _mapInFlight.forEach( ( strTask, inFlight ) -> visitor.visitInFlight( strTask, inFlight.get( ) ) );
+        _mapGauges.forEach( ( strName, gauge ) -> visitor.visitGauge( strName, gauge.get( ) ) );
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.metrics;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Formats the metrics of a registry in the Prometheus text exposition format
+ */
+public final class MetricsTextFormatter implements IMetricsVisitor
+{
+    private static final String PREFIX = "identityimport_";
+    private static final String METRIC_LATENCY = PREFIX + "task_phase_seconds";
+    private static final String METRIC_OUTCOME = PREFIX + "task_outcomes_total";
+    private static final String METRIC_IN_FLIGHT = PREFIX + "task_in_flight";
+    private static final long [ ] BUCKET_BOUNDS_MILLIS = LatencyHistogram.getBucketBoundsMillis( );
+
+    private final StringBuilder _sbOutput = new StringBuilder( 4096 );
+    private final Set<String> _setDeclared = new HashSet<>( );
+
+    private MetricsTextFormatter( )
+    {
+    }
+
+    /**
+     * Format the metrics of a registry
+     *
+     * @param registry
+     *            the registry
+     * @return the metrics, in the Prometheus text format
+     */
+    public static String format( final IMetricsRegistry registry )
+    {
+        final MetricsTextFormatter formatter = new MetricsTextFormatter( );
+        registry.accept( formatter );
+        return formatter._sbOutput.toString( );
+    }
+
+    @Override
+    public void visitLatency( final String strTask, final TaskPhase phase, final LatencyHistogram histogram )
+    {
+        declare( METRIC_LATENCY, "histogram", "Latency of the phases of the identity workflow tasks" );
+        final String strLabels = "task=\"" + escape( strTask ) + "\",phase=\"" + phase.getKey( ) + "\"";
+        final long [ ] counts = histogram.getCumulativeCounts( );
+        for ( int i = 0; i < BUCKET_BOUNDS_MILLIS.length; i++ )
+        {
+            _sbOutput.append( METRIC_LATENCY ).append( "_bucket{" ).append( strLabels ).append( ",le=\"" ).append( BUCKET_BOUNDS_MILLIS [i] / 1000d )
+                    .append( "\"} " ).append( counts [i] ).append( '\n' );
+        }
+        _sbOutput.append( METRIC_LATENCY ).append( "_bucket{" ).append( strLabels ).append( ",le=\"+Inf\"} " ).append( counts [counts.length - 1] )
+                .append( '\n' );
+        _sbOutput.append( METRIC_LATENCY ).append( "_sum{" ).append( strLabels ).append( "} " ).append( histogram.getSumMillis( ) / 1000d ).append( '\n' );
+        _sbOutput.append( METRIC_LATENCY ).append( "_count{" ).append( strLabels ).append( "} " ).append( counts [counts.length - 1] ).append( '\n' );
+    }
+
+    @Override
+    public void visitOutcome( final String strTask, final String strOutcome, final String strClientCode, final long lCount )
+    {
+        declare( METRIC_OUTCOME, "counter", "Outcomes of the identity workflow tasks" );
+        _sbOutput.append( METRIC_OUTCOME ).append( "{task=\"" ).append( escape( strTask ) ).append( "\",outcome=\"" ).append( escape( strOutcome ) )
+                .append( "\",client_code=\"" ).append( escape( strClientCode ) ).append( "\"} " ).append( lCount ).append( '\n' );
+    }
+
+    @Override
+    public void visitInFlight( final String strTask, final long lInFlight )
+    {
+        declare( METRIC_IN_FLIGHT, "gauge", "Executions of the identity workflow tasks in progress" );
+        _sbOutput.append( METRIC_IN_FLIGHT ).append( "{task=\"" ).append( escape( strTask ) ).append( "\"} " ).append( lInFlight ).append( '\n' );
+    }
+
+    @Override
+    public void visitGauge( final String strName, final Number value )
+    {
+        if ( value == null )
+        {
+            return;
+        }
+        final String strMetric = PREFIX + strName.replaceAll( "[^a-zA-Z0-9_]", "_" );
+        declare( strMetric, "gauge", strName );
+        _sbOutput.append( strMetric ).append( ' ' ).append( value ).append( '\n' );
+    }
+
+    private void declare( final String strMetric, final String strType, final String strHelp )
+    {
+        if ( _setDeclared.add( strMetric ) )
+        {
+            _sbOutput.append( "# HELP " ).append( strMetric ).append( ' ' ).append( strHelp ).append( '\n' );
+            _sbOutput.append( "# TYPE " ).append( strMetric ).append( ' ' ).append( strType ).append( '\n' );
+        }
+    }
+
+    private static String escape( final String strValue )
+    {
+        return strValue.replace( "\\", "\\\\" ).replace( "\"", "\\\"" ).replace( "\n", "\\n" );
+    }
+}
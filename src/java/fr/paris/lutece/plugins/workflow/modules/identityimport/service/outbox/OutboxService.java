@@ -0,0 +1,572 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistory;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.AuthorType;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.RequestAuthor;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatus;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatusType;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.crud.IdentityChangeRequest;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.crud.IdentityChangeResponse;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateIdentityImportHash;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateIdentityLoaderHome;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.outbox.OutboxEntry;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.outbox.OutboxHome;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.CandidateStateTransitionService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.client.IdentityStoreUnavailableException;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.client.ResilientIdentityStoreClient;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.executor.WorkerThreads;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.progress.BatchProgress;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.progress.BatchProgressService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.writer.CandidateIdentityWriteBehindService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.task.IdentityImportTaskConfig;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.task.IdentityTask;
+import fr.paris.lutece.plugins.workflowcore.business.action.Action;
+import fr.paris.lutece.plugins.workflowcore.business.resource.ResourceWorkflow;
+import fr.paris.lutece.plugins.workflowcore.business.state.State;
+import fr.paris.lutece.plugins.workflowcore.service.action.ActionService;
+import fr.paris.lutece.plugins.workflowcore.service.action.IActionService;
+import fr.paris.lutece.plugins.workflowcore.service.config.ITaskConfigService;
+import fr.paris.lutece.plugins.workflowcore.service.state.IStateService;
+import fr.paris.lutece.plugins.workflowcore.service.state.StateService;
+import fr.paris.lutece.plugins.workflowcore.service.task.ITask;
+import fr.paris.lutece.plugins.workflowcore.service.task.ITaskService;
+import fr.paris.lutece.plugins.workflowcore.service.task.TaskService;
+import fr.paris.lutece.portal.service.i18n.I18nService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.util.sql.TransactionManager;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable queue of the identity store calls of the import task.<br>
+ * When the outbox is enabled, the task only stores the serialized request and returns, so that a workflow action never waits for the identity
+ * store. The {@link OutboxDispatcherDaemon} then claims the due entries, sends them at a limited rate, and for each completed call writes the
+ * candidate identity history and moves the resource to the state configured for the outcome, running the automatic actions of that state. Failed
+ * calls are retried with an exponential backoff until the maximum number of attempts is reached, then routed as {@link IdentityTask#ROUTE_ERROR}. The
+ * histories are written in the same transaction as the removal of the entries, and the outcomes are counted in the progress of their batch.<br>
+ * The state after the action which enqueued the call is a pending state: the resource is only moved if it is still in it when the call completes, so
+ * that a resource moved by someone else in the meantime keeps its state.
+ */
+public final class OutboxService
+{
+    // Properties
+    private static final String PROPERTY_ENABLED = "identityimport_config.outbox.enabled";
+    private static final String PROPERTY_BATCH_SIZE = "identityimport_config.outbox.batch.size";
+    private static final String PROPERTY_PARALLELISM = "identityimport_config.outbox.parallelism";
+    private static final String PROPERTY_MAX_PER_SECOND = "identityimport_config.outbox.max.per.second";
+    private static final String PROPERTY_MAX_ATTEMPTS = "identityimport_config.outbox.max.attempts";
+    private static final String PROPERTY_BACKOFF_INITIAL = "identityimport_config.outbox.retry.backoff.initial";
+    private static final String PROPERTY_BACKOFF_MAX = "identityimport_config.outbox.retry.backoff.max";
+    private static final String PROPERTY_CLAIM_TIMEOUT = "identityimport_config.outbox.claim.timeout";
+    private static final String PROPERTY_REQUEST_AUTHOR = "identityimport_config.request.author";
+
+    // Defaults
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final int DEFAULT_PARALLELISM = 4;
+    private static final int DEFAULT_MAX_PER_SECOND = 20;
+    private static final int DEFAULT_MAX_ATTEMPTS = 10;
+    private static final long DEFAULT_BACKOFF_INITIAL = 30000L;
+    private static final long DEFAULT_BACKOFF_MAX = 3600000L;
+    private static final long DEFAULT_CLAIM_TIMEOUT = 600000L;
+
+    // Constants
+    private static final String HISTORY_HEADER = "API Import identity";
+    private static final String STATUS_ERROR = "ERROR";
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private static OutboxService _instance;
+
+    // ObjectMapper is thread safe once configured
+    private static final ObjectMapper _mapper = new ObjectMapper( ).configure( DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false );
+    private static final IStateService _stateService = SpringContextService.getBean( StateService.BEAN_SERVICE );
+    private static final ITaskService _taskService = SpringContextService.getBean( TaskService.BEAN_SERVICE );
+    private static final IActionService _actionService = SpringContextService.getBean( ActionService.BEAN_SERVICE );
+    private final ITaskConfigService _taskConfigService = SpringContextService.getBean( "workflow-identityimport.identityImportTaskConfigService" );
+
+    private final boolean _bEnabled;
+    private final int _nBatchSize;
+    private final int _nMaxPerSecond;
+    private final int _nMaxAttempts;
+    private final long _lBackoffInitial;
+    private final long _lBackoffMax;
+    private final long _lClaimTimeout;
+    private final ExecutorService _senders;
+
+    private OutboxService( )
+    {
+        _bEnabled = AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLED, false );
+        _nBatchSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE ) );
+        _nMaxPerSecond = Math.max( 0, AppPropertiesService.getPropertyInt( PROPERTY_MAX_PER_SECOND, DEFAULT_MAX_PER_SECOND ) );
+        _nMaxAttempts = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_MAX_ATTEMPTS, DEFAULT_MAX_ATTEMPTS ) );
+        _lBackoffInitial = Math.max( 0L, AppPropertiesService.getPropertyLong( PROPERTY_BACKOFF_INITIAL, DEFAULT_BACKOFF_INITIAL ) );
+        _lBackoffMax = Math.max( _lBackoffInitial, AppPropertiesService.getPropertyLong( PROPERTY_BACKOFF_MAX, DEFAULT_BACKOFF_MAX ) );
+        _lClaimTimeout = Math.max( 0L, AppPropertiesService.getPropertyLong( PROPERTY_CLAIM_TIMEOUT, DEFAULT_CLAIM_TIMEOUT ) );
+        final int nParallelism = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_PARALLELISM, DEFAULT_PARALLELISM ) );
+        // Threads waiting for the client while it retries or times out, the calls themselves run on the identity task executor
+        _senders = WorkerThreads.newFixedThreadPool( "identityimport-outbox-", nParallelism );
+    }
+
+    /**
+     * Get the unique instance of the service
+     *
+     * @return the instance
+     */
+    public static synchronized OutboxService instance( )
+    {
+        if ( _instance == null )
+        {
+            _instance = new OutboxService( );
+        }
+        return _instance;
+    }
+
+    /**
+     * @return true if the import task must enqueue its calls instead of waiting for the identity store
+     */
+    public boolean isEnabled( )
+    {
+        return _bEnabled;
+    }
+
+    /**
+     * Enqueue an import call
+     *
+     * @param nIdResourceHistory
+     *            the resource history of the action which enqueued the call, completed by the dispatcher
+     * @param nIdResource
+     *            the candidate identity id
+     * @param strResourceType
+     *            the resource type
+     * @param nIdWorkflow
+     *            the workflow id
+     * @param nIdTask
+     *            the task id, whose configuration gives the state of each outcome
+     * @param nIdBatch
+     *            the batch id of the candidate identity, whose progress counts the outcome
+     * @param strClientCode
+     *            the client code
+     * @param strContentHash
+     *            the content hash of the identity, stored with its customer id once imported
+     * @param identityChangeRequest
+     *            the request
+     * @return the entry
+     */
+    public OutboxEntry enqueue( final int nIdResourceHistory, final int nIdResource, final String strResourceType, final int nIdWorkflow, final int nIdTask,
+            final int nIdBatch, final String strClientCode, final String strContentHash, final IdentityChangeRequest identityChangeRequest )
+    {
+        final OutboxEntry entry = new OutboxEntry( );
+        entry.setIdResourceHistory( nIdResourceHistory );
+        entry.setIdResource( nIdResource );
+        entry.setResourceType( strResourceType );
+        entry.setIdWorkflow( nIdWorkflow );
+        entry.setIdTask( nIdTask );
+        entry.setIdBatch( nIdBatch );
+        entry.setClientCode( strClientCode );
+        entry.setContentHash( strContentHash );
+        try
+        {
+            entry.setPayload( _mapper.writeValueAsString( identityChangeRequest ) );
+        }
+        catch( final JsonProcessingException e )
+        {
+            throw new AppException( "Unable to serialize the import request of candidate identity " + nIdResource, e );
+        }
+        final Timestamp dateNow = new Timestamp( System.currentTimeMillis( ) );
+        entry.setNextAttemptDate( dateNow );
+        entry.setCreationDate( dateNow );
+        return OutboxHome.create( entry );
+    }
+
+    /**
+     * Send the due entries to the identity store, and apply the outcome of the completed calls
+     *
+     * @return the number of entries processed
+     */
+    public int dispatch( )
+    {
+        try
+        {
+            return dispatchDue( );
+        }
+        finally
+        {
+            // The rows of an interrupted dispatch must not be written with the next one
+            CandidateIdentityWriteBehindService.instance( ).discard( );
+        }
+    }
+
+    private int dispatchDue( )
+    {
+        if ( _lClaimTimeout > 0 )
+        {
+            OutboxHome.releaseStale( new Timestamp( System.currentTimeMillis( ) - _lClaimTimeout ) );
+        }
+        final List<OutboxEntry> listEntries = OutboxHome.claimDue( UUID.randomUUID( ).toString( ), _nBatchSize );
+        if ( listEntries.isEmpty( ) )
+        {
+            return 0;
+        }
+
+        final RequestAuthor requestAuthor = new RequestAuthor( );
+        requestAuthor.setName( AppPropertiesService.getProperty( PROPERTY_REQUEST_AUTHOR ) );
+        requestAuthor.setType( AuthorType.application );
+
+        final long lStart = System.nanoTime( );
+        final List<Future<IdentityChangeResponse>> listFutures = new ArrayList<>( listEntries.size( ) );
+        for ( int i = 0; i < listEntries.size( ); i++ )
+        {
+            pace( i, lStart );
+            final OutboxEntry entry = listEntries.get( i );
+            listFutures.add( _senders.submit( ( ) -> send( entry, requestAuthor ) ) );
+        }
+
+        final List<Outcome> listOutcomes = new ArrayList<>( listEntries.size( ) );
+        for ( int i = 0; i < listEntries.size( ); i++ )
+        {
+            final OutboxEntry entry = listEntries.get( i );
+            try
+            {
+                final IdentityChangeResponse response = listFutures.get( i ).get( );
+                listOutcomes.add( complete( entry, response ) );
+            }
+            catch( final InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+                // The claimed entries are released once the claim timeout has elapsed
+                throw new AppException( "Outbox dispatch interrupted", e );
+            }
+            catch( final ExecutionException e )
+            {
+                final Outcome outcome = fail( entry, e.getCause( ) );
+                if ( outcome != null )
+                {
+                    listOutcomes.add( outcome );
+                }
+            }
+        }
+
+        final List<ResourceWorkflow> listTransitions = getTransitions( listOutcomes );
+        write( listOutcomes );
+        for ( final Outcome outcome : listOutcomes )
+        {
+            final BatchProgress progress = BatchProgressService.instance( ).find( outcome._entry.getIdBatch( ) );
+            if ( progress != null )
+            {
+                progress.resolve( outcome._strOutcome );
+            }
+        }
+        CandidateStateTransitionService.moveTo( listTransitions );
+        return listEntries.size( );
+    }
+
+    /**
+     * @return the number of entries waiting to be sent
+     */
+    public int getPendingCount( )
+    {
+        return OutboxHome.countByStatus( OutboxEntry.STATUS_PENDING );
+    }
+
+    private IdentityChangeResponse send( final OutboxEntry entry, final RequestAuthor requestAuthor ) throws Exception
+    {
+        final IdentityChangeRequest identityChangeRequest = _mapper.readValue( entry.getPayload( ), IdentityChangeRequest.class );
+        return ResilientIdentityStoreClient.instance( ).importIdentity( identityChangeRequest, entry.getClientCode( ), requestAuthor );
+    }
+
+    /**
+     * Buffer the history, customer id and content hash of a completed call
+     *
+     * @return the outcome of the call
+     */
+    private Outcome complete( final OutboxEntry entry, final IdentityChangeResponse response )
+    {
+        final ResponseStatus status = response.getStatus( );
+        final CandidateIdentityHistory candidateIdentityHistory = new CandidateIdentityHistory( );
+        candidateIdentityHistory.setWfResourceHistoryId( entry.getIdResourceHistory( ) );
+        candidateIdentityHistory.setStatus( status.getType( ).name( ) );
+        candidateIdentityHistory.setComment( IdentityTask.buildHistoryComment( HISTORY_HEADER, status ) );
+        CandidateIdentityWriteBehindService.instance( ).addHistory( candidateIdentityHistory, status );
+        if ( status.getType( ) == ResponseStatusType.SUCCESS || status.getType( ) == ResponseStatusType.INCOMPLETE_SUCCESS )
+        {
+            CandidateIdentityWriteBehindService.instance( ).addCustomerId( entry.getIdResource( ), response.getCustomerId( ) );
+            if ( entry.getContentHash( ) != null )
+            {
+                CandidateIdentityWriteBehindService.instance( )
+                        .addImportHash( new CandidateIdentityImportHash( entry.getIdResource( ), entry.getContentHash( ), response.getCustomerId( ) ) );
+            }
+        }
+        return new Outcome( entry, status.getType( ).name( ), status.getType( ), false );
+    }
+
+    /**
+     * Reschedule a failed call, or give up once the maximum number of attempts is reached
+     *
+     * @return the outcome of an entry given up, null if it is rescheduled
+     */
+    private Outcome fail( final OutboxEntry entry, final Throwable cause )
+    {
+        final String strError = cause.getMessage( ) != null ? cause.getMessage( ) : cause.getClass( ).getName( );
+        entry.setLastError( strError.length( ) > MAX_ERROR_LENGTH ? strError.substring( 0, MAX_ERROR_LENGTH ) : strError );
+        // An unavailable identity store is not the fault of the request, it doesn't use an attempt
+        if ( !( cause instanceof IdentityStoreUnavailableException ) )
+        {
+            entry.setAttempts( entry.getAttempts( ) + 1 );
+        }
+
+        if ( entry.getAttempts( ) < _nMaxAttempts )
+        {
+            entry.setNextAttemptDate( new Timestamp( System.currentTimeMillis( ) + getBackoff( _lBackoffInitial, _lBackoffMax, entry.getAttempts( ) ) ) );
+            OutboxHome.reschedule( entry );
+            return null;
+        }
+
+        AppLogService.error( "Identity import of candidate identity " + entry.getIdResource( ) + " given up after " + entry.getAttempts( ) + " attempts",
+                cause );
+        final CandidateIdentityHistory candidateIdentityHistory = new CandidateIdentityHistory( );
+        candidateIdentityHistory.setWfResourceHistoryId( entry.getIdResourceHistory( ) );
+        candidateIdentityHistory.setStatus( STATUS_ERROR );
+        candidateIdentityHistory.setComment( IdentityTask.buildHistoryComment( HISTORY_HEADER + "\n" + entry.getLastError( ), null ) );
+        CandidateIdentityWriteBehindService.instance( ).addHistory( candidateIdentityHistory );
+        return new Outcome( entry, STATUS_ERROR, IdentityTask.ROUTE_ERROR, true );
+    }
+
+    /**
+     * Prepare the transitions of the resources to the states configured for the outcomes of their calls. The configurations, actions and states are
+     * loaded once per dispatch, and the resource workflows once per resource type and workflow.
+     *
+     * @param listOutcomes
+     *            the outcomes
+     * @return the resource workflows, set to their new state
+     */
+    private List<ResourceWorkflow> getTransitions( final List<Outcome> listOutcomes )
+    {
+        final Map<Integer, IdentityImportTaskConfig> mapConfigs = new HashMap<>( );
+        final Map<Integer, State> mapStates = new HashMap<>( );
+        final Map<String, List<Outcome>> mapRouted = new LinkedHashMap<>( );
+        for ( final Outcome outcome : listOutcomes )
+        {
+            final OutboxEntry entry = outcome._entry;
+            final IdentityImportTaskConfig config = mapConfigs.computeIfAbsent( entry.getIdTask( ), _taskConfigService::findByPrimaryKey );
+            final int nIdTargetState = config != null ? config.getIdTargetState( outcome._route ) : -1;
+            if ( nIdTargetState > 0 )
+            {
+                outcome._state = mapStates.computeIfAbsent( nIdTargetState, _stateService::findByPrimaryKey );
+                mapRouted.computeIfAbsent( entry.getResourceType( ) + ':' + entry.getIdWorkflow( ), strKey -> new ArrayList<>( ) ).add( outcome );
+            }
+        }
+
+        final Map<Integer, Action> mapActions = new HashMap<>( );
+        final List<ResourceWorkflow> listTransitions = new ArrayList<>( listOutcomes.size( ) );
+        for ( final List<Outcome> listRouted : mapRouted.values( ) )
+        {
+            final OutboxEntry first = listRouted.get( 0 )._entry;
+            final List<Integer> listIds = new ArrayList<>( listRouted.size( ) );
+            listRouted.forEach( outcome -> listIds.add( outcome._entry.getIdResource( ) ) );
+            final Map<Integer, ResourceWorkflow> mapResourceWorkflows = CandidateIdentityLoaderHome.findResourceWorkflows( listIds, first.getResourceType( ),
+                    first.getIdWorkflow( ) );
+            for ( final Outcome outcome : listRouted )
+            {
+                final ResourceWorkflow resourceWorkflow = mapResourceWorkflows.get( outcome._entry.getIdResource( ) );
+                final Action action = mapActions.computeIfAbsent( outcome._entry.getIdTask( ), this::findAction );
+                if ( resourceWorkflow != null && outcome._state != null && isPending( outcome._entry, resourceWorkflow, action ) )
+                {
+                    resourceWorkflow.setState( outcome._state );
+                    listTransitions.add( resourceWorkflow );
+                }
+            }
+        }
+        return listTransitions;
+    }
+
+    /**
+     * Load the action of a task, with its states
+     *
+     * @param nIdTask
+     *            the task id
+     * @return the action, null if the task or its action no longer exists
+     */
+    private Action findAction( final int nIdTask )
+    {
+        final ITask task = _taskService.findByPrimaryKey( nIdTask, I18nService.getDefaultLocale( ) );
+        // The task only carries the id of its action, the action is loaded with its states
+        return task != null && task.getAction( ) != null ? _actionService.findByPrimaryKey( task.getAction( ).getId( ) ) : null;
+    }
+
+    /**
+     * Get the delay before the next attempt of a call: the initial delay, doubled at each attempt, up to the maximum delay
+     *
+     * @param lInitial
+     *            the initial delay, in milliseconds
+     * @param lMax
+     *            the maximum delay, in milliseconds
+     * @param nAttempts
+     *            the number of attempts already used
+     * @return the delay, in milliseconds
+     */
+    static long getBackoff( final long lInitial, final long lMax, final int nAttempts )
+    {
+        return Math.min( lMax, lInitial << Math.min( nAttempts, 20 ) );
+    }
+
+    /**
+     * Check that a resource is still in the state after the action which enqueued its call
+     *
+     * @param entry
+     *            the entry
+     * @param resourceWorkflow
+     *            the current workflow resource
+     * @param action
+     *            the action which enqueued the call, may be null
+     * @return true if the outcome of the call may move the resource
+     */
+    static boolean isPending( final OutboxEntry entry, final ResourceWorkflow resourceWorkflow, final Action action )
+    {
+        if ( action == null || action.getStateAfter( ) == null || resourceWorkflow.getState( ) == null )
+        {
+            return true;
+        }
+        if ( resourceWorkflow.getState( ).getId( ) != action.getStateAfter( ).getId( ) )
+        {
+            AppLogService.info( "Candidate identity " + entry.getIdResource( ) + " left the pending state of its identity import, its state is kept" );
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Write the histories of the outcomes, and remove the completed entries or mark the given up ones as failed, in one transaction: a call whose
+     * history is written is never sent again, and a call is never removed without its history
+     *
+     * @param listOutcomes
+     *            the outcomes
+     */
+    private static void write( final List<Outcome> listOutcomes )
+    {
+        final List<Integer> listCompleted = new ArrayList<>( listOutcomes.size( ) );
+        final List<OutboxEntry> listGivenUp = new ArrayList<>( );
+        for ( final Outcome outcome : listOutcomes )
+        {
+            if ( outcome._bGivenUp )
+            {
+                listGivenUp.add( outcome._entry );
+            }
+            else
+            {
+                listCompleted.add( outcome._entry.getId( ) );
+            }
+        }
+        try
+        {
+            TransactionManager.beginTransaction( null );
+            CandidateIdentityWriteBehindService.instance( ).flush( );
+            OutboxHome.removeAll( listCompleted );
+            // Kept in the table, as failed, for investigation
+            listGivenUp.forEach( OutboxHome::markFailed );
+            TransactionManager.commitTransaction( null );
+        }
+        catch( final Exception e )
+        {
+            TransactionManager.rollBack( null, e );
+            // The claimed entries are released once the claim timeout has elapsed, and sent again
+            throw new AppException( "Unable to complete the outbox entries, " + listOutcomes.size( ) + " entries left claimed", e );
+        }
+    }
+
+    /**
+     * Wait so that the sending rate stays under the configured maximum
+     *
+     * @param nIndex
+     *            the index of the next entry to send
+     * @param lStart
+     *            the start time of the dispatch, from {@link System#nanoTime()}
+     */
+    private void pace( final int nIndex, final long lStart )
+    {
+        if ( _nMaxPerSecond == 0 )
+        {
+            return;
+        }
+        final long lWait = TimeUnit.SECONDS.toNanos( nIndex ) / _nMaxPerSecond - ( System.nanoTime( ) - lStart );
+        if ( lWait > 0 )
+        {
+            try
+            {
+                TimeUnit.NANOSECONDS.sleep( lWait );
+            }
+            catch( final InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+                throw new AppException( "Outbox dispatch interrupted", e );
+            }
+        }
+    }
+
+    /**
+     * Outcome of a call completed or given up, with its route
+     */
+    private static final class Outcome
+    {
+        private final OutboxEntry _entry;
+        private final String _strOutcome;
+        private final ResponseStatusType _route;
+        private final boolean _bGivenUp;
+        private State _state;
+
+        Outcome( final OutboxEntry entry, final String strOutcome, final ResponseStatusType route, final boolean bGivenUp )
+        {
+            _entry = entry;
+            _strOutcome = strOutcome;
+            _route = route;
+            _bGivenUp = bGivenUp;
+        }
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.progress;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Progress of the import of a batch on this node.<br>
+ * The counters are {@link LongAdder}s, updated by the import tasks without contention, and read in constant time. The rate is computed over a
+ * sliding window of one second buckets.
+ */
+public final class BatchProgress
+{
+    /** Outcome of a call that is not over yet: parked or queued in the outbox */
+    public static final String OUTCOME_DEFERRED = "DEFERRED";
+
+    // Constants
+    private static final String OUTCOME_SUCCESS = "SUCCESS";
+    private static final String OUTCOME_INCOMPLETE_SUCCESS = "INCOMPLETE_SUCCESS";
+    private static final String OUTCOME_UNCHANGED = "UNCHANGED";
+    private static final int RATE_WINDOW_SECONDS = 60;
+
+    private final int _nIdBatch;
+    private final long _lTotal;
+    private final long _lStartDate = System.currentTimeMillis( );
+    private final LongAdder _success = new LongAdder( );
+    private final LongAdder _incompleteSuccess = new LongAdder( );
+    private final LongAdder _failed = new LongAdder( );
+    private final LongAdder _deferred = new LongAdder( );
+    private final LongAdder _inFlight = new LongAdder( );
+    private volatile long _lLastUpdate = _lStartDate;
+
+    // Sliding window: number of identities processed per second, with the second each bucket belongs to
+    private final AtomicLongArray _rateCounts = new AtomicLongArray( RATE_WINDOW_SECONDS );
+    private final AtomicLongArray _rateSeconds = new AtomicLongArray( RATE_WINDOW_SECONDS );
+
+    /**
+     * Constructor
+     *
+     * @param nIdBatch
+     *            the batch id
+     * @param lTotal
+     *            the number of candidate identities of the batch
+     */
+    BatchProgress( final int nIdBatch, final long lTotal )
+    {
+        _nIdBatch = nIdBatch;
+        _lTotal = lTotal;
+    }
+
+    /**
+     * Count identities whose import has started
+     *
+     * @param nCount
+     *            the number of identities
+     */
+    public void begin( final int nCount )
+    {
+        _inFlight.add( nCount );
+    }
+
+    /**
+     * Count the end of the import of an identity
+     *
+     * @param strOutcome
+     *            the outcome: a response status type, <code>UNCHANGED</code>, {@link #OUTCOME_DEFERRED}, or anything else for a failure
+     */
+    public void end( final String strOutcome )
+    {
+        _inFlight.decrement( );
+        count( strOutcome );
+
+        final long lNow = System.currentTimeMillis( );
+        _lLastUpdate = lNow;
+        final long lSecond = TimeUnit.MILLISECONDS.toSeconds( lNow );
+        final int nBucket = (int) ( lSecond % RATE_WINDOW_SECONDS );
+        final long lBucketSecond = _rateSeconds.get( nBucket );
+        if ( lBucketSecond != lSecond && _rateSeconds.compareAndSet( nBucket, lBucketSecond, lSecond ) )
+        {
+            // First identity of this second in the bucket: it no longer counts the identities of an older second
+            _rateCounts.set( nBucket, 0 );
+        }
+        _rateCounts.incrementAndGet( nBucket );
+    }
+
+    /**
+     * Count the outcome of an identity counted as {@link #OUTCOME_DEFERRED}, once its call is over. The identity was already counted in the rate.
+     *
+     * @param strOutcome
+     *            the outcome, as for {@link #end(String)}
+     */
+    public void resolve( final String strOutcome )
+    {
+        _deferred.decrement( );
+        count( strOutcome );
+        _lLastUpdate = System.currentTimeMillis( );
+    }
+
+    private void count( final String strOutcome )
+    {
+        if ( OUTCOME_SUCCESS.equals( strOutcome ) || OUTCOME_UNCHANGED.equals( strOutcome ) )
+        {
+            _success.increment( );
+        }
+        else if ( OUTCOME_INCOMPLETE_SUCCESS.equals( strOutcome ) )
+        {
+            _incompleteSuccess.increment( );
+        }
+        else if ( OUTCOME_DEFERRED.equals( strOutcome ) )
+        {
+            _deferred.increment( );
+        }
+        else
+        {
+            _failed.increment( );
+        }
+    }
+
+    /**
+     * @return the batch id
+     */
+    public int getIdBatch( )
+    {
+        return _nIdBatch;
+    }
+
+    /**
+     * @return the number of candidate identities of the batch
+     */
+    public long getTotal( )
+    {
+        return _lTotal;
+    }
+
+    /**
+     * @return the number of identities whose import is over, whatever its outcome
+     */
+    public long getProcessed( )
+    {
+        return _success.sum( ) + _incompleteSuccess.sum( ) + _failed.sum( ) + _deferred.sum( );
+    }
+
+    /**
+     * @return the number of identities imported, or unchanged since their last import
+     */
+    public long getSuccess( )
+    {
+        return _success.sum( );
+    }
+
+    /**
+     * @return the number of identities imported with an incomplete success
+     */
+    public long getIncompleteSuccess( )
+    {
+        return _incompleteSuccess.sum( );
+    }
+
+    /**
+     * @return the number of identities whose import failed or was refused
+     */
+    public long getFailed( )
+    {
+        return _failed.sum( );
+    }
+
+    /**
+     * @return the number of identities parked or queued, to be imported later
+     */
+    public long getDeferred( )
+    {
+        return _deferred.sum( );
+    }
+
+    /**
+     * @return the number of identities being imported
+     */
+    public long getInFlight( )
+    {
+        return Math.max( 0L, _inFlight.sum( ) );
+    }
+
+    /**
+     * @return the number of identities processed per second, over the last minute
+     */
+    public double getRate( )
+    {
+        final long lCurrentSecond = TimeUnit.MILLISECONDS.toSeconds( System.currentTimeMillis( ) );
+        final long lElapsed = Math.max( 1L, Math.min( RATE_WINDOW_SECONDS, lCurrentSecond - TimeUnit.MILLISECONDS.toSeconds( _lStartDate ) + 1 ) );
+        long lCount = 0;
+        for ( int i = 0; i < RATE_WINDOW_SECONDS; i++ )
+        {
+            if ( lCurrentSecond - _rateSeconds.get( i ) < RATE_WINDOW_SECONDS )
+            {
+                lCount += _rateCounts.get( i );
+            }
+        }
+        return (double) lCount / lElapsed;
+    }
+
+    /**
+     * @return the estimated number of seconds before the end of the batch, or -1 if it cannot be estimated
+     */
+    public long getEtaSeconds( )
+    {
+        final double dRate = getRate( );
+        final long lRemaining = _lTotal - getProcessed( );
+        if ( lRemaining <= 0 )
+        {
+            return 0L;
+        }
+        return dRate > 0 ? (long) Math.ceil( lRemaining / dRate ) : -1L;
+    }
+
+    /**
+     * @return the date the progress of the batch started to be tracked, in ms
+     */
+    public long getStartDate( )
+    {
+        return _lStartDate;
+    }
+
+    /**
+     * @return the date of the last import, in ms
+     */
+    public long getLastUpdate( )
+    {
+        return _lLastUpdate;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.progress;
+
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateIdentityLoaderHome;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the progress of the batches being imported on this node.<br>
+ * The progress of a batch is created on the first import of one of its identities, its total being counted once. The number of batches tracked is
+ * bounded by the property <code>identityimport_config.progress.max.batches</code>: beyond, the batch updated the least recently is forgotten.
+ */
+public final class BatchProgressService
+{
+    // Properties
+    private static final String PROPERTY_MAX_BATCHES = "identityimport_config.progress.max.batches";
+
+    // Defaults
+    private static final int DEFAULT_MAX_BATCHES = 100;
+
+    private static BatchProgressService _instance;
+
+    private final int _nMaxBatches;
+    private final Map<Integer, BatchProgress> _mapProgress = new ConcurrentHashMap<>( );
+
+    private BatchProgressService( )
+    {
+        _nMaxBatches = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_MAX_BATCHES, DEFAULT_MAX_BATCHES ) );
+    }
+
+    /**
+     * Get the unique instance of the service
+     *
+     * @return the instance
+     */
+    public static synchronized BatchProgressService instance( )
+    {
+        if ( _instance == null )
+        {
+            _instance = new BatchProgressService( );
+        }
+        return _instance;
+    }
+
+    /**
+     * Get the progress of a batch, starting to track it if needed
+     *
+     * @param nIdBatch
+     *            the batch id
+     * @return the progress of the batch
+     */
+    public BatchProgress track( final int nIdBatch )
+    {
+        final BatchProgress progress = _mapProgress.get( nIdBatch );
+        if ( progress != null )
+        {
+            return progress;
+        }
+        // Counted outside of the map, so that a slow query does not block the tasks importing other batches
+        final BatchProgress created = new BatchProgress( nIdBatch, CandidateIdentityLoaderHome.countByBatch( nIdBatch ) );
+        final BatchProgress existing = _mapProgress.putIfAbsent( nIdBatch, created );
+        if ( existing != null )
+        {
+            return existing;
+        }
+        if ( _mapProgress.size( ) > _nMaxBatches )
+        {
+            evict( nIdBatch );
+        }
+        return created;
+    }
+
+    /**
+     * Get the progress of a batch
+     *
+     * @param nIdBatch
+     *            the batch id
+     * @return the progress of the batch, or null if none of its identities was imported on this node
+     */
+    public BatchProgress find( final int nIdBatch )
+    {
+        return _mapProgress.get( nIdBatch );
+    }
+
+    /**
+     * @return the progress of the tracked batches, the most recently updated first
+     */
+    public List<BatchProgress> getAll( )
+    {
+        final List<BatchProgress> listProgress = new ArrayList<>( _mapProgress.values( ) );
+        listProgress.sort( Comparator.comparingLong( BatchProgress::getLastUpdate ).reversed( ) );
+        return listProgress;
+    }
+
+    /**
+     * Stop tracking a batch, once archived
+     *
+     * @param nIdBatch
+     *            the batch id
+     */
+    public void remove( final int nIdBatch )
+    {
+        _mapProgress.remove( nIdBatch );
+    }
+
+    private void evict( final int nIdBatchKept )
+    {
+        _mapProgress.values( ).stream( ).filter( progress -> progress.getIdBatch( ) != nIdBatchKept )
+                .min( Comparator.comparingLong( BatchProgress::getLastUpdate ) ).ifPresent( progress -> _mapProgress.remove( progress.getIdBatch( ), progress ) );
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.shard;
+
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.shard.ImportShard;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.client.ResilientIdentityStoreClient;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.task.batchimport.BatchIdentityImportTask;
+import fr.paris.lutece.plugins.workflowcore.service.task.ITask;
+import fr.paris.lutece.plugins.workflowcore.service.task.ITaskService;
+import fr.paris.lutece.plugins.workflowcore.service.task.TaskService;
+import fr.paris.lutece.portal.service.daemon.Daemon;
+import fr.paris.lutece.portal.service.i18n.I18nService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+
+/**
+ * Daemon importing the shards of the batches started on any node
+ */
+public class ImportShardDaemon extends Daemon
+{
+    private final ITaskService _taskService = SpringContextService.getBean( TaskService.BEAN_SERVICE );
+
+    @Override
+    public void run( )
+    {
+        final ImportShardService shardService = ImportShardService.instance( );
+        if ( !shardService.isEnabled( ) )
+        {
+            setLastRunLogs( "Import shards disabled" );
+            return;
+        }
+
+        int nImported = 0;
+        while ( ResilientIdentityStoreClient.instance( ).isAvailable( ) )
+        {
+            final ImportShard shard = shardService.claim( 0 );
+            if ( shard == null )
+            {
+                break;
+            }
+            final ITask task = _taskService.findByPrimaryKey( shard.getIdTask( ), I18nService.getDefaultLocale( ) );
+            if ( !( task instanceof BatchIdentityImportTask ) )
+            {
+                // Left claimed, taken again once its lease expires
+                AppLogService.error( "Import shard " + shard.getId( ) + " refers to task " + shard.getIdTask( ) + " which is not a batch import task" );
+                break;
+            }
+            ( (BatchIdentityImportTask) task ).importShard( shard );
+            nImported++;
+        }
+        setLastRunLogs( nImported + " import shard(s) imported by node " + shardService.getNode( ) );
+    }
+}
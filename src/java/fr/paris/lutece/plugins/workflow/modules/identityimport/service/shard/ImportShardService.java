@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.shard;
+
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.shard.ImportShard;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.shard.ImportShardHome;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import org.apache.commons.lang3.StringUtils;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Coordination of the nodes importing the same batch.<br>
+ * The candidate identities of a batch are split into shards of consecutive ids, stored in the database. Each node claims a shard with a lease, imports
+ * it while a {@link ShardLeaseHeartbeat} renews the lease, then marks it as done. A shard whose lease has expired, because its node stopped, can be
+ * claimed by another node. The node which completes the last shard of a batch summarizes the outcomes of all the shards in the history of the batch
+ * and completes the batch import. A batch is split only once: while it has unfinished shards, starting its import again resumes them.
+ */
+public final class ImportShardService
+{
+    // Properties
+    private static final String PROPERTY_ENABLED = "identityimport_config.shard.enabled";
+    private static final String PROPERTY_SIZE = "identityimport_config.shard.size";
+    private static final String PROPERTY_LEASE_DURATION = "identityimport_config.shard.lease.duration";
+    private static final String PROPERTY_NODE = "identityimport_config.shard.node";
+
+    // Defaults
+    private static final int DEFAULT_SIZE = 1000;
+    private static final long DEFAULT_LEASE_DURATION = 300000L;
+
+    private static ImportShardService _instance;
+
+    private final boolean _bEnabled;
+    private final int _nSize;
+    private final long _lLeaseDuration;
+    private final String _strNode;
+    private final ScheduledExecutorService _heartbeats;
+
+    private ImportShardService( )
+    {
+        _bEnabled = AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLED, false );
+        _nSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_SIZE, DEFAULT_SIZE ) );
+        _lLeaseDuration = Math.max( 1000L, AppPropertiesService.getPropertyLong( PROPERTY_LEASE_DURATION, DEFAULT_LEASE_DURATION ) );
+        // pid@host by default, unique per JVM
+        _strNode = StringUtils.left(
+                StringUtils.defaultIfBlank( AppPropertiesService.getProperty( PROPERTY_NODE ), ManagementFactory.getRuntimeMXBean( ).getName( ) ), 255 );
+        _heartbeats = Executors.newSingleThreadScheduledExecutor( runnable -> {
+            final Thread thread = new Thread( runnable, "identityimport-shard-heartbeat" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+    }
+
+    /**
+     * Get the unique instance of the service
+     *
+     * @return the instance
+     */
+    public static synchronized ImportShardService instance( )
+    {
+        if ( _instance == null )
+        {
+            _instance = new ImportShardService( );
+        }
+        return _instance;
+    }
+
+    /**
+     * @return true if the batches are split into shards imported by all the nodes
+     */
+    public boolean isEnabled( )
+    {
+        return _bEnabled;
+    }
+
+    /**
+     * @return the name of this node in the claims
+     */
+    public String getNode( )
+    {
+        return _strNode;
+    }
+
+    /**
+     * Split the candidate identities of a batch import into pending shards, unless the batch still has unfinished shards from a previous import,
+     * which are then imported instead
+     *
+     * @param nIdBatch
+     *            the batch id
+     * @param nIdResourceHistory
+     *            the workflow history of the batch import
+     * @param nIdTask
+     *            the batch import task
+     * @param listIds
+     *            the candidate identity ids of the batch, ordered
+     * @return true if the shards have been created, false if the unfinished shards of the batch are resumed
+     */
+    public boolean createShards( final int nIdBatch, final int nIdResourceHistory, final int nIdTask, final List<Integer> listIds )
+    {
+        final int nUnfinished = ImportShardHome.countUnfinishedByBatch( nIdBatch );
+        if ( nUnfinished > 0 )
+        {
+            AppLogService.info( "Batch " + nIdBatch + " has " + nUnfinished + " unfinished import shard(s), resumed instead of splitting the batch again" );
+            return false;
+        }
+        final List<ImportShard> listShards = new ArrayList<>( ( listIds.size( ) + _nSize - 1 ) / _nSize );
+        for ( int nFrom = 0; nFrom < listIds.size( ); nFrom += _nSize )
+        {
+            final int nTo = Math.min( nFrom + _nSize, listIds.size( ) );
+            final ImportShard shard = new ImportShard( );
+            shard.setIdBatch( nIdBatch );
+            shard.setIdResourceHistory( nIdResourceHistory );
+            shard.setIdTask( nIdTask );
+            shard.setFirstId( listIds.get( nFrom ) );
+            shard.setLastId( listIds.get( nTo - 1 ) );
+            shard.setCandidateCount( nTo - nFrom );
+            listShards.add( shard );
+        }
+        ImportShardHome.create( listShards );
+        AppLogService.info( "Batch " + nIdBatch + " split into " + listShards.size( ) + " import shard(s)" );
+        return true;
+    }
+
+    /**
+     * Claim a shard for this node
+     *
+     * @param nIdBatch
+     *            the batch id, or 0 for a shard of any batch
+     * @return the shard, or null if there is no shard to claim
+     */
+    public ImportShard claim( final int nIdBatch )
+    {
+        return ImportShardHome.claim( nIdBatch, _strNode, _lLeaseDuration );
+    }
+
+    /**
+     * Extend the lease of a shard claimed by this node
+     *
+     * @param shard
+     *            the shard
+     * @return true if the shard is still claimed by this node
+     */
+    public boolean renew( final ImportShard shard )
+    {
+        final boolean bHeld = ImportShardHome.renew( shard, _lLeaseDuration );
+        if ( !bHeld )
+        {
+            AppLogService.error(
+                    "Lease of import shard " + shard.getId( ) + " of batch " + shard.getIdBatch( ) + " lost, shard left to the node which took it over" );
+        }
+        return bHeld;
+    }
+
+    /**
+     * Start renewing the lease of a shard claimed by this node, several times per lease duration
+     *
+     * @param shard
+     *            the shard
+     * @return the heartbeat, to be closed once the shard is imported
+     */
+    public ShardLeaseHeartbeat startHeartbeat( final ImportShard shard )
+    {
+        return new ShardLeaseHeartbeat( shard, _heartbeats, Math.max( 1L, _lLeaseDuration / 3 ) );
+    }
+
+    /**
+     * Mark a shard as done, with its outcomes
+     *
+     * @param shard
+     *            the shard, with its outcomes
+     * @return the done shards of the batch import if the shard was the last one and they are to be summarized by this node, empty otherwise
+     */
+    public List<ImportShard> complete( final ImportShard shard )
+    {
+        ImportShardHome.complete( shard );
+        if ( ImportShardHome.countUnfinished( shard.getIdResourceHistory( ) ) > 0 )
+        {
+            return Collections.emptyList( );
+        }
+        return ImportShardHome.summarize( shard.getIdResourceHistory( ) );
+    }
+
+    /**
+     * Delete the shards of a batch import once summarized
+     *
+     * @param nIdResourceHistory
+     *            the workflow history of the batch import
+     */
+    public void remove( final int nIdResourceHistory )
+    {
+        ImportShardHome.removeByResourceHistory( nIdResourceHistory );
+    }
+}
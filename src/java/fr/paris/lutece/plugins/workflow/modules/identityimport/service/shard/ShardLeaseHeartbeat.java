@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.shard;
+
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.shard.ImportShard;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Renews the lease of a shard at a fixed rate while it is imported, so that a slow chunk doesn't let the lease expire. Once the lease is lost, it is
+ * not renewed any more and {@link #isHeld()} returns false.
+ */
+public final class ShardLeaseHeartbeat implements AutoCloseable
+{
+    private final ImportShard _shard;
+    private final ScheduledFuture<?> _future;
+    private volatile boolean _bHeld = true;
+
+    /**
+     * Constructor, starts the heartbeat
+     *
+     * @param shard
+     *            the shard, claimed by this node
+     * @param scheduler
+     *            the scheduler running the renewals
+     * @param lInterval
+     *            the interval between two renewals, in ms
+     */
+    ShardLeaseHeartbeat( final ImportShard shard, final ScheduledExecutorService scheduler, final long lInterval )
+    {
+        _shard = shard;
+        _future = scheduler.scheduleWithFixedDelay( this::renew, lInterval, lInterval, TimeUnit.MILLISECONDS );
+    }
+
+    private void renew( )
+    {
+        // Once lost, the lease is left to the node which took the shard over
+        if ( _bHeld && !ImportShardService.instance( ).renew( _shard ) )
+        {
+            _bHeld = false;
+        }
+    }
+
+    /**
+     * @return true if the shard is still claimed by this node
+     */
+    public boolean isHeld( )
+    {
+        return _bHeld;
+    }
+
+    /**
+     * Stop the heartbeat
+     */
+    @Override
+    public void close( )
+    {
+        _future.cancel( false );
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.validation;
+
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.AttributeDto;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.IdentityDto;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import org.apache.commons.lang3.StringUtils;
+
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Validator of the attributes of the identities, with rules read once from the properties:
+ * <ul>
+ * <li><code>identityimport_config.validation.mandatory</code>: the keys of the attributes which must have a value</li>
+ * <li><code>identityimport_config.validation.pattern.&lt;key&gt;</code>: the regular expression matching the whole value of an attribute</li>
+ * <li><code>identityimport_config.validation.date.&lt;key&gt;</code>: the date format of an attribute, parsed strictly</li>
+ * <li><code>identityimport_config.validation.values.&lt;key&gt;</code>: the comma separated values allowed for an attribute</li>
+ * </ul>
+ */
+public class AttributeRulesValidator implements IIdentityValidator
+{
+    // Properties
+    private static final String PROPERTY_MANDATORY = "identityimport_config.validation.mandatory";
+    private static final String PROPERTY_PREFIX_PATTERN = "identityimport_config.validation.pattern.";
+    private static final String PROPERTY_PREFIX_DATE = "identityimport_config.validation.date.";
+    private static final String PROPERTY_PREFIX_VALUES = "identityimport_config.validation.values.";
+
+    private static final String SEPARATOR = ",";
+
+    private final Set<String> _setMandatoryKeys;
+    private final Map<String, Pattern> _mapPatterns;
+    private final Map<String, DateTimeFormatter> _mapDateFormats;
+    private final Map<String, Set<String>> _mapValues;
+
+    /**
+     * Constructor, loading the rules from the properties
+     */
+    public AttributeRulesValidator( )
+    {
+        this( splitValues( AppPropertiesService.getProperty( PROPERTY_MANDATORY ) ), readRules( PROPERTY_PREFIX_PATTERN ), readRules( PROPERTY_PREFIX_DATE ),
+                readRules( PROPERTY_PREFIX_VALUES ) );
+    }
+
+    /**
+     * Constructor
+     *
+     * @param setMandatoryKeys
+     *            the keys of the attributes which must have a value
+     * @param mapPatterns
+     *            the regular expressions, by attribute key
+     * @param mapDateFormats
+     *            the date formats, by attribute key
+     * @param mapValues
+     *            the comma separated allowed values, by attribute key
+     */
+    AttributeRulesValidator( final Set<String> setMandatoryKeys, final Map<String, String> mapPatterns, final Map<String, String> mapDateFormats,
+            final Map<String, String> mapValues )
+    {
+        _setMandatoryKeys = setMandatoryKeys;
+        _mapPatterns = new HashMap<>( );
+        mapPatterns.forEach( ( strKey, strPattern ) -> {
+            try
+            {
+                _mapPatterns.put( strKey, Pattern.compile( strPattern ) );
+            }
+            catch( final PatternSyntaxException e )
+            {
+                AppLogService.error( "Invalid validation pattern of attribute " + strKey + ", rule ignored", e );
+            }
+        } );
+        _mapDateFormats = new HashMap<>( );
+        mapDateFormats.forEach( ( strKey, strFormat ) -> {
+            try
+            {
+                // uuuu instead of yyyy, so that the strict resolver doesn't require an era
+                _mapDateFormats.put( strKey, DateTimeFormatter.ofPattern( strFormat.replace( 'y', 'u' ) ).withResolverStyle( ResolverStyle.STRICT ) );
+            }
+            catch( final IllegalArgumentException e )
+            {
+                AppLogService.error( "Invalid validation date format of attribute " + strKey + ", rule ignored", e );
+            }
+        } );
+        _mapValues = new HashMap<>( );
+        mapValues.forEach( ( strKey, strValues ) -> _mapValues.put( strKey, splitValues( strValues ) ) );
+    }
+
+    @Override
+    public void validate( final IdentityDto identity, final List<ValidationError> listErrors )
+    {
+        int nMandatoryFound = 0;
+        final List<AttributeDto> attributes = identity.getAttributes( ) != null ? identity.getAttributes( ) : Collections.emptyList( );
+        for ( final AttributeDto attribute : attributes )
+        {
+            final String strKey = attribute.getKey( );
+            final String strValue = attribute.getValue( );
+            if ( StringUtils.isEmpty( strValue ) )
+            {
+                // Reported as missing below if mandatory, other rules don't apply to empty values
+                continue;
+            }
+            // The keys of the attributes of an identity are unique
+            if ( _setMandatoryKeys.contains( strKey ) )
+            {
+                nMandatoryFound++;
+            }
+
+            final Pattern pattern = _mapPatterns.get( strKey );
+            if ( pattern != null && !pattern.matcher( strValue ).matches( ) )
+            {
+                listErrors.add( new ValidationError( strKey, ValidationError.CODE_INVALID_FORMAT, "Invalid format" ) );
+            }
+            final DateTimeFormatter dateFormat = _mapDateFormats.get( strKey );
+            if ( dateFormat != null && !isDate( strValue, dateFormat ) )
+            {
+                listErrors.add( new ValidationError( strKey, ValidationError.CODE_INVALID_DATE, "Invalid date" ) );
+            }
+            final Set<String> setValues = _mapValues.get( strKey );
+            if ( setValues != null && !setValues.contains( strValue ) )
+            {
+                listErrors.add( new ValidationError( strKey, ValidationError.CODE_UNKNOWN_VALUE, "Unknown value" ) );
+            }
+        }
+
+        if ( nMandatoryFound < _setMandatoryKeys.size( ) )
+        {
+            reportMissing( attributes, listErrors );
+        }
+    }
+
+    /**
+     * Report the mandatory attributes without value, only called when one at least is missing
+     */
+    private void reportMissing( final List<AttributeDto> attributes, final List<ValidationError> listErrors )
+    {
+        final Set<String> setFound = new HashSet<>( );
+        for ( final AttributeDto attribute : attributes )
+        {
+            if ( StringUtils.isNotEmpty( attribute.getValue( ) ) )
+            {
+                setFound.add( attribute.getKey( ) );
+            }
+        }
+        for ( final String strKey : _setMandatoryKeys )
+        {
+            if ( !setFound.contains( strKey ) )
+            {
+                listErrors.add( new ValidationError( strKey, ValidationError.CODE_MISSING, "Mandatory attribute missing" ) );
+            }
+        }
+    }
+
+    private static boolean isDate( final String strValue, final DateTimeFormatter dateFormat )
+    {
+        try
+        {
+            dateFormat.parse( strValue );
+            return true;
+        }
+        catch( final DateTimeParseException e )
+        {
+            return false;
+        }
+    }
+
+    private static Map<String, String> readRules( final String strPrefix )
+    {
+        final Map<String, String> mapRules = new HashMap<>( );
+        for ( final String strProperty : AppPropertiesService.getKeys( strPrefix ) )
+        {
+            final String strRule = AppPropertiesService.getProperty( strProperty );
+            if ( StringUtils.isNotBlank( strRule ) )
+            {
+                mapRules.put( strProperty.substring( strPrefix.length( ) ), strRule.trim( ) );
+            }
+        }
+        return mapRules;
+    }
+
+    private static Set<String> splitValues( final String strValues )
+    {
+        final Set<String> setValues = new HashSet<>( );
+        if ( StringUtils.isNotBlank( strValues ) )
+        {
+            Arrays.stream( strValues.split( SEPARATOR ) ).map( String::trim ).filter( StringUtils::isNotEmpty ).forEach( setValues::add );
+        }
+        return setValues;
+    }
+}
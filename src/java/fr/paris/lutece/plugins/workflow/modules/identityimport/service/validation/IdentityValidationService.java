@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.validation;
+
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.IdentityDto;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateAttributeStatus;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Local validation of the identities before they are sent to the identity store, so that the identities the identity store would reject for their
+ * format don't cost a call. The validation runs all the {@link IIdentityValidator} beans, found once.
+ */
+public final class IdentityValidationService
+{
+    /** Outcome of an identity rejected by the local validation */
+    public static final String OUTCOME_INVALID = "INVALID";
+
+    // Properties
+    private static final String PROPERTY_ENABLED = "identityimport_config.validation.enabled";
+
+    private static IdentityValidationService _instance;
+
+    private final boolean _bEnabled;
+    private final List<IIdentityValidator> _listValidators;
+
+    private IdentityValidationService( )
+    {
+        _bEnabled = AppPropertiesService.getPropertyBoolean( PROPERTY_ENABLED, false );
+        _listValidators = _bEnabled ? SpringContextService.getBeansOfType( IIdentityValidator.class ) : Collections.emptyList( );
+    }
+
+    /**
+     * Get the unique instance of the service
+     *
+     * @return the instance
+     */
+    public static synchronized IdentityValidationService instance( )
+    {
+        if ( _instance == null )
+        {
+            _instance = new IdentityValidationService( );
+        }
+        return _instance;
+    }
+
+    /**
+     * Validate an identity
+     *
+     * @param identity
+     *            the identity, as mapped from its candidate identity
+     * @return the errors found, empty if the identity is valid or the validation is disabled
+     */
+    public List<ValidationError> validate( final IdentityDto identity )
+    {
+        if ( _listValidators.isEmpty( ) )
+        {
+            return Collections.emptyList( );
+        }
+        final List<ValidationError> listErrors = new ArrayList<>( 0 );
+        for ( final IIdentityValidator validator : _listValidators )
+        {
+            validator.validate( identity, listErrors );
+        }
+        return listErrors;
+    }
+
+    /**
+     * Convert validation errors to the attribute statuses of a candidate identity history
+     *
+     * @param nIdResourceHistory
+     *            the workflow history id
+     * @param listErrors
+     *            the validation errors
+     * @return the attribute statuses, one per attribute
+     */
+    public static List<CandidateAttributeStatus> toAttributeStatuses( final int nIdResourceHistory, final List<ValidationError> listErrors )
+    {
+        final List<CandidateAttributeStatus> listAttributeStatuses = new ArrayList<>( listErrors.size( ) );
+        final List<String> listKeys = new ArrayList<>( listErrors.size( ) );
+        for ( final ValidationError error : listErrors )
+        {
+            // The attribute statuses are unique by attribute, the first error of an attribute is kept
+            if ( !listKeys.contains( error.getAttributeKey( ) ) )
+            {
+                listKeys.add( error.getAttributeKey( ) );
+                listAttributeStatuses.add( new CandidateAttributeStatus( nIdResourceHistory, error.getAttributeKey( ), error.getCode( ), error.getMessage( ) ) );
+            }
+        }
+        return listAttributeStatuses;
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.validation;
+
+/**
+ * An attribute of an identity rejected by a validator before the identity store is called
+ */
+public final class ValidationError
+{
+    /** A mandatory attribute is missing or empty */
+    public static final String CODE_MISSING = "MISSING";
+    /** The value doesn't match the format of the attribute */
+    public static final String CODE_INVALID_FORMAT = "INVALID_FORMAT";
+    /** The value is not a valid date */
+    public static final String CODE_INVALID_DATE = "INVALID_DATE";
+    /** The value is not in the referential of the attribute */
+    public static final String CODE_UNKNOWN_VALUE = "UNKNOWN_VALUE";
+
+    private final String _strAttributeKey;
+    private final String _strCode;
+    private final String _strMessage;
+
+    /**
+     * Constructor
+     *
+     * @param strAttributeKey
+     *            the attribute key
+     * @param strCode
+     *            the error code
+     * @param strMessage
+     *            the error message
+     */
+    public ValidationError( final String strAttributeKey, final String strCode, final String strMessage )
+    {
+        _strAttributeKey = strAttributeKey;
+        _strCode = strCode;
+        _strMessage = strMessage;
+    }
+
+    /**
+     * @return the attribute key
+     */
+    public String getAttributeKey( )
+    {
+        return _strAttributeKey;
+    }
+
+    /**
+     * @return the error code
+     */
+    public String getCode( )
+    {
+        return _strCode;
+    }
+
+    /**
+     * @return the error message
+     */
+    public String getMessage( )
+    {
+        return _strMessage;
+    }
+}
@@ -0,0 +1,505 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.writer;
+
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistory;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.AttributeStatus;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatus;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateAttributeStatus;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateIdentityImportHash;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.ICandidateIdentityWriterDAO;
+import fr.paris.lutece.plugins.workflowcore.business.resource.ResourceHistory;
+import fr.paris.lutece.portal.service.init.ShutdownService;
+import fr.paris.lutece.portal.service.init.ShutdownServiceManager;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.util.sql.TransactionManager;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Write-behind buffer for the candidate identity histories, their workflow histories, their attribute statuses and customer ids written by the identity
+ * tasks.<br>
+ * Each thread has its own buffer, written as JDBC batches when it reaches its size limit and when the thread calls {@link #flush()}. A task must call
+ * {@link #flush()} before its workflow transition is committed, so that no transition is ever visible without its history. The rows of a task are
+ * written within the transaction of the task, so they are committed or rolled back with it. The threads are pooled, so a task must also call
+ * {@link #discard()} when it ends, in a <code>finally</code> block, so that the rows of a failed task are never written with those of the next task
+ * run by the same thread.<br>
+ * The rows are not coalesced over time across tasks, as the rows of a task must be committed with its transaction: the batches are as large as the
+ * tasks, a batch import filling them by chunk. The buffers left by terminated threads are written periodically, and all the buffers on shutdown.
+ */
+public final class CandidateIdentityWriteBehindService implements ShutdownService
+{
+    // Properties
+    private static final String PROPERTY_BATCH_SIZE = "identityimport_config.writer.batch.size";
+    private static final String PROPERTY_FLUSH_INTERVAL = "identityimport_config.writer.flush.interval";
+
+    // Defaults
+    private static final int DEFAULT_BATCH_SIZE = 500;
+    private static final long DEFAULT_FLUSH_INTERVAL = 1000L;
+
+    // Column sizes
+    private static final int MAX_ATTRIBUTE_KEY_LENGTH = 100;
+    private static final int MAX_ATTRIBUTE_STATUS_LENGTH = 50;
+    private static final int MAX_ATTRIBUTE_MESSAGE_LENGTH = 255;
+    private static final String ATTRIBUTE_STATUS_UNKNOWN = "UNKNOWN";
+
+    private static CandidateIdentityWriteBehindService _instance;
+
+    private final ICandidateIdentityWriterDAO _dao = SpringContextService.getBean( "workflow-identityimport.candidateIdentityWriterDAO" );
+    private final int _nBatchSize;
+
+    // Guards the buffers
+    private final ReentrantLock _bufferLock = new ReentrantLock( );
+    private final Map<Thread, Buffer> _mapBuffers = new HashMap<>( );
+
+    private CandidateIdentityWriteBehindService( )
+    {
+        _nBatchSize = Math.max( 1, AppPropertiesService.getPropertyInt( PROPERTY_BATCH_SIZE, DEFAULT_BATCH_SIZE ) );
+        final long lFlushInterval = Math.max( 100L, AppPropertiesService.getPropertyLong( PROPERTY_FLUSH_INTERVAL, DEFAULT_FLUSH_INTERVAL ) );
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor( runnable -> {
+            final Thread thread = new Thread( runnable, "identityimport-writer" );
+            thread.setDaemon( true );
+            return thread;
+        } );
+        scheduler.scheduleWithFixedDelay( this::flushTerminated, lFlushInterval, lFlushInterval, TimeUnit.MILLISECONDS );
+    }
+
+    /**
+     * Get the unique instance of the service
+     *
+     * @return the instance
+     */
+    public static synchronized CandidateIdentityWriteBehindService instance( )
+    {
+        if ( _instance == null )
+        {
+            _instance = new CandidateIdentityWriteBehindService( );
+            ShutdownServiceManager.registerShutdownService( _instance );
+        }
+        return _instance;
+    }
+
+    /**
+     * Buffer the insertion of a candidate identity history
+     *
+     * @param history
+     *            the history
+     */
+    public void addHistory( final CandidateIdentityHistory history )
+    {
+        addHistory( history, Collections.emptyList( ) );
+    }
+
+    /**
+     * Buffer the insertion of a candidate identity history, with the statuses of the attributes in the identity store response
+     *
+     * @param history
+     *            the history
+     * @param status
+     *            the identity store response status, may be null
+     */
+    public void addHistory( final CandidateIdentityHistory history, final ResponseStatus status )
+    {
+        addHistory( history, toAttributeStatuses( history.getWfResourceHistoryId( ), status ) );
+    }
+
+    /**
+     * Buffer the insertion of a new workflow history, with its candidate identity history and the statuses of the attributes in the identity store
+     * response. The workflow history is inserted first, its generated id is then set on the candidate identity history and the attribute statuses.
+     *
+     * @param resourceHistory
+     *            the workflow history, not created yet
+     * @param history
+     *            the candidate identity history
+     * @param status
+     *            the identity store response status, may be null
+     */
+    public void addHistory( final ResourceHistory resourceHistory, final CandidateIdentityHistory history, final ResponseStatus status )
+    {
+        addHistory( resourceHistory, history, toAttributeStatuses( 0, status ) );
+    }
+
+    /**
+     * Buffer the insertion of a new workflow history, with its candidate identity history and the statuses of its attributes. The workflow history is
+     * inserted first, its generated id is then set on the candidate identity history and the attribute statuses.
+     *
+     * @param resourceHistory
+     *            the workflow history, not created yet
+     * @param history
+     *            the candidate identity history
+     * @param listAttributeStatuses
+     *            the attribute statuses, at most one per attribute
+     */
+    public void addHistory( final ResourceHistory resourceHistory, final CandidateIdentityHistory history,
+            final List<CandidateAttributeStatus> listAttributeStatuses )
+    {
+        add( new PendingHistory( resourceHistory, history, listAttributeStatuses ) );
+    }
+
+    /**
+     * Buffer the insertion of a candidate identity history, with the statuses of its attributes
+     *
+     * @param history
+     *            the history
+     * @param listAttributeStatuses
+     *            the attribute statuses, at most one per attribute
+     */
+    public void addHistory( final CandidateIdentityHistory history, final List<CandidateAttributeStatus> listAttributeStatuses )
+    {
+        add( new PendingHistory( null, history, listAttributeStatuses ) );
+    }
+
+    private void add( final PendingHistory pendingHistory )
+    {
+        for ( final CandidateAttributeStatus attributeStatus : pendingHistory._listAttributeStatuses )
+        {
+            attributeStatus.setAttributeKey( truncate( attributeStatus.getAttributeKey( ), MAX_ATTRIBUTE_KEY_LENGTH ) );
+            attributeStatus.setStatus( truncate( attributeStatus.getStatus( ), MAX_ATTRIBUTE_STATUS_LENGTH ) );
+            attributeStatus.setMessage( truncate( attributeStatus.getMessage( ), MAX_ATTRIBUTE_MESSAGE_LENGTH ) );
+        }
+
+        final boolean bFull;
+        _bufferLock.lock( );
+        try
+        {
+            final Buffer buffer = getBuffer( );
+            if ( pendingHistory._resourceHistory != null )
+            {
+                buffer._listResourceHistories.add( pendingHistory._resourceHistory );
+                buffer._listPendingHistories.add( pendingHistory );
+            }
+            buffer._listHistories.add( pendingHistory._history );
+            buffer._listAttributeStatuses.addAll( pendingHistory._listAttributeStatuses );
+            bFull = buffer.size( ) >= _nBatchSize;
+        }
+        finally
+        {
+            _bufferLock.unlock( );
+        }
+        if ( bFull )
+        {
+            flush( );
+        }
+    }
+
+    /**
+     * Buffer the update of the customer id of a candidate identity. Successive updates of the same candidate identity are coalesced.
+     *
+     * @param nIdCandidateIdentity
+     *            the candidate identity id
+     * @param strCustomerId
+     *            the customer id
+     */
+    public void addCustomerId( final int nIdCandidateIdentity, final String strCustomerId )
+    {
+        final boolean bFull;
+        _bufferLock.lock( );
+        try
+        {
+            final Buffer buffer = getBuffer( );
+            buffer._mapCustomerIds.put( nIdCandidateIdentity, strCustomerId );
+            bFull = buffer.size( ) >= _nBatchSize;
+        }
+        finally
+        {
+            _bufferLock.unlock( );
+        }
+        if ( bFull )
+        {
+            flush( );
+        }
+    }
+
+    /**
+     * Buffer the content hash of a successful import, written in the same transaction as the customer id. Successive imports of the same candidate
+     * identity are coalesced.
+     *
+     * @param importHash
+     *            the content hash
+     */
+    public void addImportHash( final CandidateIdentityImportHash importHash )
+    {
+        final boolean bFull;
+        _bufferLock.lock( );
+        try
+        {
+            final Buffer buffer = getBuffer( );
+            buffer._mapImportHashes.put( importHash.getIdCandidateIdentity( ), importHash );
+            bFull = buffer.size( ) >= _nBatchSize;
+        }
+        finally
+        {
+            _bufferLock.unlock( );
+        }
+        if ( bFull )
+        {
+            flush( );
+        }
+    }
+
+    /**
+     * Write the changes buffered by the calling thread, within its transaction if it has one. The changes buffered by the other threads are left to
+     * them.
+     *
+     * @throws AppException
+     *             if the changes could not be written. The transaction is rolled back and the changes are discarded, they belonged to it
+     */
+    public void flush( )
+    {
+        final Buffer buffer;
+        _bufferLock.lock( );
+        try
+        {
+            buffer = _mapBuffers.remove( Thread.currentThread( ) );
+        }
+        finally
+        {
+            _bufferLock.unlock( );
+        }
+        if ( buffer != null )
+        {
+            write( buffer );
+        }
+    }
+
+    /**
+     * Discard the changes buffered by the calling thread and not written yet. Called when a task ends, after its {@link #flush()} if it succeeded.
+     *
+     * @return the number of changes discarded
+     */
+    public int discard( )
+    {
+        final Buffer buffer;
+        _bufferLock.lock( );
+        try
+        {
+            buffer = _mapBuffers.remove( Thread.currentThread( ) );
+        }
+        finally
+        {
+            _bufferLock.unlock( );
+        }
+        final int nDiscarded = buffer != null ? buffer.size( ) : 0;
+        if ( nDiscarded > 0 )
+        {
+            AppLogService.error( nDiscarded + " candidate identity histories and customer ids of a failed task discarded" );
+        }
+        return nDiscarded;
+    }
+
+    /**
+     * Write a buffer in one transaction, nested in the transaction of the calling thread if it has one
+     */
+    private void write( final Buffer buffer )
+    {
+        if ( buffer.size( ) == 0 )
+        {
+            return;
+        }
+        try
+        {
+            TransactionManager.beginTransaction( null );
+            _dao.insertResourceHistories( buffer._listResourceHistories );
+            buffer._listPendingHistories.forEach( PendingHistory::setIdResourceHistory );
+            _dao.insertHistories( buffer._listHistories );
+            _dao.insertAttributeStatuses( buffer._listAttributeStatuses );
+            _dao.updateCustomerIds( buffer._mapCustomerIds );
+            _dao.storeImportHashes( buffer._mapImportHashes.values( ) );
+            TransactionManager.commitTransaction( null );
+        }
+        catch( final Exception e )
+        {
+            TransactionManager.rollBack( null, e );
+            // Not restored: retried with the next rows, a bad row would fail every later flush
+            throw new AppException( "Unable to write candidate identity histories, " + buffer._listHistories.size( ) + " histories and "
+                    + buffer._mapCustomerIds.size( ) + " customer ids discarded", e );
+        }
+    }
+
+    /**
+     * @return the buffer of the calling thread, to be called with the buffer lock held
+     */
+    private Buffer getBuffer( )
+    {
+        return _mapBuffers.computeIfAbsent( Thread.currentThread( ), thread -> new Buffer( ) );
+    }
+
+    /**
+     * Write the buffers left by the terminated threads, which have no transaction anymore
+     */
+    private void flushTerminated( )
+    {
+        final List<Buffer> listBuffers = new ArrayList<>( );
+        _bufferLock.lock( );
+        try
+        {
+            final Iterator<Map.Entry<Thread, Buffer>> iterator = _mapBuffers.entrySet( ).iterator( );
+            while ( iterator.hasNext( ) )
+            {
+                final Map.Entry<Thread, Buffer> entry = iterator.next( );
+                if ( !entry.getKey( ).isAlive( ) )
+                {
+                    listBuffers.add( entry.getValue( ) );
+                    iterator.remove( );
+                }
+            }
+        }
+        finally
+        {
+            _bufferLock.unlock( );
+        }
+        writeQuietly( listBuffers );
+    }
+
+    private void writeQuietly( final List<Buffer> listBuffers )
+    {
+        for ( final Buffer buffer : listBuffers )
+        {
+            try
+            {
+                write( buffer );
+            }
+            catch( final Exception e )
+            {
+                AppLogService.error( "A problem occurred while writing candidate identity histories", e );
+            }
+        }
+    }
+
+    /**
+     * Convert the attribute statuses of an identity store response
+     */
+    private static List<CandidateAttributeStatus> toAttributeStatuses( final int nIdResourceHistory, final ResponseStatus status )
+    {
+        if ( status == null || status.getAttributeStatuses( ) == null || status.getAttributeStatuses( ).isEmpty( ) )
+        {
+            return Collections.emptyList( );
+        }
+        final List<CandidateAttributeStatus> listAttributeStatuses = new ArrayList<>( status.getAttributeStatuses( ).size( ) );
+        for ( final AttributeStatus attributeStatus : status.getAttributeStatuses( ) )
+        {
+            // The key and the status are mandatory, a status without key cannot be stored
+            if ( attributeStatus.getKey( ) != null )
+            {
+                listAttributeStatuses.add( new CandidateAttributeStatus( nIdResourceHistory, attributeStatus.getKey( ),
+                        Objects.toString( attributeStatus.getStatus( ), ATTRIBUTE_STATUS_UNKNOWN ), attributeStatus.getMessage( ) ) );
+            }
+        }
+        return listAttributeStatuses;
+    }
+
+    private static String truncate( final String strValue, final int nMaxLength )
+    {
+        return strValue != null && strValue.length( ) > nMaxLength ? strValue.substring( 0, nMaxLength ) : strValue;
+    }
+
+    @Override
+    public String getName( )
+    {
+        return "workflow-identityimport candidate identity writer";
+    }
+
+    @Override
+    public void processShutdown( )
+    {
+        final List<Buffer> listBuffers;
+        _bufferLock.lock( );
+        try
+        {
+            listBuffers = new ArrayList<>( _mapBuffers.values( ) );
+            _mapBuffers.clear( );
+        }
+        finally
+        {
+            _bufferLock.unlock( );
+        }
+        writeQuietly( listBuffers );
+    }
+
+    /**
+     * Changes buffered by one thread
+     */
+    private static final class Buffer
+    {
+        private final List<ResourceHistory> _listResourceHistories = new ArrayList<>( );
+        private final List<PendingHistory> _listPendingHistories = new ArrayList<>( );
+        private final List<CandidateIdentityHistory> _listHistories = new ArrayList<>( );
+        private final List<CandidateAttributeStatus> _listAttributeStatuses = new ArrayList<>( );
+        private final Map<Integer, String> _mapCustomerIds = new LinkedHashMap<>( );
+        private final Map<Integer, CandidateIdentityImportHash> _mapImportHashes = new LinkedHashMap<>( );
+
+        int size( )
+        {
+            return _listHistories.size( ) + _mapCustomerIds.size( ) + _mapImportHashes.size( );
+        }
+    }
+
+    /**
+     * Candidate identity history waiting for the id of its workflow history
+     */
+    private static final class PendingHistory
+    {
+        private final ResourceHistory _resourceHistory;
+        private final CandidateIdentityHistory _history;
+        private final List<CandidateAttributeStatus> _listAttributeStatuses;
+
+        PendingHistory( final ResourceHistory resourceHistory, final CandidateIdentityHistory history,
+                final List<CandidateAttributeStatus> listAttributeStatuses )
+        {
+            _resourceHistory = resourceHistory;
+            _history = history;
+            _listAttributeStatuses = listAttributeStatuses;
+        }
+
+        void setIdResourceHistory( )
+        {
+            _history.setWfResourceHistoryId( _resourceHistory.getId( ) );
+            _listAttributeStatuses.forEach( attributeStatus -> attributeStatus.setIdResourceHistory( _resourceHistory.getId( ) ) );
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.task;
+
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatusType;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Immutable routing of the import outcomes of a task to their target states.<br>
+ * It is built once when the config of the task is loaded and shared by the copies of the config, so that the state of a candidate identity is
+ * resolved in memory as soon as the response of the identity store is known.
+ */
+public final class IdentityImportStateRouter
+{
+    /** Router of a task without routes: the candidate identities stay in their current state */
+    public static final IdentityImportStateRouter EMPTY = new IdentityImportStateRouter( Collections.emptyMap( ) );
+
+    private final Map<ResponseStatusType, Integer> _mapRoutes;
+
+    /**
+     * Constructor
+     *
+     * @param mapRoutes
+     *            the target state ids, by import outcome. Routes to a state id lower than 1 are ignored
+     */
+    public IdentityImportStateRouter( final Map<ResponseStatusType, Integer> mapRoutes )
+    {
+        final Map<ResponseStatusType, Integer> mapCopy = new EnumMap<>( ResponseStatusType.class );
+        mapRoutes.forEach( ( type, nIdState ) -> {
+            if ( type != null && nIdState != null && nIdState > 0 )
+            {
+                mapCopy.put( type, nIdState );
+            }
+        } );
+        _mapRoutes = Collections.unmodifiableMap( mapCopy );
+    }
+
+    /**
+     * Get the state configured for an import outcome
+     *
+     * @param type
+     *            the import outcome
+     * @return the id of the target state, or -1 if the candidate identity must stay in its current state
+     */
+    public int getIdTargetState( final ResponseStatusType type )
+    {
+        final Integer nIdState = type != null ? _mapRoutes.get( type ) : null;
+        return nIdState != null ? nIdState : -1;
+    }
+
+    /**
+     * @return the target state ids, by import outcome
+     */
+    public Map<ResponseStatusType, Integer> getRoutes( )
+    {
+        return _mapRoutes;
+    }
+}
@@ -35,96 +35,259 @@ package fr.paris.lutece.plugins.workflow.modules.identityimport.task;
 
 import fr.paris.lutece.api.user.User;
 import fr.paris.lutece.plugins.identityimport.business.CandidateIdentity;
-import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityAttributeHome;
 import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistory;
-import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistoryHome;
-import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHome;
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.AuthorType;
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.IdentityDto;
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.RequestAuthor;
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatus;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatusType;
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.crud.IdentityChangeRequest;
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.crud.IdentityChangeResponse;
-import fr.paris.lutece.plugins.identitystore.v3.web.rs.util.ResponseStatusFactory;
-import fr.paris.lutece.plugins.identitystore.v3.web.service.IdentityServiceExtended;
 import fr.paris.lutece.plugins.identitystore.web.exception.IdentityStoreException;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateIdentityImportHash;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateIdentityLoaderHome;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateIdentityResource;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.parking.ParkedResourceHome;
 import fr.paris.lutece.plugins.workflow.modules.identityimport.mapper.IdentityMapper;
-import fr.paris.lutece.plugins.workflowcore.business.resource.ResourceHistory;
-import fr.paris.lutece.plugins.workflowcore.service.resource.IResourceHistoryService;
-import fr.paris.lutece.plugins.workflowcore.service.resource.ResourceHistoryService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.CandidateStateTransitionService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.client.IdentityStoreUnavailableException;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.client.ResilientIdentityStoreClient;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.metrics.TaskPhase;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.outbox.OutboxService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.progress.BatchProgress;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.progress.BatchProgressService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.validation.IdentityValidationService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.validation.ValidationError;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.writer.CandidateIdentityWriteBehindService;
+import fr.paris.lutece.plugins.workflowcore.business.action.Action;
+import fr.paris.lutece.plugins.workflowcore.business.state.State;
+import fr.paris.lutece.plugins.workflowcore.service.action.ActionService;
+import fr.paris.lutece.plugins.workflowcore.service.action.IActionService;
+import fr.paris.lutece.plugins.workflowcore.service.config.ITaskConfigService;
+import fr.paris.lutece.plugins.workflowcore.service.state.IStateService;
+import fr.paris.lutece.plugins.workflowcore.service.state.StateService;
 import fr.paris.lutece.portal.service.i18n.I18nService;
 import fr.paris.lutece.portal.service.spring.SpringContextService;
 import fr.paris.lutece.portal.service.util.AppLogService;
 import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import org.apache.commons.lang3.StringUtils;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
 
+/**
+ * Imports a candidate identity in the identity store.<br>
+ * The candidate identity is moved to the state configured for the outcome of its import once the action has written its state after, see
+ * {@link CandidateStateTransitionService#moveAfterAction}. The candidate identities rejected by the validation are routed as a
+ * {@link ResponseStatusType#FAILURE}, and those whose call failed as {@link IdentityTask#ROUTE_ERROR}. When the outbox is enabled, the outcome is
+ * routed by the outbox dispatcher.
+ */
 public class IdentityImportTask extends IdentityTask
 {
 
     // Constants
     private static final String TASK_TITLE = "module.workflow.identityimport.title";
+    private static final String OUTCOME_QUEUED = "QUEUED";
 
     // Services
-    private static final IResourceHistoryService _resourceHistoryService = SpringContextService.getBean( ResourceHistoryService.BEAN_SERVICE );
-
-    private final IdentityServiceExtended identityServiceExtended = SpringContextService.getBean( "identityServiceExtended.rest.httpAccess.v3" );
+    private final ResilientIdentityStoreClient identityStoreClient = ResilientIdentityStoreClient.instance( );
+    private static final IStateService _stateService = SpringContextService.getBean( StateService.BEAN_SERVICE );
+    private static final IActionService _actionService = SpringContextService.getBean( ActionService.BEAN_SERVICE );
+    private final ITaskConfigService _taskConfigService = SpringContextService.getBean( "workflow-identityimport.identityImportTaskConfigService" );
 
     @Override
-    public boolean processTaskWithResult( int nIdResourceHistory, HttpServletRequest request, Locale locale, User user )
+    protected boolean processIdentityTask( int nIdResourceHistory, HttpServletRequest request, Locale locale, User user )
     {
-        // Get resource id as parent ID for processing child actions
-        final ResourceHistory resourceHistory = _resourceHistoryService.findByPrimaryKey( nIdResourceHistory );
+        // Get resource history with its candidate identity and attributes
+        final long lLoad = System.nanoTime( );
+        final CandidateIdentityResource resource = CandidateIdentityLoaderHome.findByResourceHistory( nIdResourceHistory );
+        recordPhase( TaskPhase.CANDIDATE_LOAD, lLoad );
+        if ( resource == null )
+        {
+            AppLogService.error( "A problem occurred during import, resource history not found (id : " + nIdResourceHistory + ")" );
+            return false;
+        }
         boolean bStatus = false;
+        ResponseStatusType route = null;
 
-        final Optional<CandidateIdentity> optIdentity = CandidateIdentityHome.findByPrimaryKey( resourceHistory.getIdResource( ) );
+        final Optional<CandidateIdentity> optIdentity = resource.getCandidateIdentity( );
         if ( optIdentity.isPresent( ) )
         {
             final CandidateIdentity candidateIdentity = optIdentity.get( );
-            candidateIdentity.setAttributes( CandidateIdentityAttributeHome.getCandidateIdentityAttributesList( candidateIdentity.getId( ) ) );
+            BatchProgressService.instance( ).track( candidateIdentity.getIdBatch( ) ).begin( 1 );
 
+            final long lMapping = System.nanoTime( );
             final IdentityChangeRequest identityChangeRequest = new IdentityChangeRequest( );
             final IdentityDto identity = IdentityMapper.mapToIdentity( candidateIdentity );
             identityChangeRequest.setIdentity( identity );
+            final String strContentHash = IdentityMapper.contentHash( identity );
+            final List<ValidationError> listValidationErrors = IdentityValidationService.instance( ).validate( identity );
+            recordPhase( TaskPhase.MAPPING, lMapping );
 
-            final RequestAuthor requestAuthor = new RequestAuthor( );
-            requestAuthor.setName( AppPropertiesService.getProperty( "identityimport_config.request.author" ) );
-            requestAuthor.setType( AuthorType.application );
-
-            try
+            if ( !listValidationErrors.isEmpty( ) )
             {
-                final IdentityChangeResponse response = identityServiceExtended.importIdentity( identityChangeRequest, candidateIdentity.getClientCode( ),
-                        requestAuthor );
-                final ResponseStatus status = response.getStatus( );
-                /* Complete workflow history with custom fields */
+                /* Rejected locally, the identity store would reject it too */
                 final CandidateIdentityHistory candidateIdentityHistory = new CandidateIdentityHistory( );
-                candidateIdentityHistory.setWfResourceHistoryId( resourceHistory.getId( ) );
-                candidateIdentityHistory.setStatus( status.getType( ).name( ) );
-                candidateIdentityHistory.setComment( this.buildHistoryComment( "API Import identity", status ) );
-                CandidateIdentityHistoryHome.insert( candidateIdentityHistory );
-                /* Process response */
-                if ( ResponseStatusFactory.success( ).equals( status ) || ResponseStatusFactory.incompleteSuccess( ).equals( status ) )
-                {
-                    candidateIdentity.setCustomerId( response.getCustomerId( ) );
-                    bStatus = true;
-                }
+                candidateIdentityHistory.setWfResourceHistoryId( resource.getIdResourceHistory( ) );
+                candidateIdentityHistory.setStatus( IdentityValidationService.OUTCOME_INVALID );
+                candidateIdentityHistory.setComment( buildHistoryComment( "API Import identity not called, identity rejected by the validation", null ) );
+                CandidateIdentityWriteBehindService.instance( ).addHistory( candidateIdentityHistory,
+                        IdentityValidationService.toAttributeStatuses( resource.getIdResourceHistory( ), listValidationErrors ) );
+                recordImportOutcome( IdentityValidationService.OUTCOME_INVALID, candidateIdentity );
+                route = ResponseStatusType.FAILURE;
             }
-            catch( IdentityStoreException e )
+            else if ( isUnchanged( candidateIdentity, strContentHash ) )
             {
-                AppLogService.error( "A problem occurred during import, candidate identity not imported (id : " + resourceHistory.getIdResource( ) + ")" );
+                /* Already imported with the same content, the identity store is not called again */
+                final CandidateIdentityHistory candidateIdentityHistory = new CandidateIdentityHistory( );
+                candidateIdentityHistory.setWfResourceHistoryId( resource.getIdResourceHistory( ) );
+                candidateIdentityHistory.setStatus( OUTCOME_UNCHANGED );
+                candidateIdentityHistory.setComment( buildHistoryComment( "API Import identity skipped, unchanged since its last import", null ) );
+                CandidateIdentityWriteBehindService.instance( ).addHistory( candidateIdentityHistory );
+                recordImportOutcome( OUTCOME_UNCHANGED, candidateIdentity );
+                bStatus = true;
+            }
+            else if ( OutboxService.instance( ).isEnabled( ) )
+            {
+                // Sent by the dispatcher daemon, which completes the history and moves the resource to the state of the outcome
+                // if it is still in the state after this action, which stands for the pending import
+                OutboxService.instance( ).enqueue( resource.getIdResourceHistory( ), resource.getIdResource( ), resource.getResourceType( ),
+                        resource.getIdWorkflow( ), this.getId( ), candidateIdentity.getIdBatch( ), candidateIdentity.getClientCode( ), strContentHash,
+                        identityChangeRequest );
+                recordImportOutcome( OUTCOME_QUEUED, candidateIdentity );
+                return true;
+            }
+            else
+            {
+                route = importIdentity( resource, candidateIdentity, identityChangeRequest, strContentHash );
+                bStatus = route == ResponseStatusType.SUCCESS || route == ResponseStatusType.INCOMPLETE_SUCCESS;
             }
-
-            CandidateIdentityHome.update( candidateIdentity );
         }
         else
         {
-            AppLogService.error( "A problem occurred during import, candidate identity not found (id : " + resourceHistory.getIdResource( ) + ")" );
+            AppLogService.error( "A problem occurred during import, candidate identity not found (id : " + resource.getIdResource( ) + ")" );
+        }
+
+        // History must be written before the workflow transition is committed
+        final long lFlush = System.nanoTime( );
+        CandidateIdentityWriteBehindService.instance( ).flush( );
+        recordPhase( TaskPhase.HISTORY_INSERT, lFlush );
+        if ( route != null )
+        {
+            route( resource, route );
         }
         return bStatus;
     }
 
+    /**
+     * Move the candidate identity to the state configured for the outcome of its import, once the action has written its state after
+     */
+    private void route( final CandidateIdentityResource resource, final ResponseStatusType route )
+    {
+        final IdentityImportTaskConfig config = _taskConfigService.findByPrimaryKey( this.getId( ) );
+        final int nIdTargetState = config != null ? config.getIdTargetState( route ) : -1;
+        if ( nIdTargetState <= 0 )
+        {
+            return;
+        }
+        // The task only carries the id of its action, the action is loaded with its states
+        final Action action = _actionService.findByPrimaryKey( this.getAction( ).getId( ) );
+        final State state = _stateService.findByPrimaryKey( nIdTargetState );
+        if ( action != null && state != null )
+        {
+            CandidateStateTransitionService.moveAfterAction( resource.getIdResource( ), resource.getResourceType( ), resource.getIdWorkflow( ), action,
+                    state );
+        }
+    }
+
+    /**
+     * Send a candidate identity to the identity store, and buffer its history, its customer id and its content hash
+     *
+     * @return the route of the outcome, null if the candidate identity has been parked
+     */
+    private ResponseStatusType importIdentity( final CandidateIdentityResource resource, final CandidateIdentity candidateIdentity,
+            final IdentityChangeRequest identityChangeRequest, final String strContentHash )
+    {
+        final RequestAuthor requestAuthor = new RequestAuthor( );
+        requestAuthor.setName( AppPropertiesService.getProperty( "identityimport_config.request.author" ) );
+        requestAuthor.setType( AuthorType.application );
+
+        try
+        {
+            final long lCall = System.nanoTime( );
+            final IdentityChangeResponse response;
+            try
+            {
+                response = identityStoreClient.importIdentity( identityChangeRequest, candidateIdentity.getClientCode( ), requestAuthor );
+            }
+            finally
+            {
+                recordPhase( TaskPhase.API_CALL, lCall );
+            }
+            final ResponseStatus status = response.getStatus( );
+            recordImportOutcome( status.getType( ).name( ), candidateIdentity );
+            /* Complete workflow history with custom fields */
+            final CandidateIdentityHistory candidateIdentityHistory = new CandidateIdentityHistory( );
+            candidateIdentityHistory.setWfResourceHistoryId( resource.getIdResourceHistory( ) );
+            candidateIdentityHistory.setStatus( status.getType( ).name( ) );
+            candidateIdentityHistory.setComment( buildHistoryComment( "API Import identity", status ) );
+            CandidateIdentityWriteBehindService.instance( ).addHistory( candidateIdentityHistory, status );
+            /* Process response */
+            if ( status.getType( ) == ResponseStatusType.SUCCESS || status.getType( ) == ResponseStatusType.INCOMPLETE_SUCCESS )
+            {
+                candidateIdentity.setCustomerId( response.getCustomerId( ) );
+                CandidateIdentityWriteBehindService.instance( ).addCustomerId( candidateIdentity.getId( ), response.getCustomerId( ) );
+                CandidateIdentityWriteBehindService.instance( )
+                        .addImportHash( new CandidateIdentityImportHash( candidateIdentity.getId( ), strContentHash, response.getCustomerId( ) ) );
+            }
+            return status.getType( );
+        }
+        catch( IdentityStoreUnavailableException e )
+        {
+            // Replayed by the daemon once the identity store is available again
+            ParkedResourceHome.park( resource.getIdResource( ), resource.getResourceType( ), resource.getIdWorkflow( ) );
+            recordImportOutcome( OUTCOME_PARKED, candidateIdentity );
+            AppLogService.info( "Identity store unavailable, candidate identity parked (id : " + resource.getIdResource( ) + ")" );
+            return null;
+        }
+        catch( IdentityStoreException e )
+        {
+            recordImportOutcome( OUTCOME_ERROR, candidateIdentity );
+            AppLogService.error( "A problem occurred during import, candidate identity not imported (id : " + resource.getIdResource( ) + ")" );
+        }
+        return ROUTE_ERROR;
+    }
+
+    /**
+     * Count an outcome of the task, and the end of the import of the candidate identity in the progress of its batch
+     */
+    private void recordImportOutcome( final String strOutcome, final CandidateIdentity candidateIdentity )
+    {
+        recordOutcome( strOutcome, candidateIdentity.getClientCode( ) );
+        final BatchProgress progress = BatchProgressService.instance( ).find( candidateIdentity.getIdBatch( ) );
+        if ( progress != null )
+        {
+            progress.end( OUTCOME_QUEUED.equals( strOutcome ) || OUTCOME_PARKED.equals( strOutcome ) ? BatchProgress.OUTCOME_DEFERRED : strOutcome );
+        }
+    }
+
+    /**
+     * Tell if a candidate identity has already been imported with the same content and still has the customer id returned by that import
+     */
+    private boolean isUnchanged( final CandidateIdentity candidateIdentity, final String strContentHash )
+    {
+        if ( !isDeduplicationEnabled( ) || StringUtils.isEmpty( candidateIdentity.getCustomerId( ) ) )
+        {
+            return false;
+        }
+        final CandidateIdentityImportHash importHash = CandidateIdentityLoaderHome
+                .findImportHashes( Collections.singletonList( candidateIdentity.getId( ) ) ).get( candidateIdentity.getId( ) );
+        return importHash != null && importHash.isUnchanged( strContentHash, candidateIdentity.getCustomerId( ) );
+    }
+
     @Override
     public String getTitle( Locale pLocale )
     {
@@ -35,6 +35,7 @@ package fr.paris.lutece.plugins.workflow.modules.identityimport.task;
 
 import javax.validation.constraints.NotNull;
 
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatusType;
 import fr.paris.lutece.plugins.workflowcore.business.config.TaskConfig;
 
 public class IdentityImportTaskConfig extends TaskConfig
@@ -42,12 +43,7 @@ public class IdentityImportTaskConfig extends TaskConfig
     // Variables declarations
     @NotNull
     private int _nIdWorkflow;
-    @NotNull
-    private int _nIdState1;
-    @NotNull
-    private int _nIdState2;
-    @NotNull
-    private int _nIdState3;
+    private IdentityImportStateRouter _router = IdentityImportStateRouter.EMPTY;
 
     /**
      * Returns the IdWorkflow
@@ -71,65 +67,35 @@ public class IdentityImportTaskConfig extends TaskConfig
     }
 
     /**
-     * Returns the IdState
-     * 
-     * @return The IdState
-     */
-    public int getIdState1( )
-    {
-        return _nIdState1;
-    }
-
-    /**
-     * Sets the IdState
-     * 
-     * @param nIdState
-     *            The IdState
-     */
-    public void setIdState1( int nIdState )
-    {
-        _nIdState1 = nIdState;
-    }
-
-    /**
-     * Returns the IdState
+     * Returns the routing of the import outcomes to their target states
      * 
-     * @return The IdState
+     * @return The router
      */
-    public int getIdState2( )
+    public IdentityImportStateRouter getRouter( )
     {
-        return _nIdState2;
+        return _router;
     }
 
     /**
-     * Sets the IdState
+     * Sets the routing of the import outcomes to their target states
      * 
-     * @param nIdState
-     *            The IdState
+     * @param router
+     *            The router
      */
-    public void setIdState2( int nIdState )
+    public void setRouter( IdentityImportStateRouter router )
     {
-        _nIdState2 = nIdState;
+        _router = router != null ? router : IdentityImportStateRouter.EMPTY;
     }
 
     /**
-     * Returns the IdState
-     * 
-     * @return The IdState
-     */
-    public int getIdState3( )
-    {
-        return _nIdState3;
-    }
-
-    /**
-     * Sets the IdState
-     * 
-     * @param nIdState
-     *            The IdState
+     * Get the state configured for an import outcome
+     *
+     * @param type
+     *            the import outcome
+     * @return the id of the target state, or -1 if the candidate identity must stay in its current state
      */
-    public void setIdState3( int nIdState )
+    public int getIdTargetState( ResponseStatusType type )
     {
-        _nIdState3 = nIdState;
+        return _router.getIdTargetState( type );
     }
 }
@@ -33,75 +33,238 @@
  */
 package fr.paris.lutece.plugins.workflow.modules.identityimport.task;
 
-import fr.paris.lutece.plugins.workflowcore.business.config.ITaskConfigDAO;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatusType;
+import fr.paris.lutece.portal.service.util.AppException;
+import fr.paris.lutece.portal.service.util.AppLogService;
 import fr.paris.lutece.util.sql.DAOUtil;
+import fr.paris.lutece.util.sql.TransactionManager;
 
-public class IdentityImportTaskConfigDAO implements ITaskConfigDAO<IdentityImportTaskConfig>
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+public class IdentityImportTaskConfigDAO implements IIdentityImportTaskConfigDAO
 {
 
     // Constants
-    private static final String SQL_QUERY_SELECT = "SELECT id_task, id_workflow, id_state1, id_state2, id_state3 FROM workflow_task_identity_import_cf WHERE id_task = ?";
-    private static final String SQL_QUERY_INSERT = "INSERT INTO workflow_task_identity_import_cf ( id_task, id_workflow, id_state1, id_state2, id_state3 ) VALUES ( ?, ?, ?, ?, ? ) ";
+    private static final String SQL_QUERY_SELECT_CONFIGS = "SELECT c.id_task, c.id_workflow, r.status_type, r.id_state FROM workflow_task_identity_import_cf c "
+            + " LEFT JOIN workflow_task_identity_import_cf_route r ON r.id_task = c.id_task ";
+    private static final String SQL_QUERY_SELECT = SQL_QUERY_SELECT_CONFIGS + " WHERE c.id_task = ?";
+    private static final String SQL_QUERY_SELECT_BY_IDS = SQL_QUERY_SELECT_CONFIGS + " WHERE c.id_task IN ( %s ) ORDER BY c.id_task";
+    private static final String SQL_QUERY_SELECT_ALL = SQL_QUERY_SELECT_CONFIGS + " ORDER BY c.id_task";
+    private static final String SQL_QUERY_INSERT = "INSERT INTO workflow_task_identity_import_cf ( id_task, id_workflow ) VALUES ( ?, ? ) ";
     private static final String SQL_QUERY_DELETE = "DELETE FROM workflow_task_identity_import_cf WHERE id_task = ? ";
-    private static final String SQL_QUERY_UPDATE = "UPDATE workflow_task_identity_import_cf SET id_workflow = ?, id_state1 = ?, id_state2 = ?, id_state3 = ?  WHERE id_task = ?";
+    private static final String SQL_QUERY_UPDATE = "UPDATE workflow_task_identity_import_cf SET id_workflow = ? WHERE id_task = ?";
+    private static final String SQL_QUERY_SELECT_VERSION = "SELECT version FROM workflow_task_identity_import_cf_version";
+    private static final String SQL_QUERY_INCREMENT_VERSION = "UPDATE workflow_task_identity_import_cf_version SET version = version + 1";
+    private static final String SQL_QUERY_INSERT_ROUTE = "INSERT INTO workflow_task_identity_import_cf_route ( id_task, status_type, id_state ) VALUES ( ?, ?, ? ) ";
+    private static final String SQL_QUERY_DELETE_ROUTES = "DELETE FROM workflow_task_identity_import_cf_route WHERE id_task = ? ";
 
     @Override
     public void insert( IdentityImportTaskConfig config )
     {
-        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT ) )
+        TransactionManager.beginTransaction( null );
+        try
         {
-            daoUtil.setInt( 1, config.getIdTask( ) );
-            daoUtil.setInt( 2, config.getIdWorkflow( ) );
-            daoUtil.setInt( 3, config.getIdState1( ) );
-            daoUtil.setInt( 4, config.getIdState2( ) );
-            daoUtil.setInt( 5, config.getIdState3( ) );
-            daoUtil.executeUpdate( );
+            try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT ) )
+            {
+                daoUtil.setInt( 1, config.getIdTask( ) );
+                daoUtil.setInt( 2, config.getIdWorkflow( ) );
+                daoUtil.executeUpdate( );
+            }
+            insertRoutes( config );
+            incrementVersion( );
+            TransactionManager.commitTransaction( null );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( null, e );
+            throw new AppException( "Unable to create the config of task " + config.getIdTask( ), e );
         }
     }
 
     @Override
     public void store( IdentityImportTaskConfig config )
     {
-        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE ) )
+        // The routes are replaced in the same transaction, a config is never left without them
+        TransactionManager.beginTransaction( null );
+        try
         {
-            daoUtil.setInt( 1, config.getIdWorkflow( ) );
-            daoUtil.setInt( 2, config.getIdState1( ) );
-            daoUtil.setInt( 2, config.getIdState2( ) );
-            daoUtil.setInt( 2, config.getIdState3( ) );
-            daoUtil.setInt( 4, config.getIdTask( ) );
-            daoUtil.executeUpdate( );
+            try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_UPDATE ) )
+            {
+                daoUtil.setInt( 1, config.getIdWorkflow( ) );
+                daoUtil.setInt( 2, config.getIdTask( ) );
+                daoUtil.executeUpdate( );
+            }
+            deleteRoutes( config.getIdTask( ) );
+            insertRoutes( config );
+            incrementVersion( );
+            TransactionManager.commitTransaction( null );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( null, e );
+            throw new AppException( "Unable to store the config of task " + config.getIdTask( ), e );
         }
     }
 
     @Override
     public IdentityImportTaskConfig load( int nIdTask )
     {
-
-        IdentityImportTaskConfig idImportTaskConfig = null;
-
         try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT ) )
         {
             daoUtil.setInt( 1, nIdTask );
             daoUtil.executeQuery( );
-            if ( daoUtil.next( ) )
+            final List<IdentityImportTaskConfig> listConfigs = readConfigs( daoUtil );
+            return listConfigs.isEmpty( ) ? null : listConfigs.get( 0 );
+        }
+    }
+
+    @Override
+    public List<IdentityImportTaskConfig> load( Collection<Integer> listIdTasks )
+    {
+        if ( listIdTasks.isEmpty( ) )
+        {
+            return new ArrayList<>( );
+        }
+        try ( DAOUtil daoUtil = new DAOUtil( String.format( SQL_QUERY_SELECT_BY_IDS, String.join( ",", Collections.nCopies( listIdTasks.size( ), "?" ) ) ) ) )
+        {
+            int nIndex = 1;
+            for ( Integer nIdTask : listIdTasks )
             {
-                idImportTaskConfig = new IdentityImportTaskConfig( );
-                int i = 1;
-                idImportTaskConfig.setIdTask( daoUtil.getInt( i++ ) );
-                idImportTaskConfig.setIdWorkflow( daoUtil.getInt( i++ ) );
-                idImportTaskConfig.setIdState1( daoUtil.getInt( i++ ) );
-                idImportTaskConfig.setIdState2( daoUtil.getInt( i++ ) );
-                idImportTaskConfig.setIdState3( daoUtil.getInt( i++ ) );
+                daoUtil.setInt( nIndex++, nIdTask );
             }
+            daoUtil.executeQuery( );
+            return readConfigs( daoUtil );
         }
+    }
 
-        return idImportTaskConfig;
+    @Override
+    public List<IdentityImportTaskConfig> loadAll( )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_ALL ) )
+        {
+            daoUtil.executeQuery( );
+            return readConfigs( daoUtil );
+        }
     }
 
     @Override
     public void delete( int nIdTask )
     {
-        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE ) )
+        TransactionManager.beginTransaction( null );
+        try
+        {
+            deleteRoutes( nIdTask );
+            try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE ) )
+            {
+                daoUtil.setInt( 1, nIdTask );
+                daoUtil.executeUpdate( );
+            }
+            incrementVersion( );
+            TransactionManager.commitTransaction( null );
+        }
+        catch( Exception e )
+        {
+            TransactionManager.rollBack( null, e );
+            throw new AppException( "Unable to delete the config of task " + nIdTask, e );
+        }
+    }
+
+    @Override
+    public String selectVersion( )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_SELECT_VERSION ) )
+        {
+            daoUtil.executeQuery( );
+            if ( daoUtil.next( ) )
+            {
+                return String.valueOf( daoUtil.getLong( 1 ) );
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Read configs with their routes, one row per route, ordered by task
+     */
+    private List<IdentityImportTaskConfig> readConfigs( DAOUtil daoUtil )
+    {
+        final List<IdentityImportTaskConfig> listConfigs = new ArrayList<>( );
+        IdentityImportTaskConfig config = null;
+        Map<ResponseStatusType, Integer> mapRoutes = null;
+        while ( daoUtil.next( ) )
+        {
+            final int nIdTask = daoUtil.getInt( 1 );
+            if ( config == null || config.getIdTask( ) != nIdTask )
+            {
+                if ( config != null )
+                {
+                    config.setRouter( new IdentityImportStateRouter( mapRoutes ) );
+                }
+                config = new IdentityImportTaskConfig( );
+                config.setIdTask( nIdTask );
+                config.setIdWorkflow( daoUtil.getInt( 2 ) );
+                mapRoutes = new EnumMap<>( ResponseStatusType.class );
+                listConfigs.add( config );
+            }
+            final String strStatusType = daoUtil.getString( 3 );
+            if ( strStatusType != null )
+            {
+                try
+                {
+                    mapRoutes.put( ResponseStatusType.valueOf( strStatusType ), daoUtil.getInt( 4 ) );
+                }
+                catch( IllegalArgumentException e )
+                {
+                    AppLogService.error( "Unknown import outcome " + strStatusType + " in the routes of task " + nIdTask + ", route ignored" );
+                }
+            }
+        }
+        if ( config != null )
+        {
+            config.setRouter( new IdentityImportStateRouter( mapRoutes ) );
+        }
+        return listConfigs;
+    }
+
+    private void insertRoutes( IdentityImportTaskConfig config )
+    {
+        final Map<ResponseStatusType, Integer> mapRoutes = config.getRouter( ).getRoutes( );
+        if ( mapRoutes.isEmpty( ) )
+        {
+            return;
+        }
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INSERT_ROUTE ) )
+        {
+            for ( Map.Entry<ResponseStatusType, Integer> route : mapRoutes.entrySet( ) )
+            {
+                daoUtil.setInt( 1, config.getIdTask( ) );
+                daoUtil.setString( 2, route.getKey( ).name( ) );
+                daoUtil.setInt( 3, route.getValue( ) );
+                daoUtil.addBatch( );
+            }
+            daoUtil.executeBatch( );
+        }
+    }
+
+    /**
+     * Increment the version of the configs, read by the other nodes to reset their cache
+     */
+    private void incrementVersion( )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_INCREMENT_VERSION ) )
+        {
+            daoUtil.executeUpdate( );
+        }
+    }
+
+    private void deleteRoutes( int nIdTask )
+    {
+        try ( DAOUtil daoUtil = new DAOUtil( SQL_QUERY_DELETE_ROUTES ) )
         {
             daoUtil.setInt( 1, nIdTask );
             daoUtil.executeUpdate( );
@@ -33,31 +33,133 @@
  */
 package fr.paris.lutece.plugins.workflow.modules.identityimport.task;
 
+import fr.paris.lutece.api.user.User;
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatus;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatusType;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.executor.IdentityTaskExecutor;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.metrics.IdentityTaskMetrics;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.metrics.TaskPhase;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.writer.CandidateIdentityWriteBehindService;
 import fr.paris.lutece.plugins.workflowcore.service.task.SimpleTask;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import org.apache.commons.text.StringEscapeUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Locale;
 
 public abstract class IdentityTask extends SimpleTask
 {
-    protected String buildHistoryComment( final String header, final ResponseStatus status )
+    /** Outcome of a task whose identity store call failed */
+    protected static final String OUTCOME_ERROR = "ERROR";
+    /** Outcome of a task parked while the identity store is unavailable */
+    protected static final String OUTCOME_PARKED = "PARKED";
+    /** Outcome of an import skipped because the candidate identity is unchanged since its last successful import */
+    protected static final String OUTCOME_UNCHANGED = "UNCHANGED";
+    /** Route of the candidate identities whose identity store call failed without response */
+    public static final ResponseStatusType ROUTE_ERROR = ResponseStatusType.INTERNAL_SERVER_ERROR;
+
+    // Properties
+    private static final String PROPERTY_DEDUPLICATION_ENABLED = "identityimport_config.import.deduplication.enabled";
+
+    private final String _strMetricsName = getClass( ).getSimpleName( );
+
+    /**
+     * Process the task, counted in the in-flight gauge and timed as {@link TaskPhase#TOTAL}. The changes buffered and not flushed by the task are
+     * discarded when it ends. The identity store calls made by the thread of the task run on that thread, see
+     * {@link IdentityTaskExecutor#callerRuns(java.util.function.Supplier)}.
+     *
+     * @param nIdResourceHistory
+     *            the resource history id
+     * @param request
+     *            the request
+     * @param locale
+     *            the locale
+     * @param user
+     *            the user
+     * @return true if the task succeeded
+     */
+    protected abstract boolean processIdentityTask( int nIdResourceHistory, HttpServletRequest request, Locale locale, User user );
+
+    @Override
+    public boolean processTaskWithResult( int nIdResourceHistory, HttpServletRequest request, Locale locale, User user )
+    {
+        final long lStart = IdentityTaskMetrics.begin( _strMetricsName );
+        try
+        {
+            return IdentityTaskExecutor.callerRuns( ( ) -> processIdentityTask( nIdResourceHistory, request, locale, user ) );
+        }
+        finally
+        {
+            // Nothing left after a successful task, the rows of a failed task must not be written with the next task of this thread
+            CandidateIdentityWriteBehindService.instance( ).discard( );
+            IdentityTaskMetrics.end( _strMetricsName, lStart );
+        }
+    }
+
+    /**
+     * Record the latency of a phase of the task
+     *
+     * @param phase
+     *            the phase
+     * @param lStart
+     *            the start time of the phase, from {@link System#nanoTime()}
+     * @return the end time of the phase
+     */
+    protected long recordPhase( final TaskPhase phase, final long lStart )
+    {
+        return IdentityTaskMetrics.record( _strMetricsName, phase, lStart );
+    }
+
+    /**
+     * Count an outcome of the task
+     *
+     * @param strOutcome
+     *            the outcome, usually a response status type
+     * @param strClientCode
+     *            the client code, may be null
+     */
+    protected void recordOutcome( final String strOutcome, final String strClientCode )
+    {
+        IdentityTaskMetrics.outcome( _strMetricsName, strOutcome, strClientCode );
+    }
+
+    /**
+     * @return true if the imports of candidate identities unchanged since their last successful import must be skipped
+     */
+    protected static boolean isDeduplicationEnabled( )
+    {
+        return AppPropertiesService.getPropertyBoolean( PROPERTY_DEDUPLICATION_ENABLED, true );
+    }
+
+    /**
+     * Build the comment of a candidate identity history
+     *
+     * @param header
+     *            the first line of the comment
+     * @param status
+     *            the identity store response status, may be null
+     * @return the HTML of the comment, with the status message on its own line. The attribute statuses are not part of the comment, they are stored
+     *         in their own table along with the history
+     */
+    public static String buildHistoryComment( final String header, final ResponseStatus status )
     {
         final StringBuilder message = new StringBuilder( header );
-        if ( status != null )
+        if ( status != null && status.getMessage( ) != null )
         {
-            if ( status.getMessage( ) != null )
-            {
-                message.append( "\n" ).append( status.getMessage( ) );
-            }
-            if ( status.getAttributeStatuses( ) != null && !status.getAttributeStatuses( ).isEmpty( ) )
-            {
-                message.append( "\n" ).append( "\n" ).append( "Attribute statuses: " ).append( "\n" );
-                status.getAttributeStatuses( ).forEach( attributeStatus -> {
-                    message.append( "\n" ).append( attributeStatus.getKey( ) ).append( " - " ).append( attributeStatus.getStatus( ) )
-                            .append( ( attributeStatus.getMessage( ) != null ? " - " : "" ) )
-                            .append( ( attributeStatus.getMessage( ) != null ? attributeStatus.getMessage( ) : "" ) );
-
-                } );
-            }
+            message.append( "\n" ).append( status.getMessage( ) );
         }
-        return message.toString( );
+        return toHtmlComment( message.toString( ) );
+    }
+
+    /**
+     * Convert a plain text comment to the HTML stored in the candidate identity history, so that the history display doesn't have to
+     *
+     * @param strComment
+     *            the plain text comment, its lines separated by new lines
+     * @return the escaped comment, its lines separated by line breaks
+     */
+    public static String toHtmlComment( final String strComment )
+    {
+        return StringEscapeUtils.escapeHtml4( strComment ).replace( "\n", "<br>" );
     }
 }
@@ -36,14 +36,16 @@ package fr.paris.lutece.plugins.workflow.modules.identityimport.task.archive;
 import fr.paris.lutece.api.user.User;
 import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistory;
 import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistoryHome;
-import fr.paris.lutece.plugins.identityimport.service.BatchService;
 import fr.paris.lutece.plugins.identitystore.web.exception.IdentityStoreException;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.archive.BatchArchiveService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.metrics.TaskPhase;
 import fr.paris.lutece.plugins.workflow.modules.identityimport.task.IdentityTask;
 import fr.paris.lutece.plugins.workflowcore.business.resource.ResourceHistory;
 import fr.paris.lutece.plugins.workflowcore.service.resource.IResourceHistoryService;
 import fr.paris.lutece.plugins.workflowcore.service.resource.ResourceHistoryService;
 import fr.paris.lutece.portal.service.i18n.I18nService;
 import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppException;
 import fr.paris.lutece.portal.service.util.AppLogService;
 
 import javax.servlet.http.HttpServletRequest;
@@ -54,30 +56,43 @@ public class BatchArchiveTask extends IdentityTask
 
     // Constants
     private static final String TASK_TITLE = "module.workflow.identityimport.archive.title";
+    private static final String STATUS_ARCHIVED = "Archived";
 
     // Services
     private static final IResourceHistoryService _resourceHistoryService = SpringContextService.getBean( ResourceHistoryService.BEAN_SERVICE );
 
     @Override
-    public boolean processTaskWithResult( final int nIdResourceHistory, final HttpServletRequest request, final Locale locale, final User user )
+    protected boolean processIdentityTask( final int nIdResourceHistory, final HttpServletRequest request, final Locale locale, final User user )
     {
         // Get resource id as parent ID for processing child actions
+        long lPhase = System.nanoTime( );
         final ResourceHistory resourceHistory = _resourceHistoryService.findByPrimaryKey( nIdResourceHistory );
+        lPhase = recordPhase( TaskPhase.RESOURCE_HISTORY_LOAD, lPhase );
         boolean bStatus = false;
         try
         {
-            BatchService.instance( ).purgeBatch( resourceHistory.getIdResource( ) );
+            BatchArchiveService.instance( ).archive( resourceHistory.getIdResource( ) );
+            lPhase = recordPhase( TaskPhase.UPDATE, lPhase );
             final CandidateIdentityHistory candidateIdentityHistory = new CandidateIdentityHistory( );
             candidateIdentityHistory.setWfResourceHistoryId( resourceHistory.getId( ) );
-            candidateIdentityHistory.setStatus( "Archived" );
-            candidateIdentityHistory.setComment( this.buildHistoryComment( "Identity archived", null ) );
+            candidateIdentityHistory.setStatus( STATUS_ARCHIVED );
+            candidateIdentityHistory.setComment( buildHistoryComment( "Identity archived", null ) );
             CandidateIdentityHistoryHome.insert( candidateIdentityHistory );
+            recordPhase( TaskPhase.HISTORY_INSERT, lPhase );
+            recordOutcome( STATUS_ARCHIVED, null );
             bStatus = true;
         }
         catch( final IdentityStoreException e )
         {
+            recordOutcome( OUTCOME_ERROR, null );
             AppLogService.error( "A problem occurred during archiving, batch not found with (id : " + resourceHistory.getIdResource( ) + ")" );
         }
+        catch( final AppException e )
+        {
+            // The chunks already archived are committed, the next run resumes after them
+            recordOutcome( OUTCOME_ERROR, null );
+            AppLogService.error( "A problem occurred during archiving of batch (id : " + resourceHistory.getIdResource( ) + "), it will resume on the next run", e );
+        }
 
         return bStatus;
     }
@@ -0,0 +1,295 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.task.batchidentify;
+
+import fr.paris.lutece.api.user.User;
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentity;
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistory;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.AuthorType;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.RequestAuthor;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatus;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatusType;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateIdentityLoaderHome;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.CandidateStateTransitionService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.identify.BulkIdentityIdentifyService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.identify.IdentifyMapping;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.identify.IdentifyResult;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.metrics.TaskPhase;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.writer.CandidateIdentityWriteBehindService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.task.IdentityImportTaskConfig;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.task.IdentityTask;
+import fr.paris.lutece.plugins.workflowcore.business.resource.ResourceHistory;
+import fr.paris.lutece.plugins.workflowcore.business.resource.ResourceWorkflow;
+import fr.paris.lutece.plugins.workflowcore.business.state.State;
+import fr.paris.lutece.plugins.workflowcore.service.config.ITaskConfigService;
+import fr.paris.lutece.plugins.workflowcore.service.resource.IResourceHistoryService;
+import fr.paris.lutece.plugins.workflowcore.service.resource.IResourceWorkflowService;
+import fr.paris.lutece.plugins.workflowcore.service.resource.ResourceHistoryService;
+import fr.paris.lutece.plugins.workflowcore.service.resource.ResourceWorkflowService;
+import fr.paris.lutece.plugins.workflowcore.service.state.IStateService;
+import fr.paris.lutece.plugins.workflowcore.service.state.StateService;
+import fr.paris.lutece.portal.service.i18n.I18nService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+
+import javax.servlet.http.HttpServletRequest;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.Future;
+
+/**
+ * Identifies many candidate identities of a batch at once, against the customer ids chosen for them in a mapping entered with the action.<br>
+ * The resource of this task is the batch. The identities are checked, and updated with the overridden attributes of their mapping, by the
+ * {@link BulkIdentityIdentifyService}. Each candidate identity gets its own workflow history entry, and is moved to the state configured for the
+ * outcome of its identification, whose automatic actions are then run. The batch history gets the report of the identification, one line per mapping.
+ */
+public class BatchIdentityIdentifyTask extends IdentityTask
+{
+    /** Request parameter of the mapping */
+    public static final String PARAMETER_MAPPING = "identify_mapping";
+
+    // Constants
+    private static final String TASK_TITLE = "module.workflow.identityimport.batchidentify.title";
+    private static final String PROPERTY_CANDIDATE_RESOURCE_TYPE = "identityimport_config.candidate.resource.type";
+    private static final String DEFAULT_CANDIDATE_RESOURCE_TYPE = "IDENTITYIMPORT_CANDIDATE_IDENTITY";
+    private static final String PROPERTY_REPORT_MAX_LINES = "identityimport_config.identify.report.max.lines";
+    private static final int DEFAULT_REPORT_MAX_LINES = 1000;
+    private static final String STATUS_REJECTED = "REJECTED";
+
+    // Services
+    private static final IResourceHistoryService _resourceHistoryService = SpringContextService.getBean( ResourceHistoryService.BEAN_SERVICE );
+    private static final IResourceWorkflowService _resourceWorkflowService = SpringContextService.getBean( ResourceWorkflowService.BEAN_SERVICE );
+    private static final IStateService _stateService = SpringContextService.getBean( StateService.BEAN_SERVICE );
+
+    private final ITaskConfigService _taskConfigService = SpringContextService.getBean( "workflow-identityimport.identityImportTaskConfigService" );
+
+    @Override
+    protected boolean processIdentityTask( final int nIdResourceHistory, final HttpServletRequest request, final Locale locale, final User user )
+    {
+        // Get resource id as the batch ID
+        final long lLoad = System.nanoTime( );
+        final ResourceHistory resourceHistory = _resourceHistoryService.findByPrimaryKey( nIdResourceHistory );
+        recordPhase( TaskPhase.RESOURCE_HISTORY_LOAD, lLoad );
+        final IdentityImportTaskConfig config = _taskConfigService.findByPrimaryKey( this.getId( ) );
+        if ( config == null )
+        {
+            AppLogService.error( "A problem occurred during batch identification, task not configured (id task : " + this.getId( ) + ")" );
+            return false;
+        }
+        final IdentifyMapping mapping = IdentifyMapping.parse( request != null ? request.getParameter( PARAMETER_MAPPING ) : null );
+        if ( mapping.isEmpty( ) )
+        {
+            AppLogService.error( "A problem occurred during batch identification, no mapping (id resource history : " + nIdResourceHistory + ")" );
+            return false;
+        }
+
+        final RequestAuthor requestAuthor = new RequestAuthor( );
+        requestAuthor.setName( AppPropertiesService.getProperty( "identityimport_config.request.author" ) );
+        requestAuthor.setType( AuthorType.application );
+
+        // Only the candidate identities of the batch can be identified by its action
+        final int nIdBatch = resourceHistory.getIdResource( );
+        final Set<Integer> setBatchIds = new HashSet<>( CandidateIdentityLoaderHome.getCandidateIdentityIdsByBatch( nIdBatch ) );
+        final Map<String, Integer> mapCounters = new TreeMap<>( );
+        final List<String> listReport = new ArrayList<>( mapping.getRejectedLines( ) );
+        final List<Integer> listIds = new ArrayList<>( mapping.getEntries( ).size( ) );
+        for ( final Integer nIdCandidateIdentity : mapping.getEntries( ).keySet( ) )
+        {
+            if ( setBatchIds.contains( nIdCandidateIdentity ) )
+            {
+                listIds.add( nIdCandidateIdentity );
+            }
+            else
+            {
+                listReport.add( "Candidate identity " + nIdCandidateIdentity + " : not in the batch" );
+            }
+        }
+        final int nRejected = listReport.size( );
+        if ( nRejected > 0 )
+        {
+            mapCounters.put( STATUS_REJECTED, nRejected );
+        }
+
+        // Check chunk n+1 while the results of chunk n are written
+        final BulkIdentityIdentifyService identifyService = BulkIdentityIdentifyService.instance( );
+        List<Future<IdentifyResult>> listPending = Collections.emptyList( );
+        for ( int nFrom = 0; nFrom < listIds.size( ); nFrom += identifyService.getChunkSize( ) )
+        {
+            final List<Integer> listChunkIds = listIds.subList( nFrom, Math.min( nFrom + identifyService.getChunkSize( ), listIds.size( ) ) );
+            final long lChunkLoad = System.nanoTime( );
+            final List<CandidateIdentity> listCandidateIdentities = CandidateIdentityLoaderHome.findByIds( listChunkIds );
+            recordPhase( TaskPhase.CANDIDATE_LOAD, lChunkLoad );
+            final List<Future<IdentifyResult>> listSubmitted = identifyService.submit( listCandidateIdentities, mapping, requestAuthor );
+            processResults( awaitResults( listPending ), config, requestAuthor, user, mapCounters, listReport );
+            listPending = listSubmitted;
+        }
+        processResults( awaitResults( listPending ), config, requestAuthor, user, mapCounters, listReport );
+
+        writeReport( resourceHistory.getId( ), listIds.size( ) + nRejected, mapCounters, listReport );
+        return true;
+    }
+
+    /**
+     * Wait for the results of a chunk. The calls overlap, so only the time the task is blocked by the identity store is recorded as
+     * {@link TaskPhase#API_CALL}.
+     */
+    private List<IdentifyResult> awaitResults( final List<Future<IdentifyResult>> listPending )
+    {
+        final long lAwait = System.nanoTime( );
+        final List<IdentifyResult> listResults = BulkIdentityIdentifyService.await( listPending );
+        recordPhase( TaskPhase.API_CALL, lAwait );
+        return listResults;
+    }
+
+    private void processResults( final List<IdentifyResult> listResults, final IdentityImportTaskConfig config, final RequestAuthor requestAuthor,
+            final User user, final Map<String, Integer> mapCounters, final List<String> listReport )
+    {
+        final String strResourceType = AppPropertiesService.getProperty( PROPERTY_CANDIDATE_RESOURCE_TYPE, DEFAULT_CANDIDATE_RESOURCE_TYPE );
+        final CandidateIdentityWriteBehindService writeBehindService = CandidateIdentityWriteBehindService.instance( );
+        final Map<Integer, State> mapStates = new HashMap<>( );
+        final List<ResourceWorkflow> listTransitions = new ArrayList<>( listResults.size( ) );
+        for ( final IdentifyResult result : listResults )
+        {
+            final CandidateIdentity candidateIdentity = result.getCandidateIdentity( );
+            final String strCustomerId = result.getEntry( ).getCustomerId( );
+            final ResourceWorkflow resourceWorkflow = _resourceWorkflowService.findByPrimaryKey( candidateIdentity.getId( ), strResourceType,
+                    config.getIdWorkflow( ) );
+            if ( resourceWorkflow == null )
+            {
+                AppLogService.error(
+                        "A problem occurred during batch identification, candidate identity has no workflow (id : " + candidateIdentity.getId( ) + ")" );
+                mapCounters.merge( OUTCOME_ERROR, 1, Integer::sum );
+                listReport.add( "Candidate identity " + candidateIdentity.getId( ) + " : " + strCustomerId + " - " + OUTCOME_ERROR + " no workflow" );
+                continue;
+            }
+
+            /* Candidate workflow history */
+            final ResourceHistory candidateResourceHistory = new ResourceHistory( );
+            candidateResourceHistory.setIdResource( candidateIdentity.getId( ) );
+            candidateResourceHistory.setResourceType( strResourceType );
+            candidateResourceHistory.setWorkflow( resourceWorkflow.getWorkflow( ) );
+            candidateResourceHistory.setAction( this.getAction( ) );
+            candidateResourceHistory.setCreationDate( new Timestamp( System.currentTimeMillis( ) ) );
+            candidateResourceHistory.setUserAccessCode( user != null ? user.getAccessCode( ) : requestAuthor.getName( ) );
+            _resourceHistoryService.create( candidateResourceHistory );
+
+            /* Complete workflow history with custom fields */
+            final CandidateIdentityHistory candidateIdentityHistory = new CandidateIdentityHistory( );
+            candidateIdentityHistory.setWfResourceHistoryId( candidateResourceHistory.getId( ) );
+            final ResponseStatus status = result.getStatus( );
+            int nIdTargetState = -1;
+            String strMessage;
+            if ( status != null )
+            {
+                candidateIdentityHistory.setStatus( status.getType( ).name( ) );
+                candidateIdentityHistory.setComment( buildHistoryComment( result.getHeader( ), status ) );
+                if ( status.getType( ) == ResponseStatusType.OK || status.getType( ) == ResponseStatusType.SUCCESS
+                        || status.getType( ) == ResponseStatusType.INCOMPLETE_SUCCESS )
+                {
+                    candidateIdentity.setCustomerId( strCustomerId );
+                    writeBehindService.addCustomerId( candidateIdentity.getId( ), strCustomerId );
+                }
+                nIdTargetState = config.getIdTargetState( status.getType( ) );
+                strMessage = status.getMessage( );
+            }
+            else
+            {
+                candidateIdentityHistory.setStatus( OUTCOME_ERROR );
+                // Some exceptions have no message, their type is the only clue
+                strMessage = result.getException( ).getMessage( ) != null ? result.getException( ).getMessage( )
+                        : result.getException( ).getClass( ).getName( );
+                candidateIdentityHistory.setComment( buildHistoryComment( result.getHeader( ) + "\n" + strMessage, null ) );
+            }
+            writeBehindService.addHistory( candidateIdentityHistory, status );
+            mapCounters.merge( candidateIdentityHistory.getStatus( ), 1, Integer::sum );
+            recordOutcome( candidateIdentityHistory.getStatus( ), candidateIdentity.getClientCode( ) );
+            listReport.add( "Candidate identity " + candidateIdentity.getId( ) + " : " + strCustomerId + " - " + candidateIdentityHistory.getStatus( )
+                    + ( strMessage != null ? " " + strMessage : "" ) );
+
+            if ( nIdTargetState > 0 )
+            {
+                final State state = mapStates.computeIfAbsent( nIdTargetState, _stateService::findByPrimaryKey );
+                if ( state != null )
+                {
+                    resourceWorkflow.setState( state );
+                    listTransitions.add( resourceWorkflow );
+                }
+            }
+        }
+
+        /* Histories of the chunk must be written before the candidates are moved to the state configured for their outcome */
+        final long lFlush = System.nanoTime( );
+        writeBehindService.flush( );
+        final long lUpdate = recordPhase( TaskPhase.HISTORY_INSERT, lFlush );
+        CandidateStateTransitionService.moveTo( listTransitions );
+        recordPhase( TaskPhase.UPDATE, lUpdate );
+    }
+
+    /**
+     * Complete the batch workflow history with the outcomes and the report of the identification, truncated to its maximum number of lines
+     */
+    private void writeReport( final int nIdResourceHistory, final int nProcessed, final Map<String, Integer> mapCounters, final List<String> listReport )
+    {
+        final StringBuilder report = new StringBuilder( "Bulk identification\n\nProcessed: " ).append( nProcessed );
+        mapCounters.forEach( ( strStatus, nCount ) -> report.append( "\n" ).append( strStatus ).append( " - " ).append( nCount ) );
+        final int nMaxLines = AppPropertiesService.getPropertyInt( PROPERTY_REPORT_MAX_LINES, DEFAULT_REPORT_MAX_LINES );
+        report.append( "\n" );
+        listReport.stream( ).limit( nMaxLines ).forEach( strLine -> report.append( "\n" ).append( strLine ) );
+        if ( listReport.size( ) > nMaxLines )
+        {
+            report.append( "\n... " ).append( listReport.size( ) - nMaxLines ).append( " more lines" );
+        }
+        final CandidateIdentityHistory batchHistory = new CandidateIdentityHistory( );
+        batchHistory.setWfResourceHistoryId( nIdResourceHistory );
+        batchHistory.setStatus( "Identified" );
+        batchHistory.setComment( buildHistoryComment( report.toString( ), null ) );
+        CandidateIdentityWriteBehindService.instance( ).addHistory( batchHistory );
+        CandidateIdentityWriteBehindService.instance( ).flush( );
+    }
+
+    @Override
+    public String getTitle( Locale pLocale )
+    {
+        return I18nService.getLocalizedString( TASK_TITLE, pLocale );
+    }
+}
@@ -0,0 +1,487 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.task.batchimport;
+
+import fr.paris.lutece.api.user.User;
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentity;
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistory;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.AuthorType;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.IdentityDto;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.RequestAuthor;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatus;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatusType;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateIdentityImportHash;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateIdentityLoaderHome;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.shard.ImportShard;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.mapper.IdentityMapper;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.CandidateStateTransitionService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.imports.BulkIdentityImportService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.imports.ImportResult;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.metrics.TaskPhase;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.progress.BatchProgress;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.progress.BatchProgressService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.shard.ImportShardService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.shard.ShardLeaseHeartbeat;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.validation.IdentityValidationService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.writer.CandidateIdentityWriteBehindService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.task.IdentityImportTaskConfig;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.task.IdentityTask;
+import fr.paris.lutece.plugins.workflowcore.business.action.Action;
+import fr.paris.lutece.plugins.workflowcore.business.resource.ResourceHistory;
+import fr.paris.lutece.plugins.workflowcore.business.resource.ResourceWorkflow;
+import fr.paris.lutece.plugins.workflowcore.business.state.State;
+import fr.paris.lutece.plugins.workflowcore.service.action.ActionService;
+import fr.paris.lutece.plugins.workflowcore.service.action.IActionService;
+import fr.paris.lutece.plugins.workflowcore.service.config.ITaskConfigService;
+import fr.paris.lutece.plugins.workflowcore.service.resource.IResourceHistoryService;
+import fr.paris.lutece.plugins.workflowcore.service.resource.IResourceWorkflowService;
+import fr.paris.lutece.plugins.workflowcore.service.resource.ResourceHistoryService;
+import fr.paris.lutece.plugins.workflowcore.service.resource.ResourceWorkflowService;
+import fr.paris.lutece.plugins.workflowcore.service.state.IStateService;
+import fr.paris.lutece.plugins.workflowcore.service.state.StateService;
+import fr.paris.lutece.portal.service.i18n.I18nService;
+import fr.paris.lutece.portal.service.spring.SpringContextService;
+import fr.paris.lutece.portal.service.util.AppLogService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Imports all the candidate identities of a batch at once.<br>
+ * The resource of this task is the batch. Each candidate identity gets its own workflow history entry, and is moved to the state configured for the
+ * outcome of its import, whose automatic actions are then run. The candidate identities whose call failed, including while the identity store is
+ * unavailable, are moved to the state routed for {@link IdentityTask#ROUTE_ERROR}.<br>
+ * When the batches are split into shards, the task returns false, leaving the batch in its current state, unless this node completes the last shard.
+ * The node completing the last shard of a batch started by another run moves the batch to the state after the action, as the action would have. The
+ * action should then have no alternative state, and its tasks after this one only run when this node completes the batch.
+ */
+public class BatchIdentityImportTask extends IdentityTask
+{
+
+    // Constants
+    private static final String TASK_TITLE = "module.workflow.identityimport.batchimport.title";
+    private static final String PROPERTY_CANDIDATE_RESOURCE_TYPE = "identityimport_config.candidate.resource.type";
+    private static final String DEFAULT_CANDIDATE_RESOURCE_TYPE = "IDENTITYIMPORT_CANDIDATE_IDENTITY";
+    private static final String HISTORY_HEADER_INVALID = "API Import identity not called, identity rejected by the validation";
+
+    // Services
+    private static final IResourceHistoryService _resourceHistoryService = SpringContextService.getBean( ResourceHistoryService.BEAN_SERVICE );
+    private static final IResourceWorkflowService _resourceWorkflowService = SpringContextService.getBean( ResourceWorkflowService.BEAN_SERVICE );
+    private static final IStateService _stateService = SpringContextService.getBean( StateService.BEAN_SERVICE );
+    private static final IActionService _actionService = SpringContextService.getBean( ActionService.BEAN_SERVICE );
+
+    private final ITaskConfigService _taskConfigService = SpringContextService.getBean( "workflow-identityimport.identityImportTaskConfigService" );
+
+    @Override
+    protected boolean processIdentityTask( final int nIdResourceHistory, final HttpServletRequest request, final Locale locale, final User user )
+    {
+        // Get resource id as the batch ID
+        final long lLoad = System.nanoTime( );
+        final ResourceHistory resourceHistory = _resourceHistoryService.findByPrimaryKey( nIdResourceHistory );
+        recordPhase( TaskPhase.RESOURCE_HISTORY_LOAD, lLoad );
+        final IdentityImportTaskConfig config = _taskConfigService.findByPrimaryKey( this.getId( ) );
+        if ( config == null )
+        {
+            AppLogService.error( "A problem occurred during batch import, task not configured (id task : " + this.getId( ) + ")" );
+            return false;
+        }
+
+        final int nIdBatch = resourceHistory.getIdResource( );
+        final List<Integer> listIds = CandidateIdentityLoaderHome.getCandidateIdentityIdsByBatch( nIdBatch );
+        final ImportShardService shardService = ImportShardService.instance( );
+        if ( shardService.isEnabled( ) && !listIds.isEmpty( ) )
+        {
+            // This node imports the shards it can claim, the other nodes claim the others with their daemon
+            shardService.createShards( nIdBatch, resourceHistory.getId( ), this.getId( ), listIds );
+            boolean bCompleted = false;
+            ImportShard shard = shardService.claim( nIdBatch );
+            while ( shard != null )
+            {
+                bCompleted |= importShard( shard, config );
+                shard = shardService.claim( nIdBatch );
+            }
+            // Still running on the other nodes otherwise, the node completing the last shard moves the batch
+            return bCompleted;
+        }
+
+        final Map<String, Integer> mapCounters = new TreeMap<>( );
+        importCandidates( nIdBatch, listIds, config, mapCounters, ( ) -> true );
+        writeSummary( resourceHistory.getId( ), listIds.size( ), mapCounters );
+        return true;
+    }
+
+    /**
+     * Import a shard claimed by this node, outside of the action which started the import of its batch. The lease of the shard is renewed by a heartbeat,
+     * and the import stops if the shard has been taken over by another node. If this node completes the last shard, it writes the outcomes of the
+     * batch to its history and moves the batch to the state after the action.
+     *
+     * @param shard
+     *            the shard, claimed by this node
+     */
+    public void importShard( final ImportShard shard )
+    {
+        final IdentityImportTaskConfig config = _taskConfigService.findByPrimaryKey( this.getId( ) );
+        if ( config == null )
+        {
+            // Left claimed, taken again once its lease expires
+            AppLogService.error( "A problem occurred during batch import, task not configured (id task : " + this.getId( ) + ")" );
+            return;
+        }
+        try
+        {
+            if ( importShard( shard, config ) )
+            {
+                completeBatch( shard.getIdResourceHistory( ) );
+            }
+        }
+        finally
+        {
+            // Run by a daemon thread, outside of the task
+            CandidateIdentityWriteBehindService.instance( ).discard( );
+        }
+    }
+
+    /**
+     * Import a shard claimed by this node
+     *
+     * @return true if this node completed the last shard of the batch and summarized it
+     */
+    private boolean importShard( final ImportShard shard, final IdentityImportTaskConfig config )
+    {
+        final ImportShardService shardService = ImportShardService.instance( );
+        final List<Integer> listIds = CandidateIdentityLoaderHome.getCandidateIdentityIdsByBatch( shard.getIdBatch( ), shard.getFirstId( ),
+                shard.getLastId( ) );
+        final Map<String, Integer> mapCounters = new TreeMap<>( );
+        try ( ShardLeaseHeartbeat heartbeat = shardService.startHeartbeat( shard ) )
+        {
+            if ( !importCandidates( shard.getIdBatch( ), listIds, config, mapCounters, heartbeat::isHeld ) )
+            {
+                return false;
+            }
+        }
+        shard.setOutcomes( mapCounters );
+        final List<ImportShard> listDone = shardService.complete( shard );
+        if ( listDone.isEmpty( ) )
+        {
+            return false;
+        }
+        final Map<String, Integer> mapBatchCounters = new TreeMap<>( );
+        int nProcessed = 0;
+        for ( final ImportShard shardDone : listDone )
+        {
+            nProcessed += shardDone.getCandidateCount( );
+            shardDone.getOutcomes( ).forEach( ( strStatus, nCount ) -> mapBatchCounters.merge( strStatus, nCount, Integer::sum ) );
+        }
+        writeSummary( shard.getIdResourceHistory( ), nProcessed, mapBatchCounters );
+        shardService.remove( shard.getIdResourceHistory( ) );
+        return true;
+    }
+
+    /**
+     * Move a batch whose import has been completed by this node to the state after the action which started it, and run its automatic actions
+     *
+     * @param nIdResourceHistory
+     *            the workflow history of the batch import
+     */
+    private void completeBatch( final int nIdResourceHistory )
+    {
+        final ResourceHistory resourceHistory = _resourceHistoryService.findByPrimaryKey( nIdResourceHistory );
+        // The task only carries the id of its action, the action is loaded with its states
+        final Action action = _actionService.findByPrimaryKey( this.getAction( ).getId( ) );
+        if ( resourceHistory == null || action == null || action.getStateAfter( ) == null )
+        {
+            AppLogService.error( "Batch import completed, but the batch cannot be moved to the state after its action (id resource history : "
+                    + nIdResourceHistory + ")" );
+            return;
+        }
+        final ResourceWorkflow resourceWorkflow = _resourceWorkflowService.findByPrimaryKey( resourceHistory.getIdResource( ),
+                resourceHistory.getResourceType( ), resourceHistory.getWorkflow( ).getId( ) );
+        final State state = _stateService.findByPrimaryKey( action.getStateAfter( ).getId( ) );
+        if ( resourceWorkflow != null && state != null )
+        {
+            resourceWorkflow.setState( state );
+            CandidateStateTransitionService.moveTo( Collections.singletonList( resourceWorkflow ) );
+        }
+    }
+
+    /**
+     * Import candidate identities by chunks
+     *
+     * @param nIdBatch
+     *            the batch id
+     * @param listIds
+     *            the candidate identity ids
+     * @param config
+     *            the task config
+     * @param mapCounters
+     *            the number of candidate identities by outcome, updated by this method
+     * @param heartbeat
+     *            called after each chunk, the import stops when it returns false
+     * @return false if the import has been stopped by the heartbeat
+     */
+    private boolean importCandidates( final int nIdBatch, final List<Integer> listIds, final IdentityImportTaskConfig config,
+            final Map<String, Integer> mapCounters, final BooleanSupplier heartbeat )
+    {
+        final RequestAuthor requestAuthor = new RequestAuthor( );
+        requestAuthor.setName( AppPropertiesService.getProperty( "identityimport_config.request.author" ) );
+        requestAuthor.setType( AuthorType.application );
+
+        final BulkIdentityImportService importService = BulkIdentityImportService.instance( );
+        final BatchProgress progress = BatchProgressService.instance( ).track( nIdBatch );
+
+        // Send chunk n+1 while the results of chunk n are written
+        List<Future<ImportResult>> listPending = Collections.emptyList( );
+        for ( int nFrom = 0; nFrom < listIds.size( ); nFrom += importService.getChunkSize( ) )
+        {
+            final List<Integer> listChunkIds = listIds.subList( nFrom, Math.min( nFrom + importService.getChunkSize( ), listIds.size( ) ) );
+            final long lChunkLoad = System.nanoTime( );
+            final List<CandidateIdentity> listCandidateIdentities = CandidateIdentityLoaderHome.findByIds( listChunkIds );
+            recordPhase( TaskPhase.CANDIDATE_LOAD, lChunkLoad );
+            if ( listCandidateIdentities.size( ) != listChunkIds.size( ) )
+            {
+                AppLogService.error( "A problem occurred during batch import, " + ( listChunkIds.size( ) - listCandidateIdentities.size( ) )
+                        + " candidate identities not found (batch id : " + nIdBatch + ")" );
+            }
+            progress.begin( listCandidateIdentities.size( ) );
+            final Map<Integer, IdentityDto> mapIdentities = new HashMap<>( );
+            final List<CandidateIdentity> listChanged = skipUnchanged( listCandidateIdentities, mapIdentities, mapCounters, progress );
+            final List<Future<ImportResult>> listSubmitted = importService.submit( listChanged, mapIdentities, requestAuthor );
+            processResults( awaitResults( listPending ), config, requestAuthor, mapCounters, progress );
+            listPending = listSubmitted;
+            if ( !heartbeat.getAsBoolean( ) )
+            {
+                // The results of the chunk in flight are still written, their identities have been sent
+                processResults( awaitResults( listPending ), config, requestAuthor, mapCounters, progress );
+                return false;
+            }
+        }
+        processResults( awaitResults( listPending ), config, requestAuthor, mapCounters, progress );
+        return true;
+    }
+
+    /**
+     * Complete the batch workflow history with a summary of the outcomes
+     */
+    private void writeSummary( final int nIdResourceHistory, final int nProcessed, final Map<String, Integer> mapCounters )
+    {
+        final StringBuilder summary = new StringBuilder( "API Import batch identities\n\nProcessed: " ).append( nProcessed );
+        mapCounters.forEach( ( strStatus, nCount ) -> summary.append( "\n" ).append( strStatus ).append( " - " ).append( nCount ) );
+        final CandidateIdentityHistory batchHistory = new CandidateIdentityHistory( );
+        batchHistory.setWfResourceHistoryId( nIdResourceHistory );
+        batchHistory.setStatus( "Imported" );
+        batchHistory.setComment( buildHistoryComment( summary.toString( ), null ) );
+        CandidateIdentityWriteBehindService.instance( ).addHistory( batchHistory );
+        CandidateIdentityWriteBehindService.instance( ).flush( );
+    }
+
+    /**
+     * Remove from a chunk the candidate identities unchanged since their last successful import. They are not sent again, keep their state and get
+     * no history, so that re-running a batch only touches the candidate identities which changed. The identities mapped to compute their hash are
+     * added to the given map, to be sent without being mapped again.
+     */
+    private List<CandidateIdentity> skipUnchanged( final List<CandidateIdentity> listCandidateIdentities, final Map<Integer, IdentityDto> mapIdentities,
+            final Map<String, Integer> mapCounters, final BatchProgress progress )
+    {
+        if ( !isDeduplicationEnabled( ) )
+        {
+            return listCandidateIdentities;
+        }
+        final List<Integer> listImportedIds = new ArrayList<>( );
+        for ( final CandidateIdentity candidateIdentity : listCandidateIdentities )
+        {
+            if ( StringUtils.isNotEmpty( candidateIdentity.getCustomerId( ) ) )
+            {
+                listImportedIds.add( candidateIdentity.getId( ) );
+            }
+        }
+        if ( listImportedIds.isEmpty( ) )
+        {
+            return listCandidateIdentities;
+        }
+
+        final Map<Integer, CandidateIdentityImportHash> mapImportHashes = CandidateIdentityLoaderHome.findImportHashes( listImportedIds );
+        final long lMapping = System.nanoTime( );
+        final List<CandidateIdentity> listChanged = new ArrayList<>( listCandidateIdentities.size( ) );
+        for ( final CandidateIdentity candidateIdentity : listCandidateIdentities )
+        {
+            final CandidateIdentityImportHash importHash = mapImportHashes.get( candidateIdentity.getId( ) );
+            IdentityDto identity = null;
+            if ( importHash != null )
+            {
+                identity = IdentityMapper.mapToIdentity( candidateIdentity );
+                mapIdentities.put( candidateIdentity.getId( ), identity );
+            }
+            if ( identity != null && importHash.isUnchanged( IdentityMapper.contentHash( identity ), candidateIdentity.getCustomerId( ) ) )
+            {
+                mapCounters.merge( OUTCOME_UNCHANGED, 1, Integer::sum );
+                recordOutcome( OUTCOME_UNCHANGED, candidateIdentity.getClientCode( ) );
+                progress.end( OUTCOME_UNCHANGED );
+            }
+            else
+            {
+                listChanged.add( candidateIdentity );
+            }
+        }
+        recordPhase( TaskPhase.MAPPING, lMapping );
+        return listChanged;
+    }
+
+    /**
+     * Wait for the results of a chunk. The calls overlap, so only the time the task is blocked by the identity store is recorded as
+     * {@link TaskPhase#API_CALL}.
+     */
+    private List<ImportResult> awaitResults( final List<Future<ImportResult>> listPending )
+    {
+        final long lAwait = System.nanoTime( );
+        final List<ImportResult> listResults = BulkIdentityImportService.await( listPending );
+        recordPhase( TaskPhase.API_CALL, lAwait );
+        return listResults;
+    }
+
+    private void processResults( final List<ImportResult> listResults, final IdentityImportTaskConfig config, final RequestAuthor requestAuthor,
+            final Map<String, Integer> mapCounters, final BatchProgress progress )
+    {
+        final String strResourceType = AppPropertiesService.getProperty( PROPERTY_CANDIDATE_RESOURCE_TYPE, DEFAULT_CANDIDATE_RESOURCE_TYPE );
+        final CandidateIdentityWriteBehindService writeBehindService = CandidateIdentityWriteBehindService.instance( );
+        final Map<Integer, State> mapStates = new HashMap<>( );
+        final List<ResourceWorkflow> listTransitions = new ArrayList<>( listResults.size( ) );
+        final List<Integer> listIds = new ArrayList<>( listResults.size( ) );
+        listResults.forEach( result -> listIds.add( result.getCandidateIdentity( ).getId( ) ) );
+        final Map<Integer, ResourceWorkflow> mapResourceWorkflows = CandidateIdentityLoaderHome.findResourceWorkflows( listIds, strResourceType,
+                config.getIdWorkflow( ) );
+        for ( final ImportResult result : listResults )
+        {
+            final CandidateIdentity candidateIdentity = result.getCandidateIdentity( );
+            final ResourceWorkflow resourceWorkflow = mapResourceWorkflows.get( candidateIdentity.getId( ) );
+            if ( resourceWorkflow == null )
+            {
+                AppLogService.error( "A problem occurred during batch import, candidate identity has no workflow (id : " + candidateIdentity.getId( ) + ")" );
+                mapCounters.merge( OUTCOME_ERROR, 1, Integer::sum );
+                progress.end( OUTCOME_ERROR );
+                continue;
+            }
+
+            /* Candidate workflow history, written with the candidate identity history */
+            final ResourceHistory candidateResourceHistory = new ResourceHistory( );
+            candidateResourceHistory.setIdResource( candidateIdentity.getId( ) );
+            candidateResourceHistory.setResourceType( strResourceType );
+            candidateResourceHistory.setWorkflow( resourceWorkflow.getWorkflow( ) );
+            candidateResourceHistory.setAction( this.getAction( ) );
+            candidateResourceHistory.setCreationDate( new Timestamp( System.currentTimeMillis( ) ) );
+            candidateResourceHistory.setUserAccessCode( requestAuthor.getName( ) );
+
+            /* Complete workflow history with custom fields */
+            final CandidateIdentityHistory candidateIdentityHistory = new CandidateIdentityHistory( );
+            int nIdTargetState = -1;
+            if ( !result.getValidationErrors( ).isEmpty( ) )
+            {
+                // Rejected before the call, routed as the identity store would have answered
+                candidateIdentityHistory.setStatus( IdentityValidationService.OUTCOME_INVALID );
+                candidateIdentityHistory.setComment( buildHistoryComment( HISTORY_HEADER_INVALID, null ) );
+                nIdTargetState = config.getIdTargetState( ResponseStatusType.FAILURE );
+            }
+            else if ( result.getResponse( ) != null )
+            {
+                final ResponseStatus status = result.getResponse( ).getStatus( );
+                candidateIdentityHistory.setStatus( status.getType( ).name( ) );
+                candidateIdentityHistory.setComment( buildHistoryComment( "API Import identity", status ) );
+                if ( status.getType( ) == ResponseStatusType.SUCCESS || status.getType( ) == ResponseStatusType.INCOMPLETE_SUCCESS )
+                {
+                    candidateIdentity.setCustomerId( result.getResponse( ).getCustomerId( ) );
+                    writeBehindService.addCustomerId( candidateIdentity.getId( ), candidateIdentity.getCustomerId( ) );
+                    writeBehindService.addImportHash(
+                            new CandidateIdentityImportHash( candidateIdentity.getId( ), result.getContentHash( ), candidateIdentity.getCustomerId( ) ) );
+                }
+                nIdTargetState = config.getIdTargetState( status.getType( ) );
+            }
+            else
+            {
+                // Not parked, even when the identity store is unavailable: the parked resources are replayed through the automatic actions of their
+                // own state, while the import action belongs to the batch. The candidate identity is routed as an error, to be imported again.
+                final Exception exception = result.getException( );
+                candidateIdentityHistory.setStatus( OUTCOME_ERROR );
+                candidateIdentityHistory.setComment( buildHistoryComment(
+                        "API Import identity\n" + ( exception.getMessage( ) != null ? exception.getMessage( ) : exception.getClass( ).getName( ) ), null ) );
+                nIdTargetState = config.getIdTargetState( ROUTE_ERROR );
+            }
+            if ( !result.getValidationErrors( ).isEmpty( ) )
+            {
+                writeBehindService.addHistory( candidateResourceHistory, candidateIdentityHistory,
+                        IdentityValidationService.toAttributeStatuses( 0, result.getValidationErrors( ) ) );
+            }
+            else
+            {
+                writeBehindService.addHistory( candidateResourceHistory, candidateIdentityHistory,
+                        result.getResponse( ) != null ? result.getResponse( ).getStatus( ) : null );
+            }
+            mapCounters.merge( candidateIdentityHistory.getStatus( ), 1, Integer::sum );
+            recordOutcome( candidateIdentityHistory.getStatus( ), candidateIdentity.getClientCode( ) );
+            progress.end( candidateIdentityHistory.getStatus( ) );
+
+            if ( nIdTargetState > 0 )
+            {
+                final State state = mapStates.computeIfAbsent( nIdTargetState, _stateService::findByPrimaryKey );
+                if ( state != null )
+                {
+                    resourceWorkflow.setState( state );
+                    listTransitions.add( resourceWorkflow );
+                }
+            }
+        }
+
+        /* Histories of the chunk must be written before the candidates are moved to the state configured for their outcome */
+        final long lFlush = System.nanoTime( );
+        writeBehindService.flush( );
+        final long lUpdate = recordPhase( TaskPhase.HISTORY_INSERT, lFlush );
+        CandidateStateTransitionService.moveTo( listTransitions );
+        recordPhase( TaskPhase.UPDATE, lUpdate );
+    }
+
+    @Override
+    public String getTitle( Locale pLocale )
+    {
+        return I18nService.getLocalizedString( TASK_TITLE, pLocale );
+    }
+}
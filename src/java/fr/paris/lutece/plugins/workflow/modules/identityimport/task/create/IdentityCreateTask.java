@@ -35,10 +35,7 @@ package fr.paris.lutece.plugins.workflow.modules.identityimport.task.create;
 
 import fr.paris.lutece.api.user.User;
 import fr.paris.lutece.plugins.identityimport.business.CandidateIdentity;
-import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityAttributeHome;
 import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistory;
-import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistoryHome;
-import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHome;
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.AuthorType;
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.IdentityDto;
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.RequestAuthor;
@@ -46,15 +43,15 @@ import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatus
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.crud.IdentityChangeRequest;
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.crud.IdentityChangeResponse;
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.util.ResponseStatusFactory;
-import fr.paris.lutece.plugins.identitystore.v3.web.service.IdentityService;
 import fr.paris.lutece.plugins.identitystore.web.exception.IdentityStoreException;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateIdentityLoaderHome;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateIdentityResource;
 import fr.paris.lutece.plugins.workflow.modules.identityimport.mapper.IdentityMapper;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.client.ResilientIdentityStoreClient;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.metrics.TaskPhase;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.writer.CandidateIdentityWriteBehindService;
 import fr.paris.lutece.plugins.workflow.modules.identityimport.task.IdentityTask;
-import fr.paris.lutece.plugins.workflowcore.business.resource.ResourceHistory;
-import fr.paris.lutece.plugins.workflowcore.service.resource.IResourceHistoryService;
-import fr.paris.lutece.plugins.workflowcore.service.resource.ResourceHistoryService;
 import fr.paris.lutece.portal.service.i18n.I18nService;
-import fr.paris.lutece.portal.service.spring.SpringContextService;
 import fr.paris.lutece.portal.service.util.AppLogService;
 import fr.paris.lutece.portal.service.util.AppPropertiesService;
 
@@ -69,26 +66,32 @@ public class IdentityCreateTask extends IdentityTask
     private static final String TASK_TITLE = "module.workflow.identityimport.create.title";
 
     // Services
-    private static final IResourceHistoryService _resourceHistoryService = SpringContextService.getBean( ResourceHistoryService.BEAN_SERVICE );
-
-    private final IdentityService identityService = SpringContextService.getBean( "identityService.rest.httpAccess.v3" );
+    private final ResilientIdentityStoreClient identityStoreClient = ResilientIdentityStoreClient.instance( );
 
     @Override
-    public boolean processTaskWithResult( int nIdResourceHistory, HttpServletRequest request, Locale locale, User user )
+    protected boolean processIdentityTask( int nIdResourceHistory, HttpServletRequest request, Locale locale, User user )
     {
-        // Get resource id as parent ID for processing child actions
-        final ResourceHistory resourceHistory = _resourceHistoryService.findByPrimaryKey( nIdResourceHistory );
+        // Get resource history with its candidate identity and attributes
+        final long lLoad = System.nanoTime( );
+        final CandidateIdentityResource resource = CandidateIdentityLoaderHome.findByResourceHistory( nIdResourceHistory );
+        recordPhase( TaskPhase.CANDIDATE_LOAD, lLoad );
+        if ( resource == null )
+        {
+            AppLogService.error( "A problem occurred during creation, resource history not found (id : " + nIdResourceHistory + ")" );
+            return false;
+        }
         boolean bStatus = false;
 
-        final Optional<CandidateIdentity> optIdentity = CandidateIdentityHome.findByPrimaryKey( resourceHistory.getIdResource( ) );
+        final Optional<CandidateIdentity> optIdentity = resource.getCandidateIdentity( );
         if ( optIdentity.isPresent( ) )
         {
             final CandidateIdentity candidateIdentity = optIdentity.get( );
-            candidateIdentity.setAttributes( CandidateIdentityAttributeHome.getCandidateIdentityAttributesList( candidateIdentity.getId( ) ) );
 
+            final long lMapping = System.nanoTime( );
             final IdentityChangeRequest identityChangeRequest = new IdentityChangeRequest( );
             final IdentityDto identity = IdentityMapper.mapToIdentity( candidateIdentity );
             identityChangeRequest.setIdentity( identity );
+            recordPhase( TaskPhase.MAPPING, lMapping );
 
             final RequestAuthor requestAuthor = new RequestAuthor( );
             requestAuthor.setName( AppPropertiesService.getProperty( "identityimport_config.request.author" ) );
@@ -96,33 +99,47 @@ public class IdentityCreateTask extends IdentityTask
 
             try
             {
-                final IdentityChangeResponse response = identityService.createIdentity( identityChangeRequest, candidateIdentity.getClientCode( ),
-                        requestAuthor );
+                final long lCall = System.nanoTime( );
+                final IdentityChangeResponse response;
+                try
+                {
+                    response = identityStoreClient.createIdentity( identityChangeRequest, candidateIdentity.getClientCode( ), requestAuthor );
+                }
+                finally
+                {
+                    recordPhase( TaskPhase.API_CALL, lCall );
+                }
                 final ResponseStatus status = response.getStatus( );
+                recordOutcome( status.getType( ).name( ), candidateIdentity.getClientCode( ) );
                 /* Complete workflow history with custom fields */
                 final CandidateIdentityHistory candidateIdentityHistory = new CandidateIdentityHistory( );
-                candidateIdentityHistory.setWfResourceHistoryId( resourceHistory.getId( ) );
+                candidateIdentityHistory.setWfResourceHistoryId( resource.getIdResourceHistory( ) );
                 candidateIdentityHistory.setStatus( status.getType( ).name( ) );
-                candidateIdentityHistory.setComment( this.buildHistoryComment( "API Create identity", status ) );
-                CandidateIdentityHistoryHome.insert( candidateIdentityHistory );
+                candidateIdentityHistory.setComment( buildHistoryComment( "API Create identity", status ) );
+                CandidateIdentityWriteBehindService.instance( ).addHistory( candidateIdentityHistory, status );
                 /* Process response */
                 if ( ResponseStatusFactory.success( ).equals( status ) || ResponseStatusFactory.incompleteSuccess( ).equals( status ) )
                 {
                     candidateIdentity.setCustomerId( response.getCustomerId( ) );
+                    CandidateIdentityWriteBehindService.instance( ).addCustomerId( candidateIdentity.getId( ), response.getCustomerId( ) );
                     bStatus = true;
                 }
             }
             catch( IdentityStoreException e )
             {
-                AppLogService.error( "A problem occurred during creation, candidate identity not imported (id : " + resourceHistory.getIdResource( ) + ")" );
+                recordOutcome( OUTCOME_ERROR, candidateIdentity.getClientCode( ) );
+                AppLogService.error( "A problem occurred during creation, candidate identity not imported (id : " + resource.getIdResource( ) + ")" );
             }
-
-            CandidateIdentityHome.update( candidateIdentity );
         }
         else
         {
-            AppLogService.error( "A problem occurred during creation, candidate identity not found (id : " + resourceHistory.getIdResource( ) + ")" );
+            AppLogService.error( "A problem occurred during creation, candidate identity not found (id : " + resource.getIdResource( ) + ")" );
         }
+
+        // History must be written before the workflow transition is committed
+        final long lFlush = System.nanoTime( );
+        CandidateIdentityWriteBehindService.instance( ).flush( );
+        recordPhase( TaskPhase.HISTORY_INSERT, lFlush );
         return bStatus;
     }
 
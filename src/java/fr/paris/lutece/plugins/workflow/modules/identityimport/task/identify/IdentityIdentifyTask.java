@@ -35,10 +35,7 @@ package fr.paris.lutece.plugins.workflow.modules.identityimport.task.identify;
 
 import fr.paris.lutece.api.user.User;
 import fr.paris.lutece.plugins.identityimport.business.CandidateIdentity;
-import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityAttributeHome;
 import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistory;
-import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistoryHome;
-import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHome;
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.AttributeDto;
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.AuthorType;
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.IdentityDto;
@@ -49,14 +46,14 @@ import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.crud.IdentityChangeRe
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.crud.IdentityChangeResponse;
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.search.IdentitySearchResponse;
 import fr.paris.lutece.plugins.identitystore.v3.web.rs.util.Constants;
-import fr.paris.lutece.plugins.identitystore.v3.web.service.IdentityService;
 import fr.paris.lutece.plugins.identitystore.web.exception.IdentityStoreException;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateIdentityLoaderHome;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateIdentityResource;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.client.ResilientIdentityStoreClient;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.metrics.TaskPhase;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.writer.CandidateIdentityWriteBehindService;
 import fr.paris.lutece.plugins.workflow.modules.identityimport.task.IdentityTask;
-import fr.paris.lutece.plugins.workflowcore.business.resource.ResourceHistory;
-import fr.paris.lutece.plugins.workflowcore.service.resource.IResourceHistoryService;
-import fr.paris.lutece.plugins.workflowcore.service.resource.ResourceHistoryService;
 import fr.paris.lutece.portal.service.i18n.I18nService;
-import fr.paris.lutece.portal.service.spring.SpringContextService;
 import fr.paris.lutece.portal.service.util.AppLogService;
 import fr.paris.lutece.portal.service.util.AppPropertiesService;
 import org.apache.commons.lang3.StringUtils;
@@ -65,6 +62,7 @@ import javax.servlet.http.HttpServletRequest;
 import java.sql.Timestamp;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
 import java.util.stream.Collectors;
 
@@ -75,29 +73,33 @@ public class IdentityIdentifyTask extends IdentityTask
     private static final String TASK_TITLE = "module.workflow.identityimport.identify.title";
 
     // Services
-    private static final IResourceHistoryService _resourceHistoryService = SpringContextService.getBean( ResourceHistoryService.BEAN_SERVICE );
-
-    private final IdentityService identityService = SpringContextService.getBean( "identityService.rest.httpAccess.v3" );
+    private final ResilientIdentityStoreClient identityStoreClient = ResilientIdentityStoreClient.instance( );
 
     @Override
-    public boolean processTaskWithResult( final int nIdResourceHistory, final HttpServletRequest request, final Locale locale, final User user )
+    protected boolean processIdentityTask( final int nIdResourceHistory, final HttpServletRequest request, final Locale locale, final User user )
     {
-        // Get resource id as parent ID for processing child actions
-        final ResourceHistory resourceHistory = _resourceHistoryService.findByPrimaryKey( nIdResourceHistory );
+        // Get resource history with its candidate identity and attributes
+        final long lLoad = System.nanoTime( );
+        final CandidateIdentityResource resource = CandidateIdentityLoaderHome.findByResourceHistory( nIdResourceHistory );
+        recordPhase( TaskPhase.CANDIDATE_LOAD, lLoad );
+        if ( resource == null )
+        {
+            AppLogService.error( "A problem occurred during identification, resource history not found (id : " + nIdResourceHistory + ")" );
+            return false;
+        }
         boolean bStatus = false;
         final String selectedCustomerId = request.getParameter( Constants.PARAM_ID_CUSTOMER );
         if ( selectedCustomerId != null )
         {
-            final Optional<CandidateIdentity> optIdentity = CandidateIdentityHome.findByPrimaryKey( resourceHistory.getIdResource( ) );
+            final Optional<CandidateIdentity> optIdentity = resource.getCandidateIdentity( );
             if ( optIdentity.isPresent( ) )
             {
                 final CandidateIdentity candidateIdentity = optIdentity.get( );
-                candidateIdentity.setAttributes( CandidateIdentityAttributeHome.getCandidateIdentityAttributesList( candidateIdentity.getId( ) ) );
-
                 final RequestAuthor requestAuthor = new RequestAuthor( );
                 requestAuthor.setName( AppPropertiesService.getProperty( "identityimport_config.request.author" ) );
                 requestAuthor.setType( AuthorType.application );
 
+                final long lCall = System.nanoTime( );
                 try
                 {
                     ResponseStatus status;
@@ -111,71 +113,96 @@ public class IdentityIdentifyTask extends IdentityTask
                         final String lastUpdateDate = request.getParameter( "last_update_date" );
                         identity.setLastUpdateDate( Timestamp.valueOf( lastUpdateDate ) );
                         updateRequest.setIdentity( identity );
-                        final List<String> keys = request.getParameterMap( ).keySet( ).stream( )
-                                .filter( key -> key.startsWith( "override-" ) && !key.endsWith( "-certif" ) )
-                                .map( key -> StringUtils.removeStart( key, "override-" ) ).collect( Collectors.toList( ) );
-                        identity.getAttributes( ).addAll( keys.stream( ).map( key -> {
-                            final String value = request.getParameter( "override-" + key );
-                            final String certif = request.getParameter( "override-" + key + "-certif" );
-                            final String timestamp = request.getParameter( "override-" + key + "-timestamp-certif" );
-
-                            final AttributeDto attributeDto = new AttributeDto( );
-                            attributeDto.setKey( key );
-                            attributeDto.setValue( value );
-                            attributeDto.setCertifier( certif );
-                            attributeDto.setCertificationDate( new Timestamp( Long.parseLong( timestamp ) ) );
-                            return attributeDto;
-                        } ).collect( Collectors.toList( ) ) );
-                        final IdentityChangeResponse response = identityService.updateIdentity( selectedCustomerId, updateRequest,
+                        identity.getAttributes( ).addAll( buildOverrideAttributes( request.getParameterMap( ) ) );
+                        final IdentityChangeResponse response = identityStoreClient.updateIdentity( selectedCustomerId, updateRequest,
                                 candidateIdentity.getClientCode( ), requestAuthor );
                         status = response.getStatus( );
                         header = "Identité sélectionnée et mise à jour.\n\nAPI UPDATE identity";
                     }
-                    /* No update needed, just get the identity to check if it still exists */
+                    /* No update needed, just check that the identity still exists; cached if it has been read recently through the client */
                     else
                     {
-                        final IdentitySearchResponse response = identityService.getIdentity( selectedCustomerId, candidateIdentity.getClientCode( ),
+                        final IdentitySearchResponse response = identityStoreClient.lookupIdentity( selectedCustomerId, candidateIdentity.getClientCode( ),
                                 requestAuthor );
                         status = response.getStatus( );
                         header = "Identité sélectionnée.\n\nAPI GET identity";
                     }
+                    recordPhase( TaskPhase.API_CALL, lCall );
+                    recordOutcome( status.getType( ).name( ), candidateIdentity.getClientCode( ) );
 
                     /* Complete workflow history with custom fields */
                     final CandidateIdentityHistory candidateIdentityHistory = new CandidateIdentityHistory( );
-                    candidateIdentityHistory.setWfResourceHistoryId( resourceHistory.getId( ) );
+                    candidateIdentityHistory.setWfResourceHistoryId( resource.getIdResourceHistory( ) );
                     candidateIdentityHistory.setStatus( status.getType( ).name( ) );
-                    candidateIdentityHistory.setComment( this.buildHistoryComment( header, status ) );
-                    CandidateIdentityHistoryHome.insert( candidateIdentityHistory );
+                    candidateIdentityHistory.setComment( buildHistoryComment( header, status ) );
+                    CandidateIdentityWriteBehindService.instance( ).addHistory( candidateIdentityHistory, status );
 
                     /* Process response */
                     if ( status.getType( ) == ResponseStatusType.OK || status.getType( ) == ResponseStatusType.SUCCESS
                             || status.getType( ) == ResponseStatusType.INCOMPLETE_SUCCESS )
                     {
                         candidateIdentity.setCustomerId( selectedCustomerId );
+                        CandidateIdentityWriteBehindService.instance( ).addCustomerId( candidateIdentity.getId( ), selectedCustomerId );
                         bStatus = true;
                     }
-                    CandidateIdentityHome.update( candidateIdentity );
                 }
                 catch( final IdentityStoreException e )
                 {
+                    recordPhase( TaskPhase.API_CALL, lCall );
+                    recordOutcome( OUTCOME_ERROR, candidateIdentity.getClientCode( ) );
                     AppLogService.error(
-                            "A problem occurred during identification, candidate identity not identified (id : " + resourceHistory.getIdResource( ) + ")" );
+                            "A problem occurred during identification, candidate identity not identified (id : " + resource.getIdResource( ) + ")" );
                 }
             }
             else
             {
                 AppLogService
-                        .error( "A problem occurred during identification, candidate identity not identified (id : " + resourceHistory.getIdResource( ) + ")" );
+                        .error( "A problem occurred during identification, candidate identity not identified (id : " + resource.getIdResource( ) + ")" );
             }
         }
         else
         {
-            AppLogService.error( "A problem occurred during identification, candidate identity not identified (id " + resourceHistory.getIdResource( ) + ")" );
+            AppLogService.error( "A problem occurred during identification, candidate identity not identified (id " + resource.getIdResource( ) + ")" );
         }
 
+        // History must be written before the workflow transition is committed
+        final long lFlush = System.nanoTime( );
+        CandidateIdentityWriteBehindService.instance( ).flush( );
+        recordPhase( TaskPhase.HISTORY_INSERT, lFlush );
         return bStatus;
     }
 
+    /**
+     * Build the attributes overridden by the agent from the <code>override-*</code> request parameters
+     *
+     * @param mapParameters
+     *            the request parameters
+     * @return the overridden attributes
+     */
+    static List<AttributeDto> buildOverrideAttributes( final Map<String, String[]> mapParameters )
+    {
+        final List<String> keys = mapParameters.keySet( ).stream( ).filter( key -> key.startsWith( "override-" ) && !key.endsWith( "-certif" ) )
+                .map( key -> StringUtils.removeStart( key, "override-" ) ).collect( Collectors.toList( ) );
+        return keys.stream( ).map( key -> {
+            final String value = getParameter( mapParameters, "override-" + key );
+            final String certif = getParameter( mapParameters, "override-" + key + "-certif" );
+            final String timestamp = getParameter( mapParameters, "override-" + key + "-timestamp-certif" );
+
+            final AttributeDto attributeDto = new AttributeDto( );
+            attributeDto.setKey( key );
+            attributeDto.setValue( value );
+            attributeDto.setCertifier( certif );
+            attributeDto.setCertificationDate( new Timestamp( Long.parseLong( timestamp ) ) );
+            return attributeDto;
+        } ).collect( Collectors.toList( ) );
+    }
+
+    private static String getParameter( final Map<String, String[]> mapParameters, final String strName )
+    {
+        final String [ ] values = mapParameters.get( strName );
+        return values != null && values.length > 0 ? values [0] : null;
+    }
+
     @Override
     public String getTitle( Locale pLocale )
     {
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.web;
+
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.identify.IdentifyMapping;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.task.batchidentify.BatchIdentityIdentifyTask;
+import fr.paris.lutece.plugins.workflowcore.service.task.ITask;
+import fr.paris.lutece.portal.service.message.AdminMessage;
+import fr.paris.lutece.portal.service.message.AdminMessageService;
+import fr.paris.lutece.portal.service.template.AppTemplateService;
+import fr.paris.lutece.portal.web.constants.Messages;
+import fr.paris.lutece.util.html.HtmlTemplate;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Component of the batch identification task : its config is the one of the import tasks, and the mapping of the candidate identities to identify
+ * is entered in the form of the action
+ */
+public class BatchIdentityIdentifyTaskComponent extends IdentityImportTaskComponent
+{
+    // MARKERS
+    private static final String MARK_PARAMETER_MAPPING = "parameter_mapping";
+
+    // TEMPLATES
+    private static final String TEMPLATE_TASK_BATCH_IDENTIFY_FORM = "admin/plugins/workflow/modules/identityimport/batch_identify_task_form.html";
+
+    @Override
+    public String getDisplayTaskForm( int nIdResource, String strResourceType, HttpServletRequest request, Locale locale, ITask task )
+    {
+        final Map<String, Object> model = new HashMap<>( );
+        model.put( MARK_PARAMETER_MAPPING, BatchIdentityIdentifyTask.PARAMETER_MAPPING );
+        final HtmlTemplate template = AppTemplateService.getTemplate( TEMPLATE_TASK_BATCH_IDENTIFY_FORM, locale, model );
+        return template.getHtml( );
+    }
+
+    @Override
+    public String doValidateTask( int nIdResource, String strResourceType, HttpServletRequest request, Locale locale, ITask task )
+    {
+        if ( IdentifyMapping.parse( request.getParameter( BatchIdentityIdentifyTask.PARAMETER_MAPPING ) ).getEntries( ).isEmpty( ) )
+        {
+            return AdminMessageService.getMessageUrl( request, Messages.MANDATORY_FIELDS, AdminMessage.TYPE_STOP );
+        }
+        return null;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.web;
+
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateIdentityLoaderHome;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.loadtest.LoadDriverService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.progress.BatchProgressService;
+import fr.paris.lutece.portal.service.admin.AccessDeniedException;
+import fr.paris.lutece.portal.service.security.SecurityTokenService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import fr.paris.lutece.portal.util.mvc.admin.MVCAdminJspBean;
+import fr.paris.lutece.portal.util.mvc.admin.annotations.Controller;
+import fr.paris.lutece.portal.util.mvc.commons.annotations.Action;
+import fr.paris.lutece.portal.util.mvc.commons.annotations.View;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.Map;
+
+/**
+ * Back office view of the progress of the batches imported on this node. The counters are read as they are, nothing is aggregated from the history
+ * tables, except for the attribute statuses of a batch which are counted on demand. When the load driver is enabled, a load test run can be started
+ * from the same page.
+ */
+@Controller( controllerJsp = "ManageBatchProgress.jsp", controllerPath = "jsp/admin/plugins/workflow/modules/identityimport/",
+        right = BatchProgressJspBean.RIGHT_MANAGE_BATCH_PROGRESS )
+public class BatchProgressJspBean extends MVCAdminJspBean
+{
+    /** Right to view the progress of the batches */
+    public static final String RIGHT_MANAGE_BATCH_PROGRESS = "WORKFLOW_IDENTITYIMPORT_PROGRESS";
+
+    private static final long serialVersionUID = 1L;
+
+    // Templates
+    private static final String TEMPLATE_MANAGE_BATCH_PROGRESS = "/admin/plugins/workflow/modules/identityimport/manage_batch_progress.html";
+    private static final String TEMPLATE_VIEW_BATCH_ATTRIBUTE_STATUSES = "/admin/plugins/workflow/modules/identityimport/view_batch_attribute_statuses.html";
+
+    // Parameters
+    private static final String PARAMETER_ID_BATCH = "id_batch";
+    private static final String PARAMETER_ID_TASK = "id_task";
+    private static final String PARAMETER_COUNT = "count";
+
+    // Properties
+    private static final String PROPERTY_PAGE_TITLE_MANAGE_BATCH_PROGRESS = "module.workflow.identityimport.manage_batch_progress.pageTitle";
+    private static final String PROPERTY_PAGE_TITLE_VIEW_BATCH_ATTRIBUTE_STATUSES = "module.workflow.identityimport.view_batch_attribute_statuses.pageTitle";
+    private static final String PROPERTY_CANDIDATE_RESOURCE_TYPE = "identityimport_config.candidate.resource.type";
+
+    // Defaults
+    private static final String DEFAULT_CANDIDATE_RESOURCE_TYPE = "IDENTITYIMPORT_CANDIDATE_IDENTITY";
+
+    // Markers
+    private static final String MARK_BATCH_PROGRESS_LIST = "batch_progress_list";
+    private static final String MARK_ID_BATCH = "id_batch";
+    private static final String MARK_ATTRIBUTE_STATUS_COUNT_LIST = "attribute_status_count_list";
+    private static final String MARK_LOAD_DRIVER_ENABLED = "load_driver_enabled";
+    private static final String MARK_LOAD_DRIVER_RUNNING = "load_driver_running";
+    private static final String MARK_LOAD_DRIVER_REPORT = "load_driver_report";
+
+    // Messages
+    private static final String MESSAGE_LOAD_DRIVER_NOT_STARTED = "module.workflow.identityimport.manage_batch_progress.loadDriver.notStarted";
+
+    // Views
+    private static final String VIEW_MANAGE_BATCH_PROGRESS = "manageBatchProgress";
+    private static final String VIEW_BATCH_ATTRIBUTE_STATUSES = "viewBatchAttributeStatuses";
+
+    // Actions
+    private static final String ACTION_RUN_LOAD_DRIVER = "runLoadDriver";
+
+    /**
+     * Build the view of the progress of the batches
+     *
+     * @param request
+     *            the request
+     * @return the page
+     */
+    @View( value = VIEW_MANAGE_BATCH_PROGRESS, defaultView = true )
+    public String getManageBatchProgress( final HttpServletRequest request )
+    {
+        final Map<String, Object> model = getModel( );
+        model.put( MARK_BATCH_PROGRESS_LIST, BatchProgressService.instance( ).getAll( ) );
+        final LoadDriverService loadDriverService = LoadDriverService.instance( );
+        model.put( MARK_LOAD_DRIVER_ENABLED, loadDriverService.isEnabled( ) );
+        model.put( MARK_LOAD_DRIVER_RUNNING, loadDriverService.isRunning( ) );
+        model.put( MARK_LOAD_DRIVER_REPORT, loadDriverService.getLastReport( ) );
+        model.put( SecurityTokenService.MARK_TOKEN, SecurityTokenService.getInstance( ).getToken( request, ACTION_RUN_LOAD_DRIVER ) );
+        return getPage( PROPERTY_PAGE_TITLE_MANAGE_BATCH_PROGRESS, TEMPLATE_MANAGE_BATCH_PROGRESS, model );
+    }
+
+    /**
+     * Build the view of the attribute statuses of a batch, the most frequent first
+     *
+     * @param request
+     *            the request
+     * @return the page
+     */
+    @View( VIEW_BATCH_ATTRIBUTE_STATUSES )
+    public String getViewBatchAttributeStatuses( final HttpServletRequest request )
+    {
+        final int nIdBatch = NumberUtils.toInt( request.getParameter( PARAMETER_ID_BATCH ), -1 );
+        final Map<String, Object> model = getModel( );
+        model.put( MARK_ID_BATCH, nIdBatch );
+        model.put( MARK_ATTRIBUTE_STATUS_COUNT_LIST, CandidateIdentityLoaderHome.findAttributeStatusCounts( nIdBatch,
+                AppPropertiesService.getProperty( PROPERTY_CANDIDATE_RESOURCE_TYPE, DEFAULT_CANDIDATE_RESOURCE_TYPE ) ) );
+        return getPage( PROPERTY_PAGE_TITLE_VIEW_BATCH_ATTRIBUTE_STATUSES, TEMPLATE_VIEW_BATCH_ATTRIBUTE_STATUSES, model );
+    }
+
+    /**
+     * Start a load driver run, followed in the progress of its batch
+     *
+     * @param request
+     *            the request
+     * @return the progress page
+     * @throws AccessDeniedException
+     *             if the security token is invalid
+     */
+    @Action( ACTION_RUN_LOAD_DRIVER )
+    public String doRunLoadDriver( final HttpServletRequest request ) throws AccessDeniedException
+    {
+        if ( !SecurityTokenService.getInstance( ).validate( request, ACTION_RUN_LOAD_DRIVER ) )
+        {
+            throw new AccessDeniedException( "Invalid security token" );
+        }
+        if ( !LoadDriverService.instance( ).start( NumberUtils.toInt( request.getParameter( PARAMETER_ID_TASK ), -1 ),
+                NumberUtils.toInt( request.getParameter( PARAMETER_ID_BATCH ), -1 ), NumberUtils.toInt( request.getParameter( PARAMETER_COUNT ), 0 ) ) )
+        {
+            addError( MESSAGE_LOAD_DRIVER_NOT_STARTED, getLocale( ) );
+        }
+        return redirectView( request, VIEW_MANAGE_BATCH_PROGRESS );
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.web;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.progress.BatchProgress;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.progress.BatchProgressService;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * JSON endpoint of the progress of the batches imported on this node.<br>
+ * With the parameter <code>batch</code>, returns the progress of that batch, otherwise the progress of all the tracked batches. The access is restricted
+ * as for the {@link IdentityTaskMetricsServlet}: the requests carry the configured bearer token, or come from a back office user with the right of the
+ * {@link BatchProgressJspBean}, {@link BatchProgressJspBean#RIGHT_MANAGE_BATCH_PROGRESS}.
+ *
+ * example : {"batches":[{"id":12, "total":5000, "processed":1200, "success":1150, "incompleteSuccess":20, "failed":10, "deferred":20, "inFlight":8,
+ * "rate":42.5, "eta":89, ...
+ */
+public class IdentityImportProgressServlet extends HttpServlet
+{
+    private static final long serialVersionUID = 1L;
+
+    // Parameters
+    private static final String PARAMETER_BATCH = "batch";
+
+    // Constants
+    private static final String CONTENT_TYPE = "application/json; charset=utf-8";
+
+    // ObjectMapper is thread safe once configured
+    private static final ObjectMapper _mapper = new ObjectMapper( );
+
+    @Override
+    protected void doGet( final HttpServletRequest request, final HttpServletResponse response ) throws IOException
+    {
+        if ( !IdentityTaskMetricsServlet.isAuthorized( request ) )
+        {
+            response.sendError( HttpServletResponse.SC_FORBIDDEN );
+            return;
+        }
+
+        final ObjectNode root;
+        final String strIdBatch = request.getParameter( PARAMETER_BATCH );
+        if ( strIdBatch != null )
+        {
+            final BatchProgress progress = BatchProgressService.instance( ).find( NumberUtils.toInt( strIdBatch, -1 ) );
+            if ( progress == null )
+            {
+                response.sendError( HttpServletResponse.SC_NOT_FOUND );
+                return;
+            }
+            root = toJson( progress );
+        }
+        else
+        {
+            root = _mapper.createObjectNode( );
+            final ArrayNode jsonBatches = root.putArray( "batches" );
+            BatchProgressService.instance( ).getAll( ).forEach( progress -> jsonBatches.add( toJson( progress ) ) );
+        }
+
+        response.setContentType( CONTENT_TYPE );
+        _mapper.writeValue( response.getOutputStream( ), root );
+    }
+
+    private static ObjectNode toJson( final BatchProgress progress )
+    {
+        final ObjectNode jsonProgress = _mapper.createObjectNode( );
+        jsonProgress.put( "id", progress.getIdBatch( ) );
+        jsonProgress.put( "total", progress.getTotal( ) );
+        jsonProgress.put( "processed", progress.getProcessed( ) );
+        jsonProgress.put( "success", progress.getSuccess( ) );
+        jsonProgress.put( "incompleteSuccess", progress.getIncompleteSuccess( ) );
+        jsonProgress.put( "failed", progress.getFailed( ) );
+        jsonProgress.put( "deferred", progress.getDeferred( ) );
+        jsonProgress.put( "inFlight", progress.getInFlight( ) );
+        jsonProgress.put( "rate", progress.getRate( ) );
+        jsonProgress.put( "eta", progress.getEtaSeconds( ) );
+        jsonProgress.put( "startDate", progress.getStartDate( ) );
+        jsonProgress.put( "lastUpdate", progress.getLastUpdate( ) );
+        return jsonProgress;
+    }
+}
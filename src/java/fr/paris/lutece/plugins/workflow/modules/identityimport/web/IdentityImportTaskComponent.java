@@ -33,34 +33,36 @@
  */
 package fr.paris.lutece.plugins.workflow.modules.identityimport.web;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ArrayNode;
-import com.fasterxml.jackson.databind.node.ObjectNode;
 import fr.paris.lutece.api.user.User;
 import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistory;
 import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistoryHome;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatusType;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.WorkflowStatesService;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.task.IdentityImportStateRouter;
 import fr.paris.lutece.plugins.workflow.modules.identityimport.task.IdentityImportTaskConfig;
 import fr.paris.lutece.plugins.workflowcore.business.config.ITaskConfig;
-import fr.paris.lutece.plugins.workflowcore.business.state.State;
 import fr.paris.lutece.plugins.workflowcore.service.task.ITask;
 import fr.paris.lutece.portal.service.admin.AdminUserService;
+import fr.paris.lutece.portal.service.i18n.I18nService;
 import fr.paris.lutece.portal.service.message.AdminMessage;
 import fr.paris.lutece.portal.service.message.AdminMessageService;
 import fr.paris.lutece.portal.service.template.AppTemplateService;
 import fr.paris.lutece.portal.service.util.AppException;
 import fr.paris.lutece.portal.service.workflow.WorkflowService;
 import fr.paris.lutece.portal.web.constants.Messages;
-import fr.paris.lutece.util.ReferenceItem;
 import fr.paris.lutece.util.ReferenceList;
 import fr.paris.lutece.util.beanvalidation.BeanValidationUtil;
 import fr.paris.lutece.util.html.HtmlTemplate;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.lang3.math.NumberUtils;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.validation.ConstraintViolation;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
@@ -70,17 +72,19 @@ public class IdentityImportTaskComponent extends IdentityTaskComponent
 {
     // MARKERS
     private static final String MARK_WORKFLOW_ID = "workflow_id";
-    private static final String MARK_STATE_ID_1 = "state_id_1";
-    private static final String MARK_STATE_ID_2 = "state_id_2";
-    private static final String MARK_STATE_ID_3 = "state_id_3";
+    private static final String MARK_STATUS_TYPES = "status_types";
+    private static final String MARK_ROUTES = "routes";
+    private static final String MARK_STATUS_LABELS = "status_labels";
+    private static final String MARK_WORKFLOWS = "json_workflows";
     private static final String MARK_WORKFLOW_STATES = "json_workflow_states";
 
     // PARAMETERS
-    private static final String PARAM_STATE1 = "state1";
-    private static final String PARAM_STATE2 = "state2";
-    private static final String PARAM_STATE3 = "state3";
+    private static final String PARAM_ROUTE_PREFIX = "route_";
     private static final String PARAM_WORKFLOW = "workflow";
 
+    // MESSAGES
+    private static final String MESSAGE_ROUTE_PREFIX = "module.workflow.identityimport.identityimport_config.route.";
+
     // TEMPLATES
     private static final String TEMPLATE_TASK_IDENTITYIMPORT_CONFIG = "admin/plugins/workflow/modules/identityimport/identityimport_task_config.html";
 
@@ -105,25 +109,29 @@ public class IdentityImportTaskComponent extends IdentityTaskComponent
         // remove first blank item
         workflowsRefList.remove( 0 );
 
-        // get all available states and actions
-        Map<String, Collection<State>> mapStates = new HashMap<>( );
-
-        for ( ReferenceItem workflowItem : workflowsRefList )
+        // only the states of the selected workflow are loaded, the others are requested by the form when another workflow is selected
+        int nIdWorkflow = config.getIdWorkflow( );
+        if ( nIdWorkflow <= 0 && !workflowsRefList.isEmpty( ) )
         {
-            // STATES
-            Collection<State> workflowStates = WorkflowService.getInstance( ).getAllStateByWorkflow( Integer.valueOf( workflowItem.getCode( ) ), user );
-
-            // put in global map
-            mapStates.put( workflowItem.getCode( ), workflowStates );
-
+            nIdWorkflow = Integer.parseInt( workflowsRefList.get( 0 ).getCode( ) );
         }
-
-        model.put( MARK_WORKFLOW_STATES, getJsonStates( workflowsRefList, mapStates ) );
-
-        model.put( MARK_WORKFLOW_ID, config.getIdWorkflow( ) );
-        model.put( MARK_STATE_ID_1, config.getIdState1( ) );
-        model.put( MARK_STATE_ID_2, config.getIdState2( ) );
-        model.put( MARK_STATE_ID_3, config.getIdState3( ) );
+        final WorkflowStatesService workflowStatesService = WorkflowStatesService.instance( );
+        model.put( MARK_WORKFLOWS, workflowStatesService.getWorkflowsJson( workflowsRefList ) );
+        model.put( MARK_WORKFLOW_STATES, nIdWorkflow > 0 ? workflowStatesService.getStatesJson( nIdWorkflow, user ) : "[]" );
+
+        model.put( MARK_WORKFLOW_ID, nIdWorkflow );
+        final List<String> listStatusTypes = new ArrayList<>( );
+        final Map<String, Integer> mapRoutes = new HashMap<>( );
+        final Map<String, String> mapStatusLabels = new HashMap<>( );
+        for ( ResponseStatusType type : ResponseStatusType.values( ) )
+        {
+            listStatusTypes.add( type.name( ) );
+            mapRoutes.put( type.name( ), config.getIdTargetState( type ) );
+            mapStatusLabels.put( type.name( ), getStatusLabel( type, locale ) );
+        }
+        model.put( MARK_STATUS_TYPES, listStatusTypes );
+        model.put( MARK_ROUTES, mapRoutes );
+        model.put( MARK_STATUS_LABELS, mapStatusLabels );
 
         final HtmlTemplate template = AppTemplateService.getTemplate( TEMPLATE_TASK_IDENTITYIMPORT_CONFIG, locale, model );
         return template.getHtml( );
@@ -133,11 +141,8 @@ public class IdentityImportTaskComponent extends IdentityTaskComponent
     public String validateConfig( ITaskConfig config, HttpServletRequest request )
     {
         String workflow = request.getParameter( PARAM_WORKFLOW );
-        String state1 = request.getParameter( PARAM_STATE1 );
-        String state2 = request.getParameter( PARAM_STATE2 );
-        String state3 = request.getParameter( PARAM_STATE3 );
 
-        if ( StringUtils.isBlank( workflow ) || StringUtils.isBlank( state1 ) || StringUtils.isBlank( state2 ) || StringUtils.isBlank( state3 ) )
+        if ( StringUtils.isBlank( workflow ) )
         {
             return AdminMessageService.getMessageUrl( request, Messages.MANDATORY_FIELDS, AdminMessage.TYPE_STOP );
         }
@@ -146,9 +151,17 @@ public class IdentityImportTaskComponent extends IdentityTaskComponent
             {
                 final IdentityImportTaskConfig taskConfig = (IdentityImportTaskConfig) config;
                 taskConfig.setIdWorkflow( Integer.parseInt( workflow ) );
-                taskConfig.setIdState1( Integer.parseInt( state1 ) );
-                taskConfig.setIdState2( Integer.parseInt( state2 ) );
-                taskConfig.setIdState3( Integer.parseInt( state3 ) );
+                // An outcome without a state keeps the candidate identity in its current state
+                final Map<ResponseStatusType, Integer> mapRoutes = new EnumMap<>( ResponseStatusType.class );
+                for ( ResponseStatusType type : ResponseStatusType.values( ) )
+                {
+                    final int nIdState = NumberUtils.toInt( request.getParameter( PARAM_ROUTE_PREFIX + type.name( ) ), -1 );
+                    if ( nIdState > 0 )
+                    {
+                        mapRoutes.put( type, nIdState );
+                    }
+                }
+                taskConfig.setRouter( new IdentityImportStateRouter( mapRoutes ) );
 
                 // Check mandatory fields
                 Set<ConstraintViolation<ITaskConfig>> constraintViolations = BeanValidationUtil.validate( taskConfig );
@@ -162,6 +175,22 @@ public class IdentityImportTaskComponent extends IdentityTaskComponent
         return StringUtils.EMPTY;
     }
 
+    /**
+     * Get the label of an import outcome
+     *
+     * @param type
+     *            the outcome
+     * @param locale
+     *            the locale
+     * @return the localized label, or the name of the outcome if it has no message
+     */
+    private static String getStatusLabel( final ResponseStatusType type, final Locale locale )
+    {
+        final String strKey = MESSAGE_ROUTE_PREFIX + type.name( );
+        final String strLabel = I18nService.getLocalizedString( strKey, locale );
+        return StringUtils.isBlank( strLabel ) || strLabel.equals( strKey ) ? type.name( ) : strLabel;
+    }
+
     /**
      * get config
      * 
@@ -175,44 +204,4 @@ public class IdentityImportTaskComponent extends IdentityTaskComponent
         return config == null ? new IdentityImportTaskConfig( ) : config;
     }
 
-    /**
-     * generate Json for cascade selects in template
-     * 
-     * example : {"workflows":[{"id":1, "name":"dotation", "states":[{"id":12, "name":"statut11", ...
-     * 
-     * @param workflowsRefList
-     * @param mapStates
-     * @return json
-     */
-    private String getJsonStates( ReferenceList workflowsRefList, Map<String, Collection<State>> mapStates )
-    {
-        ObjectMapper mapper = new ObjectMapper( );
-        ObjectNode root = mapper.createObjectNode( );
-
-        ArrayNode jsonWfList = mapper.createArrayNode( );
-        for ( ReferenceItem workflowItem : workflowsRefList )
-        {
-            ObjectNode jsonWf = mapper.createObjectNode( );
-            jsonWf.put( "id", workflowItem.getCode( ) );
-            jsonWf.put( "name", workflowItem.getName( ) );
-
-            ArrayNode jsonStatesList = mapper.createArrayNode( );
-            for ( State state : mapStates.get( workflowItem.getCode( ) ) )
-            {
-                ObjectNode jsonState = mapper.createObjectNode( );
-                jsonState.put( "id", state.getId( ) );
-                jsonState.put( "name", state.getName( ) );
-
-                jsonStatesList.add( jsonState );
-            }
-
-            jsonWf.set( "states", jsonStatesList );
-            jsonWfList.add( jsonWf );
-        }
-
-        root.set( "workflows", jsonWfList );
-
-        return root.toPrettyString( );
-    }
-
 }
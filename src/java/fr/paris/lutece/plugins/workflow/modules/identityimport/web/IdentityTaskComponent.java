@@ -34,42 +34,140 @@
 package fr.paris.lutece.plugins.workflow.modules.identityimport.web;
 
 import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistory;
-import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistoryHome;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateAttributeStatus;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateIdentityLoaderHome;
 import fr.paris.lutece.plugins.workflow.web.task.NoFormTaskComponent;
 import fr.paris.lutece.plugins.workflowcore.service.task.ITask;
 import fr.paris.lutece.portal.service.template.AppTemplateService;
 import fr.paris.lutece.util.html.HtmlTemplate;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.commons.text.StringEscapeUtils;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.Optional;
 
 public abstract class IdentityTaskComponent extends NoFormTaskComponent
 {
     // MARKERS
     private static final String MARK_STATUS = "status";
     private static final String MARK_COMMENT = "comment";
+    private static final String MARK_ATTRIBUTE_STATUSES = "attribute_statuses";
     private static final String TEMPLATE_CANDIDATE_IDENTITY_HISTORY = "/admin/plugins/identityimport/candidate_identity_history.html";
 
+    // Request attributes
+    private static final String ATTRIBUTE_HISTORY_LINES = "workflow-identityimport.historyLines";
+
     @Override
     public String getDisplayTaskInformation( int pNIdHistory, HttpServletRequest pRequest, Locale pLocale, ITask pTask )
     {
         /* Complete workflow history with custom fields */
-        final Optional<CandidateIdentityHistory> candidateIdentityHistory = CandidateIdentityHistoryHome.selectByWfHistory( pNIdHistory );
-        if ( candidateIdentityHistory.isPresent( ) )
+        final HistoryLines historyLines = getHistoryLines( pNIdHistory, pRequest );
+        final CandidateIdentityHistory candidateIdentityHistory = historyLines._mapHistories.get( pNIdHistory );
+        if ( candidateIdentityHistory != null )
         {
+            final List<CandidateAttributeStatus> listAttributeStatuses = historyLines._mapAttributeStatuses.getOrDefault( pNIdHistory,
+                    Collections.emptyList( ) );
             final Map<String, Object> model = new HashMap<>( );
-            final CandidateIdentityHistory candidateIdentityHistory1 = candidateIdentityHistory.get( );
-            model.put( MARK_STATUS, candidateIdentityHistory1.getStatus( ) );
-            final String htmlComment = candidateIdentityHistory1.getComment( ) != null ? candidateIdentityHistory1.getComment( ).replace( "\n", "<br>" )
-                    : "Vide";
-            model.put( MARK_COMMENT, htmlComment );
+            model.put( MARK_STATUS, candidateIdentityHistory.getStatus( ) );
+            model.put( MARK_COMMENT, toHtml( candidateIdentityHistory.getComment( ), listAttributeStatuses ) );
+            model.put( MARK_ATTRIBUTE_STATUSES, listAttributeStatuses );
             final HtmlTemplate template = AppTemplateService.getTemplate( TEMPLATE_CANDIDATE_IDENTITY_HISTORY, pLocale, model );
             return template.getHtml( );
         }
         return StringUtils.EMPTY;
     }
+
+    /**
+     * Get the candidate identity histories and attribute statuses of the resource of a workflow history.<br>
+     * The workflow history page calls this component once per history line, so the candidate identity histories and attribute statuses of all the
+     * workflow histories of the resource are loaded at the first call and kept in the request for the next ones.
+     *
+     * @param nIdHistory
+     *            the workflow history id
+     * @param request
+     *            the request, may be null
+     * @return the history lines, containing at least the given workflow history
+     */
+    private static HistoryLines getHistoryLines( final int nIdHistory, final HttpServletRequest request )
+    {
+        if ( request == null )
+        {
+            return HistoryLines.load( nIdHistory );
+        }
+        HistoryLines historyLines = (HistoryLines) request.getAttribute( ATTRIBUTE_HISTORY_LINES );
+        if ( historyLines == null )
+        {
+            historyLines = new HistoryLines( );
+            request.setAttribute( ATTRIBUTE_HISTORY_LINES, historyLines );
+        }
+        if ( !historyLines._mapHistories.containsKey( nIdHistory ) )
+        {
+            final HistoryLines loaded = HistoryLines.load( nIdHistory );
+            historyLines._mapHistories.putAll( loaded._mapHistories );
+            historyLines._mapAttributeStatuses.putAll( loaded._mapAttributeStatuses );
+        }
+        return historyLines;
+    }
+
+    /**
+     * Get the HTML of a stored comment, followed by the attribute statuses. The comments are stored as HTML since they are built by
+     * {@link fr.paris.lutece.plugins.workflow.modules.identityimport.task.IdentityTask#buildHistoryComment}, the older ones are plain text spanning
+     * several lines and include their attribute statuses.
+     *
+     * @param strComment
+     *            the stored comment
+     * @param listAttributeStatuses
+     *            the attribute statuses of the history
+     * @return the HTML of the comment
+     */
+    private static String toHtml( final String strComment, final List<CandidateAttributeStatus> listAttributeStatuses )
+    {
+        if ( strComment == null && listAttributeStatuses.isEmpty( ) )
+        {
+            return "Vide";
+        }
+        final StringBuilder html = new StringBuilder( );
+        if ( strComment != null )
+        {
+            html.append( strComment.indexOf( '\n' ) < 0 ? strComment : StringEscapeUtils.escapeHtml4( strComment ).replace( "\n", "<br>" ) );
+        }
+        if ( !listAttributeStatuses.isEmpty( ) )
+        {
+            html.append( "<br><br>Attribute statuses: <br>" );
+            for ( final CandidateAttributeStatus attributeStatus : listAttributeStatuses )
+            {
+                html.append( "<br>" ).append( StringEscapeUtils.escapeHtml4( attributeStatus.getAttributeKey( ) ) ).append( " - " )
+                        .append( StringEscapeUtils.escapeHtml4( attributeStatus.getStatus( ) ) );
+                if ( attributeStatus.getMessage( ) != null )
+                {
+                    html.append( " - " ).append( StringEscapeUtils.escapeHtml4( attributeStatus.getMessage( ) ) );
+                }
+            }
+        }
+        return html.toString( );
+    }
+
+    /**
+     * Candidate identity histories and attribute statuses of the workflow histories of a resource
+     */
+    private static final class HistoryLines
+    {
+        // Every workflow history loaded is a key, mapped to null when it has no candidate identity history
+        private final Map<Integer, CandidateIdentityHistory> _mapHistories = new HashMap<>( );
+        private final Map<Integer, List<CandidateAttributeStatus>> _mapAttributeStatuses = new HashMap<>( );
+
+        private static HistoryLines load( final int nIdHistory )
+        {
+            final HistoryLines historyLines = new HistoryLines( );
+            historyLines._mapHistories.putAll( CandidateIdentityLoaderHome.findHistoriesOfResource( nIdHistory ) );
+            // Unknown workflow history, remembered so that it is not looked up again
+            historyLines._mapHistories.putIfAbsent( nIdHistory, null );
+            historyLines._mapAttributeStatuses.putAll( CandidateIdentityLoaderHome.findAttributeStatusesOfResource( nIdHistory ) );
+            return historyLines;
+        }
+    }
 }
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.web;
+
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.metrics.IdentityTaskMetrics;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.metrics.MetricsTextFormatter;
+import fr.paris.lutece.portal.business.user.AdminUser;
+import fr.paris.lutece.portal.service.admin.AdminUserService;
+import fr.paris.lutece.portal.service.util.AppPropertiesService;
+import org.apache.commons.lang3.StringUtils;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Text endpoint of the identity task metrics, in the Prometheus format.<br>
+ * When the property <code>identityimport_config.metrics.token</code> is set, the requests must carry it as a bearer token. Otherwise the endpoint is
+ * restricted to the back office users with the right of the batch progress feature, {@link BatchProgressJspBean#RIGHT_MANAGE_BATCH_PROGRESS}.
+ */
+public class IdentityTaskMetricsServlet extends HttpServlet
+{
+    private static final long serialVersionUID = 1L;
+
+    // Properties
+    private static final String PROPERTY_TOKEN = "identityimport_config.metrics.token";
+
+    // Constants
+    private static final String HEADER_AUTHORIZATION = "Authorization";
+    private static final String BEARER = "Bearer ";
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    @Override
+    protected void doGet( final HttpServletRequest request, final HttpServletResponse response ) throws IOException
+    {
+        if ( !isAuthorized( request ) )
+        {
+            response.sendError( HttpServletResponse.SC_FORBIDDEN );
+            return;
+        }
+        response.setContentType( CONTENT_TYPE );
+        response.getOutputStream( ).write( MetricsTextFormatter.format( IdentityTaskMetrics.registry( ) ).getBytes( StandardCharsets.UTF_8 ) );
+    }
+
+    /**
+     * Tell if a request may read the metrics of the identity tasks
+     *
+     * @param request
+     *            the request
+     * @return true if the request carries the configured token, or when no token is configured, comes from a back office user with the right of the
+     *         batch progress feature
+     */
+    static boolean isAuthorized( final HttpServletRequest request )
+    {
+        final String strToken = AppPropertiesService.getProperty( PROPERTY_TOKEN );
+        if ( StringUtils.isBlank( strToken ) )
+        {
+            final AdminUser user = AdminUserService.getAdminUser( request );
+            return user != null && user.checkRight( BatchProgressJspBean.RIGHT_MANAGE_BATCH_PROGRESS );
+        }
+        final String strAuthorization = request.getHeader( HEADER_AUTHORIZATION );
+        return strAuthorization != null && strAuthorization.startsWith( BEARER ) && MessageDigest
+                .isEqual( strToken.getBytes( StandardCharsets.UTF_8 ), strAuthorization.substring( BEARER.length( ) ).getBytes( StandardCharsets.UTF_8 ) );
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.web;
+
+import fr.paris.lutece.api.user.User;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.service.WorkflowStatesService;
+import fr.paris.lutece.portal.service.admin.AdminUserService;
+import org.apache.commons.lang3.math.NumberUtils;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * JSON endpoint of the states of a workflow, requested by the task config forms when another workflow is selected. Restricted to the authenticated
+ * back office users, who only get the states they are allowed to see.
+ */
+public class WorkflowStatesServlet extends HttpServlet
+{
+    private static final long serialVersionUID = 1L;
+
+    // Parameters
+    private static final String PARAMETER_WORKFLOW = "workflow";
+
+    // Constants
+    private static final String CONTENT_TYPE = "application/json; charset=utf-8";
+
+    @Override
+    protected void doGet( final HttpServletRequest request, final HttpServletResponse response ) throws IOException
+    {
+        final User user = AdminUserService.getAdminUser( request );
+        if ( user == null )
+        {
+            response.sendError( HttpServletResponse.SC_FORBIDDEN );
+            return;
+        }
+        final int nIdWorkflow = NumberUtils.toInt( request.getParameter( PARAMETER_WORKFLOW ), -1 );
+        if ( nIdWorkflow <= 0 )
+        {
+            response.sendError( HttpServletResponse.SC_BAD_REQUEST );
+            return;
+        }
+        response.setContentType( CONTENT_TYPE );
+        response.getOutputStream( ).write( WorkflowStatesService.instance( ).getStatesJson( nIdWorkflow, user ).getBytes( StandardCharsets.UTF_8 ) );
+    }
+}
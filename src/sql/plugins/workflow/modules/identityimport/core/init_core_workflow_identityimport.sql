@@ -0,0 +1,12 @@
+--
+-- Init  table core_admin_right
+--
+DELETE FROM core_admin_right WHERE id_right = 'WORKFLOW_IDENTITYIMPORT_PROGRESS';
+INSERT INTO core_admin_right (id_right,name,level_right,admin_url,description,is_updatable,plugin_name,id_feature_group,icon_url,documentation_url,id_order,is_external_feature) VALUES
+('WORKFLOW_IDENTITYIMPORT_PROGRESS','module.workflow.identityimport.adminFeature.batchProgress.name',0,'jsp/admin/plugins/workflow/modules/identityimport/ManageBatchProgress.jsp','module.workflow.identityimport.adminFeature.batchProgress.description',0,'workflow-identityimport',NULL,NULL,NULL,4,0);
+
+--
+-- Init  table core_user_right
+--
+DELETE FROM core_user_right WHERE id_right = 'WORKFLOW_IDENTITYIMPORT_PROGRESS';
+INSERT INTO core_user_right (id_right,id_user) VALUES ('WORKFLOW_IDENTITYIMPORT_PROGRESS',1);
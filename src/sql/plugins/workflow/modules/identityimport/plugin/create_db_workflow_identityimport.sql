@@ -2,9 +2,104 @@
 DROP TABLE IF EXISTS workflow_task_identity_import_cf;
 CREATE TABLE workflow_task_identity_import_cf (
 	id_task int NOT NULL,
-	id_state1 INT NOT NULL,
-	id_state2 INT NOT NULL,
-	id_state3 INT NOT NULL,
-	id_worflow INT NOT NULL,
+	id_workflow INT NOT NULL,
 	CONSTRAINT workflow_task_identity_import_cf_pkey PRIMARY KEY (id_task)
-);
\ No newline at end of file
+);
+
+DROP TABLE IF EXISTS workflow_task_identity_import_cf_version;
+CREATE TABLE workflow_task_identity_import_cf_version (
+	id_version INT NOT NULL,
+	version INT DEFAULT 0 NOT NULL,
+	CONSTRAINT workflow_task_identity_import_cf_version_pkey PRIMARY KEY (id_version)
+);
+INSERT INTO workflow_task_identity_import_cf_version (id_version, version) VALUES (1, 0);
+
+DROP TABLE IF EXISTS workflow_task_identity_import_cf_route;
+CREATE TABLE workflow_task_identity_import_cf_route (
+	id_task INT NOT NULL,
+	status_type VARCHAR(50) NOT NULL,
+	id_state INT NOT NULL,
+	CONSTRAINT workflow_task_identity_import_cf_route_pkey PRIMARY KEY (id_task, status_type)
+);
+
+DROP TABLE IF EXISTS workflow_task_identity_import_parked;
+CREATE TABLE workflow_task_identity_import_parked (
+	id_resource INT NOT NULL,
+	resource_type VARCHAR(255) NOT NULL,
+	id_workflow INT NOT NULL,
+	date_parked TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+	CONSTRAINT workflow_task_identity_import_parked_pkey PRIMARY KEY (id_resource, resource_type)
+);
+CREATE INDEX idx_wf_task_identity_import_parked_date ON workflow_task_identity_import_parked (date_parked);
+
+DROP TABLE IF EXISTS workflow_task_identity_import_archive;
+CREATE TABLE workflow_task_identity_import_archive (
+	id_batch INT NOT NULL,
+	last_id_candidate_identity INT NOT NULL,
+	date_update TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+	CONSTRAINT workflow_task_identity_import_archive_pkey PRIMARY KEY (id_batch)
+);
+
+DROP TABLE IF EXISTS workflow_task_identity_import_outbox;
+CREATE TABLE workflow_task_identity_import_outbox (
+	id_outbox INT AUTO_INCREMENT,
+	id_resource_history INT NOT NULL,
+	id_resource INT NOT NULL,
+	resource_type VARCHAR(255) NOT NULL,
+	id_workflow INT NOT NULL,
+	id_task INT NOT NULL,
+	id_batch INT DEFAULT 0 NOT NULL,
+	client_code VARCHAR(255),
+	content_hash VARCHAR(64),
+	payload LONG VARCHAR NOT NULL,
+	status VARCHAR(50) NOT NULL,
+	attempts INT DEFAULT 0 NOT NULL,
+	date_next_attempt TIMESTAMP NOT NULL,
+	claim_token VARCHAR(50),
+	date_claim TIMESTAMP NULL,
+	last_error LONG VARCHAR,
+	date_creation TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+	CONSTRAINT workflow_task_identity_import_outbox_pkey PRIMARY KEY (id_outbox)
+);
+CREATE INDEX idx_wf_task_identity_import_outbox_due ON workflow_task_identity_import_outbox (status, date_next_attempt);
+CREATE INDEX idx_wf_task_identity_import_outbox_claim ON workflow_task_identity_import_outbox (claim_token);
+CREATE INDEX idx_wf_task_identity_import_outbox_resource ON workflow_task_identity_import_outbox (id_resource, resource_type);
+
+DROP TABLE IF EXISTS workflow_task_identity_import_hash;
+CREATE TABLE workflow_task_identity_import_hash (
+	id_candidate_identity INT NOT NULL,
+	content_hash VARCHAR(64) NOT NULL,
+	customer_id VARCHAR(255) NOT NULL,
+	date_import TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+	CONSTRAINT workflow_task_identity_import_hash_pkey PRIMARY KEY (id_candidate_identity)
+);
+
+DROP TABLE IF EXISTS workflow_task_identity_import_attr_status;
+CREATE TABLE workflow_task_identity_import_attr_status (
+	id_resource_history INT NOT NULL,
+	attribute_key VARCHAR(100) NOT NULL,
+	status VARCHAR(50) NOT NULL,
+	message VARCHAR(255),
+	CONSTRAINT workflow_task_identity_import_attr_status_pkey PRIMARY KEY (id_resource_history, attribute_key)
+);
+CREATE INDEX idx_wf_task_identity_import_attr_status ON workflow_task_identity_import_attr_status (status, attribute_key);
+
+DROP TABLE IF EXISTS workflow_task_identity_import_shard;
+CREATE TABLE workflow_task_identity_import_shard (
+	id_shard INT AUTO_INCREMENT,
+	id_batch INT NOT NULL,
+	id_resource_history INT NOT NULL,
+	id_task INT NOT NULL,
+	first_id INT NOT NULL,
+	last_id INT NOT NULL,
+	candidate_count INT NOT NULL,
+	status VARCHAR(50) NOT NULL,
+	claim_token VARCHAR(50),
+	node VARCHAR(255),
+	date_lease_expiry TIMESTAMP NULL,
+	outcomes VARCHAR(1000),
+	CONSTRAINT workflow_task_identity_import_shard_pkey PRIMARY KEY (id_shard)
+);
+CREATE INDEX idx_wf_task_identity_import_shard_claimable ON workflow_task_identity_import_shard (status, id_batch);
+CREATE INDEX idx_wf_task_identity_import_shard_claim ON workflow_task_identity_import_shard (claim_token);
+CREATE INDEX idx_wf_task_identity_import_shard_history ON workflow_task_identity_import_shard (id_resource_history);
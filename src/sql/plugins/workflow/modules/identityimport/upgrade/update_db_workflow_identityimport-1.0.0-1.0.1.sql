@@ -0,0 +1,134 @@
+--
+-- Version of the task configs, used to invalidate the config cache on every node
+--
+CREATE TABLE workflow_task_identity_import_cf_version (
+	id_version INT NOT NULL,
+	version INT DEFAULT 0 NOT NULL,
+	CONSTRAINT workflow_task_identity_import_cf_version_pkey PRIMARY KEY (id_version)
+);
+INSERT INTO workflow_task_identity_import_cf_version (id_version, version) VALUES (1, 0);
+
+--
+-- Resources parked while the identity store is unavailable, replayed by a daemon
+--
+CREATE TABLE workflow_task_identity_import_parked (
+	id_resource INT NOT NULL,
+	resource_type VARCHAR(255) NOT NULL,
+	id_workflow INT NOT NULL,
+	date_parked TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+	CONSTRAINT workflow_task_identity_import_parked_pkey PRIMARY KEY (id_resource, resource_type)
+);
+CREATE INDEX idx_wf_task_identity_import_parked_date ON workflow_task_identity_import_parked (date_parked);
+
+--
+-- Cursor of the chunked archiving of the batches
+--
+CREATE TABLE workflow_task_identity_import_archive (
+	id_batch INT NOT NULL,
+	last_id_candidate_identity INT NOT NULL,
+	date_update TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+	CONSTRAINT workflow_task_identity_import_archive_pkey PRIMARY KEY (id_batch)
+);
+
+--
+-- Outbox of the identity store calls, drained by a daemon
+--
+CREATE TABLE workflow_task_identity_import_outbox (
+	id_outbox INT AUTO_INCREMENT,
+	id_resource_history INT NOT NULL,
+	id_resource INT NOT NULL,
+	resource_type VARCHAR(255) NOT NULL,
+	id_workflow INT NOT NULL,
+	id_task INT NOT NULL,
+	id_batch INT DEFAULT 0 NOT NULL,
+	client_code VARCHAR(255),
+	content_hash VARCHAR(64),
+	payload LONG VARCHAR NOT NULL,
+	status VARCHAR(50) NOT NULL,
+	attempts INT DEFAULT 0 NOT NULL,
+	date_next_attempt TIMESTAMP NOT NULL,
+	claim_token VARCHAR(50),
+	date_claim TIMESTAMP NULL,
+	last_error LONG VARCHAR,
+	date_creation TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+	CONSTRAINT workflow_task_identity_import_outbox_pkey PRIMARY KEY (id_outbox)
+);
+CREATE INDEX idx_wf_task_identity_import_outbox_due ON workflow_task_identity_import_outbox (status, date_next_attempt);
+CREATE INDEX idx_wf_task_identity_import_outbox_claim ON workflow_task_identity_import_outbox (claim_token);
+CREATE INDEX idx_wf_task_identity_import_outbox_resource ON workflow_task_identity_import_outbox (id_resource, resource_type);
+
+--
+-- Content hash of the candidate identities at their last successful import
+--
+CREATE TABLE workflow_task_identity_import_hash (
+	id_candidate_identity INT NOT NULL,
+	content_hash VARCHAR(64) NOT NULL,
+	customer_id VARCHAR(255) NOT NULL,
+	date_import TIMESTAMP DEFAULT CURRENT_TIMESTAMP NOT NULL,
+	CONSTRAINT workflow_task_identity_import_hash_pkey PRIMARY KEY (id_candidate_identity)
+);
+
+--
+-- Right to view the progress of the batch imports
+--
+DELETE FROM core_admin_right WHERE id_right = 'WORKFLOW_IDENTITYIMPORT_PROGRESS';
+INSERT INTO core_admin_right (id_right,name,level_right,admin_url,description,is_updatable,plugin_name,id_feature_group,icon_url,documentation_url,id_order,is_external_feature) VALUES
+('WORKFLOW_IDENTITYIMPORT_PROGRESS','module.workflow.identityimport.adminFeature.batchProgress.name',0,'jsp/admin/plugins/workflow/modules/identityimport/ManageBatchProgress.jsp','module.workflow.identityimport.adminFeature.batchProgress.description',0,'workflow-identityimport',NULL,NULL,NULL,4,0);
+DELETE FROM core_user_right WHERE id_right = 'WORKFLOW_IDENTITYIMPORT_PROGRESS';
+INSERT INTO core_user_right (id_right,id_user) VALUES ('WORKFLOW_IDENTITYIMPORT_PROGRESS',1);
+
+--
+-- Target state of the candidate identities by import outcome, replacing the three state columns of the task config
+--
+CREATE TABLE workflow_task_identity_import_cf_route (
+	id_task INT NOT NULL,
+	status_type VARCHAR(50) NOT NULL,
+	id_state INT NOT NULL,
+	CONSTRAINT workflow_task_identity_import_cf_route_pkey PRIMARY KEY (id_task, status_type)
+);
+INSERT INTO workflow_task_identity_import_cf_route (id_task, status_type, id_state) SELECT id_task, 'SUCCESS', id_state1 FROM workflow_task_identity_import_cf WHERE id_state1 > 0;
+INSERT INTO workflow_task_identity_import_cf_route (id_task, status_type, id_state) SELECT id_task, 'INCOMPLETE_SUCCESS', id_state1 FROM workflow_task_identity_import_cf WHERE id_state1 > 0;
+INSERT INTO workflow_task_identity_import_cf_route (id_task, status_type, id_state) SELECT id_task, 'OK', id_state2 FROM workflow_task_identity_import_cf WHERE id_state2 > 0;
+INSERT INTO workflow_task_identity_import_cf_route (id_task, status_type, id_state) SELECT id_task, 'CONFLICT', id_state3 FROM workflow_task_identity_import_cf WHERE id_state3 > 0;
+ALTER TABLE workflow_task_identity_import_cf DROP COLUMN id_state1;
+ALTER TABLE workflow_task_identity_import_cf DROP COLUMN id_state2;
+ALTER TABLE workflow_task_identity_import_cf DROP COLUMN id_state3;
+
+--
+-- Fix the name of the workflow column of the task config, read as id_workflow
+--
+ALTER TABLE workflow_task_identity_import_cf CHANGE COLUMN id_worflow id_workflow INT NOT NULL;
+
+--
+-- Attribute statuses of the identity store responses, stored apart from the history comments
+--
+CREATE TABLE workflow_task_identity_import_attr_status (
+	id_resource_history INT NOT NULL,
+	attribute_key VARCHAR(100) NOT NULL,
+	status VARCHAR(50) NOT NULL,
+	message VARCHAR(255),
+	CONSTRAINT workflow_task_identity_import_attr_status_pkey PRIMARY KEY (id_resource_history, attribute_key)
+);
+CREATE INDEX idx_wf_task_identity_import_attr_status ON workflow_task_identity_import_attr_status (status, attribute_key);
+
+--
+-- Shards of the batches imported by several nodes
+--
+CREATE TABLE workflow_task_identity_import_shard (
+	id_shard INT AUTO_INCREMENT,
+	id_batch INT NOT NULL,
+	id_resource_history INT NOT NULL,
+	id_task INT NOT NULL,
+	first_id INT NOT NULL,
+	last_id INT NOT NULL,
+	candidate_count INT NOT NULL,
+	status VARCHAR(50) NOT NULL,
+	claim_token VARCHAR(50),
+	node VARCHAR(255),
+	date_lease_expiry TIMESTAMP NULL,
+	outcomes VARCHAR(1000),
+	CONSTRAINT workflow_task_identity_import_shard_pkey PRIMARY KEY (id_shard)
+);
+CREATE INDEX idx_wf_task_identity_import_shard_claimable ON workflow_task_identity_import_shard (status, id_batch);
+CREATE INDEX idx_wf_task_identity_import_shard_claim ON workflow_task_identity_import_shard (claim_token);
+CREATE INDEX idx_wf_task_identity_import_shard_history ON workflow_task_identity_import_shard (id_resource_history);
@@ -0,0 +1,68 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.archive;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Cursors of the archiving through the database of the test context
+ */
+public class BatchArchiveDAOTest extends LuteceTestCase
+{
+    private static final int ID_BATCH = 990001;
+
+    private final BatchArchiveDAO _dao = new BatchArchiveDAO( );
+
+    @Override
+    protected void tearDown( ) throws Exception
+    {
+        _dao.deleteCursor( ID_BATCH );
+        super.tearDown( );
+    }
+
+    public void testCursorResumesAfterTheLastChunk( )
+    {
+        // Never archived
+        assertEquals( 0, _dao.selectCursor( ID_BATCH ) );
+
+        _dao.storeCursor( ID_BATCH, 500 );
+        assertEquals( 500, _dao.selectCursor( ID_BATCH ) );
+        _dao.storeCursor( ID_BATCH, 1000 );
+        assertEquals( 1000, _dao.selectCursor( ID_BATCH ) );
+        assertEquals( 0, _dao.selectCursor( ID_BATCH + 1 ) );
+
+        _dao.deleteCursor( ID_BATCH );
+        assertEquals( 0, _dao.selectCursor( ID_BATCH ) );
+    }
+}
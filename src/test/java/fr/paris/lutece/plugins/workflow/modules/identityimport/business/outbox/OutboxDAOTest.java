@@ -0,0 +1,156 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.outbox;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Claims and retries of the outbox entries through the database of the test context
+ */
+public class OutboxDAOTest extends LuteceTestCase
+{
+    private static final int ID_RESOURCE = 990001;
+    private static final int ID_BATCH = 990001;
+    private static final long LEASE = 60000L;
+
+    private final OutboxDAO _dao = new OutboxDAO( );
+    private final List<Integer> _listIds = new ArrayList<>( );
+
+    @Override
+    protected void tearDown( ) throws Exception
+    {
+        _dao.deleteAll( _listIds );
+        super.tearDown( );
+    }
+
+    public void testClaimRescheduleMarkFailed( )
+    {
+        final Timestamp dateNow = now( );
+        final OutboxEntry entry1 = insert( dateNow );
+        final OutboxEntry entry2 = insert( dateNow );
+        final OutboxEntry entryLater = insert( new Timestamp( dateNow.getTime( ) + LEASE ) );
+
+        final List<Integer> listDueIds = _dao.selectDueIds( dateNow, Integer.MAX_VALUE );
+        assertTrue( listDueIds.containsAll( Arrays.asList( entry1.getId( ), entry2.getId( ) ) ) );
+        assertFalse( listDueIds.contains( entryLater.getId( ) ) );
+
+        _dao.claim( Arrays.asList( entry1.getId( ), entry2.getId( ) ), "token-1", dateNow );
+        // Already claimed
+        _dao.claim( Arrays.asList( entry1.getId( ), entry2.getId( ) ), "token-2", dateNow );
+        assertTrue( _dao.selectClaimed( "token-2" ).isEmpty( ) );
+        final List<OutboxEntry> listClaimed = _dao.selectClaimed( "token-1" );
+        assertEquals( 2, listClaimed.size( ) );
+        assertEquals( ID_BATCH, listClaimed.get( 0 ).getIdBatch( ) );
+        assertEquals( OutboxEntry.STATUS_PROCESSING, listClaimed.get( 0 ).getStatus( ) );
+        assertFalse( _dao.selectDueIds( dateNow, Integer.MAX_VALUE ).contains( entry1.getId( ) ) );
+
+        final OutboxEntry retried = listClaimed.get( 0 );
+        retried.setAttempts( 1 );
+        retried.setLastError( "error" );
+        retried.setNextAttemptDate( new Timestamp( dateNow.getTime( ) + LEASE ) );
+        _dao.reschedule( retried );
+        assertFalse( _dao.selectDueIds( dateNow, Integer.MAX_VALUE ).contains( retried.getId( ) ) );
+        assertTrue( _dao.selectDueIds( retried.getNextAttemptDate( ), Integer.MAX_VALUE ).contains( retried.getId( ) ) );
+
+        final OutboxEntry givenUp = listClaimed.get( 1 );
+        final int nFailed = _dao.countByStatus( OutboxEntry.STATUS_FAILED );
+        givenUp.setAttempts( 5 );
+        _dao.markFailed( givenUp );
+        assertEquals( nFailed + 1, _dao.countByStatus( OutboxEntry.STATUS_FAILED ) );
+        assertFalse( _dao.selectDueIds( new Timestamp( dateNow.getTime( ) + 2 * LEASE ), Integer.MAX_VALUE ).contains( givenUp.getId( ) ) );
+    }
+
+    public void testReleaseStale( )
+    {
+        final Timestamp dateNow = now( );
+        final OutboxEntry entry = insert( dateNow );
+        _dao.claim( Collections.singletonList( entry.getId( ) ), "token-1", dateNow );
+
+        // Claim still running
+        _dao.releaseStale( new Timestamp( dateNow.getTime( ) - LEASE ) );
+        assertFalse( _dao.selectDueIds( dateNow, Integer.MAX_VALUE ).contains( entry.getId( ) ) );
+
+        _dao.releaseStale( new Timestamp( dateNow.getTime( ) + 1000 ) );
+        assertTrue( _dao.selectDueIds( dateNow, Integer.MAX_VALUE ).contains( entry.getId( ) ) );
+        assertTrue( _dao.selectClaimed( "token-1" ).isEmpty( ) );
+    }
+
+    public void testDeleteAll( )
+    {
+        final Timestamp dateNow = now( );
+        final OutboxEntry entry1 = insert( dateNow );
+        final OutboxEntry entry2 = insert( dateNow );
+        final OutboxEntry entryKept = insert( dateNow );
+
+        _dao.deleteAll( Arrays.asList( entry1.getId( ), entry2.getId( ) ) );
+        _dao.deleteAll( Collections.emptyList( ) );
+
+        final List<Integer> listDueIds = _dao.selectDueIds( dateNow, Integer.MAX_VALUE );
+        assertFalse( listDueIds.contains( entry1.getId( ) ) );
+        assertFalse( listDueIds.contains( entry2.getId( ) ) );
+        assertTrue( listDueIds.contains( entryKept.getId( ) ) );
+    }
+
+    private OutboxEntry insert( final Timestamp dateNextAttempt )
+    {
+        final OutboxEntry entry = new OutboxEntry( );
+        entry.setIdResourceHistory( 1 );
+        entry.setIdResource( ID_RESOURCE );
+        entry.setResourceType( "IDENTITYIMPORT_CANDIDATE_IDENTITY" );
+        entry.setIdWorkflow( 1 );
+        entry.setIdTask( 1 );
+        entry.setIdBatch( ID_BATCH );
+        entry.setClientCode( "TEST" );
+        entry.setPayload( "{}" );
+        entry.setNextAttemptDate( dateNextAttempt );
+        entry.setCreationDate( now( ) );
+        _dao.insert( entry );
+        _listIds.add( entry.getId( ) );
+        return entry;
+    }
+
+    /**
+     * The current date, to the second: the dates may be stored without their milliseconds
+     */
+    private static Timestamp now( )
+    {
+        return new Timestamp( System.currentTimeMillis( ) / 1000 * 1000 );
+    }
+}
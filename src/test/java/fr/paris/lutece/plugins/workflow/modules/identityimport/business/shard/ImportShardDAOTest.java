@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.business.shard;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Claims of the import shards through the database of the test context
+ */
+public class ImportShardDAOTest extends LuteceTestCase
+{
+    private static final int ID_BATCH = 990001;
+    private static final int ID_RESOURCE_HISTORY = 990001;
+    private static final long LEASE = 60000L;
+
+    private final ImportShardDAO _dao = new ImportShardDAO( );
+
+    @Override
+    protected void tearDown( ) throws Exception
+    {
+        _dao.deleteByResourceHistory( ID_RESOURCE_HISTORY );
+        super.tearDown( );
+    }
+
+    public void testClaimRenewCompleteSummarize( )
+    {
+        _dao.insertAll( Arrays.asList( newShard( 1, 10 ), newShard( 11, 20 ) ) );
+        final Timestamp dateNow = new Timestamp( System.currentTimeMillis( ) );
+        final List<Integer> listIds = _dao.selectClaimableIds( ID_BATCH, dateNow, 10 );
+        assertEquals( 2, listIds.size( ) );
+
+        _dao.claim( listIds.get( 0 ), "token-1", "node-1", dateNow, new Timestamp( dateNow.getTime( ) + LEASE ) );
+        // Already claimed, with a lease still running
+        _dao.claim( listIds.get( 0 ), "token-2", "node-2", dateNow, new Timestamp( dateNow.getTime( ) + LEASE ) );
+        assertTrue( _dao.selectByClaimToken( "token-2" ).isEmpty( ) );
+        assertEquals( 1, _dao.selectClaimableIds( ID_BATCH, dateNow, 10 ).size( ) );
+
+        final ImportShard shard = _dao.selectByClaimToken( "token-1" ).get( 0 );
+        assertEquals( ImportShard.STATUS_CLAIMED, shard.getStatus( ) );
+        assertEquals( "node-1", shard.getNode( ) );
+        assertEquals( 1, shard.getFirstId( ) );
+        assertEquals( 10, shard.getLastId( ) );
+
+        // Once the lease has expired, the shard is claimable again
+        final Timestamp dateLater = new Timestamp( dateNow.getTime( ) + 2 * LEASE );
+        assertEquals( 2, _dao.selectClaimableIds( ID_BATCH, dateLater, 10 ).size( ) );
+        _dao.renew( shard.getId( ), shard.getClaimToken( ), new Timestamp( dateLater.getTime( ) + LEASE ) );
+        assertEquals( 1, _dao.selectClaimableIds( ID_BATCH, dateLater, 10 ).size( ) );
+
+        final Map<String, Integer> mapOutcomes = new TreeMap<>( );
+        mapOutcomes.put( "SUCCESS", 8 );
+        mapOutcomes.put( "ERROR", 2 );
+        shard.setOutcomes( mapOutcomes );
+        _dao.complete( shard );
+        assertEquals( 1, _dao.countUnfinished( ID_RESOURCE_HISTORY ) );
+
+        _dao.summarize( ID_RESOURCE_HISTORY, "token-summary" );
+        final List<ImportShard> listSummarized = _dao.selectByClaimToken( "token-summary" );
+        assertEquals( 1, listSummarized.size( ) );
+        assertEquals( ImportShard.STATUS_SUMMARIZED, listSummarized.get( 0 ).getStatus( ) );
+        assertEquals( mapOutcomes, listSummarized.get( 0 ).getOutcomes( ) );
+        // Taken by the first summarize
+        _dao.summarize( ID_RESOURCE_HISTORY, "token-summary-2" );
+        assertTrue( _dao.selectByClaimToken( "token-summary-2" ).isEmpty( ) );
+    }
+
+    public void testCountUnfinishedByBatch( )
+    {
+        assertEquals( 0, _dao.countUnfinishedByBatch( ID_BATCH ) );
+        _dao.insertAll( Arrays.asList( newShard( 1, 10 ), newShard( 11, 20 ) ) );
+        assertEquals( 2, _dao.countUnfinishedByBatch( ID_BATCH ) );
+
+        final Timestamp dateNow = new Timestamp( System.currentTimeMillis( ) );
+        final List<Integer> listIds = _dao.selectClaimableIds( ID_BATCH, dateNow, 10 );
+        _dao.claim( listIds.get( 0 ), "token-1", "node-1", dateNow, new Timestamp( dateNow.getTime( ) + LEASE ) );
+        final ImportShard shard = _dao.selectByClaimToken( "token-1" ).get( 0 );
+        // Claimed shards are still unfinished
+        assertEquals( 2, _dao.countUnfinishedByBatch( ID_BATCH ) );
+        shard.setOutcomes( new TreeMap<>( ) );
+        _dao.complete( shard );
+        assertEquals( 1, _dao.countUnfinishedByBatch( ID_BATCH ) );
+    }
+
+    public void testOutcomesEncoding( )
+    {
+        final Map<String, Integer> mapOutcomes = new TreeMap<>( );
+        mapOutcomes.put( "INCOMPLETE_SUCCESS", 3 );
+        mapOutcomes.put( "UNCHANGED", 12 );
+        assertEquals( "INCOMPLETE_SUCCESS=3;UNCHANGED=12", ImportShardDAO.encodeOutcomes( mapOutcomes ) );
+        assertEquals( mapOutcomes, ImportShardDAO.decodeOutcomes( ImportShardDAO.encodeOutcomes( mapOutcomes ) ) );
+        assertTrue( ImportShardDAO.decodeOutcomes( null ).isEmpty( ) );
+    }
+
+    private static ImportShard newShard( final int nFirstId, final int nLastId )
+    {
+        final ImportShard shard = new ImportShard( );
+        shard.setIdBatch( ID_BATCH );
+        shard.setIdResourceHistory( ID_RESOURCE_HISTORY );
+        shard.setIdTask( 1 );
+        shard.setFirstId( nFirstId );
+        shard.setLastId( nLastId );
+        shard.setCandidateCount( nLastId - nFirstId + 1 );
+        return shard;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.mapper;
+
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentity;
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityAttribute;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.IdentityDto;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateIdentityImportHash;
+import fr.paris.lutece.test.LuteceTestCase;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class IdentityMapperTest extends LuteceTestCase
+{
+
+    public void testMapToIdentity( )
+    {
+        final CandidateIdentity candidateIdentity = buildCandidateIdentity( "customer", "birthdate", "family_name" );
+
+        final IdentityDto identity = IdentityMapper.mapToIdentity( candidateIdentity );
+
+        assertEquals( "customer", identity.getCustomerId( ) );
+        assertEquals( "connection", identity.getConnectionId( ) );
+        assertEquals( 2, identity.getAttributes( ).size( ) );
+        assertEquals( "birthdate", identity.getAttributes( ).get( 0 ).getKey( ) );
+        assertEquals( "value birthdate", identity.getAttributes( ).get( 0 ).getValue( ) );
+        assertEquals( "DEC", identity.getAttributes( ).get( 0 ).getCertifier( ) );
+        assertEquals( "family_name", identity.getAttributes( ).get( 1 ).getKey( ) );
+    }
+
+    public void testMapToIdentityWithoutAttributes( )
+    {
+        final CandidateIdentity candidateIdentity = buildCandidateIdentity( "customer" );
+        candidateIdentity.setAttributes( null );
+
+        assertTrue( IdentityMapper.mapToIdentity( candidateIdentity ).getAttributes( ).isEmpty( ) );
+    }
+
+    public void testMapToIdentitiesSharesKeys( )
+    {
+        final List<IdentityDto> identities = IdentityMapper
+                .mapToIdentities( Arrays.asList( buildCandidateIdentity( "first", "email" ), buildCandidateIdentity( "second", "email" ) ) );
+
+        assertEquals( 2, identities.size( ) );
+        assertEquals( "first", identities.get( 0 ).getCustomerId( ) );
+        assertEquals( "second", identities.get( 1 ).getCustomerId( ) );
+        assertSame( identities.get( 0 ).getAttributes( ).get( 0 ).getKey( ), identities.get( 1 ).getAttributes( ).get( 0 ).getKey( ) );
+    }
+
+    public void testContentHashIgnoresAttributeOrderAndCustomerId( )
+    {
+        final CandidateIdentity candidateIdentity = buildCandidateIdentity( "customer", "birthdate", "family_name" );
+        final CandidateIdentity reordered = buildCandidateIdentity( "other customer", "family_name", "birthdate" );
+
+        assertEquals( 64, IdentityMapper.contentHash( IdentityMapper.mapToIdentity( candidateIdentity ) ).length( ) );
+        assertEquals( IdentityMapper.contentHash( IdentityMapper.mapToIdentity( candidateIdentity ) ),
+                IdentityMapper.contentHash( IdentityMapper.mapToIdentity( reordered ) ) );
+    }
+
+    public void testContentHashChangesWithContent( )
+    {
+        final CandidateIdentity candidateIdentity = buildCandidateIdentity( "customer", "birthdate", "family_name" );
+        final String strHash = IdentityMapper.contentHash( IdentityMapper.mapToIdentity( candidateIdentity ) );
+
+        candidateIdentity.getAttributes( ).get( 0 ).setValue( "changed" );
+        assertFalse( strHash.equals( IdentityMapper.contentHash( IdentityMapper.mapToIdentity( candidateIdentity ) ) ) );
+
+        candidateIdentity.getAttributes( ).get( 0 ).setValue( "value birthdate" );
+        candidateIdentity.getAttributes( ).get( 0 ).setCertDate( new Timestamp( 1000L ) );
+        assertFalse( strHash.equals( IdentityMapper.contentHash( IdentityMapper.mapToIdentity( candidateIdentity ) ) ) );
+    }
+
+    public void testImportHashSkipsUnchangedIdentity( )
+    {
+        final CandidateIdentity candidateIdentity = buildCandidateIdentity( "customer", "birthdate", "family_name" );
+        final String strHash = IdentityMapper.contentHash( IdentityMapper.mapToIdentity( candidateIdentity ) );
+        final CandidateIdentityImportHash importHash = new CandidateIdentityImportHash( 1, strHash, "customer" );
+
+        // Imported again as is, in another order
+        final CandidateIdentity reimported = buildCandidateIdentity( "customer", "family_name", "birthdate" );
+        assertTrue( importHash.isUnchanged( IdentityMapper.contentHash( IdentityMapper.mapToIdentity( reimported ) ), reimported.getCustomerId( ) ) );
+
+        // Attached to another identity since the import
+        assertFalse( importHash.isUnchanged( strHash, "other customer" ) );
+        // Never imported with a customer id
+        assertFalse( new CandidateIdentityImportHash( 1, strHash, null ).isUnchanged( strHash, null ) );
+
+        reimported.getAttributes( ).get( 0 ).setValue( "changed" );
+        assertFalse( importHash.isUnchanged( IdentityMapper.contentHash( IdentityMapper.mapToIdentity( reimported ) ), reimported.getCustomerId( ) ) );
+    }
+
+    private static CandidateIdentity buildCandidateIdentity( final String strCustomerId, final String... codes )
+    {
+        final CandidateIdentity candidateIdentity = new CandidateIdentity( );
+        candidateIdentity.setCustomerId( strCustomerId );
+        candidateIdentity.setConnectionId( "connection" );
+        final List<CandidateIdentityAttribute> attributes = new ArrayList<>( );
+        for ( final String strCode : codes )
+        {
+            final CandidateIdentityAttribute attribute = new CandidateIdentityAttribute( );
+            // Distinct String instances, as read from the database
+            attribute.setCode( new String( strCode ) );
+            attribute.setValue( "value " + strCode );
+            attribute.setCertProcess( "DEC" );
+            attribute.setCertDate( new Timestamp( 0L ) );
+            attributes.add( attribute );
+        }
+        candidateIdentity.setAttributes( attributes );
+        return candidateIdentity;
+    }
+}
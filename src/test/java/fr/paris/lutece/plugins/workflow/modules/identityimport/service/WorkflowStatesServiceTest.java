@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Invalidation of the cache of the workflow states on a change of their version
+ */
+public class WorkflowStatesServiceTest extends LuteceTestCase
+{
+    private String _strVersion = "version-1";
+    private final AtomicInteger _nReads = new AtomicInteger( );
+
+    public void testCacheResetWhenTheVersionChanges( )
+    {
+        final WorkflowStatesService service = new WorkflowStatesService( this::selectVersion, 0L );
+
+        // Nothing is known of the cached documents
+        assertTrue( service.checkVersion( ) );
+        assertFalse( service.checkVersion( ) );
+
+        _strVersion = "version-2";
+        assertTrue( service.checkVersion( ) );
+        assertFalse( service.checkVersion( ) );
+        assertEquals( 4, _nReads.get( ) );
+    }
+
+    public void testVersionCheckedOncePerInterval( )
+    {
+        final WorkflowStatesService service = new WorkflowStatesService( this::selectVersion, 60000L );
+
+        assertTrue( service.checkVersion( ) );
+        _strVersion = "version-2";
+        // Picked up at the next check, once the interval has elapsed
+        assertFalse( service.checkVersion( ) );
+        assertEquals( 1, _nReads.get( ) );
+    }
+
+    private String selectVersion( )
+    {
+        _nReads.incrementAndGet( );
+        return _strVersion;
+    }
+}
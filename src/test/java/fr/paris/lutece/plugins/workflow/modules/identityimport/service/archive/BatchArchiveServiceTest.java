@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.archive;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Chunks of the archiving of the candidate identities
+ */
+public class BatchArchiveServiceTest extends LuteceTestCase
+{
+    public void testChunksKeepTheIdsInOrder( )
+    {
+        final List<Integer> listIds = newIds( 1201 );
+
+        final List<List<Integer>> listChunks = BatchArchiveService.toChunks( listIds, 500 );
+
+        assertEquals( 3, listChunks.size( ) );
+        assertEquals( 500, listChunks.get( 0 ).size( ) );
+        assertEquals( 500, listChunks.get( 1 ).size( ) );
+        assertEquals( 201, listChunks.get( 2 ).size( ) );
+        final List<Integer> listJoined = new ArrayList<>( );
+        listChunks.forEach( listJoined::addAll );
+        assertEquals( listIds, listJoined );
+    }
+
+    public void testChunksOfAnExactMultiple( )
+    {
+        final List<List<Integer>> listChunks = BatchArchiveService.toChunks( newIds( 1000 ), 500 );
+
+        assertEquals( 2, listChunks.size( ) );
+        assertEquals( 500, listChunks.get( 1 ).size( ) );
+    }
+
+    public void testNoChunkWithoutIds( )
+    {
+        assertTrue( BatchArchiveService.toChunks( Collections.emptyList( ), 500 ).isEmpty( ) );
+    }
+
+    private static List<Integer> newIds( final int nCount )
+    {
+        final List<Integer> listIds = new ArrayList<>( nCount );
+        for ( int i = 1; i <= nCount; i++ )
+        {
+            listIds.add( i );
+        }
+        return listIds;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.client;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+public class CircuitBreakerTest extends LuteceTestCase
+{
+
+    public void testOpensAfterConsecutiveFailures( )
+    {
+        final CircuitBreaker breaker = new CircuitBreaker( 3, 60000L );
+
+        breaker.onFailure( );
+        breaker.onFailure( );
+        breaker.onSuccess( );
+        breaker.onFailure( );
+        breaker.onFailure( );
+        assertEquals( CircuitBreaker.State.CLOSED, breaker.getState( ) );
+        assertTrue( breaker.allowRequest( ) );
+
+        breaker.onFailure( );
+        assertEquals( CircuitBreaker.State.OPEN, breaker.getState( ) );
+        assertEquals( 1, breaker.getOpenCount( ) );
+        assertFalse( breaker.allowRequest( ) );
+    }
+
+    public void testSingleTrialOnceOpenDurationElapsed( )
+    {
+        final CircuitBreaker breaker = new CircuitBreaker( 1, 0L );
+        breaker.onFailure( );
+        assertEquals( CircuitBreaker.State.OPEN, breaker.getState( ) );
+
+        assertTrue( breaker.allowRequest( ) );
+        assertEquals( CircuitBreaker.State.HALF_OPEN, breaker.getState( ) );
+        assertFalse( breaker.allowRequest( ) );
+
+        breaker.onSuccess( );
+        assertEquals( CircuitBreaker.State.CLOSED, breaker.getState( ) );
+        assertTrue( breaker.allowRequest( ) );
+        assertTrue( breaker.allowRequest( ) );
+    }
+
+    public void testFailedTrialOpensAgain( )
+    {
+        final CircuitBreaker breaker = new CircuitBreaker( 5, 0L );
+        for ( int i = 0; i < 5; i++ )
+        {
+            breaker.onFailure( );
+        }
+        assertTrue( breaker.allowRequest( ) );
+
+        breaker.onFailure( );
+        assertEquals( CircuitBreaker.State.OPEN, breaker.getState( ) );
+        assertEquals( 2, breaker.getOpenCount( ) );
+    }
+
+    public void testCancelledTrialLetsAnotherThrough( )
+    {
+        final CircuitBreaker breaker = new CircuitBreaker( 1, 0L );
+        breaker.onFailure( );
+        assertTrue( breaker.allowRequest( ) );
+        assertFalse( breaker.allowRequest( ) );
+
+        breaker.onCancel( );
+        assertEquals( CircuitBreaker.State.HALF_OPEN, breaker.getState( ) );
+        assertTrue( breaker.allowRequest( ) );
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.client;
+
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.search.IdentitySearchResponse;
+import fr.paris.lutece.test.LuteceTestCase;
+
+public class IdentityLookupCacheTest extends LuteceTestCase
+{
+
+    public void testGetByCustomerIdAndClientCode( )
+    {
+        final IdentityLookupCache cache = new IdentityLookupCache( 60000L, 10 );
+        final IdentitySearchResponse response = new IdentitySearchResponse( );
+
+        cache.put( "customer", "client", response, cache.stamp( "customer" ) );
+
+        assertSame( response, cache.get( "customer", "client" ) );
+        assertNull( cache.get( "customer", "other client" ) );
+        assertNull( cache.get( "other customer", "client" ) );
+        assertEquals( 1, cache.getHitCount( ) );
+        assertEquals( 2, cache.getMissCount( ) );
+    }
+
+    public void testInvalidateRemovesEveryClientCode( )
+    {
+        final IdentityLookupCache cache = new IdentityLookupCache( 60000L, 10 );
+        cache.put( "customer", "client", new IdentitySearchResponse( ), cache.stamp( "customer" ) );
+        cache.put( "customer", "other client", new IdentitySearchResponse( ), cache.stamp( "customer" ) );
+
+        cache.invalidate( "customer" );
+
+        assertNull( cache.get( "customer", "client" ) );
+        assertNull( cache.get( "customer", "other client" ) );
+    }
+
+    public void testLookupStartedBeforeInvalidationIsNotCached( )
+    {
+        final IdentityLookupCache cache = new IdentityLookupCache( 60000L, 10 );
+        final long lStamp = cache.stamp( "customer" );
+
+        cache.invalidate( "customer" );
+        cache.put( "customer", "client", new IdentitySearchResponse( ), lStamp );
+
+        assertNull( cache.get( "customer", "client" ) );
+    }
+
+    public void testLeastRecentlyUsedIsEvicted( )
+    {
+        final IdentityLookupCache cache = new IdentityLookupCache( 60000L, 2 );
+        cache.put( "first", "client", new IdentitySearchResponse( ), cache.stamp( "first" ) );
+        cache.put( "second", "client", new IdentitySearchResponse( ), cache.stamp( "second" ) );
+        cache.get( "first", "client" );
+
+        cache.put( "third", "client", new IdentitySearchResponse( ), cache.stamp( "third" ) );
+
+        assertNotNull( cache.get( "first", "client" ) );
+        assertNull( cache.get( "second", "client" ) );
+        assertNotNull( cache.get( "third", "client" ) );
+    }
+
+    public void testDisabledWithoutTimeToLive( )
+    {
+        final IdentityLookupCache cache = new IdentityLookupCache( 0L, 10 );
+        cache.put( "customer", "client", new IdentitySearchResponse( ), cache.stamp( "customer" ) );
+
+        assertNull( cache.get( "customer", "client" ) );
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.client;
+
+import fr.paris.lutece.plugins.identitystore.web.exception.IdentityStoreException;
+import fr.paris.lutece.test.LuteceTestCase;
+import fr.paris.lutece.util.httpaccess.InvalidResponseStatus;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeoutException;
+
+public class IdentityStoreFailureTest extends LuteceTestCase
+{
+
+    public void testClassify( )
+    {
+        assertEquals( IdentityStoreFailure.TIMEOUT, IdentityStoreFailure.classify( new IdentityStoreException( "timeout", new TimeoutException( ) ) ) );
+        assertEquals( IdentityStoreFailure.TIMEOUT,
+                IdentityStoreFailure.classify( new IdentityStoreException( "read", new IOException( new SocketTimeoutException( ) ) ) ) );
+        assertEquals( IdentityStoreFailure.NOT_SENT, IdentityStoreFailure.classify( new IdentityStoreException( "refused", new ConnectException( ) ) ) );
+        assertEquals( IdentityStoreFailure.TRANSPORT, IdentityStoreFailure.classify( new IdentityStoreException( "reset", new IOException( ) ) ) );
+        assertEquals( IdentityStoreFailure.TRANSPORT,
+                IdentityStoreFailure.classify( new IdentityStoreException( "server error", new InvalidResponseStatus( "HTTP 503", 503, null ) ) ) );
+        assertEquals( IdentityStoreFailure.REJECTED,
+                IdentityStoreFailure.classify( new IdentityStoreException( "bad request", new InvalidResponseStatus( "HTTP 400", 400, null ) ) ) );
+        assertEquals( IdentityStoreFailure.REJECTED, IdentityStoreFailure.classify( new IdentityStoreException( "business error" ) ) );
+        assertEquals( IdentityStoreFailure.INTERRUPTED,
+                IdentityStoreFailure.classify( new IdentityStoreException( "interrupted", new InterruptedException( ) ) ) );
+        assertEquals( IdentityStoreFailure.UNKNOWN, IdentityStoreFailure.classify( new IdentityStoreException( "bug", new NullPointerException( ) ) ) );
+        assertEquals( IdentityStoreFailure.UNKNOWN, IdentityStoreFailure.classify( new IllegalStateException( "unexpected" ) ) );
+    }
+
+    public void testImportIsNotRetriedAfterAnAmbiguousFailure( )
+    {
+        assertTrue( IdentityStoreFailure.NOT_SENT.isRetryable( IdentityStoreOperation.IMPORT ) );
+        assertFalse( IdentityStoreFailure.TIMEOUT.isRetryable( IdentityStoreOperation.IMPORT ) );
+        assertFalse( IdentityStoreFailure.TRANSPORT.isRetryable( IdentityStoreOperation.IMPORT ) );
+        assertFalse( IdentityStoreFailure.REJECTED.isRetryable( IdentityStoreOperation.IMPORT ) );
+        assertFalse( IdentityStoreFailure.UNKNOWN.isRetryable( IdentityStoreOperation.IMPORT ) );
+
+        assertTrue( IdentityStoreFailure.TIMEOUT.isRetryable( IdentityStoreOperation.GET ) );
+        assertTrue( IdentityStoreFailure.TRANSPORT.isRetryable( IdentityStoreOperation.GET ) );
+        assertFalse( IdentityStoreFailure.REJECTED.isRetryable( IdentityStoreOperation.GET ) );
+        assertFalse( IdentityStoreFailure.UNKNOWN.isRetryable( IdentityStoreOperation.GET ) );
+    }
+
+    public void testOnlyFailuresWithoutAnswerCountForTheCircuitBreaker( )
+    {
+        assertTrue( IdentityStoreFailure.NOT_SENT.isIdentityStoreFailure( ) );
+        assertTrue( IdentityStoreFailure.TIMEOUT.isIdentityStoreFailure( ) );
+        assertTrue( IdentityStoreFailure.TRANSPORT.isIdentityStoreFailure( ) );
+        assertTrue( IdentityStoreFailure.UNKNOWN.isIdentityStoreFailure( ) );
+        assertFalse( IdentityStoreFailure.REJECTED.isIdentityStoreFailure( ) );
+        assertFalse( IdentityStoreFailure.INTERRUPTED.isIdentityStoreFailure( ) );
+    }
+}
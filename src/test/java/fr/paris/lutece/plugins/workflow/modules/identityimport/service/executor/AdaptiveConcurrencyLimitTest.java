@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.executor;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+public class AdaptiveConcurrencyLimitTest extends LuteceTestCase
+{
+
+    public void testSlowCallsDecreaseTheLimit( )
+    {
+        final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit( 2, 10, 100L, 0.1, 0.5, 10 );
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            limit.onSample( 500L, false );
+        }
+        assertEquals( 5, limit.getLimit( ) );
+
+        for ( int i = 0; i < 20; i++ )
+        {
+            limit.onSample( 500L, false );
+        }
+        assertEquals( 2, limit.getLimit( ) );
+        assertEquals( 2, limit.getDecreaseCount( ) );
+    }
+
+    public void testErrorsDecreaseTheLimit( )
+    {
+        final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit( 1, 10, 100L, 0.1, 0.5, 10 );
+
+        for ( int i = 0; i < 10; i++ )
+        {
+            limit.onSample( 10L, i < 2 );
+        }
+        assertEquals( 5, limit.getLimit( ) );
+    }
+
+    public void testHealthySaturatedLaneGrowsBackToItsMaximum( )
+    {
+        final AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit( 1, 3, 100L, 0.1, 0.5, 10 );
+        for ( int i = 0; i < 10; i++ )
+        {
+            limit.onSample( 500L, false );
+        }
+        assertEquals( 1, limit.getLimit( ) );
+
+        // Not saturated: the limit is not increased
+        for ( int i = 0; i < 10; i++ )
+        {
+            limit.onSample( 10L, false );
+        }
+        assertEquals( 1, limit.getLimit( ) );
+
+        for ( int nWindow = 0; nWindow < 5; nWindow++ )
+        {
+            limit.onSaturation( );
+            for ( int i = 0; i < 10; i++ )
+            {
+                limit.onSample( 10L, false );
+            }
+        }
+        assertEquals( 3, limit.getLimit( ) );
+    }
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.executor;
+
+import fr.paris.lutece.plugins.identitystore.web.exception.IdentityStoreException;
+import fr.paris.lutece.test.LuteceTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lanes of the identity task executor. Each test uses its own client code, the lanes of the singleton are kept between tests.
+ */
+public class IdentityTaskExecutorTest extends LuteceTestCase
+{
+    private static final int MAX_IN_FLIGHT = 4;
+    private static final long TIMEOUT = 5000;
+
+    private final IdentityTaskExecutor _executor = IdentityTaskExecutor.instance( );
+
+    public void testLaneBoundsTheCallsInFlight( ) throws Exception
+    {
+        final String strClientCode = newClientCode( );
+        final CountDownLatch started = new CountDownLatch( MAX_IN_FLIGHT );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        final List<Future<Boolean>> listFutures = new ArrayList<>( );
+        try
+        {
+            for ( int i = 0; i < MAX_IN_FLIGHT + 2; i++ )
+            {
+                listFutures.add( _executor.submit( strClientCode, ( ) -> {
+                    started.countDown( );
+                    return release.await( TIMEOUT, TimeUnit.MILLISECONDS );
+                } ) );
+            }
+            assertTrue( started.await( TIMEOUT, TimeUnit.MILLISECONDS ) );
+
+            assertEquals( Integer.valueOf( 2 ), _executor.getQueueDepthByClient( ).get( strClientCode ) );
+            assertEquals( Integer.valueOf( MAX_IN_FLIGHT ), _executor.getConcurrencyLimitByClient( ).get( strClientCode ) );
+        }
+        finally
+        {
+            release.countDown( );
+        }
+        for ( final Future<Boolean> future : listFutures )
+        {
+            assertTrue( future.get( TIMEOUT, TimeUnit.MILLISECONDS ) );
+        }
+        assertEquals( Integer.valueOf( 0 ), _executor.getQueueDepthByClient( ).get( strClientCode ) );
+    }
+
+    public void testCallRunsOnAWorker( ) throws IdentityStoreException
+    {
+        final Thread caller = Thread.currentThread( );
+
+        assertNotSame( caller, _executor.execute( newClientCode( ), Thread::currentThread, TIMEOUT ) );
+    }
+
+    public void testCallerRunsOnTheCallingThread( )
+    {
+        final Thread caller = Thread.currentThread( );
+        final String strClientCode = newClientCode( );
+
+        assertSame( caller, IdentityTaskExecutor.callerRuns( ( ) -> execute( strClientCode, Thread::currentThread, TIMEOUT ) ) );
+    }
+
+    public void testCallerRunsDoesNotBypassAFullLane( ) throws Exception
+    {
+        final String strClientCode = newClientCode( );
+        final CountDownLatch started = new CountDownLatch( MAX_IN_FLIGHT );
+        final CountDownLatch release = new CountDownLatch( 1 );
+        try
+        {
+            for ( int i = 0; i < MAX_IN_FLIGHT; i++ )
+            {
+                _executor.submit( strClientCode, ( ) -> {
+                    started.countDown( );
+                    return release.await( TIMEOUT, TimeUnit.MILLISECONDS );
+                } );
+            }
+            assertTrue( started.await( TIMEOUT, TimeUnit.MILLISECONDS ) );
+
+            assertNull( IdentityTaskExecutor.callerRuns( ( ) -> execute( strClientCode, Thread::currentThread, 200 ) ) );
+        }
+        finally
+        {
+            release.countDown( );
+        }
+    }
+
+    public void testCallFailureIsRethrown( )
+    {
+        final IdentityStoreException failure = new IdentityStoreException( "failure" );
+        try
+        {
+            _executor.execute( newClientCode( ), ( ) -> {
+                throw failure;
+            }, TIMEOUT );
+            fail( "The failure of the call should be rethrown" );
+        }
+        catch( final IdentityStoreException e )
+        {
+            assertSame( failure, e );
+        }
+    }
+
+    /**
+     * Execute a call, null if it fails or times out
+     */
+    private <T> T execute( final String strClientCode, final IdentityStoreCall<T> call, final long lTimeout )
+    {
+        try
+        {
+            return _executor.execute( strClientCode, call, lTimeout );
+        }
+        catch( final IdentityStoreException e )
+        {
+            return null;
+        }
+    }
+
+    private static String newClientCode( )
+    {
+        return "TEST_" + System.nanoTime( );
+    }
+}
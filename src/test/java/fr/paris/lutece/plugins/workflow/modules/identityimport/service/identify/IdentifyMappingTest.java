@@ -0,0 +1,69 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.identify;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Parsing of the batch identification mapping
+ */
+public class IdentifyMappingTest extends LuteceTestCase
+{
+    public void testParse( )
+    {
+        final IdentifyMapping mapping = IdentifyMapping.parse( "# candidate;customer\n12;abc-123\r\n\n 13 ; def-456 ; email, mobile_phone \n" );
+        assertEquals( 2, mapping.getEntries( ).size( ) );
+        assertTrue( mapping.getRejectedLines( ).isEmpty( ) );
+        assertEquals( "abc-123", mapping.getEntries( ).get( 12 ).getCustomerId( ) );
+        assertTrue( mapping.getEntries( ).get( 12 ).getOverriddenKeys( ).isEmpty( ) );
+        assertEquals( "def-456", mapping.getEntries( ).get( 13 ).getCustomerId( ) );
+        assertEquals( 2, mapping.getEntries( ).get( 13 ).getOverriddenKeys( ).size( ) );
+        assertTrue( mapping.getEntries( ).get( 13 ).getOverriddenKeys( ).contains( "mobile_phone" ) );
+    }
+
+    public void testRejectedLines( )
+    {
+        final IdentifyMapping mapping = IdentifyMapping.parse( "12;abc-123\nabc;def\n14;\n12;ghi-789\n15;a;b;c" );
+        assertEquals( 1, mapping.getEntries( ).size( ) );
+        assertEquals( 4, mapping.getRejectedLines( ).size( ) );
+        assertEquals( "abc-123", mapping.getEntries( ).get( 12 ).getCustomerId( ) );
+        assertTrue( mapping.getRejectedLines( ).get( 2 ).startsWith( "Line 4 " ) );
+    }
+
+    public void testEmpty( )
+    {
+        assertTrue( IdentifyMapping.parse( null ).isEmpty( ) );
+        assertTrue( IdentifyMapping.parse( " \n# comment\n" ).isEmpty( ) );
+    }
+}
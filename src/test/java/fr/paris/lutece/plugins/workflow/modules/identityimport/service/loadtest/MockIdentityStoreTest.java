@@ -0,0 +1,60 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.loadtest;
+
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatusType;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Latency and status mix of the mock identity store
+ */
+public class MockIdentityStoreTest extends LuteceTestCase
+{
+    public void testLatency( )
+    {
+        final double dSigma = Math.log( 200.0 / 20 ) / 2.326;
+        assertEquals( 20, MockIdentityStore.latency( 20, dSigma, 0 ) );
+        assertEquals( 200, MockIdentityStore.latency( 20, dSigma, 2.326 ) );
+        assertEquals( 0, MockIdentityStore.latency( 0, dSigma, 2.326 ) );
+    }
+
+    public void testStatusMix( )
+    {
+        final MockIdentityStore store = new MockIdentityStore( 0, 0, 0, "SUCCESS:90, FAILURE:10, UNKNOWN:5, CONFLICT:0" );
+        assertEquals( ResponseStatusType.SUCCESS, store.pickStatus( 0 ) );
+        assertEquals( ResponseStatusType.SUCCESS, store.pickStatus( 0.89 ) );
+        assertEquals( ResponseStatusType.FAILURE, store.pickStatus( 0.9 ) );
+        assertEquals( ResponseStatusType.FAILURE, store.pickStatus( 0.999 ) );
+    }
+}
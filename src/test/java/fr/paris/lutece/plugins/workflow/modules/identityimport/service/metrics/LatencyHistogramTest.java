@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.metrics;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Buckets and percentiles of the latency histogram
+ */
+public class LatencyHistogramTest extends LuteceTestCase
+{
+    public void testBucketsAreCumulative( )
+    {
+        final LatencyHistogram histogram = new LatencyHistogram( );
+        histogram.record( TimeUnit.MILLISECONDS.toNanos( 1 ) );
+        histogram.record( TimeUnit.MILLISECONDS.toNanos( 3 ) );
+        histogram.record( TimeUnit.SECONDS.toNanos( 60 ) );
+
+        final long [ ] counts = histogram.getCumulativeCounts( );
+        // A value equal to a bound falls in its bucket
+        assertEquals( 1, counts [0] );
+        assertEquals( 1, counts [1] );
+        assertEquals( 2, counts [2] );
+        assertEquals( 2, counts [counts.length - 2] );
+        assertEquals( 3, counts [counts.length - 1] );
+        assertEquals( 3, histogram.getCount( ) );
+        assertEquals( 60004d, histogram.getSumMillis( ), 0.001d );
+    }
+
+    public void testPercentiles( )
+    {
+        final LatencyHistogram histogram = new LatencyHistogram( );
+        assertEquals( 0, histogram.getPercentileMillis( 99 ) );
+
+        for ( int i = 0; i < 99; i++ )
+        {
+            histogram.record( TimeUnit.MILLISECONDS.toNanos( 20 ) );
+        }
+        histogram.record( TimeUnit.SECONDS.toNanos( 60 ) );
+
+        assertEquals( 25, histogram.getPercentileMillis( 50 ) );
+        assertEquals( 25, histogram.getPercentileMillis( 99 ) );
+        // Above the highest bound
+        assertEquals( -1, histogram.getPercentileMillis( 100 ) );
+    }
+}
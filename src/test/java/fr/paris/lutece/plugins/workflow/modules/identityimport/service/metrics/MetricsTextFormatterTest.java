@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.metrics;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Export of the metrics in the Prometheus text format
+ */
+public class MetricsTextFormatterTest extends LuteceTestCase
+{
+    private static final String TASK = "identity_import";
+
+    public void testLatency( )
+    {
+        final MetricsRegistry registry = new MetricsRegistry( );
+        registry.recordLatency( TASK, TaskPhase.API_CALL, TimeUnit.MILLISECONDS.toNanos( 3 ) );
+        registry.recordLatency( TASK, TaskPhase.API_CALL, TimeUnit.MILLISECONDS.toNanos( 40 ) );
+
+        final String strOutput = MetricsTextFormatter.format( registry );
+
+        assertTrue( strOutput.contains( "# TYPE identityimport_task_phase_seconds histogram\n" ) );
+        assertTrue( strOutput.contains( "identityimport_task_phase_seconds_bucket{task=\"identity_import\",phase=\"api_call\",le=\"0.002\"} 0\n" ) );
+        assertTrue( strOutput.contains( "identityimport_task_phase_seconds_bucket{task=\"identity_import\",phase=\"api_call\",le=\"0.005\"} 1\n" ) );
+        assertTrue( strOutput.contains( "identityimport_task_phase_seconds_bucket{task=\"identity_import\",phase=\"api_call\",le=\"0.05\"} 2\n" ) );
+        assertTrue( strOutput.contains( "identityimport_task_phase_seconds_bucket{task=\"identity_import\",phase=\"api_call\",le=\"+Inf\"} 2\n" ) );
+        assertTrue( strOutput.contains( "identityimport_task_phase_seconds_count{task=\"identity_import\",phase=\"api_call\"} 2\n" ) );
+        // Phases without any value are not exported
+        assertFalse( strOutput.contains( "phase=\"mapping\"" ) );
+    }
+
+    public void testOutcomesInFlightAndGauges( )
+    {
+        final MetricsRegistry registry = new MetricsRegistry( );
+        registry.incrementOutcome( TASK, "SUCCESS", "CLIENT" );
+        registry.incrementOutcome( TASK, "SUCCESS", "CLIENT" );
+        registry.incrementOutcome( TASK, "FAILURE", null );
+        registry.incrementInFlight( TASK );
+        registry.incrementInFlight( TASK );
+        registry.decrementInFlight( TASK );
+        registry.registerGauge( "outbox.pending", ( ) -> 12 );
+        registry.registerGauge( "missing", ( ) -> null );
+
+        final String strOutput = MetricsTextFormatter.format( registry );
+
+        assertTrue( strOutput.contains( "identityimport_task_outcomes_total{task=\"identity_import\",outcome=\"SUCCESS\",client_code=\"CLIENT\"} 2\n" ) );
+        assertTrue( strOutput.contains( "identityimport_task_outcomes_total{task=\"identity_import\",outcome=\"FAILURE\",client_code=\"none\"} 1\n" ) );
+        assertTrue( strOutput.contains( "identityimport_task_in_flight{task=\"identity_import\"} 1\n" ) );
+        assertTrue( strOutput.contains( "# TYPE identityimport_outbox_pending gauge\nidentityimport_outbox_pending 12\n" ) );
+        assertFalse( strOutput.contains( "identityimport_missing" ) );
+    }
+
+    public void testMetricsDeclaredOnce( )
+    {
+        final MetricsRegistry registry = new MetricsRegistry( );
+        registry.incrementOutcome( TASK, "SUCCESS", "CLIENT" );
+        registry.incrementOutcome( "identity_identify", "SUCCESS", "CLIENT" );
+
+        final String strOutput = MetricsTextFormatter.format( registry );
+
+        final String strHelp = "# HELP identityimport_task_outcomes_total ";
+        assertEquals( strOutput.indexOf( strHelp ), strOutput.lastIndexOf( strHelp ) );
+        assertTrue( strOutput.indexOf( strHelp ) >= 0 );
+    }
+
+    public void testLabelsEscaped( )
+    {
+        final MetricsRegistry registry = new MetricsRegistry( );
+        registry.incrementOutcome( TASK, "SUCCESS", "CLIENT \"A\"\\\n" );
+
+        assertTrue( MetricsTextFormatter.format( registry ).contains( "client_code=\"CLIENT \\\"A\\\"\\\\\\n\"} 1\n" ) );
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.outbox;
+
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.outbox.OutboxEntry;
+import fr.paris.lutece.plugins.workflowcore.business.action.Action;
+import fr.paris.lutece.plugins.workflowcore.business.resource.ResourceWorkflow;
+import fr.paris.lutece.plugins.workflowcore.business.state.State;
+import fr.paris.lutece.test.LuteceTestCase;
+
+/**
+ * Retry delays of the outbox calls and guard of the routing of their outcomes
+ */
+public class OutboxServiceTest extends LuteceTestCase
+{
+    private static final long BACKOFF_INITIAL = 30000L;
+    private static final long BACKOFF_MAX = 3600000L;
+    private static final int ID_STATE_PENDING = 1;
+    private static final int ID_STATE_OTHER = 2;
+
+    public void testBackoffDoublesAtEachAttempt( )
+    {
+        assertEquals( BACKOFF_INITIAL, OutboxService.getBackoff( BACKOFF_INITIAL, BACKOFF_MAX, 0 ) );
+        assertEquals( 2 * BACKOFF_INITIAL, OutboxService.getBackoff( BACKOFF_INITIAL, BACKOFF_MAX, 1 ) );
+        assertEquals( 8 * BACKOFF_INITIAL, OutboxService.getBackoff( BACKOFF_INITIAL, BACKOFF_MAX, 3 ) );
+    }
+
+    public void testBackoffIsBounded( )
+    {
+        assertEquals( BACKOFF_MAX, OutboxService.getBackoff( BACKOFF_INITIAL, BACKOFF_MAX, 7 ) );
+        // The shift is bounded too, a large number of attempts doesn't overflow
+        assertEquals( BACKOFF_MAX, OutboxService.getBackoff( BACKOFF_INITIAL, BACKOFF_MAX, 1000 ) );
+    }
+
+    public void testOutcomeRoutedWhileTheResourceIsPending( )
+    {
+        assertTrue( OutboxService.isPending( new OutboxEntry( ), newResourceWorkflow( ID_STATE_PENDING ), newAction( ID_STATE_PENDING ) ) );
+        // Nothing to compare with, the outcome is routed
+        assertTrue( OutboxService.isPending( new OutboxEntry( ), newResourceWorkflow( ID_STATE_OTHER ), null ) );
+        assertTrue( OutboxService.isPending( new OutboxEntry( ), newResourceWorkflow( ID_STATE_OTHER ), new Action( ) ) );
+    }
+
+    public void testOutcomeNotRoutedOnceTheResourceHasMoved( )
+    {
+        assertFalse( OutboxService.isPending( new OutboxEntry( ), newResourceWorkflow( ID_STATE_OTHER ), newAction( ID_STATE_PENDING ) ) );
+    }
+
+    private static ResourceWorkflow newResourceWorkflow( final int nIdState )
+    {
+        final State state = new State( );
+        state.setId( nIdState );
+        final ResourceWorkflow resourceWorkflow = new ResourceWorkflow( );
+        resourceWorkflow.setState( state );
+        return resourceWorkflow;
+    }
+
+    private static Action newAction( final int nIdStateAfter )
+    {
+        final State stateAfter = new State( );
+        stateAfter.setId( nIdStateAfter );
+        final Action action = new Action( );
+        action.setStateAfter( stateAfter );
+        return action;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.progress;
+
+import fr.paris.lutece.test.LuteceTestCase;
+
+public class BatchProgressTest extends LuteceTestCase
+{
+
+    public void testCountersByOutcome( )
+    {
+        final BatchProgress progress = new BatchProgress( 1, 10 );
+        progress.begin( 6 );
+
+        progress.end( "SUCCESS" );
+        progress.end( "UNCHANGED" );
+        progress.end( "INCOMPLETE_SUCCESS" );
+        progress.end( "FAILURE" );
+        progress.end( BatchProgress.OUTCOME_DEFERRED );
+
+        assertEquals( 2, progress.getSuccess( ) );
+        assertEquals( 1, progress.getIncompleteSuccess( ) );
+        assertEquals( 1, progress.getFailed( ) );
+        assertEquals( 1, progress.getDeferred( ) );
+        assertEquals( 5, progress.getProcessed( ) );
+        assertEquals( 1, progress.getInFlight( ) );
+    }
+
+    public void testResolveDeferred( )
+    {
+        final BatchProgress progress = new BatchProgress( 1, 3 );
+        progress.begin( 3 );
+        progress.end( BatchProgress.OUTCOME_DEFERRED );
+        progress.end( BatchProgress.OUTCOME_DEFERRED );
+        progress.end( BatchProgress.OUTCOME_DEFERRED );
+
+        progress.resolve( "SUCCESS" );
+        progress.resolve( "ERROR" );
+
+        assertEquals( 1, progress.getSuccess( ) );
+        assertEquals( 1, progress.getFailed( ) );
+        assertEquals( 1, progress.getDeferred( ) );
+        assertEquals( 3, progress.getProcessed( ) );
+        assertEquals( 0, progress.getInFlight( ) );
+    }
+
+    public void testRateAndEta( )
+    {
+        final BatchProgress progress = new BatchProgress( 1, 10 );
+        assertEquals( -1, progress.getEtaSeconds( ) );
+
+        progress.begin( 5 );
+        for ( int i = 0; i < 5; i++ )
+        {
+            progress.end( "SUCCESS" );
+        }
+
+        assertTrue( progress.getRate( ) > 0 );
+        assertTrue( progress.getEtaSeconds( ) > 0 );
+
+        progress.begin( 5 );
+        for ( int i = 0; i < 5; i++ )
+        {
+            progress.end( "SUCCESS" );
+        }
+        assertEquals( 0, progress.getEtaSeconds( ) );
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.validation;
+
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.AttributeDto;
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.IdentityDto;
+import fr.paris.lutece.test.LuteceTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+/**
+ * Rules of the attribute validator
+ */
+public class AttributeRulesValidatorTest extends LuteceTestCase
+{
+    private final AttributeRulesValidator _validator = new AttributeRulesValidator( new HashSet<>( Arrays.asList( "family_name", "birthdate" ) ),
+            Collections.singletonMap( "address_postal_code", "\\d{5}" ), Collections.singletonMap( "birthdate", "dd/MM/yyyy" ),
+            Collections.singletonMap( "gender", "0,1,2" ) );
+
+    public void testValidIdentity( )
+    {
+        final List<ValidationError> listErrors = validate( "family_name", "Dupont", "birthdate", "29/02/2000", "address_postal_code", "75001", "gender",
+                "1" );
+        assertTrue( listErrors.isEmpty( ) );
+    }
+
+    public void testInvalidAttributes( )
+    {
+        final List<ValidationError> listErrors = validate( "family_name", "Dupont", "birthdate", "29/02/2001", "address_postal_code", "7500", "gender",
+                "3" );
+        assertEquals( 3, listErrors.size( ) );
+        assertError( listErrors, "birthdate", ValidationError.CODE_INVALID_DATE );
+        assertError( listErrors, "address_postal_code", ValidationError.CODE_INVALID_FORMAT );
+        assertError( listErrors, "gender", ValidationError.CODE_UNKNOWN_VALUE );
+    }
+
+    public void testMissingAttributes( )
+    {
+        final List<ValidationError> listErrors = validate( "family_name", "", "gender", "2" );
+        assertEquals( 2, listErrors.size( ) );
+        assertError( listErrors, "family_name", ValidationError.CODE_MISSING );
+        assertError( listErrors, "birthdate", ValidationError.CODE_MISSING );
+    }
+
+    private List<ValidationError> validate( final String... keyValues )
+    {
+        final IdentityDto identity = new IdentityDto( );
+        final List<AttributeDto> attributes = new ArrayList<>( );
+        for ( int i = 0; i < keyValues.length; i += 2 )
+        {
+            final AttributeDto attribute = new AttributeDto( );
+            attribute.setKey( keyValues [i] );
+            attribute.setValue( keyValues [i + 1] );
+            attributes.add( attribute );
+        }
+        identity.setAttributes( attributes );
+        final List<ValidationError> listErrors = new ArrayList<>( );
+        _validator.validate( identity, listErrors );
+        return listErrors;
+    }
+
+    private static void assertError( final List<ValidationError> listErrors, final String strKey, final String strCode )
+    {
+        assertTrue( strKey + " " + strCode,
+                listErrors.stream( ).anyMatch( error -> strKey.equals( error.getAttributeKey( ) ) && strCode.equals( error.getCode( ) ) ) );
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.service.writer;
+
+import fr.paris.lutece.plugins.identityimport.business.CandidateIdentityHistory;
+import fr.paris.lutece.plugins.workflow.modules.identityimport.business.candidate.CandidateIdentityImportHash;
+import fr.paris.lutece.test.LuteceTestCase;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Buffering of the write-behind service, without writing anything
+ */
+public class CandidateIdentityWriteBehindServiceTest extends LuteceTestCase
+{
+    private static final int ID_CANDIDATE = 990001;
+
+    private final CandidateIdentityWriteBehindService _service = CandidateIdentityWriteBehindService.instance( );
+
+    @Override
+    protected void tearDown( ) throws Exception
+    {
+        _service.discard( );
+        super.tearDown( );
+    }
+
+    public void testCustomerIdsAndHashesAreCoalesced( )
+    {
+        _service.addCustomerId( ID_CANDIDATE, "customer-1" );
+        _service.addCustomerId( ID_CANDIDATE, "customer-2" );
+        _service.addCustomerId( ID_CANDIDATE + 1, "customer-3" );
+        _service.addImportHash( new CandidateIdentityImportHash( ID_CANDIDATE, "hash-1", "customer-2" ) );
+        _service.addImportHash( new CandidateIdentityImportHash( ID_CANDIDATE, "hash-2", "customer-2" ) );
+
+        assertEquals( 3, _service.discard( ) );
+    }
+
+    public void testHistoriesAreNotCoalesced( )
+    {
+        _service.addHistory( new CandidateIdentityHistory( ) );
+        _service.addHistory( new CandidateIdentityHistory( ) );
+
+        assertEquals( 2, _service.discard( ) );
+    }
+
+    public void testBuffersAreKeptByThread( ) throws InterruptedException
+    {
+        _service.addCustomerId( ID_CANDIDATE, "customer-1" );
+
+        final AtomicInteger nDiscardedByOther = new AtomicInteger( -1 );
+        final Thread other = new Thread( ( ) -> {
+            _service.addCustomerId( ID_CANDIDATE + 1, "customer-2" );
+            _service.addCustomerId( ID_CANDIDATE + 2, "customer-3" );
+            nDiscardedByOther.set( _service.discard( ) );
+        } );
+        other.start( );
+        other.join( );
+
+        assertEquals( 2, nDiscardedByOther.get( ) );
+        assertEquals( 1, _service.discard( ) );
+        assertEquals( 0, _service.discard( ) );
+    }
+
+    public void testFlushOfAnEmptyBuffer( )
+    {
+        _service.flush( );
+
+        assertEquals( 0, _service.discard( ) );
+    }
+}
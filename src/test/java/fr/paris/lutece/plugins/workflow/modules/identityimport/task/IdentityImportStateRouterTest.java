@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.task;
+
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatusType;
+import fr.paris.lutece.test.LuteceTestCase;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+public class IdentityImportStateRouterTest extends LuteceTestCase
+{
+
+    public void testRoutesByOutcome( )
+    {
+        final Map<ResponseStatusType, Integer> mapRoutes = new EnumMap<>( ResponseStatusType.class );
+        mapRoutes.put( ResponseStatusType.SUCCESS, 10 );
+        mapRoutes.put( ResponseStatusType.CONFLICT, 30 );
+        mapRoutes.put( ResponseStatusType.FAILURE, 0 );
+
+        final IdentityImportStateRouter router = new IdentityImportStateRouter( mapRoutes );
+        mapRoutes.put( ResponseStatusType.INCOMPLETE_SUCCESS, 20 );
+
+        assertEquals( 10, router.getIdTargetState( ResponseStatusType.SUCCESS ) );
+        assertEquals( 30, router.getIdTargetState( ResponseStatusType.CONFLICT ) );
+        assertEquals( -1, router.getIdTargetState( ResponseStatusType.INCOMPLETE_SUCCESS ) );
+        assertEquals( -1, router.getIdTargetState( ResponseStatusType.FAILURE ) );
+        assertEquals( -1, router.getIdTargetState( null ) );
+        assertEquals( 2, router.getRoutes( ).size( ) );
+    }
+
+    public void testConfigWithoutRoutesKeepsTheCurrentState( )
+    {
+        final IdentityImportTaskConfig config = new IdentityImportTaskConfig( );
+        assertEquals( -1, config.getIdTargetState( ResponseStatusType.SUCCESS ) );
+
+        config.setRouter( null );
+        assertSame( IdentityImportStateRouter.EMPTY, config.getRouter( ) );
+    }
+}
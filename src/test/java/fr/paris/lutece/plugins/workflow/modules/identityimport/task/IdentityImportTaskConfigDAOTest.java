@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2002-2024, City of Paris
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions
+ * are met:
+ *
+ *  1. Redistributions of source code must retain the above copyright notice
+ *     and the following disclaimer.
+ *
+ *  2. Redistributions in binary form must reproduce the above copyright notice
+ *     and the following disclaimer in the documentation and/or other materials
+ *     provided with the distribution.
+ *
+ *  3. Neither the name of 'Mairie de Paris' nor 'Lutece' nor the names of its
+ *     contributors may be used to endorse or promote products derived from
+ *     this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDERS OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE)
+ * ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE.
+ *
+ * License 1.0
+ */
+package fr.paris.lutece.plugins.workflow.modules.identityimport.task;
+
+import fr.paris.lutece.plugins.identitystore.v3.web.rs.dto.common.ResponseStatusType;
+import fr.paris.lutece.test.LuteceTestCase;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Round trip of the task configs through the database of the test context
+ */
+public class IdentityImportTaskConfigDAOTest extends LuteceTestCase
+{
+    private static final int ID_TASK_1 = 990001;
+    private static final int ID_TASK_2 = 990002;
+    private static final int ID_TASK_UNKNOWN = 990003;
+
+    private final IdentityImportTaskConfigDAO _dao = new IdentityImportTaskConfigDAO( );
+
+    @Override
+    protected void tearDown( ) throws Exception
+    {
+        _dao.delete( ID_TASK_1 );
+        _dao.delete( ID_TASK_2 );
+        super.tearDown( );
+    }
+
+    public void testInsertStoreLoadDelete( )
+    {
+        final IdentityImportTaskConfig config = newConfig( ID_TASK_1, 1, ResponseStatusType.SUCCESS, 10 );
+        _dao.insert( config );
+
+        IdentityImportTaskConfig loaded = _dao.load( ID_TASK_1 );
+        assertNotNull( loaded );
+        assertEquals( 1, loaded.getIdWorkflow( ) );
+        assertEquals( 10, loaded.getIdTargetState( ResponseStatusType.SUCCESS ) );
+        assertEquals( -1, loaded.getIdTargetState( ResponseStatusType.CONFLICT ) );
+
+        _dao.store( newConfig( ID_TASK_1, 2, ResponseStatusType.CONFLICT, 30 ) );
+
+        loaded = _dao.load( ID_TASK_1 );
+        assertEquals( 2, loaded.getIdWorkflow( ) );
+        assertEquals( -1, loaded.getIdTargetState( ResponseStatusType.SUCCESS ) );
+        assertEquals( 30, loaded.getIdTargetState( ResponseStatusType.CONFLICT ) );
+
+        _dao.delete( ID_TASK_1 );
+        assertNull( _dao.load( ID_TASK_1 ) );
+    }
+
+    public void testLoadSeveralTasks( )
+    {
+        _dao.insert( newConfig( ID_TASK_1, 1, ResponseStatusType.SUCCESS, 10 ) );
+        _dao.insert( newConfig( ID_TASK_2, 1, null, 0 ) );
+
+        final List<IdentityImportTaskConfig> listConfigs = _dao.load( Arrays.asList( ID_TASK_1, ID_TASK_2, ID_TASK_UNKNOWN ) );
+        assertEquals( 2, listConfigs.size( ) );
+        assertEquals( ID_TASK_1, listConfigs.get( 0 ).getIdTask( ) );
+        assertEquals( 10, listConfigs.get( 0 ).getIdTargetState( ResponseStatusType.SUCCESS ) );
+        assertEquals( ID_TASK_2, listConfigs.get( 1 ).getIdTask( ) );
+        assertTrue( listConfigs.get( 1 ).getRouter( ).getRoutes( ).isEmpty( ) );
+
+        assertTrue( _dao.loadAll( ).stream( ).anyMatch( config -> config.getIdTask( ) == ID_TASK_2 ) );
+    }
+
+    public void testVersionChangesOnStore( )
+    {
+        _dao.insert( newConfig( ID_TASK_1, 1, ResponseStatusType.SUCCESS, 10 ) );
+        final String strVersion = _dao.selectVersion( );
+
+        _dao.store( newConfig( ID_TASK_1, 1, ResponseStatusType.SUCCESS, 20 ) );
+
+        assertFalse( strVersion.equals( _dao.selectVersion( ) ) );
+    }
+
+    public void testVersionChangesWhenOneConfigReplacesAnother( )
+    {
+        _dao.insert( newConfig( ID_TASK_1, 1, ResponseStatusType.SUCCESS, 10 ) );
+        final String strVersion = _dao.selectVersion( );
+
+        // Same number of configs, same versions of the rows
+        _dao.delete( ID_TASK_1 );
+        _dao.insert( newConfig( ID_TASK_2, 1, ResponseStatusType.SUCCESS, 10 ) );
+
+        assertFalse( strVersion.equals( _dao.selectVersion( ) ) );
+    }
+
+    private static IdentityImportTaskConfig newConfig( final int nIdTask, final int nIdWorkflow, final ResponseStatusType type, final int nIdState )
+    {
+        final IdentityImportTaskConfig config = new IdentityImportTaskConfig( );
+        config.setIdTask( nIdTask );
+        config.setIdWorkflow( nIdWorkflow );
+        final Map<ResponseStatusType, Integer> mapRoutes = new EnumMap<>( ResponseStatusType.class );
+        if ( type != null )
+        {
+            mapRoutes.put( type, nIdState );
+        }
+        config.setRouter( new IdentityImportStateRouter( mapRoutes ) );
+        return config;
+    }
+}
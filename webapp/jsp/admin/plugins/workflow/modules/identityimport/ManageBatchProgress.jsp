@@ -0,0 +1,9 @@
+<jsp:useBean id="managebatchprogress" scope="session" class="fr.paris.lutece.plugins.workflow.modules.identityimport.web.BatchProgressJspBean" />
+<% String strContent = managebatchprogress.processController( request , response ); %>
+
+<%@ page errorPage="../../../../ErrorPage.jsp" %>
+<jsp:include page="../../../../AdminHeader.jsp" />
+
+<%= strContent %>
+
+<%@ include file="../../../../AdminFooter.jsp" %>